@@ -7,15 +7,18 @@ import com.zeeesea.textureeditor.screen.MobEditorScreen;
 import com.zeeesea.textureeditor.screen.AbstractEditorScreen;
 import com.zeeesea.textureeditor.editor.ExternalEditorManager;
 import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.zeeesea.textureeditor.util.BlockFilter;
 import com.zeeesea.textureeditor.util.EntityMapper;
 import com.zeeesea.textureeditor.texture.TextureExtractor;
 import com.zeeesea.textureeditor.texture.ItemTextureExtractor;
 import com.zeeesea.textureeditor.texture.MobTextureExtractor;
+import com.zeeesea.textureeditor.texture.SessionJournal;
 import com.zeeesea.textureeditor.texture.TextureManager;
 import net.fabricmc.api.ClientModInitializer;
 import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 import net.fabricmc.fabric.api.client.keybinding.v1.KeyBindingHelper;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayConnectionEvents;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
@@ -76,6 +79,9 @@ public class TextureEditorClient implements ClientModInitializer {
 
         ClientTickEvents.END_CLIENT_TICK.register(client -> {
             TextureManager.getInstance().tickItemAnimations();
+            TextureManager.getInstance().tickPreviewToggle();
+            SessionJournal.getInstance().tick(client);
+            TextureSyncClient.getInstance().tick();
             while (toggleEditorKey.wasPressed()) {
                 s.modEnabled = !s.modEnabled;
                 s.save();
@@ -199,35 +205,47 @@ public class TextureEditorClient implements ClientModInitializer {
         });
 
 
-        // Receive texture sync from server and apply it
-        ClientPlayNetworking.registerGlobalReceiver(TextureSyncPayload.ID, (payload, context) -> {
-            // Only apply if multiplayer sync is enabled in settings
-            if (ModSettings.getInstance().multiplayerSync) {
-                int w = payload.width();
-                int h = payload.height();
-                context.client().execute(() ->
-                        TextureManager.getInstance().applyLive(payload.spriteId(), payload.pixels(), w, h)
-                );
-            }
-        });
+        // Receive texture sync from server and apply it. Received textures are decoded off the
+        // render thread by TextureSyncClient, which only queues the upload back to it.
+        ClientPlayNetworking.registerGlobalReceiver(TextureSyncPayload.ID, (payload, context) ->
+                TextureSyncClient.getInstance().receiveLegacy(null, payload.spriteId(), payload.pixels(),
+                        payload.originalPixels(), payload.width(), payload.height()));
 
-        ClientPlayNetworking.registerGlobalReceiver(EntityTextureSyncPayload.ID, (payload, context) -> {
-            if (ModSettings.getInstance().multiplayerSync) {
-                int w = payload.width();
-                int h = payload.height();
-                context.client().execute(() -> {
-                    if (payload.spriteId() != null) {
-                        // GUI/Sky — use sprite-based apply
-                        TextureManager.getInstance().applyLive(
-                                payload.spriteId(), payload.pixels(), payload.originalPixels(), w, h);
-                    } else {
-                        // Mob/Entity — use entity apply
-                        TextureManager.getInstance().applyLiveEntity(
-                                payload.textureId(), payload.pixels(), payload.originalPixels(), w, h);
-                    }
-                });
-            }
-        });
+        // GUI/Sky come with a sprite id, Mob/Entity textures only with their texture id
+        ClientPlayNetworking.registerGlobalReceiver(EntityTextureSyncPayload.ID, (payload, context) ->
+                TextureSyncClient.getInstance().receiveLegacy(payload.textureId(), payload.spriteId(), payload.pixels(),
+                        payload.originalPixels(), payload.width(), payload.height()));
+
+        // Delta sync: keyframes and changed runs, applied on top of the last synced state
+        ClientPlayNetworking.registerGlobalReceiver(TextureDeltaPayload.ID, (payload, context) ->
+                TextureSyncClient.getInstance().receive(payload));
+
+        ClientPlayNetworking.registerGlobalReceiver(TextureChunkPayload.ID, (payload, context) ->
+                TextureSyncClient.getInstance().receiveChunk(payload));
+
+        ClientPlayNetworking.registerGlobalReceiver(TextureSnapshotPayload.ID, (payload, context) ->
+                TextureSyncClient.getInstance().receiveSnapshot(payload));
+
+        ClientPlayNetworking.registerGlobalReceiver(TextureResetPayload.ID, (payload, context) ->
+                TextureSyncClient.getInstance().receiveReset(payload));
+
+        // Collaboration mode: other players' tool ops, replayed on their canvas replicas
+        ClientPlayNetworking.registerGlobalReceiver(CanvasOpsPayload.ID, (payload, context) ->
+                TextureSyncClient.getInstance().receiveOps(payload));
+
+        ClientPlayNetworking.registerGlobalReceiver(TextureResyncPayload.ID, (payload, context) ->
+                context.client().execute(() -> TextureSyncClient.getInstance().onResyncRequest(payload)));
+
+        ClientPlayNetworking.registerGlobalReceiver(SyncHelloPayload.ID, (payload, context) ->
+                context.client().execute(() -> TextureSyncClient.getInstance().onHello(payload)));
+
+        ClientPlayConnectionEvents.JOIN.register((handler, sender, client) ->
+                client.execute(() -> {
+                    TextureSyncClient.getInstance().reset();
+                    TextureSyncClient.getInstance().sendHello();
+                }));
+        ClientPlayConnectionEvents.DISCONNECT.register((handler, client) ->
+                client.execute(() -> TextureSyncClient.getInstance().reset()));
     }
 
 
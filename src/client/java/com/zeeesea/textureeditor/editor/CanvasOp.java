@@ -0,0 +1,46 @@
+package com.zeeesea.textureeditor.editor;
+
+/**
+ * One drawing or layer operation on a {@link PixelCanvas}, as recorded by a
+ * {@link PixelCanvas#setOpRecorder recorder}, replayed by {@link PixelCanvas#replay} and encoded by
+ * {@link CanvasOpCodec}. Ops that vary the brush colour carry the seed their random offsets
+ * were drawn from, so a replay paints the exact same pixels.
+ *
+ * Everything else that changes a canvas (undo, selections, imports...) isn't an op; those are
+ * brought across with a {@link Checkpoint} of the whole canvas.
+ */
+public sealed interface CanvasOp {
+
+    /** A single pixel on the active layer. */
+    record Pixel(int x, int y, int color) implements CanvasOp {}
+
+    /** A size x size square centred on (x, y); erasing paints transparent. */
+    record Area(int x, int y, int size, int color) implements CanvasOp {}
+
+    /** A size x size square with brightness variation. */
+    record Brush(int x, int y, int size, int color, float variation, long seed) implements CanvasOp {}
+
+    /** A Bresenham line of size x size squares. */
+    record Line(int x0, int y0, int x1, int y1, int color, int size, float variation, long seed) implements CanvasOp {}
+
+    /** A rectangle outline between two inclusive corners. */
+    record Rect(int x0, int y0, int x1, int y1, int color, int size, float variation, long seed) implements CanvasOp {}
+
+    /** A flood fill from a seed pixel. */
+    record Fill(int x, int y, int color, float variation, int tolerance, boolean contiguous, boolean wholeCanvas,
+                long seed) implements CanvasOp {}
+
+    /** A change to the layer stack; {@code index} is the layer it applies to. */
+    record LayerOp(LayerAction action, int index) implements CanvasOp {}
+
+    /**
+     * The complete state of a canvas.
+     *
+     * @param layers each layer's pixels, row-major, bottom layer first
+     */
+    record Checkpoint(int activeIndex, boolean[] visible, int[][] layers) implements CanvasOp {}
+
+    enum LayerAction {
+        ADD, ADD_ABOVE, REMOVE, MOVE_UP, MOVE_DOWN, MERGE_DOWN, DUPLICATE, SELECT, SHOW, HIDE
+    }
+}
@@ -0,0 +1,222 @@
+package com.zeeesea.textureeditor.editor;
+
+import com.zeeesea.textureeditor.PixelCodec;
+import com.zeeesea.textureeditor.editor.CanvasOp.*;
+import net.minecraft.network.PacketByteBuf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire encoding of {@link CanvasOp}s: a tag byte, then varint coordinates. Checkpoint layers are
+ * compressed by {@link PixelCodec} as far as the reader can decode them.
+ */
+public final class CanvasOpCodec {
+    private static final int TAG_PIXEL = 0;
+    private static final int TAG_AREA = 1;
+    private static final int TAG_BRUSH = 2;
+    private static final int TAG_LINE = 3;
+    private static final int TAG_RECT = 4;
+    private static final int TAG_FILL = 5;
+    private static final int TAG_LAYER = 6;
+    private static final int TAG_CHECKPOINT = 7;
+    // Consecutive pixels of one colour, each a step of at most MAX_SPAN_STEP from the last
+    private static final int TAG_SPAN = 8;
+
+    private static final int MAX_SPAN_STEP = 7;
+    private static final int MAX_LAYERS = 64;
+    // Most layer pixels the checkpoints of one batch may add up to; canvases with more aren't streamed
+    public static final int MAX_CHECKPOINT_VALUES = PixelCodec.MAX_VALUES;
+
+    private CanvasOpCodec() {}
+
+    /**
+     * Write ops in order. Runs of same-coloured {@link Pixel}s, which is what a pencil or eraser
+     * stroke records, are packed into spans of one byte per pixel.
+     */
+    public static void writeAll(PacketByteBuf buf, List<CanvasOp> ops, int codecs) {
+        int i = 0;
+        while (i < ops.size()) {
+            CanvasOp op = ops.get(i);
+            if (op instanceof Pixel first) {
+                int end = i + 1;
+                Pixel last = first;
+                while (end < ops.size() && ops.get(end) instanceof Pixel next && next.color() == first.color()
+                        && Math.abs(next.x() - last.x()) <= MAX_SPAN_STEP && Math.abs(next.y() - last.y()) <= MAX_SPAN_STEP) {
+                    last = next;
+                    end++;
+                }
+                if (end - i > 1) {
+                    buf.writeByte(TAG_SPAN);
+                    buf.writeVarInt(first.x());
+                    buf.writeVarInt(first.y());
+                    buf.writeInt(first.color());
+                    buf.writeVarInt(end - i - 1);
+                    Pixel prev = first;
+                    for (int j = i + 1; j < end; j++) {
+                        Pixel p = (Pixel) ops.get(j);
+                        buf.writeByte((p.x() - prev.x() + 8) << 4 | (p.y() - prev.y() + 8));
+                        prev = p;
+                    }
+                    i = end;
+                    continue;
+                }
+            }
+            write(buf, op, codecs);
+            i++;
+        }
+    }
+
+    /**
+     * Ops until the buffer is exhausted. Checkpoint layers must have exactly {@code pixelCount}
+     * pixels, and all of them together at most {@link #MAX_CHECKPOINT_VALUES}; both are checked
+     * before a layer is decoded.
+     *
+     * @param pixelCount width * height of the canvas the ops are for
+     */
+    public static List<CanvasOp> readAll(PacketByteBuf buf, int pixelCount) {
+        List<CanvasOp> ops = new ArrayList<>();
+        int[] checkpointBudget = {MAX_CHECKPOINT_VALUES};
+        while (buf.isReadable()) {
+            int tag = buf.readUnsignedByte();
+            if (tag == TAG_SPAN) {
+                int x = buf.readVarInt();
+                int y = buf.readVarInt();
+                int color = buf.readInt();
+                int steps = buf.readVarInt();
+                ops.add(new Pixel(x, y, color));
+                for (int j = 0; j < steps; j++) {
+                    int step = buf.readUnsignedByte();
+                    x += (step >> 4) - 8;
+                    y += (step & 0xF) - 8;
+                    ops.add(new Pixel(x, y, color));
+                }
+            } else {
+                ops.add(read(buf, tag, pixelCount, checkpointBudget));
+            }
+        }
+        return ops;
+    }
+
+    private static void write(PacketByteBuf buf, CanvasOp op, int codecs) {
+        switch (op) {
+            case Pixel p -> {
+                buf.writeByte(TAG_PIXEL);
+                buf.writeVarInt(p.x());
+                buf.writeVarInt(p.y());
+                buf.writeInt(p.color());
+            }
+            case Area a -> {
+                buf.writeByte(TAG_AREA);
+                buf.writeVarInt(a.x());
+                buf.writeVarInt(a.y());
+                buf.writeVarInt(a.size());
+                buf.writeInt(a.color());
+            }
+            case Brush b -> {
+                buf.writeByte(TAG_BRUSH);
+                buf.writeVarInt(b.x());
+                buf.writeVarInt(b.y());
+                buf.writeVarInt(b.size());
+                buf.writeInt(b.color());
+                writeVariation(buf, b.variation(), b.seed());
+            }
+            case Line l -> {
+                buf.writeByte(TAG_LINE);
+                buf.writeVarInt(l.x0());
+                buf.writeVarInt(l.y0());
+                buf.writeVarInt(l.x1());
+                buf.writeVarInt(l.y1());
+                buf.writeInt(l.color());
+                buf.writeVarInt(l.size());
+                writeVariation(buf, l.variation(), l.seed());
+            }
+            case Rect r -> {
+                buf.writeByte(TAG_RECT);
+                buf.writeVarInt(r.x0());
+                buf.writeVarInt(r.y0());
+                buf.writeVarInt(r.x1());
+                buf.writeVarInt(r.y1());
+                buf.writeInt(r.color());
+                buf.writeVarInt(r.size());
+                writeVariation(buf, r.variation(), r.seed());
+            }
+            case Fill f -> {
+                buf.writeByte(TAG_FILL);
+                buf.writeVarInt(f.x());
+                buf.writeVarInt(f.y());
+                buf.writeInt(f.color());
+                buf.writeVarInt(f.tolerance());
+                buf.writeByte((f.contiguous() ? 1 : 0) | (f.wholeCanvas() ? 2 : 0));
+                writeVariation(buf, f.variation(), f.seed());
+            }
+            case LayerOp l -> {
+                buf.writeByte(TAG_LAYER);
+                buf.writeByte(l.action().ordinal());
+                buf.writeVarInt(l.index());
+            }
+            case Checkpoint c -> {
+                buf.writeByte(TAG_CHECKPOINT);
+                buf.writeVarInt(c.activeIndex());
+                buf.writeVarInt(c.layers().length);
+                for (int i = 0; i < c.layers().length; i++) {
+                    buf.writeBoolean(c.visible()[i]);
+                    PixelCodec.write(buf, c.layers()[i], codecs);
+                }
+            }
+        }
+    }
+
+    private static CanvasOp read(PacketByteBuf buf, int tag, int pixelCount, int[] checkpointBudget) {
+        return switch (tag) {
+            case TAG_PIXEL -> new Pixel(buf.readVarInt(), buf.readVarInt(), buf.readInt());
+            case TAG_AREA -> new Area(buf.readVarInt(), buf.readVarInt(), buf.readVarInt(), buf.readInt());
+            case TAG_BRUSH -> {
+                int x = buf.readVarInt(), y = buf.readVarInt(), size = buf.readVarInt(), color = buf.readInt();
+                float variation = buf.readFloat();
+                yield new Brush(x, y, size, color, variation, variation > 0f ? buf.readLong() : 0L);
+            }
+            case TAG_LINE, TAG_RECT -> {
+                int x0 = buf.readVarInt(), y0 = buf.readVarInt(), x1 = buf.readVarInt(), y1 = buf.readVarInt();
+                int color = buf.readInt(), size = buf.readVarInt();
+                float variation = buf.readFloat();
+                long seed = variation > 0f ? buf.readLong() : 0L;
+                yield tag == TAG_LINE
+                        ? new Line(x0, y0, x1, y1, color, size, variation, seed)
+                        : new Rect(x0, y0, x1, y1, color, size, variation, seed);
+            }
+            case TAG_FILL -> {
+                int x = buf.readVarInt(), y = buf.readVarInt(), color = buf.readInt(), tolerance = buf.readVarInt();
+                int flags = buf.readUnsignedByte();
+                float variation = buf.readFloat();
+                yield new Fill(x, y, color, variation, tolerance, (flags & 1) != 0, (flags & 2) != 0,
+                        variation > 0f ? buf.readLong() : 0L);
+            }
+            case TAG_LAYER -> {
+                int action = buf.readUnsignedByte();
+                if (action >= LayerAction.values().length) throw new IllegalArgumentException("Unknown layer action " + action);
+                yield new LayerOp(LayerAction.values()[action], buf.readVarInt());
+            }
+            case TAG_CHECKPOINT -> {
+                int activeIndex = buf.readVarInt();
+                int count = buf.readVarInt();
+                if (count <= 0 || count > MAX_LAYERS) throw new IllegalArgumentException("Bad layer count " + count);
+                if ((long) count * pixelCount > checkpointBudget[0]) throw new IllegalArgumentException("Checkpoint too large");
+                checkpointBudget[0] -= count * pixelCount;
+                boolean[] visible = new boolean[count];
+                int[][] layers = new int[count][];
+                for (int i = 0; i < count; i++) {
+                    visible[i] = buf.readBoolean();
+                    layers[i] = PixelCodec.readExactly(buf, pixelCount);
+                }
+                yield new Checkpoint(activeIndex, visible, layers);
+            }
+            default -> throw new IllegalArgumentException("Unknown canvas op " + tag);
+        };
+    }
+
+    private static void writeVariation(PacketByteBuf buf, float variation, long seed) {
+        buf.writeFloat(variation);
+        if (variation > 0f) buf.writeLong(seed);
+    }
+}
@@ -9,6 +9,8 @@ public class Layer {
     private final int width;
     private final int height;
     private int[][] pixels;
+    // Compressed pixels of a layer restored from a project file, inflated on first access
+    private PackedPixels packed;
     private boolean visible = true;
     private String name;
 
@@ -26,6 +28,14 @@ public class Layer {
         this.pixels = copyPixels(initialPixels, width, height);
     }
 
+    Layer(int width, int height, String name, boolean visible, PackedPixels packed) {
+        this.width = width;
+        this.height = height;
+        this.name = name;
+        this.visible = visible;
+        this.packed = packed;
+    }
+
     public int getWidth() { return width; }
     public int getHeight() { return height; }
     public String getName() { return name; }
@@ -33,31 +43,45 @@ public class Layer {
     public boolean isVisible() { return visible; }
     public void setVisible(boolean visible) { this.visible = visible; }
 
+    private int[][] pixels() {
+        if (pixels == null) {
+            pixels = packed.decode();
+            packed = null;
+        }
+        return pixels;
+    }
+
+    /**
+     * The still-compressed pixels if this layer hasn't been touched since it was restored.
+     */
+    PackedPixels getPacked() { return packed; }
 
     public int getPixel(int x, int y) {
         if (x < 0 || x >= width || y < 0 || y >= height) return 0;
-        return pixels[x][y];
+        return pixels()[x][y];
     }
 
     public void setPixel(int x, int y, int color) {
         if (x < 0 || x >= width || y < 0 || y >= height) return;
-        pixels[x][y] = color;
+        pixels()[x][y] = color;
     }
 
-    public int[][] getPixels() { return pixels; }
+    public int[][] getPixels() { return pixels(); }
 
     public void setPixels(int[][] newPixels) {
         this.pixels = copyPixels(newPixels, width, height);
+        this.packed = null;
     }
 
     public int[][] copyPixelsOut() {
-        return copyPixels(pixels, width, height);
+        return copyPixels(pixels(), width, height);
     }
 
     /**
      * Return true if layer is empty heheheha
      */
     public boolean isEmpty() {
+        int[][] pixels = pixels();
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 if ((pixels[x][y] & 0xFF000000) != 0) {
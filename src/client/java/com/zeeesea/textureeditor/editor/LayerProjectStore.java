@@ -0,0 +1,338 @@
+package com.zeeesea.textureeditor.editor;
+
+import com.zeeesea.textureeditor.settings.ModSettings;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.Identifier;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps the layer stack and undo history of every edited texture in a project file, so reopening
+ * the editor picks up the layers instead of the flattened result applied to the game.
+ *
+ * Projects live in textureeditor_projects/&lt;namespace&gt;/&lt;path&gt;.&lt;slot&gt;.tep: a small header
+ * (layer names, visibility, offsets) followed by one deflated blob per layer and undo step. Loading
+ * memory-maps the file and parses only the header; each blob is inflated the first time its layer
+ * is drawn on or its undo step is used. A project is only restored while it still flattens to the
+ * texture the editor opens with, so edits made elsewhere (reset, import, sync) quietly win.
+ *
+ * Saves are written on a background thread into the older of two slots, because a mapped file
+ * can't be replaced on every platform while its layers are still being read lazily.
+ */
+public class LayerProjectStore {
+    private static final LayerProjectStore INSTANCE = new LayerProjectStore();
+
+    private static final int MAGIC = 0x54455031; // "TEP1"
+    private static final int FORMAT_VERSION = 1;
+    // magic, version, sequence, header length
+    private static final int PREAMBLE_BYTES = 20;
+    private static final int SLOTS = 2;
+
+    private static final ExecutorService WRITER_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TextureEditor-Projects");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Projects handed to the writer but not on disk yet; restores read these instead of the file
+    private final Map<Identifier, Project> pending = new ConcurrentHashMap<>();
+
+    private record ProjectLayer(String name, boolean visible, int[][] pixels, PackedPixels packed) {}
+
+    private record Project(int width, int height, long compositeHash, int activeIndex, List<ProjectLayer> layers,
+                           List<PixelCanvas.LayerSnapshot> undo, List<PixelCanvas.LayerSnapshot> redo) {}
+
+    private LayerProjectStore() {}
+
+    public static LayerProjectStore getInstance() { return INSTANCE; }
+
+    /**
+     * Called on the render thread when an editor closes or switches away from a texture.
+     * Copies the layers and queues the project for writing; nothing is written if the canvas
+     * was never changed.
+     */
+    public void save(Identifier textureId, PixelCanvas canvas) {
+        if (!ModSettings.getInstance().layerProjects || canvas.getVersion() == 0) return;
+        int w = canvas.getWidth();
+        int h = canvas.getHeight();
+        LayerStack stack = canvas.getLayerStack();
+
+        List<ProjectLayer> layers = new ArrayList<>(stack.getLayerCount());
+        for (Layer layer : stack.getLayers()) {
+            PackedPixels packed = layer.getPacked();
+            layers.add(packed != null
+                    ? new ProjectLayer(layer.getName(), layer.isVisible(), null, packed.detach())
+                    : new ProjectLayer(layer.getName(), layer.isVisible(), layer.copyPixelsOut(), null));
+        }
+        // Snapshot arrays are never written to once taken, so they can be shared with the writer
+        Project project = new Project(w, h, hash(canvas.getPixels(), w, h), stack.getActiveIndex(), layers,
+                detachAll(canvas.getUndoHistory()), detachAll(canvas.getRedoHistory()));
+
+        pending.put(textureId, project);
+        WRITER_EXECUTOR.execute(() -> {
+            try {
+                write(textureId, project);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[TextureEditor] Failed to save layer project for " + textureId + ": " + e.getMessage());
+            } finally {
+                pending.remove(textureId, project);
+            }
+        });
+    }
+
+    /**
+     * Called on the render thread right after an editor loaded a texture into {@code canvas}.
+     * @return true if the canvas now holds the saved layers and undo history
+     */
+    public boolean restore(Identifier textureId, PixelCanvas canvas) {
+        if (!ModSettings.getInstance().layerProjects) return false;
+        Project project = pending.get(textureId);
+        if (project == null) project = read(textureId);
+        if (project == null) return false;
+
+        int w = canvas.getWidth();
+        int h = canvas.getHeight();
+        if (project.width() != w || project.height() != h || project.layers().isEmpty()) return false;
+        if (project.compositeHash() != hash(canvas.getPixels(), w, h)) return false;
+
+        List<Layer> layers = new ArrayList<>(project.layers().size());
+        for (ProjectLayer layer : project.layers()) {
+            layers.add(layer.packed() != null
+                    ? new Layer(w, h, layer.name(), layer.visible(), layer.packed())
+                    : restoredLayer(layer, w, h));
+        }
+        canvas.restoreProject(new LayerStack(w, h, layers, project.activeIndex()), project.undo(), project.redo());
+        return true;
+    }
+
+    private static Layer restoredLayer(ProjectLayer layer, int w, int h) {
+        Layer restored = new Layer(w, h, layer.name(), layer.pixels());
+        restored.setVisible(layer.visible());
+        return restored;
+    }
+
+    private static List<PixelCanvas.LayerSnapshot> detachAll(Iterable<PixelCanvas.LayerSnapshot> history) {
+        List<PixelCanvas.LayerSnapshot> out = new ArrayList<>();
+        for (PixelCanvas.LayerSnapshot snapshot : history) {
+            out.add(snapshot.pixels() != null ? snapshot
+                    : new PixelCanvas.LayerSnapshot(snapshot.layerIndex(), null, snapshot.packed().detach()));
+        }
+        return out;
+    }
+
+    // ── File format ───────────────────────────────────────────────────────────
+
+    private static void write(Identifier textureId, Project project) throws IOException {
+        int w = project.width();
+        int h = project.height();
+        List<PackedPixels> blobs = new ArrayList<>();
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        long offset = 0;
+
+        header.writeUTF(textureId.toString());
+        header.writeInt(w);
+        header.writeInt(h);
+        header.writeLong(project.compositeHash());
+        header.writeInt(project.activeIndex());
+        header.writeInt(project.layers().size());
+        for (ProjectLayer layer : project.layers()) {
+            PackedPixels blob = layer.packed() != null ? layer.packed() : PackedPixels.pack(layer.pixels(), w, h);
+            header.writeUTF(layer.name());
+            header.writeBoolean(layer.visible());
+            header.writeLong(offset);
+            header.writeInt(blob.length());
+            offset += blob.length();
+            blobs.add(blob);
+        }
+        for (List<PixelCanvas.LayerSnapshot> history : List.of(project.undo(), project.redo())) {
+            header.writeInt(history.size());
+            for (PixelCanvas.LayerSnapshot snapshot : history) {
+                PackedPixels blob = snapshot.packed() != null ? snapshot.packed() : PackedPixels.pack(snapshot.pixels(), w, h);
+                header.writeInt(snapshot.layerIndex());
+                header.writeLong(offset);
+                header.writeInt(blob.length());
+                offset += blob.length();
+                blobs.add(blob);
+            }
+        }
+        header.flush();
+        byte[] headerArray = headerBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(headerArray);
+
+        // Replace the older slot; the newer one may still be mapped by an open editor
+        long[] sequences = new long[SLOTS];
+        int target = 0;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            sequences[slot] = readSequence(slotPath(textureId, slot));
+            if (sequences[slot] < sequences[target]) target = slot;
+        }
+        long sequence = Math.max(sequences[0], sequences[1]) + 1;
+
+        Path first = slotPath(textureId, target);
+        Files.createDirectories(first.getParent());
+        Path temp = Files.createTempFile(first.getParent(), "project", ".tmp");
+        try {
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(temp));
+                 DataOutputStream out = new DataOutputStream(file)) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(sequence);
+                out.writeInt(headerArray.length);
+                out.write(headerArray);
+                out.writeInt((int) crc.getValue());
+                for (PackedPixels blob : blobs) {
+                    out.write(blob.toBytes());
+                }
+            }
+            try {
+                moveIntoPlace(temp, first);
+            } catch (IOException e) {
+                moveIntoPlace(temp, slotPath(textureId, 1 - target));
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Read the newest slot that parses. A slot whose header fails its checksum, e.g. after a crash
+     * mid-write, falls back to the other one: keeping the previous save around is what the second
+     * slot is for.
+     */
+    private static Project read(Identifier textureId) {
+        long[] sequences = new long[SLOTS];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            sequences[slot] = readSequence(slotPath(textureId, slot));
+        }
+        int newest = sequences[1] > sequences[0] ? 1 : 0;
+        for (int slot : new int[]{newest, 1 - newest}) {
+            if (sequences[slot] < 0) continue;
+            Path path = slotPath(textureId, slot);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                // The mapping stays valid after the channel is closed
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                Project project = parse(textureId, map);
+                if (project != null) return project;
+            } catch (IOException | RuntimeException e) {
+                System.out.println("[TextureEditor] Failed to read layer project " + path.getFileName() + " for " + textureId + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private static Project parse(Identifier textureId, ByteBuffer map) throws IOException {
+        if (map.getInt(0) != MAGIC || map.getInt(4) != FORMAT_VERSION) return null;
+        int headerLength = map.getInt(16);
+        long dataStart = (long) PREAMBLE_BYTES + headerLength + 4;
+        if (headerLength < 0 || dataStart > map.capacity()) throw new IOException("truncated header");
+
+        byte[] headerArray = new byte[headerLength];
+        map.get(PREAMBLE_BYTES, headerArray);
+        CRC32 crc = new CRC32();
+        crc.update(headerArray);
+        if ((int) crc.getValue() != map.getInt(PREAMBLE_BYTES + headerLength)) throw new IOException("header checksum mismatch");
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(headerArray));
+        if (!in.readUTF().equals(textureId.toString())) return null;
+        int w = in.readInt();
+        int h = in.readInt();
+        long compositeHash = in.readLong();
+        int activeIndex = in.readInt();
+        if (w <= 0 || h <= 0) throw new IOException("bad dimensions " + w + "x" + h);
+
+        int layerCount = in.readInt();
+        List<ProjectLayer> layers = new ArrayList<>(layerCount);
+        for (int i = 0; i < layerCount; i++) {
+            String name = in.readUTF();
+            boolean visible = in.readBoolean();
+            layers.add(new ProjectLayer(name, visible, null, blob(map, dataStart, in, w, h)));
+        }
+        List<List<PixelCanvas.LayerSnapshot>> histories = new ArrayList<>(2);
+        for (int i = 0; i < 2; i++) {
+            int count = in.readInt();
+            List<PixelCanvas.LayerSnapshot> history = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                int layerIndex = in.readInt();
+                history.add(new PixelCanvas.LayerSnapshot(layerIndex, null, blob(map, dataStart, in, w, h)));
+            }
+            histories.add(history);
+        }
+        return new Project(w, h, compositeHash, activeIndex, layers, histories.get(0), histories.get(1));
+    }
+
+    private static PackedPixels blob(ByteBuffer map, long dataStart, DataInputStream in, int w, int h) throws IOException {
+        long offset = dataStart + in.readLong();
+        int length = in.readInt();
+        if (length < 0 || offset < dataStart || offset + length > map.capacity()) throw new IOException("blob out of range");
+        return new PackedPixels(map.slice((int) offset, length), w, h);
+    }
+
+    /**
+     * Sequence number of a slot file, or -1 if it's missing or not a project of this version.
+     */
+    private static long readSequence(Path path) {
+        if (!Files.isRegularFile(path)) return -1;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_BYTES);
+            while (preamble.hasRemaining() && channel.read(preamble) >= 0) {}
+            if (preamble.hasRemaining()) return -1;
+            if (preamble.getInt(0) != MAGIC || preamble.getInt(4) != FORMAT_VERSION) return -1;
+            return preamble.getLong(8);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static Path slotPath(Identifier textureId, int slot) {
+        Path root = MinecraftClient.getInstance().runDirectory.toPath().resolve("textureeditor_projects").normalize();
+        String path = textureId.getPath();
+        if (path.endsWith(".png")) path = path.substring(0, path.length() - 4);
+        Path file = root.resolve(textureId.getNamespace()).resolve(path + "." + slot + ".tep").normalize();
+        if (!file.startsWith(root)) throw new IllegalArgumentException("Texture id escapes the project folder: " + textureId);
+        return file;
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * FNV-1a over the flattened pixels, used to check a project still matches the texture.
+     */
+    private static long hash(int[][] pixels, int w, int h) {
+        long hash = 0xcbf29ce484222325L;
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                hash = (hash ^ pixels[x][y]) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+}
@@ -4,6 +4,7 @@ import net.minecraft.text.Text;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Manages a stack of layers with compositing, active layer tracking, and per-layer undo/redo.
@@ -13,6 +14,8 @@ public class LayerStack {
     private final int height;
     private final List<Layer> layers = new ArrayList<>();
     private int activeIndex = 1;
+    // Told about every structural change, see PixelCanvas#setOpRecorder
+    private Consumer<CanvasOp> opRecorder;
 
     public LayerStack(int width, int height) {
         this.width = width;
@@ -64,6 +67,16 @@ public class LayerStack {
         }
     }
 
+    /**
+     * Create from layers restored from a project file.
+     */
+    LayerStack(int width, int height, List<Layer> restored, int activeIndex) {
+        this.width = width;
+        this.height = height;
+        layers.addAll(restored);
+        this.activeIndex = Math.max(0, Math.min(activeIndex, layers.size() - 1));
+    }
+
     public int getWidth() { return width; }
     public int getHeight() { return height; }
 
@@ -72,6 +85,7 @@ public class LayerStack {
 
     public int getActiveIndex() { return activeIndex; }
     public void setActiveIndex(int index) {
+        record(CanvasOp.LayerAction.SELECT, index);
         if (index >= 0 && index < layers.size()) {
             this.activeIndex = index;
         }
@@ -85,12 +99,14 @@ public class LayerStack {
     }
 
     public void addLayer(String name) {
+        record(CanvasOp.LayerAction.ADD, layers.size());
         Layer layer = new Layer(width, height, name);
         layers.add(layer);
         activeIndex = layers.size() - 1;
     }
 
     public void addLayerAbove(String name) {
+        record(CanvasOp.LayerAction.ADD_ABOVE, activeIndex);
         Layer layer = new Layer(width, height, name);
         int insertAt = Math.min(activeIndex + 1, layers.size());
         layers.add(insertAt, layer);
@@ -98,6 +114,7 @@ public class LayerStack {
     }
 
     public void removeLayer(int index) {
+        record(CanvasOp.LayerAction.REMOVE, index);
         if (layers.size() <= 1) return; // Keep at least one layer
         if (index < 0 || index >= layers.size()) return;
         layers.remove(index);
@@ -107,6 +124,7 @@ public class LayerStack {
     }
 
     public void moveLayerUp(int index) {
+        record(CanvasOp.LayerAction.MOVE_UP, index);
         if (index <= 0 || index >= layers.size()) return;
         Layer l = layers.remove(index);
         layers.add(index - 1, l);
@@ -115,6 +133,7 @@ public class LayerStack {
     }
 
     public void moveLayerDown(int index) {
+        record(CanvasOp.LayerAction.MOVE_DOWN, index);
         if (index < 0 || index >= layers.size() - 1) return;
         Layer l = layers.remove(index);
         layers.add(index + 1, l);
@@ -122,6 +141,43 @@ public class LayerStack {
         else if (activeIndex == index + 1) activeIndex = index;
     }
 
+    public void setLayerVisible(int index, boolean visible) {
+        if (index < 0 || index >= layers.size()) return;
+        record(visible ? CanvasOp.LayerAction.SHOW : CanvasOp.LayerAction.HIDE, index);
+        layers.get(index).setVisible(visible);
+    }
+
+    void setOpRecorder(Consumer<CanvasOp> recorder) {
+        this.opRecorder = recorder;
+    }
+
+    private void record(CanvasOp.LayerAction action, int index) {
+        if (opRecorder != null) opRecorder.accept(new CanvasOp.LayerOp(action, index));
+    }
+
+    /**
+     * Apply a layer op recorded on another stack. Replicas have no recorder, so it isn't
+     * recorded again.
+     */
+    void replay(CanvasOp.LayerOp op) {
+        int index = op.index();
+        switch (op.action()) {
+            case ADD -> addLayer("Layer " + layers.size());
+            case ADD_ABOVE -> {
+                setActiveIndex(index);
+                addLayerAbove("Layer " + layers.size());
+            }
+            case REMOVE -> removeLayer(index);
+            case MOVE_UP -> moveLayerUp(index);
+            case MOVE_DOWN -> moveLayerDown(index);
+            case MERGE_DOWN -> mergeDown(index);
+            case DUPLICATE -> duplicateLayer(index);
+            case SELECT -> setActiveIndex(index);
+            case SHOW -> setLayerVisible(index, true);
+            case HIDE -> setLayerVisible(index, false);
+        }
+    }
+
     /**
      * Flatten all visible layers into a single pixel array using alpha compositing.
      * Layers are composited bottom (index 0) to top (last index).
@@ -191,6 +247,7 @@ public class LayerStack {
     }
 
     public void mergeDown(int index) {
+        record(CanvasOp.LayerAction.MERGE_DOWN, index);
         if (index <= 0 || index >= layers.size()) return;
         var top = layers.get(index);
         var bottom = layers.get(index - 1);
@@ -205,6 +262,7 @@ public class LayerStack {
     }
 
     public void duplicateLayer(int index) {
+        record(CanvasOp.LayerAction.DUPLICATE, index);
         if (index < 0 || index >= layers.size()) return;
         var orig = layers.get(index);
         var copy = new Layer(orig.getWidth(), orig.getHeight(), orig.getName() + " Copy");
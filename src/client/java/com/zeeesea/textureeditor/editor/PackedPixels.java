@@ -0,0 +1,95 @@
+package com.zeeesea.textureeditor.editor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate-compressed pixels of one layer or undo step, as stored in a project file.
+ * The data is either a slice of the memory-mapped project file or a heap buffer, and is only
+ * inflated when the pixels are actually needed.
+ */
+final class PackedPixels {
+    private final ByteBuffer data;
+    private final int width;
+    private final int height;
+
+    PackedPixels(ByteBuffer data, int width, int height) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Compress pixels (stored column by column, like the [x][y] arrays they come from).
+     */
+    static PackedPixels pack(int[][] pixels, int width, int height) {
+        ByteBuffer raw = ByteBuffer.allocate(width * height * 4);
+        IntBuffer ints = raw.asIntBuffer();
+        for (int x = 0; x < width; x++) {
+            ints.put(pixels[x], 0, height);
+        }
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw.array());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return new PackedPixels(ByteBuffer.wrap(out.toByteArray()), width, height);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    int length() { return data.remaining(); }
+
+    /**
+     * Copy of this data on the heap, so it no longer references the mapped file.
+     */
+    PackedPixels detach() {
+        return new PackedPixels(ByteBuffer.wrap(toBytes()), width, height);
+    }
+
+    byte[] toBytes() {
+        ByteBuffer dup = data.duplicate();
+        byte[] bytes = new byte[dup.remaining()];
+        dup.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Inflate the pixels. Corrupt data yields a transparent layer rather than an exception,
+     * since this runs lazily from the middle of drawing code.
+     */
+    int[][] decode() {
+        int[][] pixels = new int[width][height];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.duplicate());
+            byte[] raw = new byte[width * height * 4];
+            int read = 0;
+            while (read < raw.length) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                read += n;
+            }
+            if (read != raw.length) throw new DataFormatException("truncated layer data");
+            IntBuffer ints = ByteBuffer.wrap(raw).asIntBuffer();
+            for (int x = 0; x < width; x++) {
+                ints.get(pixels[x]);
+            }
+        } catch (DataFormatException e) {
+            System.out.println("[TextureEditor] Failed to decode project layer: " + e.getMessage());
+            pixels = new int[width][height];
+        } finally {
+            inflater.end();
+        }
+        return pixels;
+    }
+}
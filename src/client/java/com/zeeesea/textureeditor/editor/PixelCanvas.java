@@ -1,5 +1,6 @@
 package com.zeeesea.textureeditor.editor;
 
+import com.zeeesea.textureeditor.PixelCodec;
 import com.zeeesea.textureeditor.helper.NotificationHelper;
 import com.zeeesea.textureeditor.settings.ModSettings;
 import net.minecraft.client.MinecraftClient;
@@ -7,16 +8,27 @@ import net.minecraft.client.toast.SystemToast;
 import net.minecraft.text.Text;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * Editable pixel buffer with layers, undo/redo support and drawing tool operations.
  * Drawing operations affect the active layer. getPixel returns the composited result.
+ *
+ * Every drawing and layer operation goes through a {@link CanvasOp}, so it can be recorded and
+ * replayed on another canvas.
  */
 public class PixelCanvas {
+    // Largest brush, line and rectangle size the editor offers; bigger ones from a replay are clamped
+    public static final int MAX_TOOL_SIZE = 10;
+
     private final int width;
     private final int height;
     private LayerStack layerStack;
@@ -25,6 +37,9 @@ public class PixelCanvas {
     private static int MAX_UNDO = 50;
     private boolean dirty = false;
     private long version = 0;
+    private Consumer<CanvasOp> opRecorder;
+    // Reseeded for every op that varies the brush, so a replay draws the same offsets
+    private final Random brushRandom = new Random();
 
     // Cached flattened pixels (invalidated on changes)
     private int[][] flattenedCache;
@@ -35,9 +50,18 @@ public class PixelCanvas {
     private static final long TOAST_COOLDOWN_MS = 5000;
 
     /**
-     * Snapshot of a single layer for undo/redo.
+     * Snapshot of a single layer for undo/redo. Snapshots restored from a project file keep
+     * their pixels compressed until the step is actually undone or redone.
      */
-    private record LayerSnapshot(int layerIndex, int[][] pixels) {}
+    record LayerSnapshot(int layerIndex, int[][] pixels, PackedPixels packed) {
+        LayerSnapshot(int layerIndex, int[][] pixels) {
+            this(layerIndex, pixels, null);
+        }
+
+        int[][] unpack() {
+            return pixels != null ? pixels : packed.decode();
+        }
+    }
 
     public PixelCanvas(int width, int height) {
         this.width = width;
@@ -59,6 +83,35 @@ public class PixelCanvas {
     public LayerStack getLayerStack() { return layerStack; }
     public void setLayerStack(LayerStack layerStack) {
         this.layerStack = layerStack;
+        layerStack.setOpRecorder(opRecorder);
+    }
+
+    /**
+     * Be told about every drawing and layer op before it is applied, or stop with null. Changes
+     * made around the ops (undo, selections, replacing the layers...) aren't recorded.
+     */
+    public void setOpRecorder(Consumer<CanvasOp> recorder) {
+        this.opRecorder = recorder;
+        layerStack.setOpRecorder(recorder);
+    }
+
+    /**
+     * A canvas in the state of a checkpoint, without undo history.
+     *
+     * @throws IllegalArgumentException if the size is out of bounds or the checkpoint doesn't fit
+     *                                  it, checked before anything is allocated
+     */
+    public static PixelCanvas fromCheckpoint(int width, int height, CanvasOp.Checkpoint checkpoint) {
+        if (width <= 0 || height <= 0 || (long) width * height > PixelCodec.MAX_VALUES) {
+            throw new IllegalArgumentException("Bad canvas size " + width + "x" + height);
+        }
+        if (checkpoint.visible().length != checkpoint.layers().length) throw new IllegalArgumentException("Bad checkpoint");
+        for (int[] layer : checkpoint.layers()) {
+            if (layer.length != width * height) throw new IllegalArgumentException("Checkpoint doesn't fit a " + width + "x" + height + " canvas");
+        }
+        PixelCanvas canvas = new PixelCanvas(width, height);
+        canvas.replay(checkpoint);
+        return canvas;
     }
 
     /**
@@ -80,11 +133,8 @@ public class PixelCanvas {
      * Set pixel on the active layer.
      */
     public void setPixel(int x, int y, int color) {
-        Layer active = layerStack.getActiveLayer();
-        if (active == null || x < 0 || x >= width || y < 0 || y >= height) return;
-        active.setPixel(x, y, color);
-        dirty = true;
-        invalidateCache();
+        if (x < 0 || x >= width || y < 0 || y >= height) return;
+        run(new CanvasOp.Pixel(x, y, color));
     }
 
     /**
@@ -121,7 +171,7 @@ public class PixelCanvas {
         if (idx >= 0 && idx < layerStack.getLayerCount()) {
             Layer layer = layerStack.getLayers().get(idx);
             redoStack.push(new LayerSnapshot(idx, layer.copyPixelsOut()));
-            layer.setPixels(snapshot.pixels());
+            layer.setPixels(snapshot.unpack());
         }
         dirty = true;
         invalidateCache();
@@ -134,12 +184,35 @@ public class PixelCanvas {
         if (idx >= 0 && idx < layerStack.getLayerCount()) {
             Layer layer = layerStack.getLayers().get(idx);
             undoStack.push(new LayerSnapshot(idx, layer.copyPixelsOut()));
-            layer.setPixels(snapshot.pixels());
+            layer.setPixels(snapshot.unpack());
         }
         dirty = true;
         invalidateCache();
     }
 
+    /** Undo steps, newest first. */
+    Deque<LayerSnapshot> getUndoHistory() { return undoStack; }
+    /** Redo steps, newest first. */
+    Deque<LayerSnapshot> getRedoHistory() { return redoStack; }
+
+    /**
+     * Replace the layers and history with ones restored from a project file. The project
+     * flattens to exactly what this canvas shows already, so the flattened cache stays valid
+     * and no layer needs to be decoded until it is drawn on.
+     */
+    void restoreProject(LayerStack restored, List<LayerSnapshot> undo, List<LayerSnapshot> redo) {
+        this.layerStack = restored;
+        restored.setOpRecorder(opRecorder);
+        undoStack.clear();
+        redoStack.clear();
+        for (LayerSnapshot snapshot : undo) {
+            if (undoStack.size() >= MAX_UNDO) break;
+            undoStack.addLast(snapshot);
+        }
+        redoStack.addAll(redo);
+        dirty = false;
+    }
+
     /**
      * Draw a single pixel on active layer (pencil tool).
      */
@@ -152,56 +225,28 @@ public class PixelCanvas {
      * @param variation brightness variation strength (0.0-1.0, e.g. 0.15 = ±15%)
      */
     public void drawBrushPixel(int x, int y, int color, float variation) {
-        int a = (color >> 24) & 0xFF;
-        int r = (color >> 16) & 0xFF;
-        int g = (color >> 8) & 0xFF;
-        int b = color & 0xFF;
-
-        float offset = (ThreadLocalRandom.current().nextFloat() * 2f - 1f) * variation;
-        r = clamp((int) (r + r * offset), 0, 255);
-        g = clamp((int) (g + g * offset), 0, 255);
-        b = clamp((int) (b + b * offset), 0, 255);
-
-        setPixel(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+        drawBrushArea(x, y, 1, color, variation);
     }
 
     /**
      * Draw a pixel area (for tool size > 1).
      */
     public void drawPixelArea(int cx, int cy, int size, int color) {
-        int half = size / 2;
-        for (int dx = -half; dx < size - half; dx++) {
-            for (int dy = -half; dy < size - half; dy++) {
-                drawPixel(cx + dx, cy + dy, color);
-            }
-        }
+        run(new CanvasOp.Area(cx, cy, size, color));
     }
 
     /**
      * Erase a pixel area (for tool size > 1).
      */
     public void erasePixelArea(int cx, int cy, int size) {
-        int half = size / 2;
-        for (int dx = -half; dx < size - half; dx++) {
-            for (int dy = -half; dy < size - half; dy++) {
-                int x = cx + dx, y = cy + dy;
-                if (x >= 0 && x < width && y >= 0 && y < height) {
-                    setPixel(x, y, 0x00000000);
-                }
-            }
-        }
+        run(new CanvasOp.Area(cx, cy, size, 0x00000000));
     }
 
     /**
      * Draw a brush area with variation (for tool size > 1).
      */
     public void drawBrushArea(int cx, int cy, int size, int color, float variation) {
-        int half = size / 2;
-        for (int dx = -half; dx < size - half; dx++) {
-            for (int dy = -half; dy < size - half; dy++) {
-                drawBrushPixel(cx + dx, cy + dy, color, variation);
-            }
-        }
+        run(new CanvasOp.Brush(cx, cy, size, color, variation, seedFor(variation)));
     }
 
     private static int clamp(int val, int min, int max) {
@@ -283,102 +328,35 @@ public class PixelCanvas {
      * Draw a line using Bresenham's algorithm on active layer.
      */
     public void drawLine(int x0, int y0, int x1, int y1, int color) {
-        int dx = Math.abs(x1 - x0);
-        int dy = Math.abs(y1 - y0);
-        int sx = x0 < x1 ? 1 : -1;
-        int sy = y0 < y1 ? 1 : -1;
-        int err = dx - dy;
-
-        while (true) {
-            setPixel(x0, y0, color);
-            if (x0 == x1 && y0 == y1) break;
-            int e2 = 2 * err;
-            if (e2 > -dy) { err -= dy; x0 += sx; }
-            if (e2 < dx) { err += dx; y0 += sy; }
-        }
+        drawLineThickness(x0, y0, x1, y1, color, 1, 0f);
     }
 
     /**
      * Draw a line with given integer thickness (in pixels) by drawing pixel areas along the Bresenham line.
      */
     public void drawLineThickness(int x0, int y0, int x1, int y1, int color, int size) {
-        int dx = Math.abs(x1 - x0);
-        int dy = Math.abs(y1 - y0);
-        int sx = x0 < x1 ? 1 : -1;
-        int sy = y0 < y1 ? 1 : -1;
-        int err = dx - dy;
-
-        while (true) {
-            drawPixelArea(x0, y0, size, color);
-            if (x0 == x1 && y0 == y1) break;
-            int e2 = 2 * err;
-            if (e2 > -dy) { err -= dy; x0 += sx; }
-            if (e2 < dx) { err += dx; y0 += sy; }
-        }
+        drawLineThickness(x0, y0, x1, y1, color, size, 0f);
     }
 
     /**
      * Draw a line with given thickness and optional variation. If variation <= 0 the draw is solid.
      */
     public void drawLineThickness(int x0, int y0, int x1, int y1, int color, int size, float variation) {
-        int dx = Math.abs(x1 - x0);
-        int dy = Math.abs(y1 - y0);
-        int sx = x0 < x1 ? 1 : -1;
-        int sy = y0 < y1 ? 1 : -1;
-        int err = dx - dy;
-
-        while (true) {
-            if (variation > 0f) drawBrushArea(x0, y0, size, color, variation);
-            else drawPixelArea(x0, y0, size, color);
-            if (x0 == x1 && y0 == y1) break;
-            int e2 = 2 * err;
-            if (e2 > -dy) { err -= dy; x0 += sx; }
-            if (e2 < dx) { err += dx; y0 += sy; }
-        }
+        run(new CanvasOp.Line(x0, y0, x1, y1, color, size, variation, seedFor(variation)));
     }
 
     /**
      * Draw a line (1px thickness) with optional variation.
      */
     public void drawLine(int x0, int y0, int x1, int y1, int color, float variation) {
-        if (variation > 0f) {
-            int dx = Math.abs(x1 - x0);
-            int dy = Math.abs(y1 - y0);
-            int sx = x0 < x1 ? 1 : -1;
-            int sy = y0 < y1 ? 1 : -1;
-            int err = dx - dy;
-
-            while (true) {
-                drawBrushPixel(x0, y0, color, variation);
-                if (x0 == x1 && y0 == y1) break;
-                int e2 = 2 * err;
-                if (e2 > -dy) { err -= dy; x0 += sx; }
-                if (e2 < dx) { err += dx; y0 += sy; }
-            }
-        } else {
-            drawLine(x0, y0, x1, y1, color);
-        }
+        drawLineThickness(x0, y0, x1, y1, color, 1, variation);
     }
 
     /**
-     * Draw a filled rectangle on the active layer defined by two corners (inclusive).
+     * Draw a 1px rectangle outline on the active layer defined by two corners (inclusive).
      */
     public void drawRect(int x0, int y0, int x1, int y1, int color) {
-        // Draw only the 1px outline of the rectangle defined by two corners (inclusive).
-        int sx = Math.min(x0, x1);
-        int ex = Math.max(x0, x1);
-        int sy = Math.min(y0, y1);
-        int ey = Math.max(y0, y1);
-        // Top and bottom edges
-        for (int x = sx; x <= ex; x++) {
-            setPixel(x, sy, color);
-            setPixel(x, ey, color);
-        }
-        // Left and right edges
-        for (int y = sy; y <= ey; y++) {
-            setPixel(sx, y, color);
-            setPixel(ex, y, color);
-        }
+        drawRectOutlineThickness(x0, y0, x1, y1, color, 1, 0f);
     }
 
     /**
@@ -386,60 +364,227 @@ public class PixelCanvas {
      * pixel areas along the edges.
      */
     public void drawRectOutlineThickness(int x0, int y0, int x1, int y1, int color, int size) {
-        int sx = Math.min(x0, x1);
-        int ex = Math.max(x0, x1);
-        int sy = Math.min(y0, y1);
-        int ey = Math.max(y0, y1);
-        // Top and bottom edges
-        for (int x = sx; x <= ex; x++) {
-            drawPixelArea(x, sy, size, color);
-            if (ey != sy) drawPixelArea(x, ey, size, color);
-        }
-        // Left and right edges
-        for (int y = sy; y <= ey; y++) {
-            drawPixelArea(sx, y, size, color);
-            if (ex != sx) drawPixelArea(ex, y, size, color);
-        }
+        drawRectOutlineThickness(x0, y0, x1, y1, color, size, 0f);
     }
 
     /**
      * Draw a rectangle outline with thickness and optional variation.
      */
     public void drawRectOutlineThickness(int x0, int y0, int x1, int y1, int color, int size, float variation) {
+        run(new CanvasOp.Rect(x0, y0, x1, y1, color, size, variation, seedFor(variation)));
+    }
+
+    /**
+     * Flood fill with optional variation applied when setting pixels.
+     */
+    public void floodFill(int x, int y, int color, float variation) {
+        floodFill(x, y, color, variation, 0, true, false);
+    }
+
+    public void floodFill(int x, int y, int color, float variation, int tolerance, boolean contiguous, boolean wholeCanvas) {
+        if (x < 0 || x >= width || y < 0 || y >= height) return;
+        run(new CanvasOp.Fill(x, y, color, variation, tolerance, contiguous, wholeCanvas, seedFor(variation)));
+    }
+
+    /**
+     * Apply an op recorded on another canvas. It isn't recorded again.
+     *
+     * @throws IllegalArgumentException if a checkpoint doesn't fit this canvas
+     */
+    public void replay(CanvasOp op) {
+        switch (op) {
+            case CanvasOp.Pixel p -> paint(p.x(), p.y(), p.color());
+            case CanvasOp.Area a -> paintArea(a.x(), a.y(), a.size(), a.color());
+            case CanvasOp.Brush b -> {
+                brushRandom.setSeed(b.seed());
+                brushArea(b.x(), b.y(), b.size(), b.color(), b.variation());
+            }
+            case CanvasOp.Line l -> {
+                brushRandom.setSeed(l.seed());
+                line(l.x0(), l.y0(), l.x1(), l.y1(), l.color(), l.size(), l.variation());
+            }
+            case CanvasOp.Rect r -> {
+                brushRandom.setSeed(r.seed());
+                rectOutline(r.x0(), r.y0(), r.x1(), r.y1(), r.color(), r.size(), r.variation());
+            }
+            case CanvasOp.Fill f -> {
+                brushRandom.setSeed(f.seed());
+                fill(f.x(), f.y(), f.color(), f.variation(), f.tolerance(), f.contiguous(), f.wholeCanvas());
+            }
+            case CanvasOp.LayerOp l -> layerStack.replay(l);
+            case CanvasOp.Checkpoint c -> restore(c);
+        }
+        dirty = true;
+        invalidateCache();
+    }
+
+    /**
+     * The layers, their visibility and the active layer, for a replica to start from.
+     */
+    public CanvasOp.Checkpoint checkpoint() {
+        List<Layer> layers = layerStack.getLayers();
+        boolean[] visible = new boolean[layers.size()];
+        int[][] pixels = new int[layers.size()][];
+        for (int i = 0; i < layers.size(); i++) {
+            visible[i] = layers.get(i).isVisible();
+            int[][] columns = layers.get(i).getPixels();
+            int[] rows = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) rows[y * width + x] = columns[x][y];
+            }
+            pixels[i] = rows;
+        }
+        return new CanvasOp.Checkpoint(layerStack.getActiveIndex(), visible, pixels);
+    }
+
+    /**
+     * Whether other has the same layers, layer visibility and active layer.
+     */
+    public boolean matches(PixelCanvas other) {
+        if (other.width != width || other.height != height) return false;
+        List<Layer> layers = layerStack.getLayers(), otherLayers = other.layerStack.getLayers();
+        if (layers.size() != otherLayers.size() || layerStack.getActiveIndex() != other.layerStack.getActiveIndex()) return false;
+        for (int i = 0; i < layers.size(); i++) {
+            if (layers.get(i).isVisible() != otherLayers.get(i).isVisible()) return false;
+            if (!Arrays.deepEquals(layers.get(i).getPixels(), otherLayers.get(i).getPixels())) return false;
+        }
+        return true;
+    }
+
+    private void run(CanvasOp op) {
+        if (opRecorder != null) opRecorder.accept(op);
+        replay(op);
+    }
+
+    private static long seedFor(float variation) {
+        return variation > 0f ? ThreadLocalRandom.current().nextLong() : 0L;
+    }
+
+    // The op implementations below draw straight onto the active layer, never through the
+    // public methods, so an op is recorded once however it is drawn
+
+    private void paint(int x, int y, int color) {
+        Layer active = layerStack.getActiveLayer();
+        if (active == null || x < 0 || x >= width || y < 0 || y >= height) return;
+        active.setPixel(x, y, color);
+    }
+
+    private void paintArea(int cx, int cy, int size, int color) {
+        size = Math.min(size, MAX_TOOL_SIZE);
+        int half = size / 2;
+        for (int dx = -half; dx < size - half; dx++) {
+            for (int dy = -half; dy < size - half; dy++) {
+                paint(cx + dx, cy + dy, color);
+            }
+        }
+    }
+
+    private void brushPixel(int x, int y, int color, float variation) {
+        int a = (color >> 24) & 0xFF;
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+
+        float offset = (brushRandom.nextFloat() * 2f - 1f) * variation;
+        r = clamp((int) (r + r * offset), 0, 255);
+        g = clamp((int) (g + g * offset), 0, 255);
+        b = clamp((int) (b + b * offset), 0, 255);
+
+        paint(x, y, (a << 24) | (r << 16) | (g << 8) | b);
+    }
+
+    private void brushArea(int cx, int cy, int size, int color, float variation) {
+        size = Math.min(size, MAX_TOOL_SIZE);
+        int half = size / 2;
+        for (int dx = -half; dx < size - half; dx++) {
+            for (int dy = -half; dy < size - half; dy++) {
+                brushPixel(cx + dx, cy + dy, color, variation);
+            }
+        }
+    }
+
+    private void line(int x0, int y0, int x1, int y1, int color, int size, float variation) {
+        // Only the part whose squares can reach the canvas; lines that stay inside are unchanged
+        int margin = Math.min(size, MAX_TOOL_SIZE);
+        int[] clipped = clipLine(x0, y0, x1, y1, -margin, -margin, width - 1 + margin, height - 1 + margin);
+        if (clipped == null) return;
+        x0 = clipped[0];
+        y0 = clipped[1];
+        x1 = clipped[2];
+        y1 = clipped[3];
+
+        int dx = Math.abs(x1 - x0);
+        int dy = Math.abs(y1 - y0);
+        int sx = x0 < x1 ? 1 : -1;
+        int sy = y0 < y1 ? 1 : -1;
+        int err = dx - dy;
+
+        while (true) {
+            if (variation > 0f) brushArea(x0, y0, size, color, variation);
+            else paintArea(x0, y0, size, color);
+            if (x0 == x1 && y0 == y1) break;
+            int e2 = 2 * err;
+            if (e2 > -dy) { err -= dy; x0 += sx; }
+            if (e2 < dx) { err += dx; y0 += sy; }
+        }
+    }
+
+    private void rectOutline(int x0, int y0, int x1, int y1, int color, int size, float variation) {
         int sx = Math.min(x0, x1);
         int ex = Math.max(x0, x1);
         int sy = Math.min(y0, y1);
         int ey = Math.max(y0, y1);
+        // Edges are only walked where their squares can reach the canvas
+        int margin = Math.min(size, MAX_TOOL_SIZE);
         // Top and bottom edges
-        for (int x = sx; x <= ex; x++) {
+        for (int x = Math.max(sx, -margin); x <= Math.min(ex, width - 1 + margin); x++) {
             if (variation > 0f) {
-                drawBrushArea(x, sy, size, color, variation);
-                if (ey != sy) drawBrushArea(x, ey, size, color, variation);
+                brushArea(x, sy, size, color, variation);
+                if (ey != sy) brushArea(x, ey, size, color, variation);
             } else {
-                drawPixelArea(x, sy, size, color);
-                if (ey != sy) drawPixelArea(x, ey, size, color);
+                paintArea(x, sy, size, color);
+                if (ey != sy) paintArea(x, ey, size, color);
             }
         }
         // Left and right edges
-        for (int y = sy; y <= ey; y++) {
+        for (int y = Math.max(sy, -margin); y <= Math.min(ey, height - 1 + margin); y++) {
             if (variation > 0f) {
-                drawBrushArea(sx, y, size, color, variation);
-                if (ex != sx) drawBrushArea(ex, y, size, color, variation);
+                brushArea(sx, y, size, color, variation);
+                if (ex != sx) brushArea(ex, y, size, color, variation);
             } else {
-                drawPixelArea(sx, y, size, color);
-                if (ex != sx) drawPixelArea(ex, y, size, color);
+                paintArea(sx, y, size, color);
+                if (ex != sx) paintArea(ex, y, size, color);
             }
         }
     }
 
     /**
-     * Flood fill with optional variation applied when setting pixels.
+     * The part of a segment inside a rectangle, endpoints rounded to pixels, or null if it misses
+     * it. A segment already inside comes back as it is.
      */
-    public void floodFill(int x, int y, int color, float variation) {
-        floodFill(x, y, color, variation, 0, true, false);
+    private static int[] clipLine(int x0, int y0, int x1, int y1, int minX, int minY, int maxX, int maxY) {
+        double dx = (double) x1 - x0;
+        double dy = (double) y1 - y0;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {(double) x0 - minX, (double) maxX - x0, (double) y0 - minY, (double) maxY - y0};
+        double t0 = 0, t1 = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) return null;
+                continue;
+            }
+            double t = q[i] / p[i];
+            if (p[i] < 0) t0 = Math.max(t0, t);
+            else t1 = Math.min(t1, t);
+            if (t0 > t1) return null;
+        }
+        if (t0 == 0 && t1 == 1) return new int[]{x0, y0, x1, y1};
+        return new int[]{
+                clamp((int) Math.round(x0 + t0 * dx), minX, maxX), clamp((int) Math.round(y0 + t0 * dy), minY, maxY),
+                clamp((int) Math.round(x0 + t1 * dx), minX, maxX), clamp((int) Math.round(y0 + t1 * dy), minY, maxY)};
     }
 
-    public void floodFill(int x, int y, int color, float variation, int tolerance, boolean contiguous, boolean wholeCanvas) {
+    private void fill(int x, int y, int color, float variation, int tolerance, boolean contiguous, boolean wholeCanvas) {
         Layer active = layerStack.getActiveLayer();
         if (active == null) return;
         if (x < 0 || x >= width || y < 0 || y >= height) return;
@@ -447,16 +592,27 @@ public class PixelCanvas {
         int targetColor = wholeCanvas ? getPixel(x, y) : active.getPixel(x, y);
         if (variation <= 0f && tolerance <= 0 && targetColor == color) return;
 
-        java.util.List<int[]> region = computeFloodRegion(x, y, tolerance, contiguous, wholeCanvas);
-        if (region.isEmpty()) return;
-
-        for (int[] p : region) {
+        for (int[] p : computeFloodRegion(x, y, tolerance, contiguous, wholeCanvas)) {
             int px = p[0], py = p[1];
-            if (variation > 0f) drawBrushPixel(px, py, color, variation);
+            if (variation > 0f) brushPixel(px, py, color, variation);
             else active.setPixel(px, py, color);
         }
-        dirty = true;
-        invalidateCache();
+    }
+
+    private void restore(CanvasOp.Checkpoint checkpoint) {
+        int[][] layers = checkpoint.layers();
+        List<Layer> restored = new ArrayList<>(layers.length);
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i].length != width * height) throw new IllegalArgumentException("Checkpoint doesn't fit a " + width + "x" + height + " canvas");
+            int[][] columns = new int[width][height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) columns[x][y] = layers[i][y * width + x];
+            }
+            Layer layer = new Layer(width, height, i == 0 ? "Base" : "Layer " + (i - 1), columns);
+            layer.setVisible(checkpoint.visible()[i]);
+            restored.add(layer);
+        }
+        setLayerStack(new LayerStack(width, height, restored, checkpoint.activeIndex()));
     }
 
     private static boolean isWithinTolerance(int candidate, int target, int tolerance) {
@@ -0,0 +1,19 @@
+package com.zeeesea.textureeditor.mixin.client;
+
+import com.zeeesea.textureeditor.texture.ItemAnimationScheduler;
+import net.minecraft.client.render.item.model.BasicItemModel;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Reports rendered item models so live item animations only upload frames while visible.
+ */
+@Mixin(BasicItemModel.class)
+public abstract class BasicItemModelMixin {
+    @Inject(method = "update", at = @At("HEAD"))
+    private void textureeditor$onUpdate(CallbackInfo ci) {
+        ItemAnimationScheduler.getInstance().onModelSampled((BasicItemModel) (Object) this);
+    }
+}
@@ -0,0 +1,40 @@
+package com.zeeesea.textureeditor.mixin.client;
+
+import com.zeeesea.textureeditor.texture.LiveRuntimePackManager;
+import net.minecraft.resource.ReloadableResourceManagerImpl;
+import net.minecraft.resource.ResourcePack;
+import net.minecraft.resource.ResourceReload;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.util.Unit;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Puts the runtime pack with the current edits on top of every client resource reload.
+ */
+@Mixin(ReloadableResourceManagerImpl.class)
+public abstract class ReloadableResourceManagerImplMixin {
+    @Shadow @Final private ResourceType type;
+
+    @ModifyVariable(method = "reload", at = @At("HEAD"), argsOnly = true)
+    private List<ResourcePack> textureeditor$appendRuntimePack(List<ResourcePack> packs) {
+        if (type != ResourceType.CLIENT_RESOURCES) return packs;
+        return LiveRuntimePackManager.getInstance().appendTo(packs);
+    }
+
+    @Inject(method = "reload", at = @At("RETURN"))
+    private void textureeditor$trackReload(Executor prepareExecutor, Executor applyExecutor, CompletableFuture<Unit> initialStage,
+                                           List<ResourcePack> packs, CallbackInfoReturnable<ResourceReload> cir) {
+        if (type != ResourceType.CLIENT_RESOURCES) return;
+        LiveRuntimePackManager.getInstance().trackReload(cir.getReturnValue());
+    }
+}
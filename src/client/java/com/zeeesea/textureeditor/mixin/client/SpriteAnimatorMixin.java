@@ -0,0 +1,51 @@
+package com.zeeesea.textureeditor.mixin.client;
+
+import com.zeeesea.textureeditor.texture.TextureManager;
+import net.minecraft.client.texture.SpriteContents;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import java.lang.reflect.Field;
+
+/**
+ * Holds the vanilla atlas animation of sprites that show an edit. Otherwise every frame change
+ * uploads the original frame over the edit, and live item animations get uploaded twice a tick.
+ *
+ * Optional: if the animator moves in a future version, edits fall back to being re-uploaded on top.
+ */
+@Mixin(targets = "net.minecraft.client.texture.SpriteContents$AnimatorImpl")
+public abstract class SpriteAnimatorMixin {
+    // The animator is an inner class of its SpriteContents; the outer reference has no stable name
+    @Unique
+    private static Field textureeditor$contentsField;
+
+    @Inject(method = "tick", at = @At("HEAD"), cancellable = true, require = 0)
+    private void textureeditor$holdEditedSprite(CallbackInfo ci) {
+        SpriteContents contents = textureeditor$contents();
+        if (contents != null && TextureManager.getInstance().holdsVanillaAnimation(contents.getId())) {
+            ci.cancel();
+        }
+    }
+
+    @Unique
+    private SpriteContents textureeditor$contents() {
+        try {
+            if (textureeditor$contentsField == null) {
+                for (Field field : getClass().getDeclaredFields()) {
+                    if (field.getType() == SpriteContents.class) {
+                        field.setAccessible(true);
+                        textureeditor$contentsField = field;
+                        break;
+                    }
+                }
+                if (textureeditor$contentsField == null) return null;
+            }
+            return (SpriteContents) textureeditor$contentsField.get(this);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.zeeesea.textureeditor.mixin.client;
+
+import com.zeeesea.textureeditor.texture.ItemModelRebaker;
+import com.zeeesea.textureeditor.texture.OpaqueMask;
+import net.minecraft.client.texture.SpriteContents;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Lets item model rebakes on the worker thread read sprite transparency from a snapshot taken on
+ * the render thread instead of the live sprite image.
+ */
+@Mixin(SpriteContents.class)
+public abstract class SpriteContentsMixin {
+    @Inject(method = "isPixelTransparent", at = @At("HEAD"), cancellable = true)
+    private void textureeditor$readRebakeSnapshot(int frame, int x, int y, CallbackInfoReturnable<Boolean> cir) {
+        OpaqueMask mask = ItemModelRebaker.getBakeMask((SpriteContents) (Object) this);
+        if (mask != null) {
+            cir.setReturnValue(x < 0 || y < 0 || x >= mask.getWidth() || y >= mask.getHeight() || !mask.isOpaque(x, y));
+        }
+    }
+}
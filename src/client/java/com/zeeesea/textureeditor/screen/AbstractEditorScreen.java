@@ -2,9 +2,11 @@ package com.zeeesea.textureeditor.screen;
 
 import com.zeeesea.textureeditor.editor.ColorHistory;
 import com.zeeesea.textureeditor.editor.EditorTool;
+import com.zeeesea.textureeditor.editor.LayerProjectStore;
 import com.zeeesea.textureeditor.editor.PixelCanvas;
 import com.zeeesea.textureeditor.helper.NotificationHelper;
 import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.zeeesea.textureeditor.texture.TextureManager;
 import com.zeeesea.textureeditor.util.ColorPalette;
 import net.minecraft.client.MinecraftClient;
@@ -59,6 +61,11 @@ public abstract class AbstractEditorScreen extends Screen {
     private boolean rightMovedPastThreshold = false;
     private static final double RIGHT_DRAG_THRESHOLD_SQ = 36.0; // 6px tolerance before panning
 
+    // ── Collaboration ─────────────────────────────────────────────────────────
+    // Canvas whose tool ops are streamed, and the ids it syncs under
+    private PixelCanvas streamedCanvas;
+    private Identifier streamedTextureId, streamedSpriteId;
+
     // ── Line tool ─────────────────────────────────────────────────────────────
     private int lineStartX = -1, lineStartY = -1;
     private boolean lineFirstClick = false;
@@ -294,6 +301,23 @@ public abstract class AbstractEditorScreen extends Screen {
     protected boolean handleExtraDrag(double mx, double my, int btn, double dx, double dy) { return false; }
     protected boolean handleExtraScroll(double mx, double my, double ha, double va) { return false; }
 
+    /**
+     * Texture and sprite id the canvas syncs under, the ones {@link #applyLive} sends; null if this
+     * editor doesn't sync. Asked once per canvas, for streaming its tool ops in collaboration mode.
+     */
+    protected Identifier getSyncTextureId() { return null; }
+    protected Identifier getSyncSpriteId()  { return null; }
+
+    /** Whether the canvas is this texture's full layer project (false for e.g. single animation frames). */
+    protected boolean savesLayerProject() { return true; }
+
+    /** Save layers + undo history of the current texture; call before dropping the canvas. */
+    protected void saveLayerProject() {
+        if (canvas != null && textureId != null && savesLayerProject()) {
+            LayerProjectStore.getInstance().save(textureId, canvas);
+        }
+    }
+
     protected int  getBackgroundColor() { return ColorPalette.INSTANCE.EDITOR_BACKGROUND; }
     // Increased default max zoom to allow deep zooming into very small textures
     protected int  getMaxZoom()         { return 4096; }
@@ -1233,9 +1257,23 @@ public abstract class AbstractEditorScreen extends Screen {
     // Init
     // ─────────────────────────────────────────────────────────────────────────
 
+    @Override
+    public void tick() {
+        super.tick();
+        if (canvas != streamedCanvas) {
+            streamedCanvas = canvas;
+            streamedTextureId = canvas != null ? getSyncTextureId() : null;
+            streamedSpriteId = canvas != null ? getSyncSpriteId() : null;
+        }
+        TextureSyncClient.getInstance().streamCanvas(canvas, streamedTextureId, streamedSpriteId);
+    }
+
     @Override
     public void removed() {
         super.removed();
+        TextureSyncClient.getInstance().stopStreaming();
+        streamedCanvas = null;
+        saveLayerProject();
         if (canvasTexture    != null) { canvasTexture.close();    canvasTexture    = null; }
         if (pickerSvTexture  != null) { pickerSvTexture.close();  pickerSvTexture  = null; }
         if (pickerHueTexture != null) { pickerHueTexture.close(); pickerHueTexture = null; }
@@ -1252,6 +1290,7 @@ public abstract class AbstractEditorScreen extends Screen {
 
         loadTexture();
         if (canvas == null) { canvas = new PixelCanvas(16, 16); originalPixels = new int[16][16]; }
+        else if (textureId != null && savesLayerProject()) LayerProjectStore.getInstance().restore(textureId, canvas);
 
         // Restore panel open/tab state from session (keeps user's UI choices while the game is running)
         this.leftOpen = sessionLeftOpen;
@@ -2777,7 +2816,7 @@ public abstract class AbstractEditorScreen extends Screen {
             boolean ctrl = GLFW.glfwGetKey(handle, GLFW.GLFW_KEY_LEFT_CONTROL) == GLFW.GLFW_PRESS
                     || GLFW.glfwGetKey(handle, GLFW.GLFW_KEY_RIGHT_CONTROL) == GLFW.GLFW_PRESS;
             if (ctrl) {
-                if (va > 0) toolSize = Math.min(10, toolSize + 1);
+                if (va > 0) toolSize = Math.min(PixelCanvas.MAX_TOOL_SIZE, toolSize + 1);
                 else if (va < 0) toolSize = Math.max(1, toolSize - 1);
 
                 clearChildren();
@@ -3752,7 +3791,7 @@ public abstract class AbstractEditorScreen extends Screen {
         for (int i = stack.getLayerCount() - 1; i >= 0; i--) {
             int rowY = contentY + (stack.getLayerCount() - 1 - i) * (rowH + 1);
             if (my >= rowY && my < rowY + rowH && mx >= innerX && mx < innerX + innerW) {
-                if (mx < innerX + 12) { stack.getLayers().get(i).setVisible(!stack.getLayers().get(i).isVisible()); canvas.invalidateCache(); }
+                if (mx < innerX + 12) { stack.setLayerVisible(i, !stack.getLayers().get(i).isVisible()); canvas.invalidateCache(); }
                 else stack.setActiveIndex(i);
                 return true;
             }
@@ -142,6 +142,10 @@ public class BrowseScreen extends Screen {
         addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.export"), btn -> client.setScreen(new ExportScreen(this)))
                 .position(this.width - 130, 5).size(60, 20).build());
 
+        // Import button: load an existing pack back into the session
+        addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.import"), btn -> client.setScreen(new ImportScreen(this)))
+                .position(this.width - 65, 32).size(60, 20).build());
+
         // Settings button
         addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.settings"), btn -> client.setScreen(new SettingsScreen(this)))
                 .position(this.width - 195, 5).size(60, 20).build());
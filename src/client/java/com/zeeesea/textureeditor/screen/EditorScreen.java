@@ -1,11 +1,9 @@
 package com.zeeesea.textureeditor.screen;
 
-import com.zeeesea.textureeditor.TextureSyncPayload;
 import com.zeeesea.textureeditor.editor.LayerStack;
-import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.zeeesea.textureeditor.texture.TextureExtractor;
 import com.zeeesea.textureeditor.texture.TextureManager;
-import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.client.MinecraftClient;
@@ -160,11 +158,18 @@ public class EditorScreen extends AbstractEditorScreen {
         applyLive();
         this.face = newFace;
         panOffsetX = 0; panOffsetY = 0;
+        saveLayerProject();
         canvas = null;
         this.clearChildren();
         this.init();
     }
 
+    @Override
+    protected Identifier getSyncTextureId() { return textureId; }
+
+    @Override
+    protected Identifier getSyncSpriteId() { return spriteId; }
+
     @Override
     protected void applyLive() {
         if (spriteId == null || canvas == null) return;
@@ -179,20 +184,7 @@ public class EditorScreen extends AbstractEditorScreen {
                 TextureManager.getInstance().applyLive(sid, px, w, h, origCopy));
 
         // Send to other players if multiplayer sync enabled
-        if (ModSettings.getInstance().multiplayerSync) {
-            int[] flat = new int[w * h];
-            for (int x = 0; x < w; x++)
-                for (int y = 0; y < h; y++)
-                    flat[y * w + x] = px[x][y];
-
-            int[] origFlat = new int[w * h];
-            if (originalPixels != null) {
-                for (int x = 0; x < w; x++)
-                    for (int y = 0; y < h; y++)
-                        origFlat[y * w + x] = originalPixels[x][y];
-            }
-            ClientPlayNetworking.send(new TextureSyncPayload(sid, w, h, flat, origFlat));
-        }
+        TextureSyncClient.getInstance().send(textureId, sid, px, originalPixels, w, h);
     }
 
     @Override
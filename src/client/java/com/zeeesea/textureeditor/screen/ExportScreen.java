@@ -1,6 +1,8 @@
 package com.zeeesea.textureeditor.screen;
 
 import com.zeeesea.textureeditor.editor.PixelCanvas;
+import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.texture.PngEncoder;
 import com.zeeesea.textureeditor.texture.ResourcePackExporter;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
@@ -14,7 +16,6 @@ import net.minecraft.util.Identifier;
 import org.lwjgl.glfw.GLFW;
 
 import java.io.File;
-import java.sql.SQLOutput;
 
 /**
  * Export screen where the user can name their texture pack, set description/author,
@@ -30,8 +31,14 @@ public class ExportScreen extends Screen {
     private String statusMessage = "";
     private int statusColor = com.zeeesea.textureeditor.util.ColorPalette.INSTANCE.STATUS_OK;
 
+    // Background export in progress, if any
+    private ResourcePackExporter.ExportJob exportJob = null;
+    private ButtonWidget exportButton;
+    private ButtonWidget cancelButton;
+
     // Icon canvas settings
     private static final int ICON_SIZE = 64;
+    private static final int[] COMPRESSION_LEVELS = {1, 3, 6, 9};
     private int iconZoom = 4;
     private int iconScreenX;
     private int iconScreenY;
@@ -100,18 +107,75 @@ public class ExportScreen extends Screen {
         int exportBackPosX = centerX - 60;
         int exportBackPosY = this.height - 50;
 
+        // Export options sit below the buttons in the side layout, to their right otherwise
+        int optionsX = exportBackPosX + 124;
+        int optionsY = exportBackPosY - 96;
         if (getWindowHeight() < 1080 || getGuiScale() >= 3) {
             exportBackPosX = centerX + fieldWidth / 2 + 30;
             exportBackPosY = 40;
+            optionsX = exportBackPosX;
+            optionsY = exportBackPosY + 56;
         }
             // Export button
-            addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.export"), btn -> doExport())
+            exportButton = addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.export"), btn -> doExport())
                     .position(exportBackPosX, exportBackPosY).size(120, 20).build());
 
             // Back button
             addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.back"), btn -> client.setScreen(parent))
                     .position(exportBackPosX, exportBackPosY + 24).size(120, 20).build());
 
+            // Cancel button, shown in place of Export while an export runs
+            cancelButton = addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.cancel_export"), btn -> {
+                        if (exportJob != null) exportJob.cancel();
+                    })
+                    .position(exportBackPosX, exportBackPosY).size(120, 20).build());
+            updateExportButtons();
+
+            // Update existing pack: overwrite the same zip and only re-encode changed textures
+            ModSettings s = ModSettings.getInstance();
+            Text textOn = Text.translatable("textureeditor.label.on");
+            Text textOff = Text.translatable("textureeditor.label.off");
+            addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.label.update_existing", s.exportUpdateExisting ? textOn : textOff), btn -> {
+                        s.exportUpdateExisting = !s.exportUpdateExisting;
+                        s.save();
+                        btn.setMessage(Text.translatable("textureeditor.label.update_existing", s.exportUpdateExisting ? textOn : textOff));
+                    })
+                    .position(optionsX, optionsY).size(120, 20).build());
+
+            // PNG output: colour type, row filter and compression effort
+            addDrawableChild(ButtonWidget.builder(pngModeLabel(), btn -> {
+                        PngEncoder.ColorMode[] modes = PngEncoder.ColorMode.values();
+                        s.exportPngMode = modes[(pngOptions().colorMode().ordinal() + 1) % modes.length].name();
+                        s.save();
+                        btn.setMessage(pngModeLabel());
+                    })
+                    .position(optionsX, optionsY + 24).size(120, 20).build());
+            addDrawableChild(ButtonWidget.builder(pngFilterLabel(), btn -> {
+                        PngEncoder.FilterHeuristic[] filters = PngEncoder.FilterHeuristic.values();
+                        s.exportPngFilter = filters[(pngOptions().filter().ordinal() + 1) % filters.length].name();
+                        s.save();
+                        btn.setMessage(pngFilterLabel());
+                    })
+                    .position(optionsX, optionsY + 48).size(120, 20).build());
+            addDrawableChild(ButtonWidget.builder(compressionLabel(), btn -> {
+                        int index = 0;
+                        for (int i = 0; i < COMPRESSION_LEVELS.length; i++) {
+                            if (COMPRESSION_LEVELS[i] == pngOptions().compressionLevel()) index = i;
+                        }
+                        s.exportCompressionLevel = COMPRESSION_LEVELS[(index + 1) % COMPRESSION_LEVELS.length];
+                        s.save();
+                        btn.setMessage(compressionLabel());
+                    })
+                    .position(optionsX, optionsY + 72).size(120, 20).build());
+
+            // Target: zip file or unpacked folder (folders only rewrite changed files)
+            addDrawableChild(ButtonWidget.builder(exportTargetLabel(), btn -> {
+                        s.exportAsFolder = !s.exportAsFolder;
+                        s.save();
+                        btn.setMessage(exportTargetLabel());
+                    })
+                    .position(optionsX, optionsY + 96).size(120, 20).build());
+
     }
 
     @Override
@@ -129,10 +193,6 @@ public class ExportScreen extends Screen {
         context.drawText(textRenderer, Text.translatable("textureeditor.label.description"), this.width / 2 - 100, 65, pal.TEXT_LIGHT, false);
         context.drawText(textRenderer, Text.translatable("textureeditor.label.author"), this.width / 2 - 100, 100, pal.TEXT_LIGHT, false);
 
-        System.out.println(this.height);
-
-
-
         // Draw "Pack Icon (optional):" label
         context.drawText(textRenderer, Text.translatable("textureeditor.label.pack_icon"), iconScreenX, 135, pal.TEXT_LIGHT, false);
 
@@ -154,13 +214,93 @@ public class ExportScreen extends Screen {
             }
         }
 
-        // Status message
-        if (!statusMessage.isEmpty()) {
+        // Export progress
+        if (exportJob != null) {
+            drawExportProgress(context);
+        } else if (!statusMessage.isEmpty()) {
             context.drawCenteredTextWithShadow(textRenderer, Text.literal(statusMessage), this.width / 2, this.height - 50, statusColor);
         }
 
     }
 
+    private void drawExportProgress(DrawContext context) {
+        var pal = com.zeeesea.textureeditor.util.ColorPalette.INSTANCE;
+        int total = Math.max(1, exportJob.getTotal());
+        int done = Math.min(exportJob.getDone(), total);
+        int barW = 200;
+        int barX = this.width / 2 - barW / 2;
+        int barY = this.height - 38;
+        context.fill(barX - 1, barY - 1, barX + barW + 1, barY + 7, pal.CELL_BORDER);
+        context.fill(barX, barY, barX + barW, barY + 6, pal.PANEL_DARK);
+        context.fill(barX, barY, barX + barW * done / total, barY + 6, pal.STATUS_OK);
+
+        String kb = String.valueOf(exportJob.getBytesWritten() / 1024);
+        context.drawCenteredTextWithShadow(textRenderer,
+                Text.translatable("textureeditor.status.exporting", done, exportJob.getTotal(), kb),
+                this.width / 2, this.height - 50, pal.TEXT_LIGHT);
+    }
+
+    @Override
+    public void tick() {
+        super.tick();
+        if (exportJob == null || !exportJob.isFinished()) return;
+
+        File result = exportJob.getResult();
+        if (result != null) {
+            statusMessage = Text.translatable("textureeditor.status.exported_to", result.getName()).getString();
+            statusColor = 0xFF00FF00;
+        } else if (exportJob.isCancelled()) {
+            statusMessage = Text.translatable("textureeditor.status.export_cancelled").getString();
+            statusColor = 0xFFFFAA00;
+        } else {
+            statusMessage = Text.translatable("textureeditor.status.export_failed").getString();
+            statusColor = 0xFFFF0000;
+        }
+        exportJob = null;
+        updateExportButtons();
+    }
+
+    /**
+     * PNG options from the saved settings; unknown names fall back to AUTO.
+     */
+    private static PngEncoder.Options pngOptions() {
+        ModSettings s = ModSettings.getInstance();
+        PngEncoder.ColorMode mode = PngEncoder.ColorMode.AUTO;
+        PngEncoder.FilterHeuristic filter = PngEncoder.FilterHeuristic.AUTO;
+        try {
+            mode = PngEncoder.ColorMode.valueOf(s.exportPngMode);
+        } catch (Exception ignored) {}
+        try {
+            filter = PngEncoder.FilterHeuristic.valueOf(s.exportPngFilter);
+        } catch (Exception ignored) {}
+        return new PngEncoder.Options(mode, filter, s.exportCompressionLevel);
+    }
+
+    private static Text pngModeLabel() {
+        String mode = pngOptions().colorMode().name().toLowerCase(java.util.Locale.ROOT);
+        return Text.translatable("textureeditor.label.png_mode", Text.translatable("textureeditor.png_mode." + mode));
+    }
+
+    private static Text pngFilterLabel() {
+        String filter = pngOptions().filter().name().toLowerCase(java.util.Locale.ROOT);
+        return Text.translatable("textureeditor.label.png_filter", Text.translatable("textureeditor.png_filter." + filter));
+    }
+
+    private static Text compressionLabel() {
+        return Text.translatable("textureeditor.label.png_compression", pngOptions().compressionLevel());
+    }
+
+    private static Text exportTargetLabel() {
+        String target = ModSettings.getInstance().exportAsFolder ? "folder" : "zip";
+        return Text.translatable("textureeditor.label.export_target", Text.translatable("textureeditor.label.export_target." + target));
+    }
+
+    private void updateExportButtons() {
+        boolean running = exportJob != null;
+        if (exportButton != null) exportButton.visible = !running;
+        if (cancelButton != null) cancelButton.visible = running;
+    }
+
     private void drawIconCanvas(DrawContext context, int mouseX, int mouseY) {
         // Use cached texture rendering (1 draw call instead of 4096 fill calls)
         long version = iconCanvas.getVersion();
@@ -271,6 +411,7 @@ public class ExportScreen extends Screen {
     }
 
     private void doExport() {
+        if (exportJob != null) return;
         String name = packNameInput.getText().trim();
         if (name.isEmpty()) {
             statusMessage = Text.translatable("textureeditor.status.enter_pack_name").getString();
@@ -283,16 +424,15 @@ public class ExportScreen extends Screen {
 
         String author = authorInput.getText().trim();
 
-        File result = ResourcePackExporter.export(name, description, author,
-                iconCanvas.getPixels(), ICON_SIZE, ICON_SIZE);
+        exportJob = ResourcePackExporter.exportAsync(name, description, author,
+                iconCanvas.getPixels(), ICON_SIZE, ICON_SIZE, ModSettings.getInstance().exportUpdateExisting,
+                ModSettings.getInstance().exportAsFolder, pngOptions());
 
-        if (result != null) {
-            statusMessage = Text.translatable("textureeditor.status.exported_to", result.getName()).getString();
-            statusColor = 0xFF00FF00;
-        } else {
+        if (exportJob == null) {
             statusMessage = Text.translatable("textureeditor.status.export_failed").getString();
             statusColor = 0xFFFF0000;
         }
+        updateExportButtons();
     }
 
     @Override
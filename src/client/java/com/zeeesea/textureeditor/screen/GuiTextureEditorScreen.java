@@ -1,11 +1,8 @@
 package com.zeeesea.textureeditor.screen;
 
-import com.zeeesea.textureeditor.EntityTextureSyncPayload;
-import com.zeeesea.textureeditor.TextureSyncPayload;
 import com.zeeesea.textureeditor.editor.PixelCanvas;
-import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.zeeesea.textureeditor.texture.TextureManager;
-import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.widget.ButtonWidget;
@@ -212,6 +209,15 @@ public class GuiTextureEditorScreen extends AbstractEditorScreen {
         return toolY;
     }*/
 
+    @Override
+    protected Identifier getSyncTextureId() { return fullTextureId; }
+
+    @Override
+    protected Identifier getSyncSpriteId() {
+        var atlasAndSprite = findSpriteInAtlases(MinecraftClient.getInstance(), guiTextureId);
+        return atlasAndSprite != null ? atlasAndSprite.getRight().getContents().getId() : null;
+    }
+
     @Override
     protected void applyLive() {
         if (fullTextureId == null || canvas == null) return;
@@ -264,20 +270,7 @@ public class GuiTextureEditorScreen extends AbstractEditorScreen {
         final Identifier sid = fullTextureId;
 
         // Send to other players if multiplayer sync enabled
-        if (ModSettings.getInstance().multiplayerSync) {
-            int[] flat = new int[w * h];
-            for (int x = 0; x < w; x++)
-                for (int y = 0; y < h; y++)
-                    flat[y * w + x] = px[x][y];
-
-            int[] origFlat = new int[w * h];
-            if (originalPixels != null) {
-                for (int x = 0; x < w; x++)
-                    for (int y = 0; y < h; y++)
-                        origFlat[y * w + x] = originalPixels[x][y];
-            }
-            ClientPlayNetworking.send(new EntityTextureSyncPayload(fullTextureId, foundSpriteId, w, h, flat, origFlat));
-        }
+        TextureSyncClient.getInstance().send(sid, foundSpriteId, px, originalPixels, w, h);
     }
 
     // Utility: Find sprite in block/gui/items atlases
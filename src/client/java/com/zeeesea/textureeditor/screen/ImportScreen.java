@@ -0,0 +1,162 @@
+package com.zeeesea.textureeditor.screen;
+
+import com.zeeesea.textureeditor.texture.ResourcePackImporter;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.text.Text;
+import org.lwjgl.glfw.GLFW;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the packs in resourcepacks/ and imports the chosen one into the editor session,
+ * so an exported pack can be opened again and edited further.
+ */
+public class ImportScreen extends Screen {
+
+    private static final int ROW_HEIGHT = 24;
+    private static final int LIST_TOP = 40;
+
+    private final Screen parent;
+    private List<File> packs = new ArrayList<>();
+    private int scrollOffset = 0;
+    private String statusMessage = "";
+    private int statusColor = com.zeeesea.textureeditor.util.ColorPalette.INSTANCE.STATUS_OK;
+
+    // Background import in progress, if any
+    private ResourcePackImporter.ImportJob importJob = null;
+    private final List<ButtonWidget> packButtons = new ArrayList<>();
+    private ButtonWidget backButton;
+    private ButtonWidget cancelButton;
+
+    public ImportScreen(Screen parent) {
+        super(Text.translatable("textureeditor.screen.import.title"));
+        this.parent = parent;
+    }
+
+    @Override
+    protected void init() {
+        packs = ResourcePackImporter.listPacks();
+        packButtons.clear();
+
+        int rows = visibleRows();
+        scrollOffset = Math.max(0, Math.min(scrollOffset, packs.size() - rows));
+        for (int i = 0; i < rows && scrollOffset + i < packs.size(); i++) {
+            File pack = packs.get(scrollOffset + i);
+            String label = pack.isDirectory() ? pack.getName() + "/" : pack.getName();
+            packButtons.add(addDrawableChild(ButtonWidget.builder(Text.literal(label), btn -> startImport(pack))
+                    .position(this.width / 2 - 100, LIST_TOP + i * ROW_HEIGHT).size(200, 20).build()));
+        }
+
+        backButton = addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.back"), btn -> client.setScreen(parent))
+                .position(this.width / 2 - 60, this.height - 28).size(120, 20).build());
+
+        // Cancel button, shown in place of Back while an import runs
+        cancelButton = addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.cancel_import"), btn -> {
+                    if (importJob != null) importJob.cancel();
+                })
+                .position(this.width / 2 - 60, this.height - 28).size(120, 20).build());
+        updateButtons();
+    }
+
+    private int visibleRows() {
+        return Math.max(1, (this.height - LIST_TOP - 70) / ROW_HEIGHT);
+    }
+
+    private void startImport(File pack) {
+        if (importJob != null) return;
+        importJob = ResourcePackImporter.importAsync(pack);
+        statusMessage = "";
+        updateButtons();
+    }
+
+    private void updateButtons() {
+        boolean running = importJob != null;
+        for (ButtonWidget button : packButtons) button.active = !running;
+        if (backButton != null) backButton.visible = !running;
+        if (cancelButton != null) cancelButton.visible = running;
+    }
+
+    @Override
+    public void tick() {
+        super.tick();
+        if (importJob == null || !importJob.isFinished()) return;
+
+        ResourcePackImporter.ImportResult result = importJob.getResult();
+        if (result != null) {
+            statusMessage = Text.translatable("textureeditor.status.imported", importJob.getSource().getName(),
+                    result.textures() + result.animations(), result.skipped()).getString();
+            statusColor = 0xFF00FF00;
+        } else if (importJob.isCancelled()) {
+            statusMessage = Text.translatable("textureeditor.status.import_cancelled").getString();
+            statusColor = 0xFFFFAA00;
+        } else {
+            statusMessage = Text.translatable("textureeditor.status.import_failed").getString();
+            statusColor = 0xFFFF0000;
+        }
+        importJob = null;
+        updateButtons();
+    }
+
+    @Override
+    public void renderBackground(DrawContext context, int mouseX, int mouseY, float delta) {
+        context.fill(0, 0, this.width, this.height, com.zeeesea.textureeditor.util.ColorPalette.INSTANCE.BROWSE_BACKGROUND);
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        super.render(context, mouseX, mouseY, delta);
+
+        var pal = com.zeeesea.textureeditor.util.ColorPalette.INSTANCE;
+        context.drawCenteredTextWithShadow(textRenderer, Text.translatable("textureeditor.screen.import.title"), this.width / 2, 10, pal.TEXT_NORMAL);
+        if (packs.isEmpty()) {
+            context.drawCenteredTextWithShadow(textRenderer, Text.translatable("textureeditor.label.no_packs"), this.width / 2, LIST_TOP + 6, pal.TEXT_LIGHT);
+        }
+
+        if (importJob != null) {
+            drawImportProgress(context);
+        } else if (!statusMessage.isEmpty()) {
+            context.drawCenteredTextWithShadow(textRenderer, statusMessage, this.width / 2, this.height - 50, statusColor);
+        }
+    }
+
+    private void drawImportProgress(DrawContext context) {
+        var pal = com.zeeesea.textureeditor.util.ColorPalette.INSTANCE;
+        int total = Math.max(1, importJob.getTotal());
+        int done = Math.min(importJob.getDone(), total);
+        int barW = 200;
+        int barX = this.width / 2 - barW / 2;
+        int barY = this.height - 38;
+        context.fill(barX - 1, barY - 1, barX + barW + 1, barY + 7, pal.CELL_BORDER);
+        context.fill(barX, barY, barX + barW, barY + 6, pal.PANEL_DARK);
+        context.fill(barX, barY, barX + barW * done / total, barY + 6, pal.STATUS_OK);
+
+        context.drawCenteredTextWithShadow(textRenderer,
+                Text.translatable("textureeditor.status.importing", done, importJob.getTotal()),
+                this.width / 2, this.height - 50, pal.TEXT_LIGHT);
+    }
+
+    @Override
+    public boolean mouseScrolled(double mouseX, double mouseY, double horizontalAmount, double verticalAmount) {
+        int maxOffset = Math.max(0, packs.size() - visibleRows());
+        int offset = Math.max(0, Math.min(maxOffset, scrollOffset - (int) Math.signum(verticalAmount)));
+        if (offset != scrollOffset) {
+            scrollOffset = offset;
+            this.clearChildren();
+            this.init();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean keyPressed(net.minecraft.client.input.KeyInput keyInput) {
+        if (keyInput.key() == GLFW.GLFW_KEY_ESCAPE) {
+            client.setScreen(parent);
+            return true;
+        }
+        return super.keyPressed(keyInput);
+    }
+}
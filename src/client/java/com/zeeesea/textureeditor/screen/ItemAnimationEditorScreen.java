@@ -180,6 +180,12 @@ public class ItemAnimationEditorScreen extends AbstractEditorScreen {
         return Text.translatable("textureeditor.button.reset_item").getString();
     }
 
+    @Override
+    protected boolean savesLayerProject() {
+        // The canvas only ever holds one frame
+        return false;
+    }
+
     @Override
     protected int addExtraLeftGeneralButtons(int y, int x, int w, int bh) {
         addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.delete_animation"), btn -> {
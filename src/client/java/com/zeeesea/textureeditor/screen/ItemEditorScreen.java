@@ -1,14 +1,11 @@
 package com.zeeesea.textureeditor.screen;
 
-import com.zeeesea.textureeditor.EntityTextureSyncPayload;
-import com.zeeesea.textureeditor.TextureSyncPayload;
 import com.zeeesea.textureeditor.editor.PixelCanvas;
-import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.zeeesea.textureeditor.texture.ItemAnimationResourceLoader;
 import com.zeeesea.textureeditor.texture.ItemTextureExtractor;
 import com.zeeesea.textureeditor.texture.TextureManager;
 import com.zeeesea.textureeditor.util.EntityMapper;
-import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.Screen;
 import net.minecraft.client.gui.widget.ButtonWidget;
@@ -171,6 +168,12 @@ public class ItemEditorScreen extends AbstractEditorScreen {
         return y;
     }
 
+    @Override
+    protected Identifier getSyncTextureId() { return textureId; }
+
+    @Override
+    protected Identifier getSyncSpriteId() { return spriteId; }
+
     @Override
     protected void applyLive() {
         if (canvas == null) return;
@@ -210,12 +213,8 @@ public class ItemEditorScreen extends AbstractEditorScreen {
         final Identifier tid = textureId;
 
         // Send to other players if multiplayer sync enabled
-        if (ModSettings.getInstance().multiplayerSync) {
-            if (sid != null) {
-                ClientPlayNetworking.send(new TextureSyncPayload(sid, w, h, flat, origFlat));
-            } else if (tid != null) {
-                ClientPlayNetworking.send(new EntityTextureSyncPayload(tid, null, w, h, flat, origFlat));
-            }
+        if (sid != null || tid != null) {
+            TextureSyncClient.getInstance().send(tid, sid, px, originalPixels, w, h);
         }
     }
 
@@ -1,14 +1,11 @@
 package com.zeeesea.textureeditor.screen;
 
-import com.zeeesea.textureeditor.EntityTextureSyncPayload;
-import com.zeeesea.textureeditor.TextureSyncPayload;
 import com.zeeesea.textureeditor.editor.LayerStack;
 import com.zeeesea.textureeditor.editor.PixelCanvas;
-import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.zeeesea.textureeditor.texture.MobTextureExtractor;
 import com.zeeesea.textureeditor.texture.TextureManager;
 import com.zeeesea.textureeditor.util.EntityMapper;
-import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
@@ -168,6 +165,9 @@ public class MobEditorScreen extends AbstractEditorScreen {
         return b;
     }
 
+    @Override
+    protected Identifier getSyncTextureId() { return textureId; }
+
     @Override
     protected void applyLive() {
         if (textureId == null || canvas == null) return;
@@ -226,20 +226,7 @@ public class MobEditorScreen extends AbstractEditorScreen {
         final Identifier sid = textureId;
 
         // Send to other players if multiplayer sync enabled
-        if (ModSettings.getInstance().multiplayerSync) {
-            int[] flat = new int[w * h];
-            for (int x = 0; x < w; x++)
-                for (int y = 0; y < h; y++)
-                    flat[y * w + x] = px[x][y];
-
-            int[] origFlat = new int[w * h];
-            if (originalPixels != null) {
-                for (int x = 0; x < w; x++)
-                    for (int y = 0; y < h; y++)
-                        origFlat[y * w + x] = originalPixels[x][y];
-            }
-            ClientPlayNetworking.send(new EntityTextureSyncPayload(sid, null, w, h, flat, origFlat));
-        }
+        TextureSyncClient.getInstance().send(sid, null, px, originalPixels, w, h);
     }
 
     @Override
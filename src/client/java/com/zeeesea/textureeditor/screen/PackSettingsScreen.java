@@ -0,0 +1,76 @@
+package com.zeeesea.textureeditor.screen;
+
+import com.zeeesea.textureeditor.settings.ModPackSettings;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gui.DrawContext;
+import net.minecraft.client.gui.screen.Screen;
+import net.minecraft.client.gui.widget.ButtonWidget;
+import net.minecraft.text.Text;
+
+/**
+ * Settings of the runtime resource pack that keeps edits across resource reloads.
+ */
+public class PackSettingsScreen extends Screen {
+
+    private final Screen parent;
+
+    public PackSettingsScreen(Screen parent) {
+        super(Text.translatable("textureeditor.screen.pack_settings.title"));
+        this.parent = parent;
+    }
+
+    @Override
+    protected void init() {
+        ModPackSettings s = ModPackSettings.getInstance();
+        int centerX = this.width / 2;
+        int y = 40;
+
+        Text textOn = Text.translatable("textureeditor.label.on");
+        Text textOff = Text.translatable("textureeditor.label.off");
+
+        // Runtime pack on/off
+        addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.label.runtime_pack", s.runtimePackEnabled ? textOn : textOff), btn -> {
+            s.runtimePackEnabled = !s.runtimePackEnabled;
+            s.save();
+            this.clearChildren();
+            this.init();
+        }).position(centerX - 100, y).size(200, 20).build());
+        y += 28;
+
+        // Serve item animations as native atlas animations
+        ButtonWidget animations = addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.label.runtime_pack_animations", s.serveAnimations ? textOn : textOff), btn -> {
+            s.serveAnimations = !s.serveAnimations;
+            s.save();
+            this.clearChildren();
+            this.init();
+        }).position(centerX - 100, y).size(200, 20).build());
+        animations.active = s.runtimePackEnabled;
+        y += 28;
+
+        // Reload now, so the edits get stitched into the atlases
+        addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.button.reload_resources"), btn ->
+                        MinecraftClient.getInstance().reloadResources())
+                .position(centerX - 100, y).size(200, 20).build());
+        y += 40;
+
+        addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.label.done"), btn -> this.close())
+                .position(centerX - 50, y).size(100, 20).build());
+    }
+
+    @Override
+    public void renderBackground(DrawContext context, int mouseX, int mouseY, float delta) {
+        context.fill(0, 0, this.width, this.height, com.zeeesea.textureeditor.util.ColorPalette.INSTANCE.BROWSE_BACKGROUND);
+    }
+
+    @Override
+    public void render(DrawContext context, int mouseX, int mouseY, float delta) {
+        super.render(context, mouseX, mouseY, delta);
+        context.drawCenteredTextWithShadow(textRenderer, this.title, this.width / 2, 15,
+                com.zeeesea.textureeditor.util.ColorPalette.INSTANCE.TEXT_NORMAL);
+    }
+
+    @Override
+    public void close() {
+        client.setScreen(parent);
+    }
+}
@@ -134,6 +134,15 @@ public class SettingsScreen extends Screen {
             this.clearChildren();
             this.init();
         }).position(centerX - 100, y).size(200, 20).build());
+        y += 28;
+
+        // Stream tool strokes instead of pixels while multiplayer sync is on
+        addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.label.collab_ops", s.collabOps ? textOn : textOff), btn -> {
+            s.collabOps = !s.collabOps;
+            s.save();
+            this.clearChildren();
+            this.init();
+        }).position(centerX - 100, y).size(200, 20).build());
         y += 40;
          */
 
@@ -147,6 +156,12 @@ public class SettingsScreen extends Screen {
         addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.label.editor_keybinds"), btn ->
                         client.setScreen(new KeybindSettingsScreen(this)))
                 .position(centerX - 100, y).size(200, 20).build());
+        y += 28;
+
+        // Runtime Pack Settings
+        addDrawableChild(ButtonWidget.builder(Text.translatable("textureeditor.label.pack_settings"), btn ->
+                        client.setScreen(new PackSettingsScreen(this)))
+                .position(centerX - 100, y).size(200, 20).build());
         y += 40;
 
         // Color Preset / Profile switcher
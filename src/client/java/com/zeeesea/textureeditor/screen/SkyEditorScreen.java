@@ -1,11 +1,8 @@
 package com.zeeesea.textureeditor.screen;
 
-import com.zeeesea.textureeditor.EntityTextureSyncPayload;
-import com.zeeesea.textureeditor.TextureSyncPayload;
 import com.zeeesea.textureeditor.editor.PixelCanvas;
-import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.zeeesea.textureeditor.texture.TextureManager;
-import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
@@ -183,11 +180,18 @@ public class SkyEditorScreen extends AbstractEditorScreen {
         applyLive();
         currentSkyTexture = tex;
         panOffsetX = 0; panOffsetY = 0;
+        saveLayerProject();
         canvas = null;
         this.clearChildren();
         this.init();
     }
 
+    @Override
+    protected Identifier getSyncTextureId() { return textureId; }
+
+    @Override
+    protected Identifier getSyncSpriteId() { return currentSkyTexture.getSpriteId(); }
+
     @Override
     protected void applyLive() {
         if (textureId == null || canvas == null) return;
@@ -243,20 +247,7 @@ public class SkyEditorScreen extends AbstractEditorScreen {
         final Identifier sid = textureId;
 
         // Send to other players if multiplayer sync enabled
-        if (ModSettings.getInstance().multiplayerSync && sid != null) {
-            int[] flat = new int[w * h];
-            for (int x = 0; x < w; x++)
-                for (int y = 0; y < h; y++)
-                    flat[y * w + x] = px[x][y];
-
-            int[] origFlat = new int[w * h];
-            if (originalPixels != null) {
-                for (int x = 0; x < w; x++)
-                    for (int y = 0; y < h; y++)
-                        origFlat[y * w + x] = originalPixels[x][y];
-            }
-            ClientPlayNetworking.send(new EntityTextureSyncPayload(textureId, spriteId, w, h, flat, origFlat));
-        }
+        TextureSyncClient.getInstance().send(sid, spriteId, px, originalPixels, w, h);
     }
 
     @Override
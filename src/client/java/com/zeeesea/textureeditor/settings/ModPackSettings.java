@@ -0,0 +1,60 @@
+package com.zeeesea.textureeditor.settings;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.minecraft.client.MinecraftClient;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Settings of the runtime resource pack, stored in config/textureeditor_pack.json.
+ */
+public class ModPackSettings {
+    private static ModPackSettings instance;
+
+    // Serve the current edits to the resource manager so they survive resource reloads
+    public boolean runtimePackEnabled = true;
+    // Serve item animations as frame sheets + .mcmeta, so the atlas animates them natively after a reload
+    public boolean serveAnimations = true;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private ModPackSettings() {}
+
+    public static ModPackSettings getInstance() {
+        if (instance == null) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    private static File getConfigFile() {
+        File configDir = new File(MinecraftClient.getInstance().runDirectory, "config");
+        if (!configDir.exists()) configDir.mkdirs();
+        return new File(configDir, "textureeditor_pack.json");
+    }
+
+    public void save() {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(getConfigFile()), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        } catch (IOException e) {
+            System.out.println("[TextureEditor] Failed to save pack settings: " + e.getMessage());
+        }
+    }
+
+    private static ModPackSettings load() {
+        File file = getConfigFile();
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                ModPackSettings settings = GSON.fromJson(reader, ModPackSettings.class);
+                if (settings != null) return settings;
+            } catch (Exception e) {
+                System.out.println("[TextureEditor] Failed to load pack settings, using defaults: " + e.getMessage());
+            }
+        }
+        ModPackSettings settings = new ModPackSettings();
+        settings.save();
+        return settings;
+    }
+}
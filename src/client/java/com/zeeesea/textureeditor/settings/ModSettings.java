@@ -47,7 +47,22 @@ public class ModSettings {
     public boolean fillWholeCanvas = false;
 
     public boolean multiplayerSync = false;
-
+    // Collaboration mode: stream tool operations and replay them instead of sending pixels
+    public boolean collabOps = false;
+
+    // Export: overwrite the pack of the same name, re-encoding only changed textures
+    public boolean exportUpdateExisting = false;
+    // Export PNG output (PngEncoder.ColorMode / FilterHeuristic names, deflate level 1-9)
+    public String exportPngMode = "AUTO";
+    public String exportPngFilter = "AUTO";
+    public int exportCompressionLevel = 9;
+    // Export as an unpacked folder instead of a zip
+    public boolean exportAsFolder = false;
+
+    // Journal edits to textureeditor_session/ and restore them after a crash or restart
+    public boolean sessionJournal = true;
+    // Keep layers and undo history in textureeditor_projects/ so reopening a texture restores them
+    public boolean layerProjects = true;
 
     // External editor
     public boolean useExternalEditor = false;
@@ -0,0 +1,158 @@
+package com.zeeesea.textureeditor.sync;
+
+import com.zeeesea.textureeditor.CanvasOpsPayload;
+import com.zeeesea.textureeditor.ChunkSender;
+import com.zeeesea.textureeditor.SyncHelloPayload;
+import com.zeeesea.textureeditor.editor.CanvasOp;
+import com.zeeesea.textureeditor.editor.CanvasOpCodec;
+import com.zeeesea.textureeditor.editor.PixelCanvas;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The ops of one canvas being edited in collaboration mode, sent once per tick as a
+ * {@link CanvasOpsPayload}.
+ *
+ * Changes that aren't ops (undo, moving a selection, resetting the texture...) are caught with a
+ * shadow canvas: every op sent is replayed on it too, and whenever the real canvas changed and
+ * no longer matches the shadow, a checkpoint of the whole canvas goes out after the ops. Every
+ * {@link #CHECKPOINT_TICKS} a changed canvas also gets a checkpoint, for players who missed a
+ * batch or started listening late.
+ *
+ * Ops only move the replicas. The canvas's pixels are published the usual way, when the editor
+ * applies them live; edits the author discards never reach the server's copy. The end of the
+ * session goes out behind the last of those pixel updates, so receivers that go back to the
+ * synced state then already have it.
+ *
+ * Only used on the render thread.
+ */
+final class CanvasOpStream {
+    private static final int CHECKPOINT_TICKS = 100;
+
+    private final PixelCanvas canvas;
+    private final Identifier textureId;
+    private final Identifier spriteId;
+    private final long streamId;
+    // Our pixel updates in flight, which the end of the session queues behind
+    private final ChunkSender chunks;
+    private final int session = ThreadLocalRandom.current().nextInt();
+    private int seq;
+    private final List<CanvasOp> recorded = new ArrayList<>();
+    private PixelCanvas shadow;
+    // Canvas version the shadow was last compared at, and the last one checkpointed
+    private long seenVersion = -1;
+    private long checkpointVersion = -1;
+    private int ticksSinceCheckpoint;
+    private boolean ended;
+
+    CanvasOpStream(PixelCanvas canvas, Identifier textureId, Identifier spriteId, long streamId, ChunkSender chunks) {
+        this.canvas = canvas;
+        this.chunks = chunks;
+        this.textureId = textureId;
+        this.spriteId = spriteId;
+        this.streamId = streamId;
+        canvas.setOpRecorder(recorded::add);
+    }
+
+    boolean isFor(PixelCanvas canvas, Identifier textureId, Identifier spriteId) {
+        return this.canvas == canvas && this.textureId.equals(textureId) && Objects.equals(this.spriteId, spriteId);
+    }
+
+    void tick() {
+        if (ended) return;
+        if (!ClientPlayNetworking.canSend(CanvasOpsPayload.ID)) {
+            // Disconnected, or the server stopped relaying ops
+            close();
+            return;
+        }
+        ticksSinceCheckpoint++;
+        List<CanvasOp> ops = new ArrayList<>(recorded);
+        recorded.clear();
+
+        boolean checkpoint = shadow == null;
+        if (!checkpoint && canvas.getVersion() != seenVersion) {
+            try {
+                for (CanvasOp op : ops) shadow.replay(op);
+                checkpoint = !shadow.matches(canvas);
+            } catch (RuntimeException e) {
+                checkpoint = true;
+            }
+        }
+        seenVersion = canvas.getVersion();
+        boolean periodic = ticksSinceCheckpoint >= CHECKPOINT_TICKS && checkpointVersion != seenVersion;
+        if (checkpoint || periodic) {
+            CanvasOp.Checkpoint state = canvas.checkpoint();
+            if ((long) state.layers().length * canvas.getWidth() * canvas.getHeight() > CanvasOpCodec.MAX_CHECKPOINT_VALUES) {
+                // Receivers wouldn't decode it: the pixel updates have to do for this canvas
+                System.out.println("[TextureEditor] " + textureId + " has too many layer pixels to stream tool ops, syncing pixels only");
+                close();
+                return;
+            }
+            ops.add(state);
+            shadow = PixelCanvas.fromCheckpoint(canvas.getWidth(), canvas.getHeight(), state);
+            checkpointVersion = seenVersion;
+            ticksSinceCheckpoint = 0;
+        }
+        if (!ops.isEmpty()) send(ops);
+    }
+
+    /**
+     * Send what's left, stop recording and tell the other players the session is over.
+     */
+    void end() {
+        tick();
+        close();
+    }
+
+    private void close() {
+        if (ended) return;
+        ended = true;
+        canvas.setOpRecorder(null);
+        if (seq > 0 && ClientPlayNetworking.canSend(CanvasOpsPayload.ID)) {
+            chunks.sendAfter(textureId, streamId, new CanvasOpsPayload(textureId, spriteId, streamId, session,
+                    CanvasOpsPayload.END, canvas.getWidth(), canvas.getHeight(), new byte[0]));
+        }
+    }
+
+    /**
+     * Send ops as as few batches as fit a payload, in order.
+     */
+    private void send(List<CanvasOp> ops) {
+        if (!ClientPlayNetworking.canSend(CanvasOpsPayload.ID)) return;
+        byte[] encoded = encode(ops);
+        if (encoded.length <= CanvasOpsPayload.MAX_OPS_BYTES) {
+            ClientPlayNetworking.send(new CanvasOpsPayload(textureId, spriteId, streamId, session, seq++,
+                    canvas.getWidth(), canvas.getHeight(), encoded));
+            return;
+        }
+        if (ops.size() == 1) {
+            // A checkpoint too large for a payload: the pixel updates have to do for this canvas
+            System.out.println("[TextureEditor] " + textureId + " is too large to stream tool ops, syncing pixels only");
+            close();
+            return;
+        }
+        int half = ops.size() / 2;
+        send(ops.subList(0, half));
+        if (!ended) send(ops.subList(half, ops.size()));
+    }
+
+    private static byte[] encode(List<CanvasOp> ops) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        try {
+            // Only peers that announced OPS get these, and they read every codec
+            CanvasOpCodec.writeAll(buf, ops, SyncHelloPayload.CAPABILITIES);
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.zeeesea.textureeditor.sync;
+
+import com.zeeesea.textureeditor.texture.TextureManager;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synced textures prepared off the render thread, waiting to be uploaded. A texture that changes
+ * again before the render thread gets to it only uploads its latest pixels; everything waiting
+ * goes up in one {@link TextureManager#applySyncedBatch} pass.
+ *
+ * Clearing starts a new generation; uploads prepared for an older one (e.g. from the server we
+ * just left) are dropped when they're posted.
+ */
+final class SyncUploadQueue {
+    private final Map<Identifier, TextureManager.LiveUpload> pending = new LinkedHashMap<>();
+    // Set while a drain is queued on the render thread
+    private boolean drainQueued;
+    private int generation;
+
+    synchronized int generation() {
+        return generation;
+    }
+
+    /**
+     * Called from any thread.
+     *
+     * @param generation the {@link #generation()} the upload was prepared in
+     */
+    synchronized void post(TextureManager.LiveUpload upload, int generation) {
+        if (generation != this.generation) return;
+        // Re-inserted so uploads keep the order of their latest change
+        pending.remove(upload.textureId());
+        pending.put(upload.textureId(), upload);
+        if (!drainQueued) {
+            drainQueued = true;
+            MinecraftClient.getInstance().execute(this::drain);
+        }
+    }
+
+    synchronized void clear() {
+        pending.clear();
+        generation++;
+    }
+
+    private void drain() {
+        List<TextureManager.LiveUpload> uploads;
+        synchronized (this) {
+            uploads = new ArrayList<>(pending.values());
+            pending.clear();
+            drainQueued = false;
+        }
+        if (!uploads.isEmpty()) TextureManager.getInstance().applySyncedBatch(uploads);
+    }
+}
@@ -0,0 +1,757 @@
+package com.zeeesea.textureeditor.sync;
+
+import com.zeeesea.textureeditor.CanvasOpsPayload;
+import com.zeeesea.textureeditor.ChunkAssembler;
+import com.zeeesea.textureeditor.ChunkSender;
+import com.zeeesea.textureeditor.PixelCodec;
+import com.zeeesea.textureeditor.PixelRuns;
+import com.zeeesea.textureeditor.SyncHelloPayload;
+import com.zeeesea.textureeditor.SyncedTexture;
+import com.zeeesea.textureeditor.TextureChunkPayload;
+import com.zeeesea.textureeditor.TextureDeltaPayload;
+import com.zeeesea.textureeditor.TextureResetPayload;
+import com.zeeesea.textureeditor.TextureResyncPayload;
+import com.zeeesea.textureeditor.TextureSnapshotPayload;
+import com.zeeesea.textureeditor.editor.CanvasOp;
+import com.zeeesea.textureeditor.editor.CanvasOpCodec;
+import com.zeeesea.textureeditor.editor.PixelCanvas;
+import com.zeeesea.textureeditor.settings.ModSettings;
+import com.zeeesea.textureeditor.texture.TextureManager;
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Client side of multiplayer texture sync.
+ *
+ * Every client sends its edits as one stream per connection. The first update of a texture is a
+ * keyframe; after that only the runs of pixels that changed since the last version sent go over
+ * the wire. Keyframes carry a hash of the original texture instead of its pixels: receivers load
+ * the original from their own resources and only ask for the author's copy if it hashes
+ * differently. Receivers keep the last synced pixels of each texture plus the last version they
+ * applied of every stream, and apply a delta only on top of the version it was made against. A
+ * receiver that is missing that version (it joined later, or had sync turned off) asks the author
+ * for a new keyframe, which the author sends on its next tick.
+ *
+ * Updates of one texture from different players are ordered by a per-texture version every
+ * client advances past the highest it has seen, so all players end up with the same pixels where
+ * edits overlap (see {@link SyncedTexture}). Our own updates go into the same state, and updates
+ * that arrive too late to matter are dropped before any pixel work.
+ *
+ * Pixel arrays are sent compressed once the server has answered our {@link SyncHelloPayload};
+ * until then, and on servers that never answer, they go out raw. Deltas too large for one
+ * payload travel as paced chunks (see {@link ChunkSender}).
+ *
+ * On joining, the server sends a snapshot of every texture synced in the world so far; it's
+ * applied in one batch once all its parts are in. Resetting a texture sends a
+ * {@link TextureResetPayload} instead of its original pixels, so the server forgets it.
+ *
+ * In collaboration mode the open editor also streams its tool ops (see {@link CanvasOpStream}).
+ * Other players in that mode replay them on a replica of the author's canvas and show that,
+ * ahead of the author's pixel updates, until the author closes the editor. While several
+ * players stream the same texture, receivers show its synced state instead of flipping between
+ * their replicas.
+ *
+ * Sending runs on the render thread. Everything received is handed to a decode thread, which
+ * assembles chunks, decodes snapshots, applies updates to the synced state and turns the result
+ * into uploads at the local texture size; only the upload itself goes back to the render thread,
+ * through a {@link SyncUploadQueue}.
+ */
+public class TextureSyncClient {
+    private static final TextureSyncClient INSTANCE = new TextureSyncClient();
+
+    // Send a keyframe instead once the runs would be more than this fraction of the full pixels
+    private static final float MAX_DELTA_RATIO = 0.5f;
+    // How long the decode thread waits for the render thread to read our own originals
+    private static final int LOCAL_READ_TIMEOUT_SECONDS = 5;
+
+    private long streamId = newStreamId();
+    // SyncHelloPayload.CAPABILITIES bits the server announced
+    private int serverCodecs = PixelCodec.RAW_ONLY;
+    // Whether we said hello on this connection, and the subscription and collaboration mode we announced in it
+    private boolean helloSent;
+    private boolean announcedSync;
+    private boolean announcedOps;
+    private final ChunkSender chunks = new ChunkSender(ClientPlayNetworking::send,
+            () -> ClientPlayNetworking.canSend(TextureChunkPayload.ID));
+    private final Map<Identifier, Outgoing> outgoing = new HashMap<>();
+    // Textures to send a keyframe of on the next tick, and whether someone asked for the originals
+    private final Map<Identifier, Boolean> keyframeRequests = new HashMap<>();
+    // Highest texture version seen of each texture: our next update of it is ordered after that
+    private final Map<Identifier, Integer> textureClocks = new ConcurrentHashMap<>();
+    // Ops of the canvas open in the editor, in collaboration mode
+    private CanvasOpStream opStream;
+
+    private final ExecutorService decoder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TextureEditor-SyncDecode");
+        t.setDaemon(true);
+        return t;
+    });
+    private final SyncUploadQueue uploads = new SyncUploadQueue();
+    // Only touched on the decode thread from here on
+    // Upload generation the running decode task was queued in
+    private int decodeGeneration;
+    private final ChunkAssembler assembler = new ChunkAssembler();
+    private final Map<Identifier, SyncedTexture> incoming = new HashMap<>();
+    // Keyframes this client asked for and hasn't received yet
+    private final Set<StreamKey> requestedKeyframes = new HashSet<>();
+    // Join snapshot being received: entries so far, and which of its parts are in
+    private List<TextureSnapshotPayload.Entry> snapshotEntries;
+    private BitSet snapshotParts;
+    private int snapshotPartCount;
+    // Canvases other players are editing in collaboration mode, by texture and author stream
+    private final Map<StreamKey, Replica> replicas = new HashMap<>();
+
+    private record StreamKey(Identifier textureId, long streamId) {}
+
+    /**
+     * Another player's canvas, rebuilt from its ops. {@code nextSeq} is the batch it needs next.
+     */
+    private static final class Replica {
+        private final int session;
+        private final Identifier spriteId;
+        private final PixelCanvas canvas;
+        private int nextSeq;
+
+        private Replica(int session, Identifier spriteId, PixelCanvas canvas) {
+            this.session = session;
+            this.spriteId = spriteId;
+            this.canvas = canvas;
+        }
+    }
+
+    /**
+     * What this client last sent for a texture.
+     */
+    private static final class Outgoing {
+        private Identifier spriteId;
+        private int version;
+        private int width;
+        private int height;
+        private int[] pixels;
+        private int[] originals;
+        private long originalHash;
+    }
+
+    private TextureSyncClient() {}
+
+    public static TextureSyncClient getInstance() { return INSTANCE; }
+
+    /**
+     * Called when joining or leaving a server; other clients only know this stream from now on.
+     */
+    public void reset() {
+        // First, while it still belongs to the old connection
+        stopStreaming();
+        streamId = newStreamId();
+        serverCodecs = PixelCodec.RAW_ONLY;
+        helloSent = false;
+        chunks.clear();
+        outgoing.clear();
+        keyframeRequests.clear();
+        uploads.clear();
+        decode(this::clearIncoming);
+    }
+
+    private void clearIncoming() {
+        assembler.clear();
+        incoming.clear();
+        replicas.clear();
+        textureClocks.clear();
+        requestedKeyframes.clear();
+        snapshotEntries = null;
+        snapshotParts = null;
+    }
+
+    /**
+     * Run a task on the decode thread; a payload that fails to apply is only logged. Tasks queued
+     * before the uploads were last cleared (we left the server, or unsubscribed) are skipped.
+     */
+    private void decode(Runnable task) {
+        int generation = uploads.generation();
+        decoder.execute(() -> {
+            if (generation != uploads.generation()) return;
+            decodeGeneration = generation;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("[TextureEditor] Failed to apply synced texture: " + e.getMessage());
+            }
+        });
+    }
+
+    private static long newStreamId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == TextureDeltaPayload.SERVER_STREAM);
+        return id;
+    }
+
+    /**
+     * Tell the server which codecs we read and whether we want updates, right after joining and
+     * whenever the multiplayer sync or collaboration setting changes.
+     */
+    public void sendHello() {
+        if (ClientPlayNetworking.canSend(SyncHelloPayload.ID)) {
+            announcedSync = ModSettings.getInstance().multiplayerSync;
+            announcedOps = ModSettings.getInstance().collabOps;
+            helloSent = true;
+            int codecs = announcedOps ? SyncHelloPayload.CAPABILITIES : SyncHelloPayload.CAPABILITIES & ~CanvasOpsPayload.OPS;
+            ClientPlayNetworking.send(new SyncHelloPayload(SyncHelloPayload.PROTOCOL, codecs, announcedSync));
+        }
+    }
+
+    /**
+     * Drop what we know of other players' textures: once unsubscribed it only goes stale, and
+     * subscribing again brings a fresh snapshot.
+     */
+    private void unsubscribe() {
+        // What we sent is no base for others once they've dropped it too; start again with keyframes
+        outgoing.clear();
+        keyframeRequests.clear();
+        chunks.clear();
+        uploads.clear();
+        decode(this::clearIncoming);
+    }
+
+    public void onHello(SyncHelloPayload payload) {
+        serverCodecs = payload.codecs() & SyncHelloPayload.CAPABILITIES;
+    }
+
+    /**
+     * Send the current pixels of an edited texture to the other players, if multiplayer sync is on.
+     *
+     * @param textureId full texture path; may be null for atlas sprites, it's derived from the sprite id then
+     * @param spriteId  atlas sprite id, or null for standalone textures
+     * @param originals original pixels (hashed into keyframes, sent only when asked for), or null
+     */
+    public void send(Identifier textureId, Identifier spriteId, int[][] pixels, int[][] originals, int width, int height) {
+        if (!ModSettings.getInstance().multiplayerSync || !ClientPlayNetworking.canSend(TextureDeltaPayload.ID)) return;
+        textureId = syncedId(textureId, spriteId);
+        if (textureId == null) return;
+
+        int[] flat = toFlat(pixels, width, height);
+        if (originals != null && Arrays.equals(flat, toFlat(originals, width, height))) {
+            // Back to the original: nothing to send, or a reset if others have our edit
+            if (outgoing.containsKey(textureId)) sendReset(textureId);
+            return;
+        }
+        Outgoing out = outgoing.get(textureId);
+        if (out != null && out.width == width && out.height == height && !keyframeRequests.containsKey(textureId)) {
+            int[] runs = PixelRuns.diff(out.pixels, flat, (int) (flat.length * MAX_DELTA_RATIO));
+            if (runs != null) {
+                if (runs.length == 0) return;
+                out.spriteId = spriteId;
+                out.pixels = flat;
+                int base = out.version++;
+                TextureDeltaPayload payload = new TextureDeltaPayload(textureId, spriteId, streamId, nextTextureVersion(textureId),
+                        out.version, base, width, height, runs, TextureDeltaPayload.NO_ORIGINAL, new int[0], serverCodecs);
+                decode(() -> record(payload));
+                chunks.send(payload);
+                return;
+            }
+        }
+
+        if (out == null) {
+            out = new Outgoing();
+            outgoing.put(textureId, out);
+        }
+        out.spriteId = spriteId;
+        out.width = width;
+        out.height = height;
+        out.pixels = flat;
+        if (originals != null) {
+            out.originals = toFlat(originals, width, height);
+            out.originalHash = TextureDeltaPayload.hashOriginal(out.originals, width, height);
+        } else {
+            out.originals = new int[0];
+            out.originalHash = TextureDeltaPayload.NO_ORIGINAL;
+        }
+        sendKeyframe(textureId, out, false);
+    }
+
+    /**
+     * Tell the other players a texture was reset to its original, so they and the server forget
+     * it; our next edit of it starts with a keyframe again.
+     */
+    public void sendReset(Identifier textureId) {
+        outgoing.remove(textureId);
+        keyframeRequests.remove(textureId);
+        chunks.cancel(textureId);
+        if (!ModSettings.getInstance().multiplayerSync || !ClientPlayNetworking.canSend(TextureResetPayload.ID)) return;
+        ClientPlayNetworking.send(new TextureResetPayload(textureId, streamId));
+        decode(() -> incoming.remove(textureId));
+    }
+
+    /**
+     * Called every tick by the open editor. In collaboration mode, when the server relays ops,
+     * streams the tool ops of its canvas to the other players. The ids are the ones the editor
+     * passes to {@link #send}.
+     *
+     * @param canvas null if the editor has none right now
+     */
+    public void streamCanvas(PixelCanvas canvas, Identifier textureId, Identifier spriteId) {
+        ModSettings settings = ModSettings.getInstance();
+        textureId = syncedId(textureId, spriteId);
+        boolean streaming = canvas != null && textureId != null && settings.multiplayerSync && settings.collabOps
+                && (serverCodecs & CanvasOpsPayload.OPS) != 0 && ClientPlayNetworking.canSend(CanvasOpsPayload.ID);
+        if (opStream != null && (!streaming || !opStream.isFor(canvas, textureId, spriteId))) stopStreaming();
+        if (streaming && opStream == null) opStream = new CanvasOpStream(canvas, textureId, spriteId, streamId, chunks);
+        if (opStream != null) opStream.tick();
+    }
+
+    /**
+     * Called when the editor closes.
+     */
+    public void stopStreaming() {
+        if (opStream == null) return;
+        opStream.end();
+        opStream = null;
+    }
+
+    /**
+     * Called every client tick: updates our subscription if the sync setting changed, answers the
+     * keyframe requests that came in since the last tick (once per texture however many players
+     * asked), and sends the next chunks of large deltas.
+     */
+    public void tick() {
+        ModSettings settings = ModSettings.getInstance();
+        if (helloSent && (announcedSync != settings.multiplayerSync || announcedOps != settings.collabOps)) {
+            if (announcedSync && !settings.multiplayerSync) {
+                unsubscribe();
+            } else if (announcedOps && !settings.collabOps) {
+                decode(this::dropReplicas);
+            }
+            sendHello();
+        }
+        if (!keyframeRequests.isEmpty()) {
+            Map<Identifier, Boolean> requests = new HashMap<>(keyframeRequests);
+            keyframeRequests.clear();
+            for (Map.Entry<Identifier, Boolean> request : requests.entrySet()) {
+                Outgoing out = outgoing.get(request.getKey());
+                if (out != null && ClientPlayNetworking.canSend(TextureDeltaPayload.ID)) {
+                    sendKeyframe(request.getKey(), out, request.getValue());
+                }
+            }
+        }
+        chunks.tick();
+        decode(assembler::tick);
+    }
+
+    private void sendKeyframe(Identifier textureId, Outgoing out, boolean withOriginals) {
+        out.version++;
+        keyframeRequests.remove(textureId);
+        TextureDeltaPayload payload = new TextureDeltaPayload(textureId, out.spriteId, streamId, nextTextureVersion(textureId),
+                out.version, TextureDeltaPayload.KEYFRAME, out.width, out.height, out.pixels, out.originalHash,
+                withOriginals ? out.originals : new int[0], serverCodecs);
+        decode(() -> record(payload));
+        chunks.send(payload);
+    }
+
+    /**
+     * Version for our next update of a texture, after every one seen so far; UNORDERED if the
+     * server can't pass it on.
+     */
+    private int nextTextureVersion(Identifier textureId) {
+        if ((serverCodecs & TextureDeltaPayload.ORDERED) == 0) return TextureDeltaPayload.UNORDERED;
+        return textureClocks.merge(textureId, 1, Integer::sum);
+    }
+
+    /**
+     * Apply our own update to the synced state too, so others' updates that arrive late are
+     * ordered against it and what we show of them includes our edits. Runs on the decode thread.
+     */
+    private void record(TextureDeltaPayload payload) {
+        SyncedTexture state = incoming.get(payload.textureId());
+        if (payload.isKeyframe() && (state == null || !state.matches(payload.width(), payload.height()))) {
+            state = new SyncedTexture(payload.width(), payload.height(), new int[payload.data().length]);
+            incoming.put(payload.textureId(), state);
+        }
+        if (state != null && state.apply(payload) == SyncedTexture.Result.MISSING_BASE) {
+            // State was replaced (e.g. by a snapshot) since our last keyframe
+            MinecraftClient.getInstance().execute(() -> keyframeRequests.putIfAbsent(payload.textureId(), false));
+        }
+    }
+
+    /**
+     * Answers keyframe requests for our stream, and requests for the originals of a snapshot
+     * texture the server doesn't have them of, if we edited it.
+     */
+    public void onResyncRequest(TextureResyncPayload payload) {
+        boolean ours = payload.streamId() == streamId
+                || (payload.streamId() == TextureDeltaPayload.SERVER_STREAM && payload.withOriginals());
+        if (ours && outgoing.containsKey(payload.textureId())) {
+            keyframeRequests.merge(payload.textureId(), payload.withOriginals(), Boolean::logicalOr);
+        }
+    }
+
+    public void receiveChunk(TextureChunkPayload chunk) {
+        if (!ModSettings.getInstance().multiplayerSync) return;
+        decode(() -> {
+            TextureDeltaPayload payload = assembler.accept(chunk);
+            if (payload != null) applyDelta(payload);
+        });
+    }
+
+    public void receive(TextureDeltaPayload payload) {
+        if (!ModSettings.getInstance().multiplayerSync) return;
+        decode(() -> {
+            assembler.supersede(payload);
+            applyDelta(payload);
+        });
+    }
+
+    /**
+     * A full texture from a peer that only speaks the old sync payloads.
+     *
+     * @param textureId may be null for atlas sprites
+     * @param originals row-major originals, or null/empty if not sent
+     */
+    public void receiveLegacy(Identifier textureId, Identifier spriteId, int[] pixels, int[] originals, int width, int height) {
+        if (!ModSettings.getInstance().multiplayerSync) return;
+        decode(() -> {
+            if (width <= 0 || height <= 0 || pixels.length != width * height) return;
+            show(textureId, spriteId, pixels, originals != null && originals.length == pixels.length ? originals : null,
+                    width, height);
+        });
+    }
+
+    private void applyDelta(TextureDeltaPayload payload) {
+        Identifier textureId = payload.textureId();
+        int w = payload.width();
+        int h = payload.height();
+        if (w <= 0 || h <= 0) return;
+        if (payload.textureVersion() != TextureDeltaPayload.UNORDERED) {
+            textureClocks.merge(textureId, payload.textureVersion(), Math::max);
+        }
+        // Dropped before touching any pixels
+        SyncedTexture state = incoming.get(textureId);
+        if (state != null && state.matches(w, h) && state.isStale(payload)) return;
+
+        if (payload.isKeyframe()) {
+            if (payload.data().length != w * h) return;
+            int[] originals = null;
+            if (payload.originalPixels().length == w * h) {
+                originals = payload.originalPixels();
+            } else if (payload.originalHash() != TextureDeltaPayload.NO_ORIGINAL
+                    && TextureManager.getInstance().getOriginalPixels(textureId) == null) {
+                // Nothing stored yet: check our own copy of the original matches the author's
+                originals = localOriginal(textureId, w, h);
+                if (originals == null || TextureDeltaPayload.hashOriginal(originals, w, h) != payload.originalHash()) {
+                    // Supersedes any plain keyframe request still open for this stream
+                    requestedKeyframes.remove(new StreamKey(textureId, payload.streamId()));
+                    requestKeyframe(textureId, payload.streamId(), true);
+                    return;
+                }
+            }
+
+            if (state == null || !state.matches(w, h)) {
+                state = new SyncedTexture(w, h, new int[w * h]);
+                incoming.put(textureId, state);
+            }
+            requestedKeyframes.remove(new StreamKey(textureId, payload.streamId()));
+            // Originals from whoever answered a snapshot texture's request
+            if (originals != null) requestedKeyframes.remove(new StreamKey(textureId, TextureDeltaPayload.SERVER_STREAM));
+            // A superseded keyframe changes nothing on screen, unless it brings the originals
+            boolean applied = state.apply(payload) == SyncedTexture.Result.APPLIED;
+            if (originals != null || (applied && !isReplicated(textureId, payload.streamId()))) {
+                show(textureId, payload.spriteId(), state.pixels(), originals, w, h);
+            }
+            return;
+        }
+
+        SyncedTexture.Result result = state != null ? state.apply(payload) : SyncedTexture.Result.MISSING_BASE;
+        if (result == SyncedTexture.Result.MISSING_BASE) {
+            requestKeyframe(textureId, payload.streamId(), false);
+        } else if (result == SyncedTexture.Result.APPLIED && !isReplicated(textureId, payload.streamId())) {
+            show(textureId, payload.spriteId(), state.pixels(), null, w, h);
+        }
+    }
+
+    /**
+     * Whether the author's replica is on screen for this texture; its pixel updates lag behind
+     * the ops then and are only applied to the synced state.
+     */
+    private boolean isReplicated(Identifier textureId, long stream) {
+        return replicas.containsKey(new StreamKey(textureId, stream)) && replicaCount(textureId) == 1;
+    }
+
+    private int replicaCount(Identifier textureId) {
+        int count = 0;
+        for (StreamKey key : replicas.keySet()) {
+            if (key.textureId().equals(textureId)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Another player reset a texture: drop its synced state and show our original again.
+     */
+    public void receiveReset(TextureResetPayload payload) {
+        if (!ModSettings.getInstance().multiplayerSync) return;
+        decode(() -> {
+            Identifier textureId = payload.textureId();
+            incoming.remove(textureId);
+            replicas.keySet().removeIf(key -> key.textureId().equals(textureId));
+            requestedKeyframes.removeIf(key -> key.textureId().equals(textureId));
+            // Queued after any upload of the texture already waiting for the render thread
+            MinecraftClient.getInstance().execute(() -> {
+                outgoing.remove(textureId);
+                keyframeRequests.remove(textureId);
+                chunks.cancel(textureId);
+                TextureManager.getInstance().revertToOriginal(textureId);
+            });
+        });
+    }
+
+    public void receiveOps(CanvasOpsPayload payload) {
+        ModSettings settings = ModSettings.getInstance();
+        if (!settings.multiplayerSync || !settings.collabOps) return;
+        decode(() -> applyOps(payload));
+    }
+
+    /**
+     * Replay a batch of ops on the author's replica and show the result, if it's the only replica
+     * of the texture. A replica starts at a checkpoint; one that missed a batch is dropped until
+     * the next checkpoint comes.
+     */
+    private void applyOps(CanvasOpsPayload payload) {
+        Identifier textureId = payload.textureId();
+        StreamKey key = new StreamKey(textureId, payload.streamId());
+        Replica replica = replicas.get(key);
+        boolean sameSession = replica != null && replica.session == payload.session();
+        if (payload.isEnd()) {
+            if (sameSession) dropReplica(key);
+            return;
+        }
+        int w = payload.width();
+        int h = payload.height();
+        // Same bound as synced pixels; checkpoints are checked against it before any canvas is built
+        if (w <= 0 || h <= 0 || (long) w * h > PixelCodec.MAX_VALUES) return;
+
+        List<CanvasOp> ops = CanvasOpCodec.readAll(new PacketByteBuf(Unpooled.wrappedBuffer(payload.ops())), w * h);
+        if (!sameSession || replica.nextSeq != payload.seq()
+                || replica.canvas.getWidth() != w || replica.canvas.getHeight() != h) {
+            int start = -1;
+            for (int i = ops.size() - 1; i >= 0 && start < 0; i--) {
+                if (ops.get(i) instanceof CanvasOp.Checkpoint) start = i;
+            }
+            if (start < 0) {
+                if (sameSession) dropReplica(key);
+                return;
+            }
+            boolean joined = replica == null && replicaCount(textureId) == 1;
+            replica = new Replica(payload.session(), payload.spriteId(),
+                    PixelCanvas.fromCheckpoint(w, h, (CanvasOp.Checkpoint) ops.get(start)));
+            replicas.put(key, replica);
+            ops = ops.subList(start + 1, ops.size());
+            // A second author: the replica shown so far gives way to the synced state
+            if (joined) showSynced(textureId, payload.spriteId());
+        }
+        for (CanvasOp op : ops) replica.canvas.replay(op);
+        replica.nextSeq = payload.seq() + 1;
+        if (replicaCount(textureId) == 1) {
+            show(textureId, payload.spriteId(), toFlat(replica.canvas.getPixels(), w, h), null, w, h);
+        }
+    }
+
+    /**
+     * Go back to showing the synced state of a texture, which has the author's pixel updates.
+     */
+    private void dropReplica(StreamKey key) {
+        Replica replica = replicas.remove(key);
+        if (replica != null) showSynced(key.textureId(), replica.spriteId);
+    }
+
+    private void showSynced(Identifier textureId, Identifier spriteId) {
+        SyncedTexture state = incoming.get(textureId);
+        if (state != null) show(textureId, spriteId, state.pixels(), null, state.width(), state.height());
+    }
+
+    private void dropReplicas() {
+        for (StreamKey key : new ArrayList<>(replicas.keySet())) dropReplica(key);
+    }
+
+    public void receiveSnapshot(TextureSnapshotPayload payload) {
+        if (!ModSettings.getInstance().multiplayerSync) return;
+        decode(() -> acceptSnapshotPart(payload));
+    }
+
+    private void acceptSnapshotPart(TextureSnapshotPayload payload) {
+        int parts = payload.parts();
+        if (parts <= 0 || payload.part() < 0 || payload.part() >= parts) return;
+        if (snapshotParts == null || snapshotPartCount != parts) {
+            snapshotEntries = new ArrayList<>();
+            snapshotParts = new BitSet(parts);
+            snapshotPartCount = parts;
+        }
+        if (snapshotParts.get(payload.part())) return;
+        snapshotParts.set(payload.part());
+        try {
+            snapshotEntries.addAll(payload.entries());
+        } catch (RuntimeException e) {
+            System.out.println("[TextureEditor] Skipping a broken part of the sync snapshot: " + e.getMessage());
+        }
+        if (snapshotParts.cardinality() < parts) return;
+
+        List<TextureSnapshotPayload.Entry> entries = snapshotEntries;
+        snapshotEntries = null;
+        snapshotParts = null;
+        applySnapshot(entries);
+    }
+
+    /**
+     * Make the snapshot the last synced state of its textures and show it; the uploads all land in
+     * the same render-thread batch.
+     */
+    private void applySnapshot(List<TextureSnapshotPayload.Entry> entries) {
+        TextureManager manager = TextureManager.getInstance();
+        // Our own originals of the textures we have none stored of, read in one go
+        Map<Identifier, int[]> sizes = new HashMap<>();
+        for (TextureSnapshotPayload.Entry entry : entries) {
+            if (entry.originalPixels().length == 0 && entry.originalHash() != TextureDeltaPayload.NO_ORIGINAL
+                    && manager.getOriginalPixels(entry.textureId()) == null) {
+                sizes.put(entry.textureId(), new int[]{entry.width(), entry.height()});
+            }
+        }
+        Map<Identifier, int[]> locals = sizes.isEmpty() ? Map.of() : localOriginals(sizes);
+
+        for (TextureSnapshotPayload.Entry entry : entries) {
+            int w = entry.width();
+            int h = entry.height();
+            int[] originals = entry.originalPixels().length > 0 ? entry.originalPixels() : null;
+            int[] size = sizes.get(entry.textureId());
+            if (originals == null && size != null && size[0] == w && size[1] == h) {
+                // Our own original if it matches; otherwise ask for the author's like a keyframe does,
+                // and show the pixels meanwhile on whatever original the upload finds
+                int[] local = locals.get(entry.textureId());
+                if (local != null && TextureDeltaPayload.hashOriginal(local, w, h) == entry.originalHash()) {
+                    originals = local;
+                } else {
+                    requestKeyframe(entry.textureId(), TextureDeltaPayload.SERVER_STREAM, true);
+                }
+            }
+            incoming.put(entry.textureId(), new SyncedTexture(w, h, entry.pixels().clone(), entry.textureVersion()));
+            if (entry.textureVersion() != TextureDeltaPayload.UNORDERED) {
+                textureClocks.merge(entry.textureId(), entry.textureVersion(), Math::max);
+            }
+            show(entry.textureId(), entry.spriteId(), entry.pixels(), originals, w, h);
+        }
+        System.out.println("[TextureEditor] Applied sync snapshot of " + entries.size() + " texture(s)");
+    }
+
+    private void requestKeyframe(Identifier textureId, long stream, boolean withOriginals) {
+        if (!requestedKeyframes.add(new StreamKey(textureId, stream))) return;
+        MinecraftClient.getInstance().execute(() -> {
+            if (ClientPlayNetworking.canSend(TextureResyncPayload.ID)) {
+                ClientPlayNetworking.send(new TextureResyncPayload(textureId, stream, withOriginals));
+            }
+        });
+    }
+
+    /**
+     * The texture id updates are synced under: atlas sprites without one use their sprite's texture path.
+     */
+    private static Identifier syncedId(Identifier textureId, Identifier spriteId) {
+        if (textureId != null || spriteId == null) return textureId;
+        return Identifier.of(spriteId.getNamespace(), "textures/" + spriteId.getPath() + ".png");
+    }
+
+    private static int[] localOriginal(Identifier textureId, int width, int height) {
+        return localOriginals(Map.of(textureId, new int[]{width, height})).get(textureId);
+    }
+
+    /**
+     * Our own originals of some textures, row-major, by texture id; missing ones are left out.
+     * The files are read on the render thread, so they never race a resource reload, while the
+     * decode thread waits; they're decoded back here.
+     *
+     * @param sizes width and height each texture is synced at
+     */
+    private static Map<Identifier, int[]> localOriginals(Map<Identifier, int[]> sizes) {
+        Map<Identifier, byte[]> files;
+        try {
+            files = CompletableFuture.supplyAsync(() -> {
+                Map<Identifier, byte[]> read = new HashMap<>();
+                for (Identifier textureId : sizes.keySet()) {
+                    byte[] png = TextureManager.getInstance().readResourceBytes(textureId, null);
+                    if (png != null) read.put(textureId, png);
+                }
+                return read;
+            }, MinecraftClient.getInstance()).get(LOCAL_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Map.of();
+        } catch (ExecutionException | TimeoutException e) {
+            return Map.of();
+        }
+
+        Map<Identifier, int[]> originals = new HashMap<>();
+        files.forEach((textureId, png) -> {
+            int[] size = sizes.get(textureId);
+            int[][] pixels = TextureManager.decodeResourcePixels(png, size[0], size[1]);
+            if (pixels != null) originals.put(textureId, toFlat(pixels, size[0], size[1]));
+        });
+        return originals;
+    }
+
+    /**
+     * Queue synced pixels for upload, converted here on the decode thread: to columns, and
+     * nearest-neighbour scaled if the texture has a different size locally (e.g. another pack).
+     * Atlas sprites upload under the texture path of their sprite id.
+     *
+     * @param originals row-major originals to store, or null
+     */
+    private void show(Identifier textureId, Identifier spriteId, int[] pixels, int[] originals, int width, int height) {
+        Identifier target = spriteId != null
+                ? Identifier.of(spriteId.getNamespace(), "textures/" + spriteId.getPath() + ".png")
+                : textureId;
+        int[] local = TextureManager.getInstance().getDimensions(target);
+        int lw = local != null ? local[0] : width;
+        int lh = local != null ? local[1] : height;
+        uploads.post(new TextureManager.LiveUpload(target, toColumns(pixels, width, height, lw, lh), lw, lh,
+                originals != null ? toColumns(originals, width, height, lw, lh) : null), decodeGeneration);
+    }
+
+    private static int[][] toColumns(int[] flat, int width, int height, int toWidth, int toHeight) {
+        int[][] pixels = new int[toWidth][toHeight];
+        if (toWidth == width && toHeight == height) {
+            for (int x = 0; x < width; x++)
+                for (int y = 0; y < height; y++)
+                    pixels[x][y] = flat[y * width + x];
+            return pixels;
+        }
+        for (int x = 0; x < toWidth; x++)
+            for (int y = 0; y < toHeight; y++)
+                pixels[x][y] = flat[((int) (y * height / (float) toHeight)) * width + (int) (x * width / (float) toWidth)];
+        return pixels;
+    }
+
+    private static int[] toFlat(int[][] pixels, int width, int height) {
+        int[] flat = new int[width * height];
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++)
+                flat[y * width + x] = pixels[x][y];
+        return flat;
+    }
+}
@@ -8,12 +8,14 @@ import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.texture.NativeImage;
 import net.minecraft.util.Identifier;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Loads animated item texture data from resource packs (png + .mcmeta).
+ * Loads animated item texture data from resource packs (png + .mcmeta). Edits served by the
+ * runtime pack don't count; they're in the texture manager already.
  */
 public final class ItemAnimationResourceLoader {
 
@@ -28,12 +30,26 @@ public final class ItemAnimationResourceLoader {
         if (client == null || client.getResourceManager() == null) return null;
 
         Identifier mcmetaId = Identifier.of(textureId.getNamespace(), textureId.getPath() + ".mcmeta");
-        JsonObject animation = readAnimationObject(client, mcmetaId);
+        JsonObject animation = readAnimationObject(mcmetaId);
         if (animation == null) return null;
 
-        try (InputStream pngStream = client.getResourceManager().getResource(textureId).orElseThrow().getInputStream();
-             NativeImage image = NativeImage.read(pngStream)) {
+        byte[] png = LiveRuntimePackManager.getInstance().readOriginal(textureId, null);
+        if (png == null) return null;
+        try (NativeImage image = NativeImage.read(png)) {
+            return fromSheet(image, animation);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
 
+    /**
+     * Split a vertical frame sheet according to its mcmeta {@code animation} object.
+     * Safe to call off the render thread.
+     *
+     * @return the frames in playback order, or null if the sheet isn't a valid animation
+     */
+    static LoadedAnimation fromSheet(NativeImage image, JsonObject animation) {
+        try {
             int width = image.getWidth();
             int frameHeight = width;
             if (animation.has("height") && animation.get("height").isJsonPrimitive()) {
@@ -79,8 +95,21 @@ public final class ItemAnimationResourceLoader {
         }
     }
 
-    private static JsonObject readAnimationObject(MinecraftClient client, Identifier mcmetaId) {
-        try (InputStream mcmetaStream = client.getResourceManager().getResource(mcmetaId).orElseThrow().getInputStream()) {
+    private static JsonObject readAnimationObject(Identifier mcmetaId) {
+        byte[] mcmeta = LiveRuntimePackManager.getInstance().readOriginal(mcmetaId, null);
+        if (mcmeta == null) return null;
+        try (InputStream mcmetaStream = new ByteArrayInputStream(mcmeta)) {
+            return readAnimationObject(mcmetaStream);
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the {@code animation} object of an .mcmeta file, or null if it has none.
+     */
+    static JsonObject readAnimationObject(InputStream mcmetaStream) {
+        try {
             JsonElement root = JsonParser.parseReader(new java.io.InputStreamReader(mcmetaStream));
             if (!root.isJsonObject()) return null;
             JsonObject obj = root.getAsJsonObject();
@@ -91,6 +120,21 @@ public final class ItemAnimationResourceLoader {
         }
     }
 
+    /**
+     * Whether the frame order is the forward-then-back sequence the exporter writes for ping-pong
+     * animations ({@code 0..n-1, n-2..1}).
+     */
+    static boolean isPingPongOrder(JsonObject animation, int sheetFrames) {
+        if (sheetFrames <= 2) return false;
+        List<Integer> order = parseFrameOrder(animation, sheetFrames);
+        if (order.size() != sheetFrames * 2 - 2) return false;
+        for (int i = 0; i < order.size(); i++) {
+            int expected = i < sheetFrames ? i : sheetFrames * 2 - 2 - i;
+            if (order.get(i) != expected) return false;
+        }
+        return true;
+    }
+
     private static List<Integer> parseFrameOrder(JsonObject animation, int maxFrameIndexExclusive) {
         List<Integer> out = new ArrayList<>();
         if (!animation.has("frames") || !animation.get("frames").isJsonArray()) return out;
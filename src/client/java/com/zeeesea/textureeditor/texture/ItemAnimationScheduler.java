@@ -0,0 +1,112 @@
+package com.zeeesea.textureeditor.texture;
+
+import net.minecraft.client.render.item.model.BasicItemModel;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which animated item sprites were actually rendered recently, so live animations
+ * whose item isn't on screen (hotbar, hand, inventory, item frame, ...) stop uploading frames.
+ *
+ * Every rendered item goes through {@code BasicItemModel.update}; a mixin reports those calls here.
+ * Only models that use a currently animated sprite are watched, so the per-item cost of an
+ * unwatched model is a single identity map lookup.
+ */
+public class ItemAnimationScheduler {
+    private static final ItemAnimationScheduler INSTANCE = new ItemAnimationScheduler();
+
+    // A sprite counts as visible for this many ticks after it was last rendered
+    private static final int VISIBLE_GRACE_TICKS = 10;
+    // Re-resolve the models of sprites that have been hidden this long (models change on resource reload)
+    private static final int REWATCH_INTERVAL_TICKS = 100;
+
+    private final Map<BasicItemModel, List<Identifier>> watchedModels = new IdentityHashMap<>();
+    private final Map<Identifier, Watch> watches = new HashMap<>();
+    private long currentTick = 0;
+
+    private static final class Watch {
+        private final List<BasicItemModel> models = new ArrayList<>();
+        private long lastSampledTick = Long.MIN_VALUE / 2;
+        private long lastResolvedTick;
+    }
+
+    private ItemAnimationScheduler() {}
+
+    public static ItemAnimationScheduler getInstance() { return INSTANCE; }
+
+    /**
+     * Called from the BasicItemModel mixin every time an item model is prepared for rendering.
+     */
+    public void onModelSampled(BasicItemModel model) {
+        if (watchedModels.isEmpty()) return;
+        List<Identifier> sprites = watchedModels.get(model);
+        if (sprites == null) return;
+        for (Identifier spriteId : sprites) {
+            Watch watch = watches.get(spriteId);
+            if (watch != null) watch.lastSampledTick = currentTick;
+        }
+    }
+
+    void beginTick() {
+        currentTick++;
+    }
+
+    /**
+     * Whether frames for this sprite should be uploaded this tick. Sprites that aren't backed by a
+     * known item model (e.g. only used by block models) are always considered visible.
+     */
+    boolean isVisible(Identifier spriteId) {
+        Watch watch = watches.get(spriteId);
+        if (watch == null) {
+            watch = resolve(spriteId);
+        } else if (currentTick - watch.lastSampledTick > REWATCH_INTERVAL_TICKS
+                && currentTick - watch.lastResolvedTick > REWATCH_INTERVAL_TICKS) {
+            unwatchModels(spriteId, watch);
+            watch = resolve(spriteId);
+        }
+        if (watch.models.isEmpty()) return true;
+        return currentTick - watch.lastSampledTick <= VISIBLE_GRACE_TICKS;
+    }
+
+    void unwatch(Identifier spriteId) {
+        Watch watch = watches.remove(spriteId);
+        if (watch != null) unwatchModels(spriteId, watch);
+    }
+
+    void clear() {
+        watches.clear();
+        watchedModels.clear();
+    }
+
+    private Watch resolve(Identifier spriteId) {
+        Watch watch = new Watch();
+        watch.lastResolvedTick = currentTick;
+        // Treat a freshly watched sprite as visible so the first frame is never held back
+        watch.lastSampledTick = currentTick;
+        try {
+            watch.models.addAll(ItemModelRebaker.getModelsForSprite(spriteId));
+        } catch (Exception e) {
+            System.out.println("[TextureEditor] ItemAnimationScheduler: Failed to resolve models for " + spriteId + ": " + e.getMessage());
+        }
+        for (BasicItemModel model : watch.models) {
+            watchedModels.computeIfAbsent(model, k -> new ArrayList<>(1)).add(spriteId);
+        }
+        watches.put(spriteId, watch);
+        return watch;
+    }
+
+    private void unwatchModels(Identifier spriteId, Watch watch) {
+        for (BasicItemModel model : watch.models) {
+            List<Identifier> sprites = watchedModels.get(model);
+            if (sprites == null) continue;
+            sprites.remove(spriteId);
+            if (sprites.isEmpty()) watchedModels.remove(model);
+        }
+        watch.models.clear();
+    }
+}
@@ -3,22 +3,29 @@ package com.zeeesea.textureeditor.texture;
 import com.google.common.base.Suppliers;
 import com.zeeesea.textureeditor.mixin.client.BasicItemModelAccessor;
 import com.zeeesea.textureeditor.mixin.client.BakedModelManagerAccessor;
+import com.zeeesea.textureeditor.mixin.client.SpriteContentsAccessor;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.item.model.BasicItemModel;
 import net.minecraft.client.render.item.model.ItemModel;
 import net.minecraft.client.render.model.*;
 import net.minecraft.client.render.model.json.GeneratedItemModel;
+import net.minecraft.client.texture.NativeImage;
 import net.minecraft.client.texture.Sprite;
 import net.minecraft.client.texture.SpriteAtlasTexture;
+import net.minecraft.client.texture.SpriteContents;
 import net.minecraft.client.util.SpriteIdentifier;
 import net.minecraft.util.Identifier;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Rebakes item models after texture edits to update the 3D thickness quads.
@@ -33,23 +40,41 @@ public class ItemModelRebaker {
     // Cache mapping spriteId -> BasicItemModel instances that use that sprite
     // Built lazily on first rebake to avoid scanning all models every time
     private static Map<Identifier, List<BasicItemModel>> spriteToItemModels = null;
+    // Sprites each indexed model currently uses, so the index can be patched after a rebake
+    private static Map<BasicItemModel, Set<Identifier>> modelToSprites = null;
+    // Indexed models with flat generated geometry; only those are rebaked
+    private static Set<BasicItemModel> generatedModels = null;
+    // The bakedItemModels map the index was built from; a resource reload replaces that map
+    private static WeakReference<Map<Identifier, ItemModel>> indexedSource = new WeakReference<>(null);
+
+    // Depth range of the generated item slab (z = 7.5/16 .. 8.5/16), with some float slack
+    private static final float GENERATED_MIN_Z = 7.5f / 16f - 1.0e-4f;
+    private static final float GENERATED_MAX_Z = 8.5f / 16f + 1.0e-4f;
+
+    // Per-class reflective fields that can lead to nested item models (static and primitive fields skipped)
+    private static final Map<Class<?>, Field[]> MODEL_FIELDS = new ConcurrentHashMap<>();
+
+    // Quad generation runs here; only the final quad swap happens on the render thread
+    private static final ExecutorService REBAKE_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TextureEditor-Rebake");
+        t.setDaemon(true);
+        return t;
+    });
+    // Latest requested rebake per model, whichever of its sprites it was for; results of older
+    // requests are dropped. Models are compared by identity and replaced on every resource reload
+    private static final Map<BasicItemModel, Integer> rebakeGenerations = new ConcurrentHashMap<>();
+    // Opaque masks of the sprites a worker bake reads, snapshotted on the render thread
+    private static final ThreadLocal<Map<SpriteContents, OpaqueMask>> BAKE_MASKS = new ThreadLocal<>();
 
     /**
      * Rebake all item models that reference the given sprite.
      * Must be called on the render thread after the sprite's NativeImage has been updated.
+     * The new quads are generated on a worker thread and swapped in on the render thread
+     * once ready, so this call doesn't stall a frame (animation strips are still baked inline).
      *
      * @param spriteId The sprite identifier (e.g. minecraft:item/diamond_sword)
      */
     public static void rebake(Identifier spriteId) {
-        // Only rebake for item sprites (item/diamond_sword, etc.)
-        // Block sprites (block/stone, block/grass_block_top, etc.) must NOT be rebaked
-        // because block items use 3D cube models, not flat GeneratedItemModel geometry.
-        // Rebaking a block sprite with GeneratedItemModel would turn the 3D block into a 1px flat sheet.
-        String path = spriteId.getPath();
-        if (!path.startsWith("item/")) {
-            return;
-        }
-
         MinecraftClient client = MinecraftClient.getInstance();
         if (client == null || client.getBakedModelManager() == null) return;
 
@@ -64,30 +89,14 @@ public class ItemModelRebaker {
 
         if (bakedItemModels == null || bakedItemModels.isEmpty()) return;
 
-        // Build reverse index if not cached yet
-        if (spriteToItemModels == null) {
-            buildReverseIndex(bakedItemModels);
-        }
+        // Only flat generated models are rebaked: the same sprite on a 3D block item model (stone,
+        // grass_block_top...) must keep its cube, not turn into a 1px flat sheet
+        List<BasicItemModel> affectedModels = findGeneratedModels(spriteId, bakedItemModels);
 
-        // Find item models that use this sprite
-        List<BasicItemModel> affectedModels = spriteToItemModels.get(spriteId);
-        if (affectedModels == null || affectedModels.isEmpty()) {
-            // Sprite not found in cache - might be a new mapping, rebuild and retry
-            buildReverseIndex(bakedItemModels);
-            affectedModels = spriteToItemModels.get(spriteId);
-            if ((affectedModels == null || affectedModels.isEmpty()) && spriteId.getPath().endsWith("_in_hand")) {
-                // Some in-hand models keep quads indexed by the base sprite; use that as fallback.
-                Identifier baseSpriteId = Identifier.of(spriteId.getNamespace(), spriteId.getPath().replace("_in_hand", ""));
-                List<BasicItemModel> baseModels = spriteToItemModels.get(baseSpriteId);
-                if (baseModels != null && !baseModels.isEmpty()) {
-                    affectedModels = baseModels;
-                    System.out.println("[TextureEditor] ItemModelRebaker: Using base sprite fallback " + baseSpriteId + " for " + spriteId);
-                }
+        if (affectedModels.isEmpty()) {
+            if (spriteId.getPath().startsWith("item/")) {
+                System.out.println("[TextureEditor] ItemModelRebaker: No item models found for sprite " + spriteId);
             }
-        }
-
-        if (affectedModels == null || affectedModels.isEmpty()) {
-            System.out.println("[TextureEditor] ItemModelRebaker: No item models found for sprite " + spriteId);
             return;
         }
 
@@ -98,34 +107,148 @@ public class ItemModelRebaker {
         }
     }
 
+    /**
+     * The baked item model map currently in use; a resource reload replaces it with a new instance.
+     */
+    static Map<Identifier, ItemModel> getBakedItemModels() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.getBakedModelManager() == null) return null;
+        try {
+            return ((BakedModelManagerAccessor) client.getBakedModelManager()).getBakedItemModels();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Look up the basic item models whose quads use the given sprite, without rebaking anything.
+     * Returns an empty list if the baked models aren't available yet.
+     */
+    public static List<BasicItemModel> getModelsForSprite(Identifier spriteId) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client == null || client.getBakedModelManager() == null) return List.of();
+        Map<Identifier, ItemModel> bakedItemModels;
+        try {
+            bakedItemModels = ((BakedModelManagerAccessor) client.getBakedModelManager()).getBakedItemModels();
+        } catch (Exception e) {
+            return List.of();
+        }
+        if (bakedItemModels == null || bakedItemModels.isEmpty()) return List.of();
+        List<BasicItemModel> models = findAffectedModels(spriteId, bakedItemModels);
+        return models != null ? List.copyOf(models) : List.of();
+    }
+
+    /**
+     * Whether any item model draws this sprite with flat generated geometry (item/generated,
+     * item/handheld...), i.e. whether its opaque shape matters to a rebake. This includes block
+     * sprites used as item layers, like torches, flowers and rails.
+     */
+    public static boolean usesGeneratedModel(Identifier spriteId) {
+        Map<Identifier, ItemModel> bakedItemModels = getBakedItemModels();
+        if (bakedItemModels == null || bakedItemModels.isEmpty()) return false;
+        return !findGeneratedModels(spriteId, bakedItemModels).isEmpty();
+    }
+
+    private static List<BasicItemModel> findGeneratedModels(Identifier spriteId, Map<Identifier, ItemModel> bakedItemModels) {
+        List<BasicItemModel> models = findAffectedModels(spriteId, bakedItemModels);
+        if (models == null || models.isEmpty()) return List.of();
+        List<BasicItemModel> generated = new ArrayList<>(models.size());
+        for (BasicItemModel model : models) {
+            if (generatedModels.contains(model)) generated.add(model);
+        }
+        return generated;
+    }
+
+    private static List<BasicItemModel> findAffectedModels(Identifier spriteId, Map<Identifier, ItemModel> bakedItemModels) {
+        // Build the reverse index once per resource reload (a reload swaps in a new bakedItemModels map)
+        if (spriteToItemModels == null || indexedSource.get() != bakedItemModels) {
+            buildReverseIndex(bakedItemModels);
+        }
+
+        // Find item models that use this sprite
+        List<BasicItemModel> affectedModels = spriteToItemModels.get(spriteId);
+        if ((affectedModels == null || affectedModels.isEmpty()) && spriteId.getPath().endsWith("_in_hand")) {
+            // Some in-hand models keep quads indexed by the base sprite; use that as fallback.
+            Identifier baseSpriteId = Identifier.of(spriteId.getNamespace(), spriteId.getPath().replace("_in_hand", ""));
+            List<BasicItemModel> baseModels = spriteToItemModels.get(baseSpriteId);
+            if (baseModels != null && !baseModels.isEmpty()) {
+                affectedModels = baseModels;
+                System.out.println("[TextureEditor] ItemModelRebaker: Using base sprite fallback " + baseSpriteId + " for " + spriteId);
+            }
+        }
+        return affectedModels;
+    }
+
     /**
      * Build a reverse index: sprite ID -> list of item model IDs that use it.
      */
     private static void buildReverseIndex(Map<Identifier, ItemModel> bakedItemModels) {
         spriteToItemModels = new HashMap<>();
+        modelToSprites = new IdentityHashMap<>();
+        generatedModels = Collections.newSetFromMap(new IdentityHashMap<>());
+        indexedSource = new WeakReference<>(bakedItemModels);
         Set<BasicItemModel> discovered = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
 
         for (ItemModel model : bakedItemModels.values()) {
-            collectBasicModels(model, discovered, Collections.newSetFromMap(new IdentityHashMap<>()));
+            collectBasicModels(model, discovered, visited);
         }
 
         for (BasicItemModel basicModel : discovered) {
-            BasicItemModelAccessor accessor = (BasicItemModelAccessor) basicModel;
-            List<BakedQuad> quads = accessor.getQuads();
-            if (quads == null) continue;
-
-            Set<Identifier> seenSprites = new HashSet<>();
-            for (BakedQuad quad : quads) {
-                if (quad.sprite() != null) {
-                    Identifier sid = quad.sprite().getContents().getId();
-                    if (seenSprites.add(sid)) {
-                        spriteToItemModels.computeIfAbsent(sid, k -> new ArrayList<>()).add(basicModel);
-                    }
+            indexModel(basicModel, ((BasicItemModelAccessor) basicModel).getQuads());
+        }
+
+        System.out.println("[TextureEditor] ItemModelRebaker: Built reverse index with " + spriteToItemModels.size() + " sprite entries and " + discovered.size() + " basic models");
+    }
+
+    private static void indexModel(BasicItemModel model, List<BakedQuad> quads) {
+        if (quads == null) return;
+        Set<Identifier> seenSprites = new HashSet<>();
+        for (BakedQuad quad : quads) {
+            if (quad.sprite() != null) {
+                Identifier sid = quad.sprite().getContents().getId();
+                if (seenSprites.add(sid)) {
+                    spriteToItemModels.computeIfAbsent(sid, k -> new ArrayList<>()).add(model);
                 }
             }
         }
+        modelToSprites.put(model, seenSprites);
+        if (isGeneratedGeometry(quads)) {
+            generatedModels.add(model);
+        } else {
+            generatedModels.remove(model);
+        }
+    }
 
-        System.out.println("[TextureEditor] ItemModelRebaker: Built reverse index with " + spriteToItemModels.size() + " sprite entries and " + discovered.size() + " basic models");
+    /**
+     * Whether quads are the flat slab GeneratedItemModel bakes, which lies between z = 7.5/16 and
+     * 8.5/16, as opposed to block or custom element geometry drawn with the same sprites.
+     */
+    private static boolean isGeneratedGeometry(List<BakedQuad> quads) {
+        if (quads.isEmpty()) return false;
+        for (BakedQuad quad : quads) {
+            for (Vector3fc pos : new Vector3fc[]{quad.position0(), quad.position1(), quad.position2(), quad.position3()}) {
+                if (pos.z() < GENERATED_MIN_Z || pos.z() > GENERATED_MAX_Z) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Patch the reverse index after a model's quads were replaced, instead of rescanning every model.
+     */
+    private static void reindexModel(BasicItemModel model, List<BakedQuad> newQuads) {
+        if (spriteToItemModels == null || modelToSprites == null) return;
+        Set<Identifier> previous = modelToSprites.remove(model);
+        if (previous != null) {
+            for (Identifier sid : previous) {
+                List<BasicItemModel> models = spriteToItemModels.get(sid);
+                if (models == null) continue;
+                models.remove(model);
+                if (models.isEmpty()) spriteToItemModels.remove(sid);
+            }
+        }
+        indexModel(model, newQuads);
     }
 
     private static void collectBasicModels(Object node, Set<BasicItemModel> out, Set<Object> visited) {
@@ -137,10 +260,7 @@ public class ItemModelRebaker {
 
         Class<?> cls = node.getClass();
         while (cls != null && cls != Object.class) {
-            Field[] fields = cls.getDeclaredFields();
-            for (Field field : fields) {
-                if (Modifier.isStatic(field.getModifiers())) continue;
-                field.setAccessible(true);
+            for (Field field : MODEL_FIELDS.computeIfAbsent(cls, ItemModelRebaker::findModelFields)) {
                 try {
                     Object value = field.get(node);
                     if (value == null) continue;
@@ -169,8 +289,33 @@ public class ItemModelRebaker {
         }
     }
 
+    /**
+     * Fields of a single class (not its superclasses) that may hold item models, made accessible once.
+     */
+    private static Field[] findModelFields(Class<?> cls) {
+        List<Field> out = new ArrayList<>();
+        for (Field field : cls.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) continue;
+            Class<?> type = field.getType();
+            if (type.isPrimitive()) continue;
+            boolean candidate = ItemModel.class.isAssignableFrom(type)
+                    || type.isAssignableFrom(ItemModel.class)
+                    || Iterable.class.isAssignableFrom(type)
+                    || (type.isArray() && !type.getComponentType().isPrimitive());
+            if (!candidate) continue;
+            try {
+                field.setAccessible(true);
+                out.add(field);
+            } catch (Throwable ignored) {
+            }
+        }
+        return out.toArray(new Field[0]);
+    }
+
     /**
      * Rebake a single BasicItemModel by regenerating quads from the updated sprite.
+     * Sprites are resolved and their opaque masks snapshotted here on the render thread; the geometry
+     * bake runs on the rebake worker against those snapshots, never the live sprite images.
      */
     private static void rebakeBasicItemModel(BasicItemModel model, Identifier spriteId) {
         BasicItemModelAccessor accessor = (BasicItemModelAccessor) model;
@@ -183,21 +328,123 @@ public class ItemModelRebaker {
             System.out.println("[TextureEditor] ItemModelRebaker: Could not find sprite " + spriteId + " in any atlas");
             return;
         }
+        // Also supersedes bakes of the model still running for its other layers
+        int generation = rebakeGenerations.merge(model, 1, Integer::sum);
+
+        // Items typically have layer0 = the sprite, and optionally more layers
+        // We need to figure out which layers this model uses
+        Set<Identifier> usedSprites = new LinkedHashSet<>();
+        for (BakedQuad quad : oldQuads) {
+            if (quad.sprite() != null) {
+                usedSprites.add(quad.sprite().getContents().getId());
+            }
+        }
+        Map<Identifier, Sprite> resolvedSprites = new HashMap<>();
+        for (Identifier sid : usedSprites) {
+            Sprite found = findSprite(sid);
+            if (found != null) resolvedSprites.put(sid, found);
+        }
+        int oldQuadCount = oldQuads.size();
+
+        // The render thread keeps writing the sprite images and a reload closes them, so the
+        // worker only gets copies of what the bake reads from them
+        Map<SpriteContents, OpaqueMask> masks = new IdentityHashMap<>();
+        List<Sprite> bakeSprites = new ArrayList<>(resolvedSprites.values());
+        bakeSprites.add(sprite);
+        for (Sprite s : bakeSprites) {
+            OpaqueMask mask = snapshotMask(s);
+            if (mask == null) {
+                masks = null;
+                break;
+            }
+            masks.put(s.getContents(), mask);
+        }
+        if (masks == null) {
+            // Animation strips: only vanilla knows their frame layout, so bake them right here
+            swapQuads(model, bakeQuads(spriteId, sprite, usedSprites, resolvedSprites), spriteId, oldQuadCount);
+            return;
+        }
+
+        Map<SpriteContents, OpaqueMask> snapshot = masks;
+        REBAKE_EXECUTOR.execute(() -> {
+            if (rebakeGenerations.getOrDefault(model, 0) != generation) return;
+            List<BakedQuad> newQuads;
+            BAKE_MASKS.set(snapshot);
+            try {
+                newQuads = bakeQuads(spriteId, sprite, usedSprites, resolvedSprites);
+            } finally {
+                BAKE_MASKS.remove();
+            }
+            if (newQuads == null || newQuads.isEmpty()) return;
+
+            MinecraftClient.getInstance().execute(() -> {
+                // A newer edit already queued another rebake; its quads will replace these anyway
+                if (rebakeGenerations.getOrDefault(model, 0) != generation) return;
+                swapQuads(model, newQuads, spriteId, oldQuadCount);
+            });
+        });
+    }
 
+    /**
+     * Install rebaked quads on the render thread.
+     */
+    private static void swapQuads(BasicItemModel model, List<BakedQuad> newQuads, Identifier spriteId, int oldQuadCount) {
+        if (newQuads == null || newQuads.isEmpty()) return;
+        BasicItemModelAccessor accessor = (BasicItemModelAccessor) model;
+        // Replace quads and vector together so a frame never sees a half-swapped model
+        accessor.setQuads(newQuads);
+        accessor.setVector(Suppliers.memoize(() -> BasicItemModel.bakeQuads(newQuads)));
+        reindexModel(model, newQuads);
+
+        System.out.println("[TextureEditor] ItemModelRebaker: Rebaked model with " + newQuads.size() +
+            " quads (was " + oldQuadCount + ") for sprite " + spriteId);
+    }
+
+    /**
+     * Copy which pixels of a single-frame sprite are opaque, from its CPU image. Returns null for
+     * animation strips and sprites without a readable image.
+     */
+    private static OpaqueMask snapshotMask(Sprite sprite) {
+        SpriteContents contents = sprite.getContents();
+        NativeImage image = ((SpriteContentsAccessor) contents).getImage();
+        int w = contents.getWidth();
+        int h = contents.getHeight();
+        if (image == null || image.getWidth() != w || image.getHeight() != h) return null;
+        try {
+            int[][] pixels = new int[w][h];
+            for (int x = 0; x < w; x++) {
+                for (int y = 0; y < h; y++) {
+                    pixels[x][y] = image.getColorArgb(x, y);
+                }
+            }
+            return OpaqueMask.of(pixels, w, h);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * The snapshotted mask the current rebake worker bake reads instead of a sprite's image, or null
+     * outside of one. Used by the SpriteContents mixin.
+     */
+    public static OpaqueMask getBakeMask(SpriteContents contents) {
+        Map<SpriteContents, OpaqueMask> masks = BAKE_MASKS.get();
+        return masks != null ? masks.get(contents) : null;
+    }
+
+    /**
+     * Generate GeneratedItemModel quads for the given layer sprites. Runs on the rebake worker and
+     * must not touch the texture manager or atlases; all sprites are resolved up front, and their
+     * transparency comes from {@link #BAKE_MASKS}.
+     */
+    private static List<BakedQuad> bakeQuads(Identifier spriteId, Sprite sprite, Set<Identifier> usedSprites,
+                                             Map<Identifier, Sprite> resolvedSprites) {
         try {
-            // Create a minimal Baker that returns sprites from the atlas
-            MinimalBaker baker = new MinimalBaker(sprite, spriteId);
+            // Create a minimal Baker that returns the pre-resolved atlas sprites
+            MinimalBaker baker = new MinimalBaker(sprite, spriteId, resolvedSprites);
 
             // Build ModelTextures for the generated item model
-            // Items typically have layer0 = the sprite, and optionally more layers
-            // We need to figure out which layers this model uses
             Map<String, SpriteIdentifier> texMap = new HashMap<>();
-            Set<Identifier> usedSprites = new LinkedHashSet<>();
-            for (BakedQuad quad : oldQuads) {
-                if (quad.sprite() != null) {
-                    usedSprites.add(quad.sprite().getContents().getId());
-                }
-            }
 
             // Map layers to sprites
             int layerIdx = 0;
@@ -221,19 +468,11 @@ public class ItemModelRebaker {
             SimpleModel dummyModel = () -> "textureeditor:rebake/" + spriteId;
 
             BakedGeometry bakedGeometry = geometry.bake(modelTextures, baker, ModelRotation.IDENTITY, dummyModel);
-            List<BakedQuad> newQuads = bakedGeometry.getAllQuads();
-
-            if (newQuads != null && !newQuads.isEmpty()) {
-                // Replace quads and vector
-                accessor.setQuads(newQuads);
-                accessor.setVector(Suppliers.memoize(() -> BasicItemModel.bakeQuads(newQuads)));
-
-                System.out.println("[TextureEditor] ItemModelRebaker: Rebaked model with " + newQuads.size() +
-                    " quads (was " + oldQuads.size() + ") for sprite " + spriteId);
-            }
+            return bakedGeometry.getAllQuads();
         } catch (Exception e) {
             System.out.println("[TextureEditor] ItemModelRebaker: Failed to rebake model for " + spriteId + ": " + e.getMessage());
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -274,6 +513,10 @@ public class ItemModelRebaker {
      */
     public static void invalidateCache() {
         spriteToItemModels = null;
+        modelToSprites = null;
+        generatedModels = null;
+        indexedSource = new WeakReference<>(null);
+        rebakeGenerations.clear();
     }
 
     /**
@@ -283,12 +526,14 @@ public class ItemModelRebaker {
     private static class MinimalBaker implements Baker {
         private final Sprite primarySprite;
         private final Identifier primarySpriteId;
+        private final Map<Identifier, Sprite> resolvedSprites;
         private final ErrorCollectingSpriteGetter spriteGetter;
         private final Vec3fInterner interner;
 
-        MinimalBaker(Sprite primarySprite, Identifier primarySpriteId) {
+        MinimalBaker(Sprite primarySprite, Identifier primarySpriteId, Map<Identifier, Sprite> resolvedSprites) {
             this.primarySprite = primarySprite;
             this.primarySpriteId = primarySpriteId;
+            this.resolvedSprites = resolvedSprites;
             this.spriteGetter = new MinimalSpriteGetter();
             this.interner = vec -> vec; // Simple passthrough, no interning needed for rebake
         }
@@ -319,13 +564,13 @@ public class ItemModelRebaker {
         }
 
         /**
-         * Sprite getter that resolves sprites from the live atlases.
+         * Sprite getter that serves sprites resolved from the live atlases before the bake started.
          */
         private class MinimalSpriteGetter implements ErrorCollectingSpriteGetter {
             @Override
             public Sprite get(SpriteIdentifier id, SimpleModel model) {
                 Identifier textureId = id.getTextureId();
-                Sprite found = findSprite(textureId);
+                Sprite found = resolvedSprites.get(textureId);
                 if (found != null) return found;
 
                 // Fallback: return primary sprite
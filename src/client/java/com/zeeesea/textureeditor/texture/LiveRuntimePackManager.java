@@ -0,0 +1,307 @@
+package com.zeeesea.textureeditor.texture;
+
+import com.zeeesea.textureeditor.settings.ModPackSettings;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.resource.InputSupplier;
+import net.minecraft.resource.ResourcePack;
+import net.minecraft.resource.ResourcePackInfo;
+import net.minecraft.resource.ResourcePackSource;
+import net.minecraft.resource.ResourceReload;
+import net.minecraft.resource.ResourceType;
+import net.minecraft.resource.metadata.ResourceMetadataSerializer;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the editor's current textures to the resource manager as an in-memory resource pack.
+ *
+ * The pack is appended on top of the pack list of every client resource reload (see
+ * ReloadableResourceManagerImplMixin), so F3+T and pack changes stitch the edited textures into
+ * the new atlases instead of dropping them. Each reload works on a snapshot of the edits taken
+ * when it starts. PNG bytes are encoded lazily when the reload first opens a texture and are
+ * cached per texture version, so unchanged textures are never encoded twice.
+ */
+public class LiveRuntimePackManager {
+    private static final LiveRuntimePackManager INSTANCE = new LiveRuntimePackManager();
+
+    private static final String PACK_ID = "textureeditor_runtime";
+    // Served PNGs are decoded again right away, so favour encoding speed over size
+    private static final PngEncoder.Options SERVE_OPTIONS =
+            new PngEncoder.Options(PngEncoder.ColorMode.RGBA, PngEncoder.FilterHeuristic.NONE, 1);
+
+    // Encoded PNG of each served texture, keyed by texture id; stale once the texture version moves on
+    private final Map<Identifier, EncodedTexture> encodedCache = new ConcurrentHashMap<>();
+    // Snapshot of the reload in progress, and of the last reload that finished
+    private Snapshot pending;
+    private Snapshot active;
+
+    private record EncodedTexture(long version, byte[] png, OpaqueMask mask) {}
+
+    /**
+     * One texture as of the snapshot. Pixels are copied when the snapshot is taken and dropped
+     * once encoded; textures already encoded at this version carry their cached bytes instead.
+     */
+    private final class ServedTexture {
+        private final Identifier textureId;
+        private final long version;
+        private final int width;
+        private final int height;
+        private final byte[] mcmeta;
+        private final OpaqueMask mask;
+        private List<int[][]> frames;
+        private byte[] png;
+
+        private ServedTexture(Identifier textureId, long version, List<int[][]> frames, int width, int height,
+                              byte[] mcmeta, OpaqueMask mask, byte[] png) {
+            this.textureId = textureId;
+            this.version = version;
+            this.frames = frames;
+            this.width = width;
+            this.height = height;
+            this.mcmeta = mcmeta;
+            this.mask = mask;
+            this.png = png;
+        }
+
+        private synchronized byte[] png() {
+            if (png != null) return png;
+            List<int[][]> sheet = frames;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                PngEncoder.encode(out, width, height * sheet.size(),
+                        (x, y) -> sheet.get(y / height)[x][y % height], SERVE_OPTIONS);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            png = out.toByteArray();
+            frames = null;
+            encodedCache.put(textureId, new EncodedTexture(version, png, mask));
+            return png;
+        }
+    }
+
+    /**
+     * Textures served by one reload, keyed by resource id (PNG path; mcmeta is resolved through it).
+     */
+    private record Snapshot(Map<Identifier, ServedTexture> textures, Set<String> namespaces) {}
+
+    private LiveRuntimePackManager() {}
+
+    public static LiveRuntimePackManager getInstance() { return INSTANCE; }
+
+    /**
+     * Called on the render thread when a client resource reload starts.
+     * @return the pack list with the runtime pack on top, or {@code packs} if there's nothing to serve
+     */
+    public List<ResourcePack> appendTo(List<ResourcePack> packs) {
+        if (!ModPackSettings.getInstance().runtimePackEnabled) {
+            pending = null;
+            return packs;
+        }
+        Snapshot snapshot = takeSnapshot();
+        pending = snapshot;
+        if (snapshot.textures().isEmpty()) return packs;
+
+        List<ResourcePack> withRuntime = new ArrayList<>(packs.size() + 1);
+        withRuntime.addAll(packs);
+        withRuntime.add(new RuntimePack(snapshot));
+        System.out.println("[TextureEditor] Runtime pack serving " + snapshot.textures().size() + " texture(s)");
+        return withRuntime;
+    }
+
+    /**
+     * Called on the render thread with the reload started by the last {@link #appendTo} call.
+     * Once it finishes, the texture manager also drops GPU state made for the old atlases.
+     */
+    public void trackReload(ResourceReload reload) {
+        Snapshot snapshot = pending;
+        MinecraftClient client = MinecraftClient.getInstance();
+        reload.whenComplete().whenComplete((result, error) -> client.execute(() -> {
+            TextureManager.getInstance().onResourcesReloaded();
+            if (pending != snapshot) return;
+            pending = null;
+            // A failed reload keeps the previous atlases, and with them the previous snapshot
+            if (error == null) active = snapshot;
+        }));
+    }
+
+    /**
+     * Opaque mask of what the current atlases were stitched from for this texture, if the
+     * runtime pack served it in the last reload.
+     */
+    public OpaqueMask getBakedMask(Identifier textureId) {
+        Snapshot snapshot = active;
+        if (snapshot == null) return null;
+        ServedTexture served = snapshot.textures().get(textureId);
+        return served != null ? served.mask : null;
+    }
+
+    /**
+     * Whether the current atlases animate this texture themselves, because the last reload
+     * served its animation and it hasn't changed since.
+     */
+    public boolean isAnimatedNatively(Identifier textureId) {
+        Snapshot snapshot = active;
+        if (snapshot == null) return false;
+        ServedTexture served = snapshot.textures().get(textureId);
+        return served != null && served.mcmeta != null
+                && served.version == TextureManager.getInstance().getTextureVersion(textureId);
+    }
+
+    /**
+     * A resource as the packs below the runtime pack provide it, i.e. the original of an edited
+     * texture, or null if none of them has it. Render thread only: the packs belong to the current
+     * resource manager, and the next reload closes them.
+     *
+     * @param skipPackId id of another pack to look past as well (e.g. one being imported), or null
+     */
+    public byte[] readOriginal(Identifier id, String skipPackId) {
+        List<ResourcePack> packs = MinecraftClient.getInstance().getResourceManager().streamResourcePacks().toList();
+        // Later packs override earlier ones
+        for (int i = packs.size() - 1; i >= 0; i--) {
+            ResourcePack pack = packs.get(i);
+            if (pack instanceof RuntimePack || pack.getInfo().id().equals(skipPackId)) continue;
+            InputSupplier<InputStream> supplier = pack.open(ResourceType.CLIENT_RESOURCES, id);
+            if (supplier == null) continue;
+            try (InputStream in = supplier.get()) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Snapshot takeSnapshot() {
+        TextureManager manager = TextureManager.getInstance();
+        boolean serveAnimations = ModPackSettings.getInstance().serveAnimations;
+        Map<Identifier, ServedTexture> textures = new HashMap<>();
+        Set<String> namespaces = new HashSet<>();
+
+        if (serveAnimations) {
+            for (Identifier textureId : manager.getAnimatedTextureIds()) {
+                TextureManager.ItemAnimationData anim = manager.getItemAnimation(textureId);
+                if (anim == null || anim.frames() == null || anim.frames().size() <= 1) continue;
+                byte[] mcmeta = ResourcePackExporter.buildAnimationMcmeta(anim, anim.frames().size());
+                ServedTexture served = serve(manager, textureId, anim.frames(), anim.width(), anim.height(), mcmeta);
+                textures.put(textureId, served);
+                namespaces.add(textureId.getNamespace());
+            }
+        }
+
+        for (Identifier textureId : manager.getModifiedTextureIds()) {
+            if (textures.containsKey(textureId)) continue;
+            int[][] pixels = manager.getPixels(textureId);
+            int[] dims = manager.getDimensions(textureId);
+            if (pixels == null || dims == null || dims[0] <= 0 || dims[1] <= 0) continue;
+            textures.put(textureId, serve(manager, textureId, List.of(pixels), dims[0], dims[1], null));
+            namespaces.add(textureId.getNamespace());
+        }
+
+        // Drop cached bytes of textures that are no longer edited
+        encodedCache.keySet().retainAll(textures.keySet());
+        return new Snapshot(textures, namespaces);
+    }
+
+    private ServedTexture serve(TextureManager manager, Identifier textureId, List<int[][]> frames,
+                                int width, int height, byte[] mcmeta) {
+        long version = manager.getTextureVersion(textureId);
+        EncodedTexture cached = encodedCache.get(textureId);
+        if (cached != null && cached.version() == version) {
+            return new ServedTexture(textureId, version, null, width, height, mcmeta, cached.mask(), cached.png());
+        }
+        List<int[][]> copies = new ArrayList<>(frames.size());
+        for (int[][] frame : frames) {
+            int[][] copy = new int[width][height];
+            for (int x = 0; x < width; x++) {
+                System.arraycopy(frame[x], 0, copy[x], 0, height);
+            }
+            copies.add(copy);
+        }
+        OpaqueMask mask = OpaqueMask.of(copies.getFirst(), width, height);
+        return new ServedTexture(textureId, version, copies, width, height, mcmeta, mask, null);
+    }
+
+    /**
+     * The in-memory pack handed to one reload. Read concurrently by the reload workers.
+     */
+    private static final class RuntimePack implements ResourcePack {
+        private final Snapshot snapshot;
+        private final ResourcePackInfo info = new ResourcePackInfo(PACK_ID,
+                Text.translatable("textureeditor.pack.runtime"), ResourcePackSource.BUILTIN, Optional.empty());
+
+        private RuntimePack(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public InputSupplier<InputStream> openRoot(String... segments) {
+            return null;
+        }
+
+        @Override
+        public InputSupplier<InputStream> open(ResourceType type, Identifier id) {
+            if (type != ResourceType.CLIENT_RESOURCES) return null;
+            ServedTexture served = snapshot.textures().get(id);
+            if (served != null) {
+                return () -> new ByteArrayInputStream(served.png());
+            }
+            String path = id.getPath();
+            if (path.endsWith(".mcmeta")) {
+                ServedTexture animated = snapshot.textures().get(
+                        Identifier.of(id.getNamespace(), path.substring(0, path.length() - ".mcmeta".length())));
+                if (animated != null && animated.mcmeta != null) {
+                    return () -> new ByteArrayInputStream(animated.mcmeta);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void findResources(ResourceType type, String namespace, String prefix, ResultConsumer consumer) {
+            if (type != ResourceType.CLIENT_RESOURCES) return;
+            String dir = prefix.endsWith("/") ? prefix : prefix + "/";
+            for (ServedTexture served : snapshot.textures().values()) {
+                Identifier id = served.textureId;
+                if (!id.getNamespace().equals(namespace) || !id.getPath().startsWith(dir)) continue;
+                consumer.accept(id, () -> new ByteArrayInputStream(served.png()));
+                if (served.mcmeta != null) {
+                    consumer.accept(Identifier.of(namespace, id.getPath() + ".mcmeta"),
+                            () -> new ByteArrayInputStream(served.mcmeta));
+                }
+            }
+        }
+
+        @Override
+        public Set<String> getNamespaces(ResourceType type) {
+            return type == ResourceType.CLIENT_RESOURCES ? snapshot.namespaces() : Set.of();
+        }
+
+        @Override
+        public <T> T parseMetadata(ResourceMetadataSerializer<T> metadataSerializer) {
+            return null;
+        }
+
+        @Override
+        public ResourcePackInfo getInfo() {
+            return info;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
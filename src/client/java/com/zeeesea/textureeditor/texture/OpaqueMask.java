@@ -0,0 +1,62 @@
+package com.zeeesea.textureeditor.texture;
+
+import java.util.Arrays;
+
+/**
+ * Exact set of non-transparent pixels of a sprite.
+ *
+ * The thickness quads of a generated item model only depend on which pixels have a non-zero
+ * alpha, so two textures with equal masks produce identical item geometry. Unlike a hash,
+ * equality here is exact: one bit per pixel plus the dimensions.
+ */
+public final class OpaqueMask {
+    private final int width;
+    private final int height;
+    private final long[] bits;
+    private final int hash;
+
+    private OpaqueMask(int width, int height, long[] bits) {
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+        this.hash = 31 * (31 * width + height) + Arrays.hashCode(bits);
+    }
+
+    /**
+     * Build the mask of a column-major pixel array ({@code pixels[x][y]}, ARGB).
+     */
+    public static OpaqueMask of(int[][] pixels, int width, int height) {
+        long[] bits = new long[(width * height + 63) >>> 6];
+        for (int x = 0; x < width; x++) {
+            int[] column = pixels[x];
+            for (int y = 0; y < height; y++) {
+                if ((column[y] >>> 24) != 0) {
+                    int i = y * width + x;
+                    bits[i >>> 6] |= 1L << i;
+                }
+            }
+        }
+        return new OpaqueMask(width, height, bits);
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+    public boolean isOpaque(int x, int y) {
+        int i = y * width + x;
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OpaqueMask other)) return false;
+        return width == other.width && height == other.height
+                && hash == other.hash && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,394 @@
+package com.zeeesea.textureeditor.texture;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Minimal in-memory PNG encoder for exported textures.
+ *
+ * Writes PNGs straight into any OutputStream (e.g. an open zip entry), so export doesn't have
+ * to round-trip every texture through a temp file like NativeImage.writeTo does. Output is
+ * always lossless; {@link Options} pick the colour type (palette, greyscale, RGB or RGBA),
+ * the row filter heuristic and the deflate level. The stream is not closed.
+ */
+public final class PngEncoder {
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int IDAT_CHUNK_SIZE = 32 * 1024;
+
+    private static final int TYPE_GREY = 0;
+    private static final int TYPE_RGB = 2;
+    private static final int TYPE_INDEXED = 3;
+    private static final int TYPE_GREY_ALPHA = 4;
+    private static final int TYPE_RGBA = 6;
+
+    /**
+     * Requested output colour type. Modes that can't represent the image exactly (e.g. INDEXED
+     * with more than 256 colours, RGB with transparency) fall back to RGBA.
+     */
+    public enum ColorMode {
+        /** Try every exact mode that fits and keep the smallest file. */
+        AUTO,
+        INDEXED,
+        GREY,
+        RGB,
+        RGBA
+    }
+
+    public enum FilterHeuristic {
+        /** No filtering for palette images, minimum-sum for everything else (libpng's rule of thumb). */
+        AUTO,
+        NONE,
+        /** Per row, the filter with the smallest sum of absolute residuals. */
+        MIN_SUM,
+        PAETH
+    }
+
+    /**
+     * @param compressionLevel deflate level 1-9; at 9, AUTO modes also try both filter choices
+     */
+    public record Options(ColorMode colorMode, FilterHeuristic filter, int compressionLevel) {
+        public static final Options DEFAULT = new Options(ColorMode.RGBA, FilterHeuristic.MIN_SUM, 6);
+
+        public Options {
+            compressionLevel = Math.max(1, Math.min(9, compressionLevel));
+        }
+
+        /** Short stable description, used to invalidate cached exports when settings change. */
+        public String tag() {
+            return colorMode + "/" + filter + "/" + compressionLevel;
+        }
+    }
+
+    /**
+     * Source of ARGB pixels, addressed the same way as NativeImage (x = column, y = row).
+     */
+    @FunctionalInterface
+    public interface PixelSource {
+        int getArgb(int x, int y);
+    }
+
+    /** A concrete PNG layout for one image. */
+    private record Format(int colorType, int bitDepth, Map<Integer, Integer> paletteIndex, int[] palette) {
+        int bitsPerPixel() {
+            return switch (colorType) {
+                case TYPE_GREY -> 8;
+                case TYPE_GREY_ALPHA -> 16;
+                case TYPE_RGB -> 24;
+                case TYPE_INDEXED -> bitDepth;
+                default -> 32;
+            };
+        }
+    }
+
+    private PngEncoder() {}
+
+    /**
+     * Encode column-major pixels ({@code pixels[x][y]}, ARGB).
+     */
+    public static void encode(OutputStream out, int[][] pixels, int width, int height) throws IOException {
+        encode(out, width, height, (x, y) -> pixels[x][y], Options.DEFAULT);
+    }
+
+    public static void encode(OutputStream out, int[][] pixels, int width, int height, Options options) throws IOException {
+        encode(out, width, height, (x, y) -> pixels[x][y], options);
+    }
+
+    public static void encode(OutputStream out, int width, int height, PixelSource source) throws IOException {
+        encode(out, width, height, source, Options.DEFAULT);
+    }
+
+    public static void encode(OutputStream out, int width, int height, PixelSource source, Options options) throws IOException {
+        if (width <= 0 || height <= 0) throw new IOException("Invalid PNG size " + width + "x" + height);
+
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                argb[y * width + x] = source.getArgb(x, y);
+            }
+        }
+
+        List<Format> formats = candidateFormats(argb, options.colorMode());
+        List<FilterHeuristic> filters = new ArrayList<>();
+        if (options.filter() == FilterHeuristic.AUTO && options.compressionLevel() >= 9) {
+            filters.add(FilterHeuristic.NONE);
+            filters.add(FilterHeuristic.MIN_SUM);
+        } else {
+            filters.add(options.filter());
+        }
+
+        if (formats.size() == 1 && filters.size() == 1) {
+            write(out, argb, width, height, formats.getFirst(), filters.getFirst(), options.compressionLevel());
+            return;
+        }
+
+        // Several candidates: keep the smallest encoding
+        byte[] best = null;
+        for (Format format : formats) {
+            for (FilterHeuristic filter : filters) {
+                ByteArrayOutputStream trial = new ByteArrayOutputStream();
+                write(trial, argb, width, height, format, filter, options.compressionLevel());
+                if (best == null || trial.size() < best.length) {
+                    best = trial.toByteArray();
+                }
+            }
+        }
+        out.write(best);
+    }
+
+    /**
+     * The exact formats worth trying for the requested mode, cheapest first.
+     */
+    private static List<Format> candidateFormats(int[] argb, ColorMode mode) {
+        boolean opaque = true;
+        boolean grey = true;
+        Map<Integer, Integer> counts = new LinkedHashMap<>();
+        for (int c : argb) {
+            if ((c >>> 24) != 0xFF) opaque = false;
+            int r = (c >>> 16) & 0xFF, g = (c >>> 8) & 0xFF, b = c & 0xFF;
+            if (r != g || g != b) grey = false;
+            if (counts.size() <= 256) counts.merge(c, 1, Integer::sum);
+        }
+        boolean paletteFits = counts.size() <= 256;
+
+        Format rgba = new Format(TYPE_RGBA, 8, null, null);
+        Format greyFormat = grey ? new Format(opaque ? TYPE_GREY : TYPE_GREY_ALPHA, 8, null, null) : null;
+        Format rgb = opaque ? new Format(TYPE_RGB, 8, null, null) : null;
+        Format indexed = paletteFits ? buildPalette(counts) : null;
+
+        List<Format> out = new ArrayList<>();
+        switch (mode) {
+            case INDEXED -> out.add(indexed != null ? indexed : rgba);
+            case GREY -> out.add(greyFormat != null ? greyFormat : rgba);
+            case RGB -> out.add(rgb != null ? rgb : rgba);
+            case RGBA -> out.add(rgba);
+            case AUTO -> {
+                if (indexed != null) out.add(indexed);
+                if (greyFormat != null) out.add(greyFormat);
+                if (rgb != null) out.add(rgb);
+                // Tiny images can come out smaller as RGBA than with a palette chunk
+                out.add(rgba);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Palette with translucent entries first (keeps tRNS short), then by descending frequency.
+     */
+    private static Format buildPalette(Map<Integer, Integer> counts) {
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort((a, b) -> {
+            boolean aOpaque = (a.getKey() >>> 24) == 0xFF;
+            boolean bOpaque = (b.getKey() >>> 24) == 0xFF;
+            if (aOpaque != bOpaque) return aOpaque ? 1 : -1;
+            int byCount = Integer.compare(b.getValue(), a.getValue());
+            return byCount != 0 ? byCount : Integer.compareUnsigned(a.getKey(), b.getKey());
+        });
+        int[] palette = new int[entries.size()];
+        Map<Integer, Integer> index = new HashMap<>();
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = entries.get(i).getKey();
+            index.put(palette[i], i);
+        }
+        int bitDepth = palette.length <= 2 ? 1 : palette.length <= 4 ? 2 : palette.length <= 16 ? 4 : 8;
+        return new Format(TYPE_INDEXED, bitDepth, index, palette);
+    }
+
+    private static void write(OutputStream out, int[] argb, int width, int height, Format format,
+                              FilterHeuristic heuristic, int level) throws IOException {
+        out.write(SIGNATURE);
+
+        byte[] ihdr = new byte[13];
+        putInt(ihdr, 0, width);
+        putInt(ihdr, 4, height);
+        ihdr[8] = (byte) format.bitDepth();
+        ihdr[9] = (byte) format.colorType();
+        ihdr[10] = 0; // deflate
+        ihdr[11] = 0; // adaptive filtering
+        ihdr[12] = 0; // no interlace
+        writeChunk(out, "IHDR", ihdr, ihdr.length);
+
+        if (format.colorType() == TYPE_INDEXED) {
+            int[] palette = format.palette();
+            byte[] plte = new byte[palette.length * 3];
+            int transparent = 0;
+            for (int i = 0; i < palette.length; i++) {
+                plte[i * 3] = (byte) (palette[i] >>> 16);
+                plte[i * 3 + 1] = (byte) (palette[i] >>> 8);
+                plte[i * 3 + 2] = (byte) palette[i];
+                if ((palette[i] >>> 24) != 0xFF) transparent = i + 1;
+            }
+            writeChunk(out, "PLTE", plte, plte.length);
+            if (transparent > 0) {
+                byte[] trns = new byte[transparent];
+                for (int i = 0; i < transparent; i++) trns[i] = (byte) (palette[i] >>> 24);
+                writeChunk(out, "tRNS", trns, trns.length);
+            }
+        }
+
+        FilterHeuristic filter = heuristic;
+        if (filter == FilterHeuristic.AUTO) {
+            filter = format.colorType() == TYPE_INDEXED ? FilterHeuristic.NONE : FilterHeuristic.MIN_SUM;
+        }
+
+        int stride = (width * format.bitsPerPixel() + 7) / 8;
+        int bpp = Math.max(1, format.bitsPerPixel() / 8);
+        byte[] prev = new byte[stride];
+        byte[] cur = new byte[stride];
+        byte[] filtered = new byte[stride + 1];
+        byte[] best = new byte[stride + 1];
+        byte[] idat = new byte[IDAT_CHUNK_SIZE];
+
+        Deflater deflater = new Deflater(level);
+        try {
+            for (int y = 0; y < height; y++) {
+                packRow(argb, y, width, format, cur);
+                switch (filter) {
+                    case NONE -> applyFilter(0, cur, prev, bpp, best);
+                    case PAETH -> applyFilter(y == 0 ? 1 : 4, cur, prev, bpp, best);
+                    default -> chooseFilter(cur, prev, bpp, y == 0, filtered, best);
+                }
+                deflater.setInput(best, 0, stride + 1);
+                drain(out, deflater, idat, false);
+
+                byte[] swap = prev;
+                prev = cur;
+                cur = swap;
+            }
+            deflater.finish();
+            drain(out, deflater, idat, true);
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(out, "IEND", new byte[0], 0);
+    }
+
+    private static void packRow(int[] argb, int y, int width, Format format, byte[] row) {
+        int base = y * width;
+        switch (format.colorType()) {
+            case TYPE_GREY -> {
+                for (int x = 0; x < width; x++) row[x] = (byte) argb[base + x];
+            }
+            case TYPE_GREY_ALPHA -> {
+                for (int x = 0; x < width; x++) {
+                    int c = argb[base + x];
+                    row[x * 2] = (byte) c;
+                    row[x * 2 + 1] = (byte) (c >>> 24);
+                }
+            }
+            case TYPE_RGB -> {
+                for (int x = 0; x < width; x++) {
+                    int c = argb[base + x];
+                    row[x * 3] = (byte) (c >>> 16);
+                    row[x * 3 + 1] = (byte) (c >>> 8);
+                    row[x * 3 + 2] = (byte) c;
+                }
+            }
+            case TYPE_INDEXED -> {
+                Arrays.fill(row, (byte) 0);
+                int depth = format.bitDepth();
+                for (int x = 0; x < width; x++) {
+                    int index = format.paletteIndex().get(argb[base + x]);
+                    int bit = x * depth;
+                    row[bit >>> 3] |= (byte) (index << (8 - depth - (bit & 7)));
+                }
+            }
+            default -> {
+                for (int x = 0; x < width; x++) {
+                    int c = argb[base + x];
+                    row[x * 4] = (byte) (c >>> 16);
+                    row[x * 4 + 1] = (byte) (c >>> 8);
+                    row[x * 4 + 2] = (byte) c;
+                    row[x * 4 + 3] = (byte) (c >>> 24);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pick the row filter with the smallest sum of absolute (signed) residuals, the usual
+     * libpng heuristic. The winning filtered row, prefixed by its filter byte, ends up in {@code best}.
+     */
+    private static void chooseFilter(byte[] cur, byte[] prev, int bpp, boolean firstRow, byte[] scratch, byte[] best) {
+        long bestSum = Long.MAX_VALUE;
+        int maxFilter = firstRow ? 1 : 4; // Up/Average/Paeth gain nothing on the first row
+        for (int filter = 0; filter <= maxFilter; filter++) {
+            long sum = applyFilter(filter, cur, prev, bpp, scratch);
+            if (sum < bestSum) {
+                bestSum = sum;
+                System.arraycopy(scratch, 0, best, 0, scratch.length);
+            }
+        }
+    }
+
+    private static long applyFilter(int filter, byte[] cur, byte[] prev, int bpp, byte[] out) {
+        out[0] = (byte) filter;
+        long sum = 0;
+        for (int i = 0; i < cur.length; i++) {
+            int x = cur[i] & 0xFF;
+            int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+            int b = prev[i] & 0xFF;
+            int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+            int v = switch (filter) {
+                case 1 -> x - a;
+                case 2 -> x - b;
+                case 3 -> x - ((a + b) >>> 1);
+                case 4 -> x - paeth(a, b, c);
+                default -> x;
+            };
+            out[i + 1] = (byte) v;
+            sum += Math.abs((byte) v);
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    private static void drain(OutputStream out, Deflater deflater, byte[] buffer, boolean finishing) throws IOException {
+        while (finishing ? !deflater.finished() : !deflater.needsInput()) {
+            int n = deflater.deflate(buffer);
+            if (n > 0) writeChunk(out, "IDAT", buffer, n);
+        }
+    }
+
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] header = new byte[8];
+        putInt(header, 0, length);
+        System.arraycopy(typeBytes, 0, header, 4, 4);
+        out.write(header);
+        out.write(data, 0, length);
+
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        byte[] crcBytes = new byte[4];
+        putInt(crcBytes, 0, (int) crc.getValue());
+        out.write(crcBytes);
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+}
@@ -0,0 +1,142 @@
+package com.zeeesea.textureeditor.texture;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.textures.GpuTexture;
+import com.mojang.blaze3d.textures.TextureFormat;
+import com.zeeesea.textureeditor.mixin.client.SpriteContentsAccessor;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.client.texture.SpriteContents;
+import net.minecraft.util.Identifier;
+
+import java.util.List;
+
+/**
+ * A set of sprite frames that live on the GPU for the lifetime of a live animation.
+ *
+ * Every frame (including its mip chain) is uploaded exactly once. Advancing the animation
+ * afterwards is a GPU-to-GPU blit from the frame texture into the atlas slot, so the per-tick
+ * CPU cost no longer depends on the sprite size.
+ */
+public class ResidentSpriteFrames implements AutoCloseable {
+    private final Identifier spriteId;
+    private final List<int[][]> frames;
+    private final int width;
+    private final int height;
+    private final OpaqueMask[] masks;
+    private GpuTexture[] textures;
+    private int mipLevels;
+
+    public ResidentSpriteFrames(Identifier spriteId, List<int[][]> frames, int width, int height) {
+        this.spriteId = spriteId;
+        this.frames = frames;
+        this.width = width;
+        this.height = height;
+        this.masks = new OpaqueMask[frames.size()];
+        for (int i = 0; i < frames.size(); i++) {
+            masks[i] = OpaqueMask.of(frames.get(i), width, height);
+        }
+    }
+
+    public int getFrameCount() { return frames.size(); }
+    public OpaqueMask getMask(int frameIndex) { return masks[frameIndex]; }
+    public int getMipLevels() { return mipLevels; }
+    public boolean isUploaded() { return textures != null; }
+
+    public GpuTexture getTexture(int frameIndex) {
+        return textures != null ? textures[frameIndex] : null;
+    }
+
+    /**
+     * Upload all frames with their mip chains. Must be called on the render thread.
+     * Mipmaps are generated through the sprite's own SpriteContents so they match what
+     * the atlas would produce; the sprite's CPU image is restored to the first frame afterwards.
+     *
+     * @param sprite any atlas sprite for this id, used as the mip generator
+     * @return true if every frame is resident on the GPU
+     */
+    public boolean upload(Sprite sprite) {
+        return upload(sprite, 0);
+    }
+
+    /**
+     * Same as {@link #upload(Sprite)}, but leaves the sprite's CPU image on the given frame.
+     */
+    public boolean upload(Sprite sprite, int restoreFrame) {
+        if (textures != null) return true;
+        SpriteContents contents = sprite.getContents();
+        if (contents.getWidth() != width || contents.getHeight() != height) return false;
+        SpriteContentsAccessor accessor = (SpriteContentsAccessor) contents;
+        NativeImage image = accessor.getImage();
+        if (image == null) return false;
+
+        int requestedMips = MinecraftClient.getInstance().options.getMipmapLevels().getValue();
+        GpuTexture[] uploaded = new GpuTexture[frames.size()];
+        try {
+            for (int i = 0; i < frames.size(); i++) {
+                writeImage(image, frames.get(i));
+                contents.generateMipmaps(requestedMips);
+                NativeImage[] mipmaps = accessor.getMipmapLevelsImages();
+                int levels = Math.max(1, mipmaps.length);
+                final int frameIndex = i;
+                GpuTexture texture = RenderSystem.getDevice().createTexture(
+                        () -> "TextureEditor frame " + frameIndex + " " + spriteId,
+                        5, // COPY_DST(1) | TEXTURE_BINDING(4)
+                        TextureFormat.RGBA8,
+                        width,
+                        height,
+                        1,
+                        levels
+                );
+                for (int mip = 0; mip < levels; mip++) {
+                    int mipW = width >> mip;
+                    int mipH = height >> mip;
+                    if (mipW <= 0 || mipH <= 0) break;
+                    RenderSystem.getDevice()
+                            .createCommandEncoder()
+                            .writeToTexture(texture, mipmaps[mip], mip, 0, 0, 0, mipW, mipH, 0, 0);
+                }
+                uploaded[i] = texture;
+                mipLevels = mipLevels == 0 ? levels : Math.min(mipLevels, levels);
+            }
+        } catch (Throwable t) {
+            System.out.println("[TextureEditor] ResidentSpriteFrames: upload failed for " + spriteId + ": " + t.getMessage());
+            for (GpuTexture texture : uploaded) {
+                if (texture != null) texture.close();
+            }
+            mipLevels = 0;
+            return false;
+        } finally {
+            // Leave the CPU image on the frame the atlas shows right now
+            writeImage(image, frames.get(restoreFrame));
+            try {
+                contents.generateMipmaps(requestedMips);
+            } catch (Throwable ignored) {}
+        }
+
+        textures = uploaded;
+        System.out.println("[TextureEditor] ResidentSpriteFrames: " + frames.size() + " frame(s) of " + spriteId +
+                " resident on GPU, mips=" + mipLevels);
+        return true;
+    }
+
+    private void writeImage(NativeImage image, int[][] pixels) {
+        int writeW = Math.min(width, image.getWidth());
+        int writeH = Math.min(height, image.getHeight());
+        for (int x = 0; x < writeW; x++) {
+            for (int y = 0; y < writeH; y++) {
+                image.setColorArgb(x, y, pixels[x][y]);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (textures == null) return;
+        for (GpuTexture texture : textures) {
+            if (texture != null) texture.close();
+        }
+        textures = null;
+    }
+}
@@ -2,28 +2,160 @@ package com.zeeesea.textureeditor.texture;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import net.minecraft.SharedConstants;
 import net.minecraft.client.MinecraftClient;
-import net.minecraft.client.texture.NativeImage;
 import net.minecraft.resource.ResourceType;
 import net.minecraft.util.Identifier;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
 
 /**
  * Exports all modified textures as a resource pack ZIP file.
+ *
+ * Textures are PNG-encoded in parallel on a small worker pool while a single writer appends
+ * the finished entries to the zip in a fixed (sorted) order with fixed timestamps, so the same
+ * textures always produce a byte-identical pack.
+ *
+ * {@link #exportAsync} snapshots the texture data on the calling thread and does all encoding and
+ * writing in the background. The zip is written to a temp file next to the target and renamed
+ * into place only once complete, so resourcepacks/ never contains a half-written pack.
+ *
+ * Every texture entry's source pixels are hashed into a manifest stored in the zip. When updating
+ * an existing pack, entries whose hash matches the previous export are copied over raw instead
+ * of being encoded again. PNGs are stored uncompressed in the zip (they are already deflated),
+ * which is what makes that raw copy possible.
+ *
+ * Packs can also be written as an unpacked folder under resourcepacks/. The folder keeps the
+ * same manifest; only files whose hash changed are rewritten (each via temp file + rename), and
+ * files from the previous export that are no longer part of the pack are deleted.
  */
 public class ResourcePackExporter {
 
+    // Encoded entries allowed to wait for the writer at once, per worker
+    private static final int IN_FLIGHT_PER_WORKER = 4;
+    private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(1980, 1, 1, 0, 0);
+    private static final String MANIFEST_PATH = "textureeditor_manifest.json";
+    private static final int MANIFEST_VERSION = 1;
+
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final AtomicInteger WORKER_ID = new AtomicInteger();
+    private static final ExecutorService ENCODE_EXECUTOR = Executors.newFixedThreadPool(WORKER_COUNT, r -> {
+        Thread t = new Thread(r, "TextureEditor-Export-" + WORKER_ID.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    // Targets of exports that haven't finished, reserved when the name is picked
+    private static final Set<File> RESERVED_TARGETS = ConcurrentHashMap.newKeySet();
+    // Runs the zip writer of each export job, one job at a time
+    private static final ExecutorService WRITER_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TextureEditor-ExportWriter");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * A running background export. Progress counters are safe to poll from the render thread.
+     */
+    public static final class ExportJob {
+        private final File target;
+        private final int total;
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final CompletableFuture<File> result = new CompletableFuture<>();
+        private volatile boolean cancelled = false;
+
+        private ExportJob(File target, int total) {
+            this.target = target;
+            this.total = total;
+        }
+
+        public File getTarget() { return target; }
+        public int getTotal() { return total; }
+        public int getDone() { return done.get(); }
+        public long getBytesWritten() { return bytesWritten.get(); }
+        public boolean isCancelled() { return cancelled; }
+        public boolean isFinished() { return result.isDone(); }
+
+        /** Request cancellation; the partial file is removed and the job finishes without a result. */
+        public void cancel() { cancelled = true; }
+
+        /** The exported file once finished successfully, otherwise null. */
+        public File getResult() {
+            return result.isDone() && !result.isCompletedExceptionally() ? result.join() : null;
+        }
+    }
+
+    /**
+     * A single file in the pack. The content is produced lazily so it can run on a worker.
+     * Entries with a {@code hash} are tracked in the manifest, stored uncompressed and can be reused
+     * by later incremental exports; entries without one are regenerated every time.
+     */
+    private record PackEntry(String path, EntryContent content, EntryHash hash) {
+        PackEntry(String path, EntryContent content) {
+            this(path, content, null);
+        }
+    }
+
+    @FunctionalInterface
+    private interface EntryContent {
+        byte[] produce() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntryHash {
+        String compute();
+    }
+
+    /**
+     * Worker output for one entry: either fresh bytes, or a marker to copy the previous export's entry.
+     */
+    private record EncodedEntry(byte[] data, long crc, String hash, boolean reuse) {}
+
+    /**
+     * The pack being replaced by an incremental export, with its manifest hashes.
+     */
+    private record PreviousPack(ZipFile zip, Map<String, String> hashes) {}
+
     /**
      * Export all modified textures as a resource pack.
      *
@@ -37,6 +169,31 @@ public class ResourcePackExporter {
      */
     public static File export(String packName, String description, String author,
                               int[][] iconPixels, int iconWidth, int iconHeight) {
+        ExportJob job = exportAsync(packName, description, author, iconPixels, iconWidth, iconHeight, false, false,
+                PngEncoder.Options.DEFAULT);
+        if (job == null) return null;
+        try {
+            return job.result.join();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Start exporting all modified textures in the background.
+     * Must be called on the render thread; the texture data is copied before this returns.
+     *
+     * @param updateExisting overwrite the pack with this name instead of creating a new {@code _N} copy,
+     *                       re-encoding only the textures that changed since it was exported; only
+     *                       applies to a zip an earlier export wrote
+     * @param asFolder       write an unpacked pack folder instead of a zip; an existing folder from an
+     *                       earlier export is always updated in place
+     * @param pngOptions     colour type, filter and compression used for every PNG in the pack
+     * @return the running job, or null if there is nothing to export
+     */
+    public static ExportJob exportAsync(String packName, String description, String author,
+                                        int[][] iconPixels, int iconWidth, int iconHeight,
+                                        boolean updateExisting, boolean asFolder, PngEncoder.Options pngOptions) {
         TextureManager manager = TextureManager.getInstance();
         if (!manager.hasModifiedTextures()) return null;
 
@@ -49,159 +206,604 @@ public class ResourcePackExporter {
         // Sanitize filename
         String sanitized = packName.replaceAll("[^a-zA-Z0-9_\\- ]", "").trim();
         if (sanitized.isEmpty()) sanitized = "TextureEditorPack";
-        File outputFile = new File(resourcePacksDir, sanitized + ".zip");
+        String extension = asFolder ? "" : ".zip";
+        File outputFile = new File(resourcePacksDir, sanitized + extension);
 
-        // Avoid overwriting
+        // Avoid overwriting, unless the existing pack is what we're updating.
+        // Folders and zips are only reused if an earlier export created them, never a hand-made
+        // or downloaded pack that happens to have the same name.
+        // A name still reserved by a queued export is skipped too: the file doesn't exist yet,
+        // but two exports picking it would overwrite each other.
         int counter = 1;
-        while (outputFile.exists()) {
-            outputFile = new File(resourcePacksDir, sanitized + "_" + counter + ".zip");
+        while ((outputFile.exists() && (asFolder ? !isExportedFolder(outputFile.toPath())
+                        : !(updateExisting && isExportedZip(outputFile.toPath()))))
+                || !RESERVED_TARGETS.add(outputFile.getAbsoluteFile())) {
+            outputFile = new File(resourcePacksDir, sanitized + "_" + counter + extension);
             counter++;
         }
 
-        try (FileOutputStream fos = new FileOutputStream(outputFile);
-             ZipOutputStream zos = new ZipOutputStream(fos)) {
+        File reserved = outputFile.getAbsoluteFile();
+        List<PackEntry> entries;
+        try {
+            entries = collectEntries(manager, packName, description, author, iconPixels, iconWidth, iconHeight, pngOptions);
+        } catch (RuntimeException e) {
+            RESERVED_TARGETS.remove(reserved);
+            throw e;
+        }
+        ExportJob job = new ExportJob(outputFile, entries.size());
+        job.result.whenComplete((file, error) -> RESERVED_TARGETS.remove(reserved));
 
-            // Write pack.mcmeta
-            JsonObject packMcmeta = new JsonObject();
-            JsonObject pack = new JsonObject();
-            pack.addProperty("pack_format", 55);
-            // For pack_format > 64, Minecraft requires min_format and max_format as
-            // top-level fields in the pack object (not inside supported_formats)
-            pack.addProperty("min_format", 1);
-            pack.addProperty("max_format", 9999);
-            // supported_formats for older versions (1.20.2 - 1.21.4) that use this field instead
-            JsonObject supportedFormats = new JsonObject();
-            supportedFormats.addProperty("min_inclusive", 1);
-            supportedFormats.addProperty("max_inclusive", 9999);
-            pack.add("supported_formats", supportedFormats);
-
-            // Build description with author if provided
-            String desc = description != null && !description.isEmpty() ? description : packName;
-            if (author != null && !author.isEmpty()) {
-                desc += "\nBy " + author;
-            }
-            pack.addProperty("description", desc);
-            packMcmeta.add("pack", pack);
-
-            zos.putNextEntry(new ZipEntry("pack.mcmeta"));
-            zos.write(packMcmeta.toString().getBytes(StandardCharsets.UTF_8));
-            zos.closeEntry();
+        if (asFolder) {
+            WRITER_EXECUTOR.execute(() -> runFolderExport(job, entries));
+            return job;
+        }
 
-            // Write pack.png if icon provided
-            if (iconPixels != null) {
-                try (NativeImage iconImg = new NativeImage(iconWidth, iconHeight, false)) {
-                    for (int x = 0; x < iconWidth; x++) {
-                        for (int y = 0; y < iconHeight; y++) {
-                            iconImg.setColorArgb(x, y, iconPixels[x][y]);
-                        }
-                    }
-                    byte[] pngBytes = nativeImageToBytes(iconImg);
-                    zos.putNextEntry(new ZipEntry("pack.png"));
-                    zos.write(pngBytes);
-                    zos.closeEntry();
+        WRITER_EXECUTOR.execute(() -> {
+            Path target = job.target.toPath();
+            Path temp = null;
+            try {
+                temp = Files.createTempFile(target.getParent(), ".textureeditor-", ".zip.tmp");
+                writeZip(job, temp, entries, updateExisting ? target : null);
+                moveIntoPlace(temp, target);
+                System.out.println("[TextureEditor] Exported " + entries.size() + " entries to " + target.getFileName() +
+                        " (" + job.getBytesWritten() + " bytes)");
+                job.result.complete(job.target);
+            } catch (CancellationException e) {
+                System.out.println("[TextureEditor] Export of " + target.getFileName() + " cancelled");
+                job.result.completeExceptionally(e);
+            } catch (Throwable t) {
+                System.out.println("[TextureEditor] Export of " + target.getFileName() + " failed: " + t.getMessage());
+                t.printStackTrace();
+                job.result.completeExceptionally(t);
+            } finally {
+                if (temp != null) {
+                    try {
+                        Files.deleteIfExists(temp);
+                    } catch (IOException ignored) {}
                 }
             }
+        });
+        return job;
+    }
 
-            Set<Identifier> exportedAnimatedTextures = new HashSet<>();
+    private static void runFolderExport(ExportJob job, List<PackEntry> entries) {
+        Path target = job.target.toPath();
+        try {
+            writeFolder(job, target, entries);
+            System.out.println("[TextureEditor] Exported " + entries.size() + " entries to folder " + target.getFileName() +
+                    " (" + job.getBytesWritten() + " bytes written)");
+            job.result.complete(job.target);
+        } catch (CancellationException e) {
+            // Every file written so far is complete and in the manifest; the next export picks up the rest
+            System.out.println("[TextureEditor] Export of " + target.getFileName() + " cancelled");
+            job.result.completeExceptionally(e);
+        } catch (Throwable t) {
+            System.out.println("[TextureEditor] Export of " + target.getFileName() + " failed: " + t.getMessage());
+            t.printStackTrace();
+            job.result.completeExceptionally(t);
+        }
+    }
 
-            // Write animated textures first (stacked PNG + mcmeta)
-            for (Identifier textureId : manager.getAnimatedTextureIds()) {
-                TextureManager.ItemAnimationData anim = manager.getItemAnimation(textureId);
-                if (anim == null || anim.frames() == null || anim.frames().size() <= 1) continue;
+    /**
+     * Legacy overload for backward compatibility.
+     */
+    public static File export(String packName, int[][] iconPixels, int iconWidth, int iconHeight) {
+        return export(packName, packName, "", iconPixels, iconWidth, iconHeight);
+    }
 
-                int frameCount = anim.frames().size();
-                int w = anim.width();
-                int h = anim.height();
-                if (w <= 0 || h <= 0) continue;
+    /**
+     * Gather every file of the pack in its final zip order: pack.mcmeta, pack.png, then assets sorted by path.
+     */
+    private static List<PackEntry> collectEntries(TextureManager manager, String packName, String description,
+                                                  String author, int[][] iconPixels, int iconWidth, int iconHeight,
+                                                  PngEncoder.Options pngOptions) {
+        List<PackEntry> head = new ArrayList<>();
+        List<PackEntry> assets = new ArrayList<>();
 
-                String path = "assets/" + textureId.getNamespace() + "/" + textureId.getPath();
+        byte[] packMcmeta = buildPackMcmeta(packName, description, author);
+        head.add(new PackEntry("pack.mcmeta", () -> packMcmeta));
 
-                try (NativeImage stacked = new NativeImage(w, h * frameCount, false)) {
-                    for (int i = 0; i < frameCount; i++) {
-                        int[][] frame = anim.frames().get(i);
-                        if (frame == null || frame.length != w || frame[0].length != h) continue;
-                        for (int x = 0; x < w; x++) {
-                            for (int y = 0; y < h; y++) {
-                                stacked.setColorArgb(x, y + i * h, frame[x][y]);
-                            }
-                        }
-                    }
+        // Write pack.png if icon provided
+        if (iconPixels != null) {
+            int[][] icon = copyPixels(iconPixels, iconWidth, iconHeight);
+            head.add(new PackEntry("pack.png", () -> encodePng(icon, iconWidth, iconHeight, pngOptions),
+                    () -> hashPixels(pngOptions, iconWidth, iconHeight, List.of(icon))));
+        }
 
-                    byte[] pngBytes = nativeImageToBytes(stacked);
-                    zos.putNextEntry(new ZipEntry(path));
-                    zos.write(pngBytes);
-                    zos.closeEntry();
-                }
+        Set<Identifier> exportedAnimatedTextures = new HashSet<>();
 
-                JsonObject animationMcmeta = new JsonObject();
-                JsonObject animation = new JsonObject();
-                animation.addProperty("frametime", Math.max(1, anim.frameTimeTicks()));
-                animation.addProperty("interpolate", anim.interpolate());
-                if (anim.pingPong() && frameCount > 1) {
-                    JsonArray frames = new JsonArray();
-                    for (int i = 0; i < frameCount; i++) frames.add(i);
-                    for (int i = frameCount - 2; i >= 1; i--) frames.add(i);
-                    animation.add("frames", frames);
-                }
-                animationMcmeta.add("animation", animation);
-                zos.putNextEntry(new ZipEntry(path + ".mcmeta"));
-                zos.write(animationMcmeta.toString().getBytes(StandardCharsets.UTF_8));
-                zos.closeEntry();
+        // Animated textures (stacked PNG + mcmeta)
+        for (Identifier textureId : manager.getAnimatedTextureIds()) {
+            TextureManager.ItemAnimationData anim = manager.getItemAnimation(textureId);
+            if (anim == null || anim.frames() == null || anim.frames().size() <= 1) continue;
+
+            int frameCount = anim.frames().size();
+            int w = anim.width();
+            int h = anim.height();
+            if (w <= 0 || h <= 0) continue;
+
+            String path = "assets/" + textureId.getNamespace() + "/" + textureId.getPath();
+
+            // Frames are stacked vertically; malformed frames stay transparent
+            List<int[][]> frameList = new ArrayList<>(frameCount);
+            for (int[][] frame : anim.frames()) {
+                boolean valid = frame != null && frame.length == w && frame[0].length == h;
+                frameList.add(valid ? copyPixels(frame, w, h) : null);
+            }
+            assets.add(new PackEntry(path, () -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                PngEncoder.encode(out, w, h * frameCount, (x, y) -> {
+                    int[][] frame = frameList.get(y / h);
+                    if (frame == null || frame.length != w || frame[0].length != h) return 0;
+                    return frame[x][y % h];
+                }, pngOptions);
+                return out.toByteArray();
+            }, () -> hashPixels(pngOptions, w, h, frameList)));
+
+            byte[] animationMcmeta = buildAnimationMcmeta(anim, frameCount);
+            assets.add(new PackEntry(path + ".mcmeta", () -> animationMcmeta));
+
+            exportedAnimatedTextures.add(textureId);
+        }
+
+        // Each non-animated modified texture
+        for (Identifier textureId : manager.getModifiedTextureIds()) {
+            if (exportedAnimatedTextures.contains(textureId)) continue;
+            int[][] pixels = manager.getPixels(textureId);
+            int[] dims = manager.getDimensions(textureId);
+            if (pixels == null || dims == null) continue;
+
+            int w = dims[0], h = dims[1];
+            int[][] snapshot = copyPixels(pixels, w, h);
+
+            // Convert Identifier to file path: "assets/namespace/path"
+            String path = "assets/" + textureId.getNamespace() + "/" + textureId.getPath();
+            assets.add(new PackEntry(path, () -> encodePng(snapshot, w, h, pngOptions),
+                    () -> hashPixels(pngOptions, w, h, List.of(snapshot))));
+        }
+
+        assets.sort(Comparator.comparing(PackEntry::path));
+        head.addAll(assets);
+        return head;
+    }
+
+    private static byte[] buildPackMcmeta(String packName, String description, String author) {
+        JsonObject packMcmeta = new JsonObject();
+        JsonObject pack = new JsonObject();
+        pack.addProperty("pack_format", 55);
+        // For pack_format > 64, Minecraft requires min_format and max_format as
+        // top-level fields in the pack object (not inside supported_formats)
+        pack.addProperty("min_format", 1);
+        pack.addProperty("max_format", 9999);
+        // supported_formats for older versions (1.20.2 - 1.21.4) that use this field instead
+        JsonObject supportedFormats = new JsonObject();
+        supportedFormats.addProperty("min_inclusive", 1);
+        supportedFormats.addProperty("max_inclusive", 9999);
+        pack.add("supported_formats", supportedFormats);
 
-                exportedAnimatedTextures.add(textureId);
+        // Build description with author if provided
+        String desc = description != null && !description.isEmpty() ? description : packName;
+        if (author != null && !author.isEmpty()) {
+            desc += "\nBy " + author;
+        }
+        pack.addProperty("description", desc);
+        packMcmeta.add("pack", pack);
+        return packMcmeta.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] buildAnimationMcmeta(TextureManager.ItemAnimationData anim, int frameCount) {
+        JsonObject animationMcmeta = new JsonObject();
+        JsonObject animation = new JsonObject();
+        animation.addProperty("frametime", Math.max(1, anim.frameTimeTicks()));
+        animation.addProperty("interpolate", anim.interpolate());
+        if (anim.pingPong() && frameCount > 1) {
+            JsonArray frames = new JsonArray();
+            for (int i = 0; i < frameCount; i++) frames.add(i);
+            for (int i = frameCount - 2; i >= 1; i--) frames.add(i);
+            animation.add("frames", frames);
+        }
+        animationMcmeta.add("animation", animation);
+        return animationMcmeta.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int[][] copyPixels(int[][] src, int width, int height) {
+        int[][] out = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(src[x], 0, out[x], 0, height);
+        }
+        return out;
+    }
+
+    /**
+     * SHA-256 over the PNG options, dimensions and ARGB pixels of one or more frames (null frames
+     * hash as empty). Including the options makes a settings change re-encode everything.
+     */
+    private static String hashPixels(PngEncoder.Options options, int width, int height, List<int[][]> frames) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] row = new byte[height * 4];
+        digest.update(options.tag().getBytes(StandardCharsets.UTF_8));
+        digest.update(new byte[]{(byte) (width >>> 24), (byte) (width >>> 16), (byte) (width >>> 8), (byte) width,
+                (byte) (height >>> 24), (byte) (height >>> 16), (byte) (height >>> 8), (byte) height,
+                (byte) frames.size()});
+        for (int[][] frame : frames) {
+            if (frame == null) {
+                digest.update((byte) 0);
+                continue;
+            }
+            digest.update((byte) 1);
+            for (int x = 0; x < width; x++) {
+                int[] column = frame[x];
+                for (int y = 0; y < height; y++) {
+                    int c = column[y];
+                    row[y * 4] = (byte) (c >>> 24);
+                    row[y * 4 + 1] = (byte) (c >>> 16);
+                    row[y * 4 + 2] = (byte) (c >>> 8);
+                    row[y * 4 + 3] = (byte) c;
+                }
+                digest.update(row);
             }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-            // Write each non-animated modified texture
-            for (Identifier textureId : manager.getModifiedTextureIds()) {
-                if (exportedAnimatedTextures.contains(textureId)) continue;
-                int[][] pixels = manager.getPixels(textureId);
-                int[] dims = manager.getDimensions(textureId);
-                if (pixels == null || dims == null) continue;
+    private static byte[] encodePng(int[][] pixels, int width, int height, PngEncoder.Options options) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PngEncoder.encode(out, pixels, width, height, options);
+        return out.toByteArray();
+    }
 
-                int w = dims[0], h = dims[1];
+    /**
+     * Produce entry contents on the worker pool and append them to the zip in list order.
+     * At most {@code WORKER_COUNT * IN_FLIGHT_PER_WORKER} finished-but-unwritten entries exist at once.
+     *
+     * @param previousFile the pack being updated, or null for a fresh export
+     */
+    private static void writeZip(ExportJob job, Path outputFile, List<PackEntry> entries, Path previousFile) throws IOException {
+        int window = WORKER_COUNT * IN_FLIGHT_PER_WORKER;
+        ArrayDeque<Future<EncodedEntry>> inFlight = new ArrayDeque<>();
+        Map<String, String> manifest = new TreeMap<>();
+        int next = 0;
+        int reused = 0;
 
-                // Convert Identifier to file path: "assets/namespace/path"
-                String path = "assets/" + textureId.getNamespace() + "/" + textureId.getPath();
+        PreviousPack previous = openPrevious(previousFile);
+        try (OutputStream fos = new CountingOutputStream(Files.newOutputStream(outputFile), job.bytesWritten);
+             ZipOutputStream zos = new ZipOutputStream(fos)) {
+            for (PackEntry entry : entries) {
+                if (job.cancelled) throw new CancellationException();
+                while (next < entries.size() && inFlight.size() < window) {
+                    PackEntry pending = entries.get(next++);
+                    inFlight.add(ENCODE_EXECUTOR.submit(() -> encodeEntry(pending, previous)));
+                }
 
-                try (NativeImage img = new NativeImage(w, h, false)) {
-                    for (int x = 0; x < w; x++) {
-                        for (int y = 0; y < h; y++) {
-                            img.setColorArgb(x, y, pixels[x][y]);
-                        }
+                EncodedEntry encoded = await(inFlight.poll());
+                if (encoded.reuse()) {
+                    copyPreviousEntry(previous.zip(), entry.path(), zos);
+                    reused++;
+                } else {
+                    ZipEntry zipEntry = new ZipEntry(entry.path());
+                    zipEntry.setTimeLocal(ENTRY_TIME);
+                    if (encoded.hash() != null) {
+                        zipEntry.setMethod(ZipEntry.STORED);
+                        zipEntry.setSize(encoded.data().length);
+                        zipEntry.setCompressedSize(encoded.data().length);
+                        zipEntry.setCrc(encoded.crc());
                     }
-                    byte[] pngBytes = nativeImageToBytes(img);
-                    zos.putNextEntry(new ZipEntry(path));
-                    zos.write(pngBytes);
+                    zos.putNextEntry(zipEntry);
+                    zos.write(encoded.data());
                     zos.closeEntry();
                 }
+                if (encoded.hash() != null) {
+                    manifest.put(entry.path(), encoded.hash());
+                }
+                job.done.incrementAndGet();
             }
 
+            ZipEntry manifestEntry = new ZipEntry(MANIFEST_PATH);
+            manifestEntry.setTimeLocal(ENTRY_TIME);
+            zos.putNextEntry(manifestEntry);
+            zos.write(buildManifest(manifest));
+            zos.closeEntry();
             zos.flush();
-            return outputFile;
+        } finally {
+            for (Future<EncodedEntry> pending : inFlight) {
+                pending.cancel(true);
+            }
+            if (previous != null) {
+                previous.zip().close();
+            }
+        }
+        if (previous != null) {
+            System.out.println("[TextureEditor] Incremental export reused " + reused + " of " + manifest.size() + " textures");
+        }
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
+    /**
+     * Worker side of one entry: hash the source, and only encode if the previous export doesn't have it.
+     */
+    private static EncodedEntry encodeEntry(PackEntry entry, PreviousPack previous) throws IOException {
+        String hash = entry.hash() != null ? entry.hash().compute() : null;
+        if (hash != null && previous != null && hash.equals(previous.hashes().get(entry.path()))
+                && previous.zip().getEntry(entry.path()) != null) {
+            return new EncodedEntry(null, 0, hash, true);
         }
+        byte[] data = entry.content().produce();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return new EncodedEntry(data, crc.getValue(), hash, false);
     }
 
     /**
-     * Legacy overload for backward compatibility.
+     * Write the pack into an unpacked folder, touching only files whose content changed and
+     * deleting files the previous export wrote that are no longer part of the pack.
      */
-    public static File export(String packName, int[][] iconPixels, int iconWidth, int iconHeight) {
-        return export(packName, packName, "", iconPixels, iconWidth, iconHeight);
+    private static void writeFolder(ExportJob job, Path folder, List<PackEntry> entries) throws IOException {
+        Files.createDirectories(folder);
+        Path manifestFile = folder.resolve(MANIFEST_PATH);
+        Map<String, String> previous = readFolderManifest(manifestFile);
+
+        int window = WORKER_COUNT * IN_FLIGHT_PER_WORKER;
+        ArrayDeque<Future<EncodedEntry>> inFlight = new ArrayDeque<>();
+        Map<String, String> manifest = new TreeMap<>();
+        int next = 0;
+        int written = 0;
+        boolean complete = false;
+
+        try {
+            for (PackEntry entry : entries) {
+                if (job.cancelled) throw new CancellationException();
+                while (next < entries.size() && inFlight.size() < window) {
+                    PackEntry pending = entries.get(next++);
+                    inFlight.add(ENCODE_EXECUTOR.submit(() -> encodeFolderEntry(pending, folder, previous)));
+                }
+
+                EncodedEntry encoded = await(inFlight.poll());
+                if (!encoded.reuse()) {
+                    writeFileAtomically(folder.resolve(entry.path()), encoded.data());
+                    job.bytesWritten.addAndGet(encoded.data().length);
+                    written++;
+                }
+                manifest.put(entry.path(), encoded.hash());
+                job.done.incrementAndGet();
+            }
+            complete = true;
+        } finally {
+            for (Future<EncodedEntry> pending : inFlight) {
+                pending.cancel(true);
+            }
+            if (!complete) {
+                // Record what was rewritten before stopping. Otherwise the old hashes would claim
+                // the new files are unchanged, and an export reverting them would be skipped.
+                Map<String, String> partial = new TreeMap<>(previous);
+                partial.putAll(manifest);
+                try {
+                    writeFileAtomically(manifestFile, buildManifest(partial));
+                } catch (IOException e) {
+                    System.out.println("[TextureEditor] Could not update folder manifest after stopping: " + e.getMessage());
+                }
+            }
+        }
+
+        // Remove files from the previous export that aren't part of the pack anymore
+        int removed = 0;
+        for (String oldPath : previous.keySet()) {
+            if (manifest.containsKey(oldPath)) continue;
+            Path stale = folder.resolve(oldPath).normalize();
+            if (!stale.startsWith(folder)) continue;
+            if (Files.deleteIfExists(stale)) removed++;
+            deleteEmptyParents(stale.getParent(), folder);
+        }
+
+        writeFileAtomically(manifestFile, buildManifest(manifest));
+        System.out.println("[TextureEditor] Folder export wrote " + written + " of " + entries.size() +
+                " files, removed " + removed + " stale file(s)");
+    }
+
+    /**
+     * Worker side of a folder entry. Texture entries are compared by source hash before encoding;
+     * small generated files (mcmeta) are produced and compared by content hash.
+     */
+    private static EncodedEntry encodeFolderEntry(PackEntry entry, Path folder, Map<String, String> previous) throws IOException {
+        boolean exists = Files.isRegularFile(folder.resolve(entry.path()));
+        if (entry.hash() != null) {
+            String hash = entry.hash().compute();
+            if (exists && hash.equals(previous.get(entry.path()))) {
+                return new EncodedEntry(null, 0, hash, true);
+            }
+            return new EncodedEntry(entry.content().produce(), 0, hash, false);
+        }
+        byte[] data = entry.content().produce();
+        String hash = "content:" + sha256(data);
+        return new EncodedEntry(data, 0, hash, exists && hash.equals(previous.get(entry.path())));
+    }
+
+    /**
+     * Whether a folder in resourcepacks/ was created by a folder export (and may be updated in place).
+     */
+    private static boolean isExportedFolder(Path folder) {
+        return Files.isDirectory(folder) && Files.isRegularFile(folder.resolve(MANIFEST_PATH));
     }
 
     /**
-     * Convert a NativeImage to PNG bytes by writing to a temp file.
+     * Whether a zip in resourcepacks/ was created by an export (and may be replaced by an update).
      */
-    private static byte[] nativeImageToBytes(NativeImage image) throws IOException {
-        Path tempFile = Files.createTempFile("textureeditor_", ".png");
+    private static boolean isExportedZip(Path zipFile) {
+        if (!Files.isRegularFile(zipFile)) return false;
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            return zip.getEntry(MANIFEST_PATH) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Map<String, String> readFolderManifest(Path manifestFile) {
+        if (!Files.isRegularFile(manifestFile)) return new HashMap<>();
+        try (Reader reader = Files.newBufferedReader(manifestFile, StandardCharsets.UTF_8)) {
+            Map<String, String> hashes = readManifest(reader);
+            return hashes != null ? hashes : new HashMap<>();
+        } catch (Exception e) {
+            System.out.println("[TextureEditor] Could not read folder manifest " + manifestFile + ": " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private static void writeFileAtomically(Path file, byte[] data) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), ".textureeditor-", ".tmp");
         try {
-            image.writeTo(tempFile);
-            return Files.readAllBytes(tempFile);
+            Files.write(temp, data);
+            moveIntoPlace(temp, file);
         } finally {
-            Files.deleteIfExists(tempFile);
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void deleteEmptyParents(Path dir, Path root) {
+        while (dir != null && dir.startsWith(root) && !dir.equals(root)) {
+            try (var children = Files.list(dir)) {
+                if (children.findAny().isPresent()) return;
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Copy an entry from the previous pack. Stored entries keep their CRC and size and are
+     * streamed through unchanged, so nothing is recompressed.
+     */
+    private static void copyPreviousEntry(ZipFile previous, String path, ZipOutputStream zos) throws IOException {
+        ZipEntry old = previous.getEntry(path);
+        ZipEntry copy = new ZipEntry(path);
+        copy.setTimeLocal(ENTRY_TIME);
+        if (old.getMethod() == ZipEntry.STORED) {
+            copy.setMethod(ZipEntry.STORED);
+            copy.setSize(old.getSize());
+            copy.setCompressedSize(old.getSize());
+            copy.setCrc(old.getCrc());
+        }
+        zos.putNextEntry(copy);
+        try (InputStream in = previous.getInputStream(old)) {
+            in.transferTo(zos);
+        }
+        zos.closeEntry();
+    }
+
+    /**
+     * Open the pack being updated and read its manifest. Returns null if there is no usable previous
+     * export, in which case everything is encoded from scratch.
+     */
+    private static PreviousPack openPrevious(Path previousFile) {
+        if (previousFile == null || !Files.isRegularFile(previousFile)) return null;
+        ZipFile zip = null;
+        try {
+            zip = new ZipFile(previousFile.toFile());
+            ZipEntry manifestEntry = zip.getEntry(MANIFEST_PATH);
+            if (manifestEntry == null) {
+                zip.close();
+                return null;
+            }
+            Map<String, String> hashes;
+            try (Reader reader = new InputStreamReader(zip.getInputStream(manifestEntry), StandardCharsets.UTF_8)) {
+                hashes = readManifest(reader);
+            }
+            if (hashes == null) {
+                zip.close();
+                return null;
+            }
+            return new PreviousPack(zip, hashes);
+        } catch (Exception e) {
+            System.out.println("[TextureEditor] Could not read previous export " + previousFile.getFileName() + ": " + e.getMessage());
+            if (zip != null) {
+                try {
+                    zip.close();
+                } catch (IOException ignored) {}
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Parse a manifest; returns null if it was written by an incompatible version.
+     */
+    private static Map<String, String> readManifest(Reader reader) {
+        JsonObject root = JsonParser.parseReader(reader).getAsJsonObject();
+        if (!root.has("version") || root.get("version").getAsInt() != MANIFEST_VERSION) return null;
+        Map<String, String> hashes = new HashMap<>();
+        for (Map.Entry<String, JsonElement> e : root.getAsJsonObject("entries").entrySet()) {
+            hashes.put(e.getKey(), e.getValue().getAsString());
+        }
+        return hashes;
+    }
+
+    private static byte[] buildManifest(Map<String, String> hashes) {
+        JsonObject root = new JsonObject();
+        root.addProperty("version", MANIFEST_VERSION);
+        JsonObject entries = new JsonObject();
+        hashes.forEach(entries::addProperty);
+        root.add("entries", entries);
+        return root.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Failed to encode export entry", e.getCause());
+        }
+    }
+
+    /**
+     * Counts bytes as they reach the file, for the export progress display.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final AtomicLong counter;
+
+        CountingOutputStream(OutputStream out, AtomicLong counter) {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            counter.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            counter.addAndGet(len);
         }
     }
 }
@@ -0,0 +1,416 @@
+package com.zeeesea.textureeditor.texture;
+
+import com.google.gson.JsonObject;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.texture.NativeImage;
+import net.minecraft.util.Identifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Loads an existing resource pack (zip or folder) back into the editor session.
+ *
+ * Every texture PNG under assets/&lt;namespace&gt;/textures/ is read and decoded on worker threads,
+ * together with its animation .mcmeta if there is one. Originals come from the resource packs
+ * below the runtime pack and the pack being imported, so importing a pack that is currently
+ * enabled still registers its textures as modified. Their files are read on the render thread in
+ * batches, so they never race a resource reload, and decoded on the workers. Once everything is
+ * decoded, the whole pack is applied in a single {@link TextureManager#applyLiveBatch} pass on
+ * the render thread.
+ */
+public class ResourcePackImporter {
+
+    // Decoded textures allowed to wait for collection at once, per worker
+    private static final int IN_FLIGHT_PER_WORKER = 8;
+    // Original files read per render-thread task, so a big pack doesn't stall a frame
+    private static final int ORIGINALS_PER_TASK = 128;
+
+    private static final int WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    private static final AtomicInteger WORKER_ID = new AtomicInteger();
+    private static final ExecutorService DECODE_EXECUTOR = Executors.newFixedThreadPool(WORKER_COUNT, r -> {
+        Thread t = new Thread(r, "TextureEditor-Import-" + WORKER_ID.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    // Runs the reader of each import job, one job at a time
+    private static final ExecutorService READER_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TextureEditor-ImportReader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Summary of a finished import.
+     *
+     * @param textures   still textures registered as modified
+     * @param animations animated textures registered as item animations
+     * @param live       textures that could be shown live right away
+     * @param skipped    PNGs that failed to decode, have no valid identifier or aren't used by the game
+     */
+    public record ImportResult(int textures, int animations, int live, int skipped) {}
+
+    /**
+     * A running background import. Progress counters are safe to poll from the render thread.
+     */
+    public static final class ImportJob {
+        private final File source;
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+        private final CompletableFuture<ImportResult> result = new CompletableFuture<>();
+        private volatile boolean cancelled = false;
+
+        private ImportJob(File source) {
+            this.source = source;
+        }
+
+        public File getSource() { return source; }
+        public int getTotal() { return total.get(); }
+        public int getDone() { return done.get(); }
+        public boolean isCancelled() { return cancelled; }
+        public boolean isFinished() { return result.isDone(); }
+
+        /** Request cancellation; nothing is applied if the job hasn't reached the apply step yet. */
+        public void cancel() { cancelled = true; }
+
+        /** The import summary once finished successfully, otherwise null. */
+        public ImportResult getResult() {
+            return result.isDone() && !result.isCompletedExceptionally() ? result.join() : null;
+        }
+    }
+
+    /**
+     * Decoded content of one texture PNG; {@code animation} is null for still textures.
+     */
+    private record DecodedTexture(Identifier textureId, int[][] pixels, int width, int height,
+                                  int[][] origPixels, boolean inResources, TextureManager.ItemAnimationData animation) {}
+
+    /**
+     * Read access to a pack, backed by a zip file or a folder. Safe for concurrent reads.
+     */
+    private interface PackSource extends Closeable {
+        List<String> list() throws IOException;
+        InputStream open(String path) throws IOException;
+    }
+
+    /**
+     * List importable packs in resourcepacks/: zip files and folders with a pack.mcmeta.
+     */
+    public static List<File> listPacks() {
+        File dir = new File(MinecraftClient.getInstance().runDirectory, "resourcepacks");
+        File[] files = dir.listFiles();
+        List<File> packs = new ArrayList<>();
+        if (files == null) return packs;
+        for (File file : files) {
+            if (file.isFile() && file.getName().toLowerCase(java.util.Locale.ROOT).endsWith(".zip")) {
+                packs.add(file);
+            } else if (file.isDirectory() && new File(file, "pack.mcmeta").isFile()) {
+                packs.add(file);
+            }
+        }
+        packs.sort((a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        return packs;
+    }
+
+    /**
+     * Start importing a pack in the background.
+     *
+     * @param pack zip file or pack folder
+     * @return the running job
+     */
+    public static ImportJob importAsync(File pack) {
+        ImportJob job = new ImportJob(pack);
+        READER_EXECUTOR.execute(() -> runImport(job));
+        return job;
+    }
+
+    private static void runImport(ImportJob job) {
+        long start = System.nanoTime();
+        try (PackSource source = openSource(job.source)) {
+            List<DecodedTexture> decoded = decodeAll(job, source);
+            if (job.cancelled) throw new CancellationException();
+
+            // Hand everything to the render thread in one go
+            CompletableFuture<ImportResult> applied = new CompletableFuture<>();
+            MinecraftClient.getInstance().execute(() -> {
+                try {
+                    applied.complete(apply(decoded, job.getTotal() - decoded.size()));
+                } catch (Throwable t) {
+                    applied.completeExceptionally(t);
+                }
+            });
+            ImportResult result = applied.join();
+            System.out.println("[TextureEditor] Imported " + job.source.getName() + ": " + result.textures() + " textures, " +
+                    result.animations() + " animations, " + result.skipped() + " skipped in " +
+                    (System.nanoTime() - start) / 1_000_000 + "ms");
+            job.result.complete(result);
+        } catch (CancellationException e) {
+            System.out.println("[TextureEditor] Import of " + job.source.getName() + " cancelled");
+            job.result.completeExceptionally(e);
+        } catch (Throwable t) {
+            System.out.println("[TextureEditor] Import of " + job.source.getName() + " failed: " + t.getMessage());
+            t.printStackTrace();
+            job.result.completeExceptionally(t);
+        }
+    }
+
+    /**
+     * Decode every texture of the pack on the worker pool, keeping a bounded number in flight.
+     */
+    private static List<DecodedTexture> decodeAll(ImportJob job, PackSource source) throws IOException {
+        List<String> paths = source.list();
+        Set<String> present = new HashSet<>(paths);
+        List<String> textures = new ArrayList<>();
+        List<Identifier> textureIds = new ArrayList<>();
+        for (String path : paths) {
+            Identifier textureId = toTextureId(path);
+            if (textureId == null) continue;
+            textures.add(path);
+            textureIds.add(textureId);
+        }
+        job.total.set(textures.size());
+        // An enabled copy of the pack itself isn't the original; resource packs in resourcepacks/ go by "file/<name>"
+        Map<Identifier, byte[]> originals = readOriginalFiles(textureIds, "file/" + job.source.getName(), () -> job.cancelled);
+
+        int window = WORKER_COUNT * IN_FLIGHT_PER_WORKER;
+        ArrayDeque<Future<DecodedTexture>> inFlight = new ArrayDeque<>();
+        List<DecodedTexture> decoded = new ArrayList<>(textures.size());
+        int next = 0;
+        try {
+            while (next < textures.size() || !inFlight.isEmpty()) {
+                if (job.cancelled) throw new CancellationException();
+                while (next < textures.size() && inFlight.size() < window) {
+                    String path = textures.get(next++);
+                    boolean hasMcmeta = present.contains(path + ".mcmeta");
+                    byte[] original = originals.get(toTextureId(path));
+                    inFlight.add(DECODE_EXECUTOR.submit(() -> decode(source, path, hasMcmeta, original)));
+                }
+                DecodedTexture texture = await(inFlight.poll());
+                if (texture != null) decoded.add(texture);
+                job.done.incrementAndGet();
+            }
+        } finally {
+            for (Future<DecodedTexture> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+        return decoded;
+    }
+
+    /**
+     * Read the original files of some textures on the render thread, a batch per task, while
+     * the calling thread waits. Textures no pack has are left out.
+     *
+     * @param skipPackId id of a resource pack whose version doesn't count as the original, or null
+     * @param cancelled  checked between batches
+     */
+    static Map<Identifier, byte[]> readOriginalFiles(List<Identifier> textureIds, String skipPackId, BooleanSupplier cancelled) {
+        Map<Identifier, byte[]> files = new HashMap<>();
+        MinecraftClient client = MinecraftClient.getInstance();
+        for (int from = 0; from < textureIds.size(); from += ORIGINALS_PER_TASK) {
+            if (cancelled.getAsBoolean()) throw new CancellationException();
+            List<Identifier> batch = textureIds.subList(from, Math.min(textureIds.size(), from + ORIGINALS_PER_TASK));
+            files.putAll(CompletableFuture.supplyAsync(() -> {
+                Map<Identifier, byte[]> read = new HashMap<>();
+                for (Identifier textureId : batch) {
+                    byte[] png = TextureManager.getInstance().readResourceBytes(textureId, skipPackId);
+                    if (png != null) read.put(textureId, png);
+                }
+                return read;
+            }, client).join());
+        }
+        return files;
+    }
+
+    /**
+     * Worker side: decode one PNG (and its animation, if any) plus the original it replaces.
+     * @param original file of the original, or null if the resources don't have one
+     * @return null if the file can't be decoded
+     */
+    private static DecodedTexture decode(PackSource source, String path, boolean hasMcmeta, byte[] original) {
+        Identifier textureId = toTextureId(path);
+        try (InputStream in = source.open(path); NativeImage image = NativeImage.read(in)) {
+            int w = image.getWidth();
+            int h = image.getHeight();
+
+            TextureManager.ItemAnimationData animation = null;
+            if (hasMcmeta) {
+                JsonObject meta;
+                try (InputStream metaIn = source.open(path + ".mcmeta")) {
+                    meta = ItemAnimationResourceLoader.readAnimationObject(metaIn);
+                }
+                ItemAnimationResourceLoader.LoadedAnimation loaded =
+                        meta != null ? ItemAnimationResourceLoader.fromSheet(image, meta) : null;
+                if (loaded != null) {
+                    List<int[][]> frames = loaded.frames();
+                    // Ping-pong packs written by the exporter list each frame twice; keep the forward half
+                    int sheetFrames = h / loaded.height();
+                    boolean pingPong = ItemAnimationResourceLoader.isPingPongOrder(meta, sheetFrames);
+                    if (pingPong) frames = frames.subList(0, sheetFrames);
+                    Identifier spriteId = Identifier.of(textureId.getNamespace(),
+                            textureId.getPath().substring("textures/".length(), textureId.getPath().length() - ".png".length()));
+                    animation = new TextureManager.ItemAnimationData(textureId, spriteId, new ArrayList<>(frames),
+                            loaded.width(), loaded.height(), loaded.frameTimeTicks(), pingPong, loaded.interpolate());
+                }
+            }
+
+            int[][] pixels = null;
+            int[][] orig = null;
+            if (animation != null) {
+                if (original != null) orig = TextureManager.decodeResourcePixels(original, animation.width(), animation.height());
+            } else {
+                pixels = new int[w][h];
+                for (int x = 0; x < w; x++) {
+                    int[] column = pixels[x];
+                    for (int y = 0; y < h; y++) {
+                        column[y] = image.getColorArgb(x, y);
+                    }
+                }
+                if (original != null) orig = TextureManager.decodeResourcePixels(original, w, h);
+            }
+            // The original may have another size; the game still uses the texture
+            return new DecodedTexture(textureId, pixels, w, h, orig, original != null, animation);
+        } catch (Exception e) {
+            System.out.println("[TextureEditor] Could not import " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Render-thread side: register and show everything that was decoded.
+     */
+    private static ImportResult apply(List<DecodedTexture> decoded, int skipped) {
+        List<TextureManager.LiveUpload> uploads = new ArrayList<>();
+        List<TextureManager.ItemAnimationData> animations = new ArrayList<>();
+        TextureManager manager = TextureManager.getInstance();
+        for (DecodedTexture texture : decoded) {
+            if (!isUsedByGame(manager, texture)) {
+                skipped++;
+            } else if (texture.animation() != null) {
+                if (texture.origPixels() != null) {
+                    manager.storeOriginal(texture.textureId(), texture.origPixels(),
+                            texture.animation().width(), texture.animation().height());
+                }
+                animations.add(texture.animation());
+            } else {
+                uploads.add(new TextureManager.LiveUpload(texture.textureId(), texture.pixels(),
+                        texture.width(), texture.height(), texture.origPixels()));
+            }
+        }
+        int live = manager.applyLiveBatch(uploads, animations);
+        return new ImportResult(uploads.size(), animations.size(), live, skipped);
+    }
+
+    /**
+     * Whether the game uses a texture: atlas sprites, and standalone textures (entities, GUI
+     * backgrounds...) the current resources also provide. Anything else in the pack, like leftover
+     * files or textures of mods that aren't installed, would only be registered to never be drawn.
+     */
+    private static boolean isUsedByGame(TextureManager manager, DecodedTexture texture) {
+        return texture.inResources() || manager.hasAtlasSprite(texture.textureId());
+    }
+
+    /**
+     * Texture identifier for a pack path like {@code assets/minecraft/textures/block/stone.png}, or null.
+     */
+    private static Identifier toTextureId(String path) {
+        if (!path.startsWith("assets/") || !path.endsWith(".png")) return null;
+        int nsEnd = path.indexOf('/', "assets/".length());
+        if (nsEnd < 0) return null;
+        String namespace = path.substring("assets/".length(), nsEnd);
+        String texturePath = path.substring(nsEnd + 1);
+        if (!texturePath.startsWith("textures/")) return null;
+        return Identifier.tryParse(namespace, texturePath);
+    }
+
+    private static PackSource openSource(File pack) throws IOException {
+        if (pack.isDirectory()) {
+            Path root = pack.toPath();
+            return new PackSource() {
+                @Override
+                public List<String> list() throws IOException {
+                    try (Stream<Path> files = Files.walk(root)) {
+                        return files.filter(Files::isRegularFile)
+                                .map(p -> root.relativize(p).toString().replace(File.separatorChar, '/'))
+                                .toList();
+                    }
+                }
+
+                @Override
+                public InputStream open(String path) throws IOException {
+                    return new ByteArrayInputStream(Files.readAllBytes(root.resolve(path)));
+                }
+
+                @Override
+                public void close() {}
+            };
+        }
+
+        ZipFile zip = new ZipFile(pack);
+        return new PackSource() {
+            @Override
+            public List<String> list() {
+                List<String> names = new ArrayList<>();
+                Enumeration<? extends ZipEntry> entries = zip.entries();
+                while (entries.hasMoreElements()) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) names.add(entry.getName());
+                }
+                return names;
+            }
+
+            @Override
+            public InputStream open(String path) throws IOException {
+                ZipEntry entry = zip.getEntry(path);
+                if (entry == null) throw new IOException("Missing entry " + path);
+                // Inflate fully on the worker so the decoder gets a plain byte stream
+                try (InputStream in = zip.getInputStream(entry)) {
+                    return new ByteArrayInputStream(in.readAllBytes());
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                zip.close();
+            }
+        };
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException(cause);
+        }
+    }
+}
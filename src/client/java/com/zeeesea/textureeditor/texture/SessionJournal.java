@@ -0,0 +1,523 @@
+package com.zeeesea.textureeditor.texture;
+
+import com.zeeesea.textureeditor.settings.ModSettings;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.Identifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Append-only journal of the editing session, so a crash doesn't lose the edits held in memory.
+ *
+ * TextureManager reports every local texture/animation change here. Once per second the render thread
+ * copies the pixels of the textures that changed and hands them to a single writer thread, which
+ * XORs them against the last state it wrote for that texture, deflates the record and appends it
+ * (length + CRC framed) to textureeditor_session/journal.bin. The file is rewritten with just the
+ * current state when it grows well past that size. On the next launch the journal is replayed on
+ * the writer thread and applied with one {@link TextureManager#applyLiveBatch} call.
+ *
+ * The journal itself is never touched on the render thread; only the originals of the restored
+ * textures are read there, from the resource packs.
+ */
+public class SessionJournal {
+    private static final SessionJournal INSTANCE = new SessionJournal();
+
+    private static final int MAGIC = 0x54454A31; // "TEJ1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte RECORD_TEXTURE = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_ANIMATION = 3;
+    private static final byte RECORD_REMOVE_ANIMATION = 4;
+
+    // Render-thread ticks between flushes of changed textures to the writer
+    private static final int FLUSH_INTERVAL_TICKS = 20;
+    // Compact once the journal is this much larger than the state it describes (and at least COMPACT_MIN_BYTES)
+    private static final int COMPACT_RATIO = 4;
+    private static final long COMPACT_MIN_BYTES = 4L * 1024 * 1024;
+    // Longest record accepted on replay; anything larger is treated as a torn write
+    private static final int MAX_RECORD_BYTES = 256 * 1024 * 1024;
+
+    private static final ExecutorService WRITER_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TextureEditor-Journal");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Render thread: textures changed since the last flush
+    private final Set<Identifier> dirty = ConcurrentHashMap.newKeySet();
+    private boolean clearPending = false;
+    private int ticksSinceFlush = 0;
+    private boolean restoreStarted = false;
+
+    // Writer thread only: what the journal on disk currently describes
+    private final Map<Identifier, TextureState> written = new LinkedHashMap<>();
+    private final Map<Identifier, TextureManager.ItemAnimationData> writtenAnimations = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long compactedSize = HEADER_BYTES;
+
+    private record TextureState(int[] pixels, int width, int height) {}
+
+    /**
+     * Snapshot of one changed texture as handed to the writer; null members mean "removed".
+     */
+    private record Change(Identifier textureId, TextureState texture, TextureManager.ItemAnimationData animation) {}
+
+    private SessionJournal() {}
+
+    public static SessionJournal getInstance() { return INSTANCE; }
+
+    private static Path getJournalFile() {
+        return new File(MinecraftClient.getInstance().runDirectory, "textureeditor_session").toPath().resolve("journal.bin");
+    }
+
+    /** Called by TextureManager whenever the player changes a texture or its animation (not for synced ones). */
+    void markDirty(Identifier textureId) {
+        dirty.add(textureId);
+    }
+
+    /** Called by TextureManager when the whole session is reset. */
+    void markCleared() {
+        dirty.clear();
+        clearPending = true;
+    }
+
+    /**
+     * Render-thread tick: restore the previous session once the game has finished loading,
+     * then periodically pass changed textures to the writer.
+     */
+    public void tick(MinecraftClient client) {
+        if (!ModSettings.getInstance().sessionJournal) return;
+        if (!restoreStarted) {
+            // Wait for the initial resource load, so the atlases the restore uploads into exist
+            if (client.getOverlay() != null) return;
+            restoreStarted = true;
+            WRITER_EXECUTOR.execute(this::restore);
+            return;
+        }
+
+        if (++ticksSinceFlush < FLUSH_INTERVAL_TICKS) return;
+        ticksSinceFlush = 0;
+        flush();
+    }
+
+    private void flush() {
+        boolean clear = clearPending;
+        clearPending = false;
+        if (!clear && dirty.isEmpty()) return;
+
+        TextureManager manager = TextureManager.getInstance();
+        List<Change> changes = new ArrayList<>(dirty.size());
+        for (Identifier textureId : dirty) {
+            changes.add(new Change(textureId, captureTexture(manager, textureId), manager.getItemAnimation(textureId)));
+        }
+        dirty.clear();
+
+        WRITER_EXECUTOR.execute(() -> {
+            try {
+                write(clear, changes);
+            } catch (IOException e) {
+                System.out.println("[TextureEditor] Session journal write failed: " + e.getMessage());
+                closeChannel();
+            }
+        });
+    }
+
+    private static TextureState captureTexture(TextureManager manager, Identifier textureId) {
+        int[][] pixels = manager.getPixels(textureId);
+        int[] dims = manager.getDimensions(textureId);
+        if (pixels == null || dims == null) return null;
+        return new TextureState(flatten(pixels, dims[0], dims[1]), dims[0], dims[1]);
+    }
+
+    // ---- Writer thread ----
+
+    private void write(boolean clear, List<Change> changes) throws IOException {
+        if (clear) {
+            written.clear();
+            writtenAnimations.clear();
+        }
+
+        List<byte[]> records = new ArrayList<>();
+        for (Change change : changes) {
+            Identifier id = change.textureId();
+            TextureState previous = written.get(id);
+            if (change.texture() == null) {
+                if (previous != null) {
+                    records.add(removeRecord(RECORD_REMOVE, id));
+                    written.remove(id);
+                }
+            } else if (previous == null || previous.width() != change.texture().width()
+                    || !Arrays.equals(previous.pixels(), change.texture().pixels())) {
+                records.add(textureRecord(id, change.texture(), previous));
+                written.put(id, change.texture());
+            }
+
+            TextureManager.ItemAnimationData previousAnim = writtenAnimations.get(id);
+            if (change.animation() == null) {
+                if (previousAnim != null) {
+                    records.add(removeRecord(RECORD_REMOVE_ANIMATION, id));
+                    writtenAnimations.remove(id);
+                }
+            } else if (!sameAnimation(previousAnim, change.animation())) {
+                records.add(animationRecord(change.animation()));
+                writtenAnimations.put(id, change.animation());
+            }
+        }
+
+        if (clear) {
+            // Nothing before the clear matters anymore: start over from the current state
+            compact();
+            return;
+        }
+        if (records.isEmpty()) return;
+
+        FileChannel out = openForAppend();
+        for (byte[] record : records) {
+            writeFully(out, ByteBuffer.wrap(frame(record)));
+        }
+        out.force(false);
+
+        if (out.size() > Math.max(COMPACT_MIN_BYTES, compactedSize * COMPACT_RATIO)) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the journal as one full record per texture and animation.
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        closeChannel();
+        Path file = getJournalFile();
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling("journal.bin.tmp");
+
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header());
+            for (Map.Entry<Identifier, TextureState> e : written.entrySet()) {
+                writeFully(out, ByteBuffer.wrap(frame(textureRecord(e.getKey(), e.getValue(), null))));
+            }
+            for (TextureManager.ItemAnimationData anim : writtenAnimations.values()) {
+                writeFully(out, ByteBuffer.wrap(frame(animationRecord(anim))));
+            }
+            out.force(true);
+            compactedSize = out.size();
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.out.println("[TextureEditor] Compacted session journal to " + compactedSize / 1024 + " KB (" +
+                written.size() + " textures) in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+
+    private FileChannel openForAppend() throws IOException {
+        if (channel != null && channel.isOpen()) return channel;
+        Path file = getJournalFile();
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            channel.truncate(0);
+            writeFully(channel, header());
+        }
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+        channel = null;
+    }
+
+    /**
+     * Replay the journal of the previous session and apply it in one batch on the render thread.
+     */
+    private void restore() {
+        Path file = getJournalFile();
+        if (!Files.isRegularFile(file)) return;
+        long start = System.nanoTime();
+        int records = 0;
+        long validEnd = HEADER_BYTES;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            readFully(in, header);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                System.out.println("[TextureEditor] Ignoring session journal with unknown format");
+                return;
+            }
+
+            ByteBuffer frameHeader = ByteBuffer.allocate(8);
+            while (true) {
+                frameHeader.clear();
+                if (!readFully(in, frameHeader)) break;
+                frameHeader.flip();
+                int length = frameHeader.getInt();
+                int crc = frameHeader.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                if (!readFully(in, payload)) break;
+                CRC32 check = new CRC32();
+                check.update(payload.array());
+                if ((int) check.getValue() != crc) break;
+                replay(payload.array());
+                records++;
+                validEnd = in.position();
+            }
+        } catch (IOException e) {
+            System.out.println("[TextureEditor] Could not read session journal: " + e.getMessage());
+        }
+
+        // Anything after the last intact record is a torn write from the crash
+        try {
+            if (records > written.size() + writtenAnimations.size()) {
+                compact();
+            } else {
+                try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    if (out.size() > validEnd) out.truncate(validEnd);
+                }
+                compactedSize = validEnd;
+            }
+        } catch (IOException e) {
+            System.out.println("[TextureEditor] Could not tidy session journal: " + e.getMessage());
+        }
+
+        if (written.isEmpty() && writtenAnimations.isEmpty()) return;
+
+        // Original files are read on the render thread, so they never race a resource reload
+        List<Identifier> textureIds = new ArrayList<>(written.keySet());
+        for (Identifier id : writtenAnimations.keySet()) {
+            if (!written.containsKey(id)) textureIds.add(id);
+        }
+        Map<Identifier, byte[]> originalFiles = ResourcePackImporter.readOriginalFiles(textureIds, null, () -> false);
+
+        List<TextureManager.LiveUpload> uploads = new ArrayList<>(written.size());
+        for (Map.Entry<Identifier, TextureState> e : written.entrySet()) {
+            TextureState state = e.getValue();
+            if (writtenAnimations.containsKey(e.getKey())) continue;
+            int[][] pixels = unflatten(state.pixels(), state.width(), state.height());
+            uploads.add(new TextureManager.LiveUpload(e.getKey(), pixels, state.width(), state.height(),
+                    decodeOriginal(originalFiles.get(e.getKey()), state.width(), state.height())));
+        }
+        List<TextureManager.ItemAnimationData> animations = new ArrayList<>(writtenAnimations.values());
+        Map<Identifier, int[][]> animationOriginals = new LinkedHashMap<>();
+        for (TextureManager.ItemAnimationData anim : animations) {
+            int[][] orig = decodeOriginal(originalFiles.get(anim.textureId()), anim.width(), anim.height());
+            if (orig != null) animationOriginals.put(anim.textureId(), orig);
+        }
+
+        long readMs = (System.nanoTime() - start) / 1_000_000;
+        int total = records;
+        MinecraftClient.getInstance().execute(() -> {
+            TextureManager manager = TextureManager.getInstance();
+            for (TextureManager.ItemAnimationData anim : animations) {
+                int[][] orig = animationOriginals.get(anim.textureId());
+                if (orig != null) manager.storeOriginal(anim.textureId(), orig, anim.width(), anim.height());
+            }
+            manager.applyLiveBatch(uploads, animations);
+            System.out.println("[TextureEditor] Restored " + uploads.size() + " textures and " + animations.size() +
+                    " animations from the session journal (" + total + " records, read in " + readMs + "ms)");
+        });
+    }
+
+    private static int[][] decodeOriginal(byte[] png, int width, int height) {
+        return png != null ? TextureManager.decodeResourcePixels(png, width, height) : null;
+    }
+
+    private void replay(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(payload)))) {
+            byte type = in.readByte();
+            switch (type) {
+                case RECORD_TEXTURE -> {
+                    Identifier id = Identifier.of(in.readUTF());
+                    int w = in.readInt();
+                    int h = in.readInt();
+                    boolean diff = in.readBoolean();
+                    int[] pixels = readInts(in, w * h);
+                    TextureState base = written.get(id);
+                    if (diff) {
+                        if (base == null || base.width() != w || base.height() != h) return;
+                        for (int i = 0; i < pixels.length; i++) pixels[i] ^= base.pixels()[i];
+                    }
+                    written.put(id, new TextureState(pixels, w, h));
+                }
+                case RECORD_REMOVE -> written.remove(Identifier.of(in.readUTF()));
+                case RECORD_ANIMATION -> {
+                    Identifier id = Identifier.of(in.readUTF());
+                    Identifier spriteId = Identifier.of(in.readUTF());
+                    int w = in.readInt();
+                    int h = in.readInt();
+                    int frameTime = in.readInt();
+                    boolean pingPong = in.readBoolean();
+                    boolean interpolate = in.readBoolean();
+                    int frameCount = in.readInt();
+                    List<int[][]> frames = new ArrayList<>(frameCount);
+                    for (int i = 0; i < frameCount; i++) {
+                        frames.add(unflatten(readInts(in, w * h), w, h));
+                    }
+                    writtenAnimations.put(id, new TextureManager.ItemAnimationData(id, spriteId, frames, w, h,
+                            frameTime, pingPong, interpolate));
+                }
+                case RECORD_REMOVE_ANIMATION -> writtenAnimations.remove(Identifier.of(in.readUTF()));
+                default -> throw new IOException("Unknown journal record type " + type);
+            }
+        }
+    }
+
+    // ---- Record encoding ----
+
+    /**
+     * Texture record; stored as an XOR against {@code base} when the size is unchanged, which
+     * leaves untouched pixels as zeros that deflate to almost nothing.
+     */
+    private static byte[] textureRecord(Identifier id, TextureState state, TextureState base) throws IOException {
+        boolean diff = base != null && base.width() == state.width() && base.height() == state.height();
+        int[] data = state.pixels();
+        if (diff) {
+            data = data.clone();
+            for (int i = 0; i < data.length; i++) data[i] ^= base.pixels()[i];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = deflating(bytes)) {
+            out.writeByte(RECORD_TEXTURE);
+            out.writeUTF(id.toString());
+            out.writeInt(state.width());
+            out.writeInt(state.height());
+            out.writeBoolean(diff);
+            writeInts(out, data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] animationRecord(TextureManager.ItemAnimationData anim) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = deflating(bytes)) {
+            out.writeByte(RECORD_ANIMATION);
+            out.writeUTF(anim.textureId().toString());
+            out.writeUTF(anim.spriteId().toString());
+            out.writeInt(anim.width());
+            out.writeInt(anim.height());
+            out.writeInt(anim.frameTimeTicks());
+            out.writeBoolean(anim.pingPong());
+            out.writeBoolean(anim.interpolate());
+            out.writeInt(anim.frames().size());
+            for (int[][] frame : anim.frames()) {
+                writeInts(out, flatten(frame, anim.width(), anim.height()));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] removeRecord(byte type, Identifier id) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = deflating(bytes)) {
+            out.writeByte(type);
+            out.writeUTF(id.toString());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataOutputStream deflating(ByteArrayOutputStream bytes) {
+        return new DataOutputStream(new DeflaterOutputStream(bytes, new Deflater(Deflater.BEST_SPEED), 8192));
+    }
+
+    private static boolean sameAnimation(TextureManager.ItemAnimationData a, TextureManager.ItemAnimationData b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        if (a.width() != b.width() || a.height() != b.height() || a.frameTimeTicks() != b.frameTimeTicks()
+                || a.pingPong() != b.pingPong() || a.interpolate() != b.interpolate()
+                || !a.spriteId().equals(b.spriteId()) || a.frames().size() != b.frames().size()) return false;
+        for (int i = 0; i < a.frames().size(); i++) {
+            if (!Arrays.deepEquals(a.frames().get(i), b.frames().get(i))) return false;
+        }
+        return true;
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+        return header;
+    }
+
+    private static byte[] frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer framed = ByteBuffer.allocate(8 + payload.length);
+        framed.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        return framed.array();
+    }
+
+    private static void writeInts(DataOutputStream out, int[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(data.length * 4);
+        buffer.asIntBuffer().put(data);
+        out.write(buffer.array());
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        byte[] raw = new byte[count * 4];
+        in.readFully(raw);
+        int[] data = new int[count];
+        ByteBuffer.wrap(raw).asIntBuffer().get(data);
+        return data;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) out.write(buffer);
+    }
+
+    /** @return false if the channel ended before the buffer was filled */
+    private static boolean readFully(FileChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+
+    private static int[] flatten(int[][] pixels, int width, int height) {
+        int[] flat = new int[width * height];
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(pixels[x], 0, flat, x * height, height);
+        }
+        return flat;
+    }
+
+    private static int[][] unflatten(int[] flat, int width, int height) {
+        int[][] pixels = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(flat, x * height, pixels[x], 0, height);
+        }
+        return pixels;
+    }
+}
@@ -2,6 +2,7 @@ package com.zeeesea.textureeditor.texture;
 
 import com.zeeesea.textureeditor.mixin.client.SpriteAccessor;
 import com.zeeesea.textureeditor.mixin.client.SpriteContentsAccessor;
+import com.zeeesea.textureeditor.sync.TextureSyncClient;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.textures.FilterMode;
 import com.mojang.blaze3d.textures.GpuTexture;
@@ -14,6 +15,7 @@ import net.minecraft.client.texture.NativeImage;
 import net.minecraft.client.texture.Sprite;
 import net.minecraft.client.texture.SpriteAtlasTexture;
 import net.minecraft.client.texture.SpriteContents;
+import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.MathHelper;
 import com.mojang.blaze3d.buffers.GpuBuffer;
@@ -21,6 +23,7 @@ import com.mojang.blaze3d.buffers.Std140Builder;
 import com.mojang.blaze3d.systems.RenderPass;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -28,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.joml.Matrix4f;
 import org.lwjgl.system.MemoryUtil;
 
@@ -40,15 +44,37 @@ public class TextureManager {
     private static final TextureManager INSTANCE = new TextureManager();
 
     private final Map<Identifier, int[][]> modifiedTextures = new HashMap<>();
-    private final Map<Identifier, int[]> textureDimensions = new HashMap<>();
-    private final Map<Identifier, int[][]> originalTextures = new HashMap<>();
+    // Dimensions and originals are also read by the sync decode worker
+    private final Map<Identifier, int[]> textureDimensions = new ConcurrentHashMap<>();
+    // Bumped whenever a texture's served content changes; never reused, so caches can key on it
+    private final Map<Identifier, Long> textureVersions = new HashMap<>();
+    private long nextTextureVersion = 1;
+    private final Map<Identifier, int[][]> originalTextures = new ConcurrentHashMap<>();
     private final Map<Identifier, ItemAnimationData> itemAnimations = new HashMap<>();
     private final Map<Identifier, LiveItemAnimation> liveItemAnimations = new HashMap<>();
+    // Opaque mask each item sprite's baked model geometry was last built from (keyed by sprite id)
+    private final Map<Identifier, OpaqueMask> bakedMasks = new HashMap<>();
+    private Object bakedMasksSource;
+    // Original (frame 0) and modified (frame 1) pixels of each edited texture, staged on the GPU.
+    // A null value marks a texture that can't be staged and always takes the CPU upload path.
+    private final Map<Identifier, ResidentSpriteFrames> previewStages = new HashMap<>();
+    private final ArrayDeque<Identifier> previewQueue = new ArrayDeque<>();
+    private int previewQueueTotal = 0;
     private boolean previewingOriginals = false;
     private volatile boolean itemGuiAtlasDirty = false;
+    // Set while a batch upload or an animation tick runs, to keep per-sprite upload logging out of the log
+    private boolean batchUploading = false;
+    // Set while textures synced by other players are applied; those aren't journaled as our own edits
+    private boolean applyingSynced = false;
 
     public record ItemAnimationData(Identifier textureId, Identifier spriteId, List<int[][]> frames, int width, int height, int frameTimeTicks, boolean pingPong, boolean interpolate) {}
 
+    /**
+     * One texture of a batched live apply; {@code origPixels} may be null to read the original
+     * from the current resources.
+     */
+    public record LiveUpload(Identifier textureId, int[][] pixels, int width, int height, int[][] origPixels) {}
+
     private static final class LiveItemAnimation {
         private final Identifier textureId;
         private final Identifier spriteId;
@@ -61,7 +87,13 @@ public class TextureManager {
         private int tickCounter = 0;
         private int frameIndex = 0;
         private int direction = 1;
-        private int lastGeometryHash;
+        private ResidentSpriteFrames resident;
+        private boolean residentFailed = false;
+        private int[][] blendBuffer;
+        private int displayFrame = 0;
+        private int displayNextFrame = 0;
+        private int displayTick = 0;
+        private boolean displayStale = false;
 
         private LiveItemAnimation(Identifier textureId, Identifier spriteId, List<int[][]> frames,
                                   int width, int height, int frameTimeTicks, boolean pingPong, boolean interpolate) {
@@ -73,10 +105,29 @@ public class TextureManager {
             this.frameTimeTicks = Math.max(1, frameTimeTicks);
             this.pingPong = pingPong;
             this.interpolate = interpolate;
-            this.lastGeometryHash = frames.isEmpty() ? 0 : computeOpaqueMaskHash(frames.getFirst(), width, height);
+            this.resident = frames.isEmpty() ? null : new ResidentSpriteFrames(spriteId, frames, width, height);
+        }
+
+        private void release() {
+            if (resident != null) {
+                resident.close();
+            }
         }
     }
 
+    private static final Identifier[] LIVE_ATLAS_IDS = {
+            SpriteAtlasTexture.BLOCK_ATLAS_TEXTURE,
+            SpriteAtlasTexture.ITEMS_ATLAS_TEXTURE,
+            Identifier.ofVanilla("textures/atlas/gui.png"),
+            Identifier.ofVanilla("textures/atlas/celestials.png")
+    };
+    private static final String[] LIVE_ATLAS_NAMES = {"BLOCK", "ITEMS", "GUI", "CELESTIALS"};
+
+    // Render-thread time the preview toggle may spend per tick before continuing on the next one
+    private static final long PREVIEW_TICK_BUDGET_NANOS = 4_000_000L;
+    // Textures staged ahead of time per idle tick, so staging never shows up as a hitch
+    private static final int PREVIEW_STAGES_PER_IDLE_TICK = 2;
+
     private TextureManager() {}
 
     public static TextureManager getInstance() { return INSTANCE; }
@@ -90,6 +141,7 @@ public class TextureManager {
         if (orig == null) {
             modifiedTextures.put(textureId, pixels);
             textureDimensions.put(textureId, new int[]{width, height});
+            bumpVersion(textureId);
             return;
         }
 
@@ -109,6 +161,10 @@ public class TextureManager {
             }
         }
 
+        // Any staged preview copy of the old pixels is stale now
+        releasePreviewStage(textureId);
+
+        bumpVersion(textureId);
         if (isDifferent) {
             modifiedTextures.put(textureId, pixels);
             textureDimensions.put(textureId, new int[]{width, height});
@@ -123,6 +179,26 @@ public class TextureManager {
         }
     }
 
+    private void putAliasIfAbsent(Identifier aliasId, int[][] pixels, int width, int height) {
+        if (modifiedTextures.putIfAbsent(aliasId, pixels) != null) return;
+        textureDimensions.putIfAbsent(aliasId, new int[]{width, height});
+        // Not journaled: restoring the texture it aliases marks it again
+        textureVersions.put(aliasId, nextTextureVersion++);
+    }
+
+    private void bumpVersion(Identifier textureId) {
+        textureVersions.put(textureId, nextTextureVersion++);
+        if (!applyingSynced) SessionJournal.getInstance().markDirty(textureId);
+    }
+
+    /**
+     * Version of a texture's modified pixels / animation; changes on every update.
+     * Callers that modify the stored pixel arrays in place must go through putTexture again.
+     */
+    public long getTextureVersion(Identifier textureId) {
+        return textureVersions.getOrDefault(textureId, 0L);
+    }
+
     // When a texture is modified, also mark any known armor/equipment aliases so BrowseScreen can detect them
     private void addArmorAliasMarks(Identifier textureId, int[][] pixels, int width, int height) {
         String path = textureId.getPath();
@@ -133,22 +209,19 @@ public class TextureManager {
             String name = path.substring("textures/entity/equipment/humanoid/".length());
             if (name.endsWith(".png")) name = name.substring(0, name.length() - 4);
             Identifier modelId = Identifier.of(ns, "textures/models/armor/" + name + "_layer_1.png");
-            modifiedTextures.putIfAbsent(modelId, pixels);
-            textureDimensions.putIfAbsent(modelId, new int[]{width, height});
+            putAliasIfAbsent(modelId, pixels, width, height);
         }
         if (path.startsWith("textures/entity/equipment/humanoid_leggings/")) {
             String name = path.substring("textures/entity/equipment/humanoid_leggings/".length());
             if (name.endsWith(".png")) name = name.substring(0, name.length() - 4);
             Identifier modelId = Identifier.of(ns, "textures/models/armor/" + name + "_layer_2.png");
-            modifiedTextures.putIfAbsent(modelId, pixels);
-            textureDimensions.putIfAbsent(modelId, new int[]{width, height});
+            putAliasIfAbsent(modelId, pixels, width, height);
         }
         if (path.startsWith("textures/entity/equipment/piglin_head/")) {
             String name = path.substring("textures/entity/equipment/piglin_head/".length());
             if (name.endsWith(".png")) name = name.substring(0, name.length() - 4);
             Identifier modelId = Identifier.of(ns, "textures/models/armor/" + name + "_piglin_helmet.png");
-            modifiedTextures.putIfAbsent(modelId, pixels);
-            textureDimensions.putIfAbsent(modelId, new int[]{width, height});
+            putAliasIfAbsent(modelId, pixels, width, height);
         }
 
         // models/armor -> equipment aliases
@@ -162,21 +235,17 @@ public class TextureManager {
             if (raw.endsWith("_layer_1")) {
                 String material = raw.substring(0, raw.length() - "_layer_1".length());
                 Identifier eq = Identifier.of(ns, "textures/entity/equipment/humanoid/" + material + suffix + ".png");
-                modifiedTextures.putIfAbsent(eq, pixels);
-                textureDimensions.putIfAbsent(eq, new int[]{width, height});
+                putAliasIfAbsent(eq, pixels, width, height);
             } else if (raw.endsWith("_layer_2")) {
                 String material = raw.substring(0, raw.length() - "_layer_2".length());
                 Identifier eq = Identifier.of(ns, "textures/entity/equipment/humanoid_leggings/" + material + suffix + ".png");
-                modifiedTextures.putIfAbsent(eq, pixels);
-                textureDimensions.putIfAbsent(eq, new int[]{width, height});
+                putAliasIfAbsent(eq, pixels, width, height);
             } else if (raw.contains("_piglin_helmet")) {
                 String material = raw.replace("_piglin_helmet", "");
                 Identifier eq1 = Identifier.of(ns, "textures/entity/equipment/piglin_head/" + material + suffix + ".png");
                 Identifier eq2 = Identifier.of(ns, "textures/entity/equipment/humanoid/" + material + suffix + ".png");
-                modifiedTextures.putIfAbsent(eq1, pixels);
-                textureDimensions.putIfAbsent(eq1, new int[]{width, height});
-                modifiedTextures.putIfAbsent(eq2, pixels);
-                textureDimensions.putIfAbsent(eq2, new int[]{width, height});
+                putAliasIfAbsent(eq1, pixels, width, height);
+                putAliasIfAbsent(eq2, pixels, width, height);
             }
         }
     }
@@ -219,9 +288,56 @@ public class TextureManager {
         }
     }
 
+    /**
+     * Whether the vanilla atlas animation of a sprite should stand still because an edit (or a live
+     * item animation) is shown in its place. Edits served by the runtime pack animate natively and
+     * keep ticking. Called by the sprite animator mixin on the render thread.
+     */
+    public boolean holdsVanillaAnimation(Identifier spriteId) {
+        if (previewingOriginals || (modifiedTextures.isEmpty() && liveItemAnimations.isEmpty())) return false;
+        Identifier textureId = Identifier.of(spriteId.getNamespace(), "textures/" + spriteId.getPath() + ".png");
+        boolean edited = modifiedTextures.containsKey(textureId);
+        if (!edited) {
+            for (LiveItemAnimation live : liveItemAnimations.values()) {
+                if (spriteId.equals(live.spriteId)) {
+                    textureId = live.textureId;
+                    edited = true;
+                    break;
+                }
+            }
+        }
+        return edited && !LiveRuntimePackManager.getInstance().isAnimatedNatively(textureId);
+    }
+
+    /**
+     * Forget the edit of a texture the player reset; other players forget it too.
+     */
     public void removeTexture(Identifier textureId) {
+        boolean edited = modifiedTextures.containsKey(textureId);
+        forgetTexture(textureId);
+        if (edited) TextureSyncClient.getInstance().sendReset(textureId);
+    }
+
+    /**
+     * Show the original of a texture again and forget its edit, when another player reset it.
+     * Without a stored original the edit stays on screen until the next resource reload.
+     */
+    public void revertToOriginal(Identifier textureId) {
+        if (!modifiedTextures.containsKey(textureId)) return;
+        int[][] original = originalTextures.get(textureId);
+        if (original != null && original.length > 0) {
+            applyLiveBatch(List.of(new LiveUpload(textureId, original, original.length, original[0].length, original)),
+                    List.of(), false);
+        }
+        forgetTexture(textureId);
+        removeOriginal(textureId);
+    }
+
+    private void forgetTexture(Identifier textureId) {
         modifiedTextures.remove(textureId);
         textureDimensions.remove(textureId);
+        bumpVersion(textureId);
+        releasePreviewStage(textureId);
     }
 
     public void removeOriginal(Identifier textureId) {
@@ -239,12 +355,22 @@ public class TextureManager {
         }
         if (frameCopies.isEmpty()) return;
         itemAnimations.put(textureId, new ItemAnimationData(textureId, spriteId, frameCopies, width, height, Math.max(1, frameTimeTicks), pingPong, interpolate));
+        bumpVersion(textureId);
     }
 
     public void removeItemAnimation(Identifier textureId) {
         if (textureId == null) return;
-        itemAnimations.remove(textureId);
-        liveItemAnimations.remove(textureId);
+        if (itemAnimations.remove(textureId) != null) bumpVersion(textureId);
+        releaseLiveAnimation(liveItemAnimations.remove(textureId));
+    }
+
+    private void releaseLiveAnimation(LiveItemAnimation live) {
+        if (live == null) return;
+        RenderSystem.assertOnRenderThread();
+        live.release();
+        if (!liveItemAnimations.containsKey(live.textureId)) {
+            ItemAnimationScheduler.getInstance().unwatch(live.spriteId);
+        }
     }
 
     public void startItemAnimationLive(Identifier textureId, Identifier spriteId, List<int[][]> frames,
@@ -256,7 +382,7 @@ public class TextureManager {
         if (data == null) return;
 
         LiveItemAnimation live = new LiveItemAnimation(textureId, spriteId, data.frames(), data.width(), data.height(), data.frameTimeTicks(), data.pingPong(), data.interpolate());
-        liveItemAnimations.put(textureId, live);
+        releaseLiveAnimation(liveItemAnimations.put(textureId, live));
 
         if (origPixels != null) {
             applyLive(spriteId, live.frames.getFirst(), live.width, live.height, origPixels, true);
@@ -267,45 +393,189 @@ public class TextureManager {
 
     public void stopItemAnimationLive(Identifier textureId) {
         if (textureId == null) return;
-        liveItemAnimations.remove(textureId);
+        LiveItemAnimation live = liveItemAnimations.remove(textureId);
+        if (live == null) return;
+        // GPU-side frame copies skip the CPU image; bring it back in line with what is displayed
+        if (live.resident != null && live.resident.isUploaded() && !live.frames.isEmpty()) {
+            writeSpriteImages(live.spriteId, live.frames.get(live.frameIndex), live.width, live.height);
+        }
+        releaseLiveAnimation(live);
+        // Stageable again
+        releasePreviewStage(textureId);
     }
 
+    /**
+     * Advance all live item animations by one client tick.
+     *
+     * Runs from END_CLIENT_TICK, i.e. after the vanilla atlas animation tick of the same client tick,
+     * which {@link #holdsVanillaAnimation} keeps off sprites animated here. Timing always advances,
+     * but uploads are skipped for sprites that {@link ItemAnimationScheduler} hasn't seen rendered
+     * recently; they catch up with a single upload once they become visible again. All due frame
+     * changes are then applied in one upload pass, followed by any model rebakes.
+     */
     public void tickItemAnimations() {
         if (liveItemAnimations.isEmpty()) return;
+        ItemAnimationScheduler scheduler = ItemAnimationScheduler.getInstance();
+        scheduler.beginTick();
+
+        LiveRuntimePackManager runtimePack = LiveRuntimePackManager.getInstance();
+        List<LiveItemAnimation> due = new ArrayList<>();
         Iterator<LiveItemAnimation> it = liveItemAnimations.values().iterator();
         while (it.hasNext()) {
             LiveItemAnimation live = it.next();
             if (live.frames.isEmpty() || live.spriteId == null) {
                 it.remove();
+                live.release();
                 continue;
             }
 
-            if (live.interpolate && live.frames.size() > 1 && live.frameTimeTicks > 1) {
-                int[][] current = live.frames.get(live.frameIndex);
-                int[][] next = live.frames.get(getNextFrameIndex(live));
-                float t = live.tickCounter / (float) live.frameTimeTicks;
-                applyLive(live.spriteId, blendFrames(current, next, live.width, live.height, t), live.width, live.height, null, false);
-
-                live.tickCounter++;
-                if (live.tickCounter >= live.frameTimeTicks) {
-                    live.tickCounter = 0;
-                    advanceFrame(live);
-                    int[][] frame = live.frames.get(live.frameIndex);
-                    live.lastGeometryHash = computeOpaqueMaskHash(frame, live.width, live.height);
-                }
+            // Served by the runtime pack in the last reload: the atlas animates it itself
+            if (runtimePack.isAnimatedNatively(live.textureId)) continue;
+
+            boolean changed = stepAnimation(live);
+            if (!scheduler.isVisible(live.spriteId)) {
+                live.displayStale |= changed;
                 continue;
             }
+            if (changed || live.displayStale) {
+                due.add(live);
+            }
+        }
+        if (due.isEmpty()) return;
+
+        // Single upload pass for every frame change due this tick
+        List<Identifier> rebakes = new ArrayList<>();
+        batchUploading = true;
+        try {
+            for (LiveItemAnimation live : due) {
+                live.displayStale = false;
+                if (uploadAnimationState(live)) {
+                    rebakes.add(live.spriteId);
+                }
+                markItemGuiAtlasDirty(live.spriteId);
+            }
+        } finally {
+            batchUploading = false;
+        }
+
+        for (Identifier spriteId : rebakes) {
+            try {
+                ItemModelRebaker.rebake(spriteId);
+            } catch (Exception e) {
+                System.out.println("[TextureEditor] ItemModelRebaker failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Advance an animation's timing by one tick and record what it should display.
+     * @return true if the displayed image changes this tick
+     */
+    private static boolean stepAnimation(LiveItemAnimation live) {
+        if (live.interpolate && live.frames.size() > 1 && live.frameTimeTicks > 1) {
+            live.displayFrame = live.frameIndex;
+            live.displayNextFrame = getNextFrameIndex(live);
+            live.displayTick = live.tickCounter;
 
             live.tickCounter++;
-            if (live.tickCounter < live.frameTimeTicks) continue;
-            live.tickCounter = 0;
-            advanceFrame(live);
-            int[][] frame = live.frames.get(live.frameIndex);
-            int geometryHash = computeOpaqueMaskHash(frame, live.width, live.height);
-            boolean rebake = geometryHash != live.lastGeometryHash;
-            live.lastGeometryHash = geometryHash;
-            applyLive(live.spriteId, frame, live.width, live.height, null, rebake);
+            if (live.tickCounter >= live.frameTimeTicks) {
+                live.tickCounter = 0;
+                advanceFrame(live);
+            }
+            return true;
         }
+
+        live.tickCounter++;
+        if (live.tickCounter < live.frameTimeTicks) return false;
+        live.tickCounter = 0;
+        advanceFrame(live);
+        live.displayFrame = live.frameIndex;
+        live.displayTick = 0;
+        return true;
+    }
+
+    /**
+     * Upload the state recorded by {@link #stepAnimation}.
+     * @return true if the opaque shape changed and the item model needs a rebake
+     */
+    private boolean uploadAnimationState(LiveItemAnimation live) {
+        int[][] frame = live.frames.get(live.displayFrame);
+
+        if (live.displayTick > 0) {
+            // Interpolated in-between state: blend on the CPU into the reusable buffer
+            int[][] next = live.frames.get(live.displayNextFrame);
+            float t = live.displayTick / (float) live.frameTimeTicks;
+            if (live.blendBuffer == null) live.blendBuffer = new int[live.width][live.height];
+            blendFrames(frame, next, live.width, live.height, t, live.blendBuffer);
+            writeSpritePixels(live.spriteId, live.blendBuffer, live.width, live.height);
+            return false;
+        }
+
+        // Interpolated playback never rebakes mid-animation
+        boolean rebake = !live.interpolate && updateBakedMask(live.spriteId, live.resident.getMask(live.displayFrame));
+
+        if (!uploadResidentFrame(live, live.displayFrame)) {
+            writeSpritePixels(live.spriteId, frame, live.width, live.height);
+        } else if (rebake) {
+            // The model rebake reads sprite transparency from the CPU image
+            writeSpriteImages(live.spriteId, frame, live.width, live.height);
+        }
+        return rebake;
+    }
+
+    /**
+     * Copy a GPU-resident animation frame into every atlas slot of the sprite.
+     * Frames are uploaded lazily on first use; returns false if they can't be made resident,
+     * in which case the caller falls back to the CPU upload path.
+     */
+    private boolean uploadResidentFrame(LiveItemAnimation live, int frameIndex) {
+        if (live.resident == null || live.residentFailed) return false;
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (!live.resident.isUploaded()) {
+            Sprite sprite = findAtlasSprite(client, live.spriteId);
+            if (sprite == null || !live.resident.upload(sprite)) {
+                live.residentFailed = true;
+                return false;
+            }
+        }
+
+        return blitResidentFrame(live.spriteId, live.resident, frameIndex, live.width, live.height);
+    }
+
+    /**
+     * Copy one uploaded frame into every atlas slot of the sprite that has matching dimensions.
+     * @return true if at least one atlas was updated
+     */
+    private boolean blitResidentFrame(Identifier spriteId, ResidentSpriteFrames frames, int frameIndex, int width, int height) {
+        GpuTexture frameTexture = frames.getTexture(frameIndex);
+        if (frameTexture == null) return false;
+        MinecraftClient client = MinecraftClient.getInstance();
+        int hitCount = 0;
+        for (int i = 0; i < LIVE_ATLAS_IDS.length; i++) {
+            try {
+                var tex = client.getTextureManager().getTexture(LIVE_ATLAS_IDS[i]);
+                if (!(tex instanceof SpriteAtlasTexture atlas)) continue;
+                Sprite sprite = atlas.getSprite(spriteId);
+                if (sprite == null || sprite.getContents().getId().getPath().equals("missingno")) continue;
+                if (sprite.getContents().getWidth() != width || sprite.getContents().getHeight() != height) continue;
+                if (blitTextureToAtlas(atlas, sprite, spriteId, frameTexture, frames.getMipLevels(), LIVE_ATLAS_NAMES[i])) {
+                    hitCount++;
+                }
+            } catch (Exception ignored) {}
+        }
+        return hitCount > 0;
+    }
+
+    private static Sprite findAtlasSprite(MinecraftClient client, Identifier spriteId) {
+        for (Identifier atlasId : LIVE_ATLAS_IDS) {
+            try {
+                var tex = client.getTextureManager().getTexture(atlasId);
+                if (!(tex instanceof SpriteAtlasTexture atlas)) continue;
+                Sprite sprite = atlas.getSprite(spriteId);
+                if (sprite != null && !sprite.getContents().getId().getPath().equals("missingno")) return sprite;
+            } catch (Exception ignored) {}
+        }
+        return null;
     }
 
     private static int getNextFrameIndex(LiveItemAnimation live) {
@@ -334,14 +604,12 @@ public class TextureManager {
         }
     }
 
-    private static int[][] blendFrames(int[][] a, int[][] b, int width, int height, float t) {
-        int[][] out = new int[width][height];
+    private static void blendFrames(int[][] a, int[][] b, int width, int height, float t, int[][] out) {
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 out[x][y] = blendColor(a[x][y], b[x][y], t);
             }
         }
-        return out;
     }
 
     private static int blendColor(int c1, int c2, float t) {
@@ -361,16 +629,40 @@ public class TextureManager {
         return (a << 24) | (r << 16) | (g << 8) | b;
     }
 
-    private static int computeOpaqueMaskHash(int[][] frame, int width, int height) {
-        if (frame == null || width <= 0 || height <= 0) return 0;
-        int hash = 1;
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int a = (frame[x][y] >>> 24) & 0xFF;
-                hash = 31 * hash + (a > 0 ? 1 : 0);
+    /**
+     * Decide whether the generated item models drawing a sprite need rebaking for new pixels.
+     * Only the opaque mask affects the generated thickness quads, so colour-only edits are skipped.
+     * The model is assumed to have been baked from the original texture until we rebake it ourselves.
+     *
+     * @return true if the mask differs from the one the current model was baked from;
+     *         the new mask is recorded as baked in that case
+     */
+    private boolean updateBakedMask(Identifier spriteId, OpaqueMask mask) {
+        // A resource reload rebakes every model from the pack textures, so earlier masks no longer apply
+        Object source = ItemModelRebaker.getBakedItemModels();
+        if (source != bakedMasksSource) {
+            bakedMasks.clear();
+            bakedMasksSource = source;
+        }
+        // Not only item/ sprites: torches, flowers, rails... draw block sprites as generated items
+        if (!ItemModelRebaker.usesGeneratedModel(spriteId)) return false;
+
+        OpaqueMask baked = bakedMasks.get(spriteId);
+        if (baked == null) {
+            Identifier textureId = Identifier.of(spriteId.getNamespace(), "textures/" + spriteId.getPath() + ".png");
+            // After a reload with the runtime pack, models were baked from the served texture instead
+            baked = LiveRuntimePackManager.getInstance().getBakedMask(textureId);
+            int[][] orig = originalTextures.get(textureId);
+            if (baked == null && orig != null && orig.length > 0) {
+                baked = OpaqueMask.of(orig, orig.length, orig[0].length);
             }
         }
-        return hash;
+        if (mask.equals(baked)) {
+            bakedMasks.put(spriteId, baked);
+            return false;
+        }
+        bakedMasks.put(spriteId, mask);
+        return true;
     }
 
     private static int[][] copyFrame(int[][] src, int w, int h) {
@@ -382,35 +674,99 @@ public class TextureManager {
     }
 
     /**
-     * Toggle previewing original textures. Writes either originals or modified pixels
-     * directly into the sprite's NativeImage in the atlas.
+     * Toggle previewing original textures.
+     *
+     * Both versions of every edited texture are staged on the GPU ahead of time (see
+     * {@link #tickPreviewToggle}), so switching is a GPU blit per sprite plus a cheap CPU image
+     * write; item models are only rebaked where the original and edited shapes differ. Whatever
+     * doesn't fit into this tick's budget is finished over the following ticks, with progress
+     * shown on the action bar.
      */
     public void setPreviewingOriginals(boolean previewing) {
         if (previewing == previewingOriginals) return;
         previewingOriginals = previewing;
 
-        for (Identifier textureId : modifiedTextures.keySet()) {
-            int[] dims = textureDimensions.get(textureId);
-            if (dims == null) continue;
-            int w = dims[0], h = dims[1];
+        // A toggle mid-way through a previous one simply re-targets every texture
+        previewQueue.clear();
+        previewQueue.addAll(modifiedTextures.keySet());
+        previewQueueTotal = previewQueue.size();
+        processPreviewQueue(true);
+    }
 
-            String path = textureId.getPath();
-            if (path.startsWith("textures/") && path.endsWith(".png")) {
-                path = path.substring("textures/".length(), path.length() - ".png".length());
-            }
-            Identifier spriteId = Identifier.of(textureId.getNamespace(), path);
+    /**
+     * Continue an in-progress preview toggle, or stage a few textures for the next one while idle.
+     * Called once per client tick on the render thread.
+     */
+    public void tickPreviewToggle() {
+        if (!previewQueue.isEmpty()) {
+            processPreviewQueue(false);
+            return;
+        }
+        if (modifiedTextures.size() == previewStages.size()) return;
 
-            int[][] pixels;
-            if (previewing) {
-                pixels = originalTextures.get(textureId);
-                if (pixels == null) continue;
-            } else {
-                pixels = modifiedTextures.get(textureId);
+        int staged = 0;
+        for (Identifier textureId : modifiedTextures.keySet()) {
+            if (staged >= PREVIEW_STAGES_PER_IDLE_TICK) break;
+            if (previewStages.containsKey(textureId)) continue;
+            if (liveItemAnimations.containsKey(textureId)) {
+                // Its frames move on every tick: toggles take the CPU path, until the animation stops
+                previewStages.put(textureId, null);
+                continue;
             }
+            stagePreview(textureId, previewingOriginals ? 0 : 1);
+            staged++;
+        }
+    }
+
+    private void processPreviewQueue(boolean firstTick) {
+        long deadline = System.nanoTime() + PREVIEW_TICK_BUDGET_NANOS;
+        while (!previewQueue.isEmpty()) {
+            applyPreviewState(previewQueue.poll(), previewingOriginals);
+            if (System.nanoTime() >= deadline) break;
+        }
+
+        // Only bother the player when the toggle actually spans several ticks
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (client.player == null || (firstTick && previewQueue.isEmpty())) return;
+        int done = previewQueueTotal - previewQueue.size();
+        Text message = previewQueue.isEmpty()
+                ? Text.translatable(previewingOriginals ? "textureeditor.status.preview_originals" : "textureeditor.status.preview_modified")
+                : Text.translatable("textureeditor.status.preview_progress", done, previewQueueTotal);
+        client.player.sendMessage(message, true);
+    }
+
+    /**
+     * Show either the original or the edited version of one texture in the atlases.
+     */
+    private void applyPreviewState(Identifier textureId, boolean original) {
+        int[] dims = textureDimensions.get(textureId);
+        int[][] modified = modifiedTextures.get(textureId);
+        if (dims == null || modified == null) return;
+        int w = dims[0], h = dims[1];
+
+        String path = textureId.getPath();
+        if (path.startsWith("textures/") && path.endsWith(".png")) {
+            path = path.substring("textures/".length(), path.length() - ".png".length());
+        }
+        Identifier spriteId = Identifier.of(textureId.getNamespace(), path);
+
+        int[][] pixels = original ? originalTextures.get(textureId) : modified;
+        if (pixels == null) return;
+
+        int frame = original ? 0 : 1;
+        ResidentSpriteFrames stage = previewStages.containsKey(textureId)
+                ? previewStages.get(textureId)
+                : stagePreview(textureId, frame);
+        if (stage != null && blitResidentFrame(spriteId, stage, frame, w, h)) {
+            // The GPU already shows the pixels; keep CPU readers (e.g. the model rebaker) in sync
+            writeSpriteImages(spriteId, pixels, w, h);
+        } else {
             writeSpritePixels(spriteId, pixels, w, h);
-            markItemGuiAtlasDirty(spriteId);
+        }
+        markItemGuiAtlasDirty(spriteId);
 
-            // Also rebake item models for updated 3D thickness
+        // Also rebake item models for updated 3D thickness, if the shape differs
+        if (updateBakedMask(spriteId, OpaqueMask.of(pixels, w, h))) {
             try {
                 ItemModelRebaker.rebake(spriteId);
             } catch (Exception e) {
@@ -419,6 +775,55 @@ public class TextureManager {
         }
     }
 
+    /**
+     * Upload the original and edited pixels of a texture to the GPU as a two-frame set.
+     * Returns null for textures that can't be staged (no original, size mismatch, not in an atlas);
+     * those fall back to the regular CPU upload on toggle.
+     */
+    private ResidentSpriteFrames stagePreview(Identifier textureId, int shownFrame) {
+        ResidentSpriteFrames stage = createPreviewStage(textureId, shownFrame);
+        previewStages.put(textureId, stage);
+        return stage;
+    }
+
+    private ResidentSpriteFrames createPreviewStage(Identifier textureId, int shownFrame) {
+        int[] dims = textureDimensions.get(textureId);
+        int[][] modified = modifiedTextures.get(textureId);
+        int[][] original = originalTextures.get(textureId);
+        if (dims == null || modified == null || original == null) return null;
+        int w = dims[0], h = dims[1];
+        if (original.length != w || w == 0 || original[0].length != h) return null;
+
+        String path = textureId.getPath();
+        if (!path.startsWith("textures/") || !path.endsWith(".png")) return null;
+        Identifier spriteId = Identifier.of(textureId.getNamespace(),
+                path.substring("textures/".length(), path.length() - ".png".length()));
+        Sprite sprite = findAtlasSprite(MinecraftClient.getInstance(), spriteId);
+        if (sprite == null) return null;
+
+        ResidentSpriteFrames stage = new ResidentSpriteFrames(spriteId, List.of(original, modified), w, h);
+        return stage.upload(sprite, shownFrame) ? stage : null;
+    }
+
+    /**
+     * Called on the render thread when a client resource reload finishes. The atlases were rebuilt,
+     * possibly with other sprite sizes and mip levels, so every preview stage is released and
+     * staged again on demand.
+     */
+    public void onResourcesReloaded() {
+        for (ResidentSpriteFrames stage : previewStages.values()) {
+            if (stage != null) stage.close();
+        }
+        previewStages.clear();
+    }
+
+    private void releasePreviewStage(Identifier textureId) {
+        ResidentSpriteFrames stage = previewStages.remove(textureId);
+        if (stage != null) {
+            stage.close();
+        }
+    }
+
     /**
      * Write pixel data into a sprite and re-upload to ALL atlases that contain it.
      * In 1.21.10, sprites can exist in multiple atlases (e.g. block AND items atlas).
@@ -434,7 +839,7 @@ public class TextureManager {
         try {
             int itemsHit = tryBlitToAtlas(client, spriteId, pixels, width, height,
                     SpriteAtlasTexture.ITEMS_ATLAS_TEXTURE, "ITEMS");
-            System.out.println("[TextureEditor] ITEMS atlas hit: " + itemsHit + " for " + spriteId);
+            if (!batchUploading) System.out.println("[TextureEditor] ITEMS atlas hit: " + itemsHit + " for " + spriteId);
             hitCount += itemsHit;
         } catch (Exception e) {
             System.out.println("[TextureEditor] ITEMS atlas FAILED: " + e.getMessage());
@@ -452,7 +857,7 @@ public class TextureManager {
 
         if (hitCount == 0) {
             System.out.println("[TextureEditor] ERROR: Sprite not found in any atlas for " + spriteId);
-        } else {
+        } else if (!batchUploading) {
             System.out.println("[TextureEditor] writeSpritePixels: " + spriteId + " updated in " + hitCount + " atlas(es)");
         }
     }
@@ -473,6 +878,32 @@ public class TextureManager {
         return 1;
     }
 
+    /**
+     * Write pixel data into the CPU-side image of every atlas sprite with this id, without
+     * regenerating mipmaps or uploading. Used when the GPU already holds the pixels but
+     * CPU readers (e.g. the item model rebaker) need to see them.
+     */
+    private void writeSpriteImages(Identifier spriteId, int[][] pixels, int width, int height) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        for (Identifier atlasId : LIVE_ATLAS_IDS) {
+            try {
+                var tex = client.getTextureManager().getTexture(atlasId);
+                if (!(tex instanceof SpriteAtlasTexture atlas)) continue;
+                Sprite sprite = atlas.getSprite(spriteId);
+                if (sprite == null || sprite.getContents().getId().getPath().equals("missingno")) continue;
+                NativeImage image = ((SpriteContentsAccessor) sprite.getContents()).getImage();
+                if (image == null) continue;
+                int writeW = Math.min(width, image.getWidth());
+                int writeH = Math.min(height, image.getHeight());
+                for (int x = 0; x < writeW; x++) {
+                    for (int y = 0; y < writeH; y++) {
+                        image.setColorArgb(x, y, pixels[x][y]);
+                    }
+                }
+            } catch (Exception ignored) {}
+        }
+    }
+
     /**
      * Blit updated pixel data for a single sprite into a single atlas texture.
      * Updates the sprite's CPU-side NativeImage, regenerates mipmaps, and uploads via RenderPass.
@@ -488,9 +919,6 @@ public class TextureManager {
             return;
         }
 
-        int padding = ((SpriteAccessor) sprite).getPadding();
-        int spriteX = sprite.getX();
-        int spriteY = sprite.getY();
         int writeW = Math.min(width, image.getWidth());
         int writeH = Math.min(height, image.getHeight());
 
@@ -514,10 +942,7 @@ public class TextureManager {
 
         // Step 3: Upload via RenderPass blit
         try {
-            GpuTexture atlasTexture = atlas.getGlTexture();
-            int atlasW = atlasTexture.getWidth(0);
-            int atlasH = atlasTexture.getHeight(0);
-            int atlasMipLevels = atlasTexture.getMipLevels();
+            int atlasMipLevels = atlas.getGlTexture().getMipLevels();
             int numMipLevels = Math.min(spriteMipLevels, atlasMipLevels);
             if (numMipLevels <= 0) numMipLevels = 1;
 
@@ -542,6 +967,33 @@ public class TextureManager {
                     .writeToTexture(tempTexture, mipmaps[mip], mip, 0, 0, 0, mipW, mipH, 0, 0);
             }
 
+            blitTextureToAtlas(atlas, sprite, spriteId, tempTexture, numMipLevels, atlasName);
+            tempTexture.close();
+        } catch (Throwable t) {
+            System.out.println("[TextureEditor] ERROR during " + atlasName + " upload: " + t.getClass().getName() + ": " + t.getMessage());
+            t.printStackTrace();
+        }
+    }
+
+    /**
+     * Blit a sprite-sized GPU texture (with mip chain) into the sprite's slot of an atlas.
+     * This is a pure GPU-to-GPU copy via RenderPass, the same way SpriteAtlasTexture uploads.
+     *
+     * @return true if the blit was issued
+     */
+    private boolean blitTextureToAtlas(SpriteAtlasTexture atlas, Sprite sprite, Identifier spriteId,
+                                       GpuTexture source, int sourceMipLevels, String atlasName) {
+        SpriteContents contents = sprite.getContents();
+        int padding = ((SpriteAccessor) sprite).getPadding();
+        int spriteX = sprite.getX();
+        int spriteY = sprite.getY();
+        try {
+            GpuTexture atlasTexture = atlas.getGlTexture();
+            int atlasW = atlasTexture.getWidth(0);
+            int atlasH = atlasTexture.getHeight(0);
+            int numMipLevels = Math.min(sourceMipLevels, atlasTexture.getMipLevels());
+            if (numMipLevels <= 0) numMipLevels = 1;
+
             // Build the sprite info uniform buffer (same layout as Sprite.putSpriteInfo)
             int uniformAlignment = RenderSystem.getDevice().getUniformOffsetAlignment();
             int spriteInfoSize = SpriteContents.SPRITE_INFO_SIZE;
@@ -577,7 +1029,7 @@ public class TextureManager {
 
             GpuTextureView[] tempViews = new GpuTextureView[numMipLevels];
             for (int mip = 0; mip < numMipLevels; mip++) {
-                tempViews[mip] = RenderSystem.getDevice().createTextureView(tempTexture);
+                tempViews[mip] = RenderSystem.getDevice().createTextureView(source);
             }
 
             // Blit via RenderPass (same as SpriteAtlasTexture.upload)
@@ -598,15 +1050,18 @@ public class TextureManager {
             // Cleanup
             for (GpuTextureView v : atlasMipViews) v.close();
             for (GpuTextureView v : tempViews) v.close();
-            tempTexture.close();
             uniformBuffer.close();
 
-            System.out.println("[TextureEditor] Blitted " + spriteId + " to " + atlasName +
-                " atlas (" + atlasW + "x" + atlasH + ") at " + spriteX + "," + spriteY +
-                " mips=" + numMipLevels);
+            if (!batchUploading) {
+                System.out.println("[TextureEditor] Blitted " + spriteId + " to " + atlasName +
+                    " atlas (" + atlasW + "x" + atlasH + ") at " + spriteX + "," + spriteY +
+                    " mips=" + numMipLevels);
+            }
+            return true;
         } catch (Throwable t) {
-            System.out.println("[TextureEditor] ERROR during " + atlasName + " upload: " + t.getClass().getName() + ": " + t.getMessage());
+            System.out.println("[TextureEditor] ERROR during " + atlasName + " blit: " + t.getClass().getName() + ": " + t.getMessage());
             t.printStackTrace();
+            return false;
         }
     }
 
@@ -634,7 +1089,7 @@ public class TextureManager {
         writeSpritePixels(spriteId, pixels, width, height);
         markItemGuiAtlasDirty(spriteId);
 
-        if (rebakeModel) {
+        if (rebakeModel && updateBakedMask(spriteId, OpaqueMask.of(pixels, width, height))) {
             try {
                 ItemModelRebaker.rebake(spriteId);
             } catch (Exception e) {
@@ -643,43 +1098,148 @@ public class TextureManager {
         }
     }
 
-    public void applyLive(Identifier spriteId, int[] flatPixels, int[] flatOriginals, int width, int height) {
-        Identifier textureId = Identifier.of(spriteId.getNamespace(), "textures/" + spriteId.getPath() + ".png");
+    /**
+     * Apply many textures (and item animations) in one pass on the render thread, e.g. after a
+     * pack import. Uploads are coalesced per texture (the last one wins), atlas sprites are
+     * written back-to-back, and item model rebakes run once at the end for the sprites whose
+     * shape changed. Textures that aren't atlas sprites replace the standalone texture.
+     * Atlas sprites whose size differs from the upload are only recorded, not shown live.
+     *
+     * @return number of textures uploaded live
+     */
+    public int applyLiveBatch(List<LiveUpload> uploads, List<ItemAnimationData> animations) {
+        return applyLiveBatch(uploads, animations, true);
+    }
 
-        int[][] origPixels = null;
-        if (flatOriginals != null) {
-            origPixels = new int[width][height];
-            for (int x = 0; x < width; x++)
-                for (int y = 0; y < height; y++)
-                    origPixels[x][y] = flatOriginals[y * width + x];
+    /**
+     * @param logSummary false for frequent small batches (multiplayer sync), which shouldn't fill the log
+     */
+    public int applyLiveBatch(List<LiveUpload> uploads, List<ItemAnimationData> animations, boolean logSummary) {
+        RenderSystem.assertOnRenderThread();
+        long start = System.nanoTime();
+        MinecraftClient client = MinecraftClient.getInstance();
+
+        Map<Identifier, LiveUpload> coalesced = new java.util.LinkedHashMap<>();
+        for (LiveUpload upload : uploads) {
+            coalesced.remove(upload.textureId());
+            coalesced.put(upload.textureId(), upload);
+        }
+        // Animated textures show their first frame until the next animation tick takes over
+        for (ItemAnimationData anim : animations) {
+            setItemAnimation(anim.textureId(), anim.spriteId(), anim.frames(), anim.width(), anim.height(),
+                    anim.frameTimeTicks(), anim.pingPong(), anim.interpolate());
+            ItemAnimationData stored = itemAnimations.get(anim.textureId());
+            if (stored == null) continue;
+            coalesced.remove(anim.textureId());
+            coalesced.put(anim.textureId(), new LiveUpload(anim.textureId(), stored.frames().getFirst(),
+                    stored.width(), stored.height(), null));
         }
 
-        // Check if local texture has different size — scale if needed
-        int[] localDims = getDimensions(textureId);
-        if (localDims != null && (localDims[0] != width || localDims[1] != height)) {
-            int lw = localDims[0], lh = localDims[1];
-            int[][] scaled = new int[lw][lh];
-            for (int x = 0; x < lw; x++)
-                for (int y = 0; y < lh; y++)
-                    scaled[x][y] = flatPixels[((int)(y * height / (float)lh)) * width + (int)(x * width / (float)lw)];
-            applyLive(spriteId, scaled, lw, lh, origPixels != null ? scalePixels(origPixels, width, height, lw, lh) : null);
-            return;
+        List<Identifier> rebakes = new ArrayList<>();
+        int uploaded = 0;
+        batchUploading = true;
+        try {
+            for (LiveUpload upload : coalesced.values()) {
+                Identifier textureId = upload.textureId();
+                if (upload.origPixels() != null && upload.origPixels().length > 0) {
+                    storeOriginal(textureId, upload.origPixels(), upload.origPixels().length, upload.origPixels()[0].length);
+                } else {
+                    ensureOriginalStored(textureId);
+                }
+                putTexture(textureId, upload.pixels(), upload.width(), upload.height());
+
+                Identifier spriteId = toSpriteId(textureId);
+                Sprite sprite = spriteId != null ? findAtlasSprite(client, spriteId) : null;
+                if (sprite == null) {
+                    uploadStandaloneTexture(client, textureId, upload.pixels(), upload.width(), upload.height());
+                    uploaded++;
+                    continue;
+                }
+                if (sprite.getContents().getWidth() != upload.width() || sprite.getContents().getHeight() != upload.height()) {
+                    continue;
+                }
+
+                writeSpritePixels(spriteId, upload.pixels(), upload.width(), upload.height());
+                markItemGuiAtlasDirty(spriteId);
+                uploaded++;
+                if (updateBakedMask(spriteId, OpaqueMask.of(upload.pixels(), upload.width(), upload.height()))) {
+                    rebakes.add(spriteId);
+                }
+            }
+        } finally {
+            batchUploading = false;
         }
 
-        int[][] pixels = new int[width][height];
-        for (int x = 0; x < width; x++)
-            for (int y = 0; y < height; y++)
-                pixels[x][y] = flatPixels[y * width + x];
-        applyLive(spriteId, pixels, width, height, origPixels);
+        for (ItemAnimationData anim : animations) {
+            ItemAnimationData data = itemAnimations.get(anim.textureId());
+            if (data == null || findAtlasSprite(client, data.spriteId()) == null) continue;
+            LiveItemAnimation live = new LiveItemAnimation(data.textureId(), data.spriteId(), data.frames(), data.width(),
+                    data.height(), data.frameTimeTicks(), data.pingPong(), data.interpolate());
+            releaseLiveAnimation(liveItemAnimations.put(data.textureId(), live));
+        }
+
+        for (Identifier spriteId : rebakes) {
+            try {
+                ItemModelRebaker.rebake(spriteId);
+            } catch (Exception e) {
+                System.out.println("[TextureEditor] ItemModelRebaker failed: " + e.getMessage());
+            }
+        }
+
+        if (logSummary) {
+            System.out.println("[TextureEditor] Batch applied " + uploaded + " of " + coalesced.size() + " textures, " +
+                    rebakes.size() + " rebake(s) in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+        return uploaded;
+    }
+
+    /**
+     * Apply textures other players synced, like {@link #applyLiveBatch}. They aren't this
+     * player's edits, so the session journal leaves them out.
+     */
+    public void applySyncedBatch(List<LiveUpload> uploads) {
+        applyingSynced = true;
+        try {
+            applyLiveBatch(uploads, List.of(), false);
+        } finally {
+            applyingSynced = false;
+        }
     }
 
+    /**
+     * Whether one of the live atlases has a sprite for this texture path.
+     */
+    public boolean hasAtlasSprite(Identifier textureId) {
+        Identifier spriteId = toSpriteId(textureId);
+        return spriteId != null && findAtlasSprite(MinecraftClient.getInstance(), spriteId) != null;
+    }
 
+    /**
+     * Sprite id of an atlas texture path ({@code ns:textures/block/stone.png -> ns:block/stone}), or null.
+     */
+    private static Identifier toSpriteId(Identifier textureId) {
+        String path = textureId.getPath();
+        if (!path.startsWith("textures/") || !path.endsWith(".png")) return null;
+        return Identifier.of(textureId.getNamespace(), path.substring("textures/".length(), path.length() - ".png".length()));
+    }
 
-    public void applyLive(Identifier spriteId, int[] flatPixels, int width, int height) {
-        applyLive(spriteId, flatPixels, null, width, height);
+    private static void uploadStandaloneTexture(MinecraftClient client, Identifier textureId, int[][] pixels, int width, int height) {
+        NativeImage img = new NativeImage(width, height, false);
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++)
+                img.setColorArgb(x, y, pixels[x][y]);
+        var existing = client.getTextureManager().getTexture(textureId);
+        if (existing instanceof net.minecraft.client.texture.NativeImageBackedTexture nibt) {
+            nibt.setImage(img);
+            nibt.upload();
+        } else {
+            var dynamicTex = new net.minecraft.client.texture.NativeImageBackedTexture(() -> "textureeditor_import", img);
+            client.getTextureManager().registerTexture(textureId, dynamicTex);
+            dynamicTex.upload();
+        }
     }
 
-    // Used by Multiplayer - Entity
+    // Flat row-major pixels of a standalone (non-atlas) texture, e.g. an entity texture
     public void applyLiveEntity(Identifier textureId, int[] flatPixels, int[] flatOriginals, int width, int height) {
         if (flatOriginals != null && flatOriginals.length > 0) {
             int[][] origPixels = new int[width][height];
@@ -722,26 +1282,17 @@ public class TextureManager {
         });
     }
 
-    private int[][] scalePixels(int[][] src, int srcW, int srcH, int dstW, int dstH) {
-        int[][] result = new int[dstW][dstH];
-        for (int x = 0; x < dstW; x++)
-            for (int y = 0; y < dstH; y++)
-                result[x][y] = src[(int)(x * srcW / (float)dstW)][(int)(y * srcH / (float)dstH)];
-        return result;
-    }
-
     /**
-     * Load and store original pixels from resource manager if not already stored.
+     * Load and store original pixels from the resource packs if not already stored.
      * Called before any sync apply to ensure reset works for all players.
      */
     private void ensureOriginalStored(Identifier textureId) {
         if (originalTextures.containsKey(textureId)) return;
         try {
-            var client = MinecraftClient.getInstance();
-            var resource = client.getResourceManager().getResource(textureId);
-            if (resource.isPresent()) {
-                var img = net.minecraft.client.texture.NativeImage.read(
-                        resource.get().getInputStream());
+            // Not through the runtime pack, which serves the edit in its place
+            byte[] png = LiveRuntimePackManager.getInstance().readOriginal(textureId, null);
+            if (png != null) {
+                var img = net.minecraft.client.texture.NativeImage.read(png);
                 int w = img.getWidth(), h = img.getHeight();
                 int[][] orig = new int[w][h];
                 for (int x = 0; x < w; x++)
@@ -755,6 +1306,35 @@ public class TextureManager {
         }
     }
 
+    /**
+     * The encoded original of a texture as the resource packs provide it, without the edits the
+     * runtime pack serves, or null if it's missing. Render thread only, so it never races a
+     * resource reload; decode it anywhere with {@link #decodeResourcePixels}.
+     *
+     * @param skipPackId id of a resource pack whose version doesn't count as the original, or null
+     */
+    public byte[] readResourceBytes(Identifier textureId, String skipPackId) {
+        RenderSystem.assertOnRenderThread();
+        return LiveRuntimePackManager.getInstance().readOriginal(textureId, skipPackId);
+    }
+
+    /**
+     * Top-left width x height pixels of an encoded texture (the first frame, for animation
+     * strips), or null if it can't be read or has a different width. Safe on any thread.
+     */
+    public static int[][] decodeResourcePixels(byte[] png, int width, int height) {
+        try (var img = net.minecraft.client.texture.NativeImage.read(png)) {
+            if (img.getWidth() != width || img.getHeight() < height) return null;
+            int[][] pixels = new int[width][height];
+            for (int x = 0; x < width; x++)
+                for (int y = 0; y < height; y++)
+                    pixels[x][y] = img.getColorArgb(x, y);
+            return pixels;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     private static int averageColors(int c1, int c2, int c3, int c4) {
         int a = ((c1 >> 24 & 0xFF) + (c2 >> 24 & 0xFF) + (c3 >> 24 & 0xFF) + (c4 >> 24 & 0xFF)) / 4;
         int r = ((c1 >> 16 & 0xFF) + (c2 >> 16 & 0xFF) + (c3 >> 16 & 0xFF) + (c4 >> 16 & 0xFF)) / 4;
@@ -766,9 +1346,23 @@ public class TextureManager {
     public void clear() {
         modifiedTextures.clear();
         textureDimensions.clear();
+        textureVersions.clear();
+        SessionJournal.getInstance().markCleared();
         originalTextures.clear();
         itemAnimations.clear();
+        for (LiveItemAnimation live : liveItemAnimations.values()) {
+            live.release();
+        }
         liveItemAnimations.clear();
+        bakedMasks.clear();
+        bakedMasksSource = null;
+        for (ResidentSpriteFrames stage : previewStages.values()) {
+            if (stage != null) stage.close();
+        }
+        previewStages.clear();
+        previewQueue.clear();
+        previewQueueTotal = 0;
+        ItemAnimationScheduler.getInstance().clear();
         previewingOriginals = false;
         itemGuiAtlasDirty = false;
         ItemModelRebaker.invalidateCache();
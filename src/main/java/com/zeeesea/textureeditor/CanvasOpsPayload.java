@@ -0,0 +1,75 @@
+package com.zeeesea.textureeditor;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * A batch of editor tool operations (pencil spans, lines, fills, layer changes...) from a player
+ * editing a texture in collaboration mode. Receivers replay them on their own copy of the
+ * author's canvas, so what goes over the wire scales with the author's input instead of the
+ * texture size. The server relays them as they come and never decodes {@code ops}.
+ *
+ * Batches of one editor session are numbered consecutively from 0. The first one starts with a
+ * checkpoint of the whole canvas, and the author sends another one now and then; a receiver that
+ * missed a batch waits for the next checkpoint. {@link #END} closes the session.
+ *
+ * Only exchanged with peers that announced {@link #OPS} in their {@link SyncHelloPayload}.
+ */
+public record CanvasOpsPayload(
+        Identifier textureId,
+        Identifier spriteId,  // null if not an atlas sprite
+        long streamId,        // the author's TextureDeltaPayload stream
+        int session,          // picked at random per canvas the author opens
+        int seq,              // batch number within the session, or END
+        int width,
+        int height,
+        byte[] ops            // encoded by the client's CanvasOpCodec
+) implements CustomPayload {
+
+    public static final int END = -1;
+
+    // Capability announced alongside the PixelCodec codecs: relays or replays canvas ops
+    public static final int OPS = 1 << 9;
+
+    // Fits the 32 KiB serverbound payload limit with room for the header
+    public static final int MAX_OPS_BYTES = 30 * 1024;
+
+    public static final CustomPayload.Id<CanvasOpsPayload> ID =
+            new CustomPayload.Id<>(Identifier.of("textureeditor", "canvas_ops"));
+
+    public static final PacketCodec<PacketByteBuf, CanvasOpsPayload> CODEC =
+            PacketCodec.of(
+                    (value, buf) -> {
+                        buf.writeIdentifier(value.textureId());
+                        buf.writeBoolean(value.spriteId() != null);
+                        if (value.spriteId() != null) buf.writeIdentifier(value.spriteId());
+                        buf.writeLong(value.streamId());
+                        buf.writeInt(value.session());
+                        buf.writeVarInt(value.seq());
+                        buf.writeVarInt(value.width());
+                        buf.writeVarInt(value.height());
+                        buf.writeByteArray(value.ops());
+                    },
+                    buf -> new CanvasOpsPayload(
+                            buf.readIdentifier(),
+                            buf.readBoolean() ? buf.readIdentifier() : null,
+                            buf.readLong(),
+                            buf.readInt(),
+                            buf.readVarInt(),
+                            buf.readVarInt(),
+                            buf.readVarInt(),
+                            buf.readByteArray(MAX_OPS_BYTES)
+                    )
+            );
+
+    public boolean isEnd() {
+        return seq == END;
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,154 @@
+package com.zeeesea.textureeditor;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reassembles the {@link TextureChunkPayload}s of one connection into texture deltas.
+ *
+ * A transfer is keyed by texture and stream: chunks of a newer version replace a partial older
+ * one, and a whole delta of a newer version (see {@link #supersede}) drops it. Partial transfers
+ * that stop receiving chunks (the author left, or the sender cancelled them) expire after
+ * {@link #TIMEOUT_TICKS}. Chunks are kept as they arrive, so memory only grows with what was
+ * actually sent.
+ *
+ * Not thread-safe; used from the thread that owns the connection's sync state.
+ */
+public class ChunkAssembler {
+    // 2048 x 2048 raw, with room for the originals compressed
+    private static final int MAX_TRANSFER_BYTES = 24 * 1024 * 1024;
+    private static final int MAX_TRANSFERS = 8;
+    private static final int TIMEOUT_TICKS = 30 * 20;
+
+    private final Map<TransferKey, Partial> partials = new HashMap<>();
+    private int ticks;
+
+    private record TransferKey(Identifier textureId, long streamId) {}
+
+    private static final class Partial {
+        private final int version;
+        private final int count;
+        private final int totalLength;
+        private final int crc;
+        private final byte[][] chunks;
+        private int received;
+        private int lastTick;
+
+        private Partial(TextureChunkPayload chunk) {
+            this.version = chunk.version();
+            this.count = chunk.count();
+            this.totalLength = chunk.totalLength();
+            this.crc = chunk.crc();
+            this.chunks = new byte[count][];
+        }
+
+        private boolean matches(TextureChunkPayload chunk) {
+            return chunk.count() == count && chunk.totalLength() == totalLength && chunk.crc() == crc;
+        }
+    }
+
+    /**
+     * Add a chunk. Returns the delta once its last chunk is in and it checks out, null otherwise.
+     */
+    public TextureDeltaPayload accept(TextureChunkPayload chunk) {
+        if (!validLayout(chunk)) {
+            System.out.println("[TextureEditor] Dropping malformed sync chunk for " + chunk.textureId());
+            return null;
+        }
+        TransferKey key = new TransferKey(chunk.textureId(), chunk.streamId());
+        Partial partial = partials.get(key);
+        if (partial != null && chunk.version() < partial.version) return null;
+        if (partial == null || chunk.version() > partial.version || !partial.matches(chunk)) {
+            if (partial == null && partials.size() >= MAX_TRANSFERS) return null;
+            partial = new Partial(chunk);
+            partials.put(key, partial);
+        }
+        partial.lastTick = ticks;
+        if (partial.chunks[chunk.index()] == null) {
+            partial.chunks[chunk.index()] = chunk.data();
+            partial.received++;
+        }
+        if (partial.received < partial.count) return null;
+
+        partials.remove(key);
+        return assemble(key, partial);
+    }
+
+    /**
+     * A whole delta arrived; drop any partial transfer of an older version of it.
+     */
+    public void supersede(TextureDeltaPayload payload) {
+        TransferKey key = new TransferKey(payload.textureId(), payload.streamId());
+        Partial partial = partials.get(key);
+        if (partial != null && partial.version < payload.version()) partials.remove(key);
+    }
+
+    /**
+     * Whether chunks of a delta of this texture and stream are still coming in.
+     */
+    public boolean isAssembling(Identifier textureId, long streamId) {
+        return partials.containsKey(new TransferKey(textureId, streamId));
+    }
+
+    /**
+     * Expire stalled transfers. Called once per tick.
+     */
+    public void tick() {
+        ticks++;
+        if (partials.isEmpty()) return;
+        for (Iterator<Partial> it = partials.values().iterator(); it.hasNext(); ) {
+            if (ticks - it.next().lastTick > TIMEOUT_TICKS) it.remove();
+        }
+    }
+
+    public void clear() {
+        partials.clear();
+    }
+
+    /**
+     * Every chunk but the last is exactly {@link ChunkSender#CHUNK_BYTES} long.
+     */
+    private static boolean validLayout(TextureChunkPayload chunk) {
+        int total = chunk.totalLength();
+        if (total <= 0 || total > MAX_TRANSFER_BYTES) return false;
+        int count = (total + ChunkSender.CHUNK_BYTES - 1) / ChunkSender.CHUNK_BYTES;
+        if (chunk.count() != count || chunk.index() < 0 || chunk.index() >= count) return false;
+        int expected = chunk.index() < count - 1 ? ChunkSender.CHUNK_BYTES : total - (count - 1) * ChunkSender.CHUNK_BYTES;
+        return chunk.data().length == expected;
+    }
+
+    private static TextureDeltaPayload assemble(TransferKey key, Partial partial) {
+        byte[] bytes = new byte[partial.totalLength];
+        CRC32 crc32 = new CRC32();
+        int offset = 0;
+        for (byte[] chunk : partial.chunks) {
+            System.arraycopy(chunk, 0, bytes, offset, chunk.length);
+            offset += chunk.length;
+        }
+        crc32.update(bytes);
+        if ((int) crc32.getValue() != partial.crc) {
+            System.out.println("[TextureEditor] Checksum mismatch in sync transfer of " + key.textureId() + ", dropped");
+            return null;
+        }
+
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(bytes));
+        try {
+            TextureDeltaPayload payload = TextureDeltaPayload.CODEC.decode(buf);
+            if (!payload.textureId().equals(key.textureId()) || payload.streamId() != key.streamId()
+                    || payload.version() != partial.version) {
+                System.out.println("[TextureEditor] Sync transfer of " + key.textureId() + " doesn't match its chunks, dropped");
+                return null;
+            }
+            return payload;
+        } catch (RuntimeException e) {
+            System.out.println("[TextureEditor] Failed to decode sync transfer of " + key.textureId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
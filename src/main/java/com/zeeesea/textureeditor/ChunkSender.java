@@ -0,0 +1,187 @@
+package com.zeeesea.textureeditor;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Sends texture deltas over one connection, cutting those that don't fit in a custom payload
+ * (HD textures, a 1024x1024 end sky) into {@link TextureChunkPayload}s.
+ *
+ * Small deltas go out immediately. Chunks are paced at {@link #CHUNKS_PER_TICK} per tick,
+ * round-robin over the textures in flight, so a big transfer never holds up small updates of
+ * other textures. Deltas of a texture that's still in flight wait behind it, since they're based
+ * on the version being sent; a newer keyframe doesn't need it and cancels the transfer instead.
+ * Other payloads that must not overtake a stream's pixel updates can wait behind it too (see
+ * {@link #sendAfter}).
+ *
+ * Not thread-safe; used from the thread that owns the connection's sync state.
+ */
+public class ChunkSender {
+    // Leaves room for the chunk header under the 32767 byte serverbound payload limit
+    public static final int CHUNK_BYTES = 30 * 1024;
+    private static final int CHUNKS_PER_TICK = 8;
+
+    private final Consumer<CustomPayload> out;
+    private final BooleanSupplier canChunk;
+    private final Map<TransferKey, Transfer> transfers = new LinkedHashMap<>();
+
+    private record TransferKey(Identifier textureId, long streamId) {}
+
+    private static final class Transfer {
+        private final TextureDeltaPayload payload;
+        private final byte[] bytes;
+        private final int crc;
+        private final int count;
+        private int next;
+        // Deltas based on this transfer's version, and payloads sent with sendAfter, sent once it's done
+        private final Deque<CustomPayload> behind = new ArrayDeque<>();
+
+        private Transfer(TextureDeltaPayload payload, byte[] bytes) {
+            this.payload = payload;
+            this.bytes = bytes;
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes);
+            this.crc = (int) crc32.getValue();
+            this.count = (bytes.length + CHUNK_BYTES - 1) / CHUNK_BYTES;
+        }
+
+        private TextureChunkPayload nextChunk() {
+            int from = next * CHUNK_BYTES;
+            byte[] data = Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + CHUNK_BYTES));
+            return new TextureChunkPayload(payload.textureId(), payload.streamId(), payload.version(),
+                    next++, count, bytes.length, crc, data);
+        }
+
+        private boolean done() {
+            return next == count;
+        }
+    }
+
+    /**
+     * @param out      sends a payload on the connection
+     * @param canChunk whether the other side understands {@link TextureChunkPayload}; if not,
+     *                 large deltas are sent whole as before
+     */
+    public ChunkSender(Consumer<CustomPayload> out, BooleanSupplier canChunk) {
+        this.out = out;
+        this.canChunk = canChunk;
+    }
+
+    public void send(TextureDeltaPayload payload) {
+        TransferKey key = new TransferKey(payload.textureId(), payload.streamId());
+        Transfer active = transfers.get(key);
+        if (active != null) {
+            if (!payload.isKeyframe()) {
+                active.behind.add(payload);
+                return;
+            }
+            transfers.remove(key);
+        }
+
+        byte[] bytes = canChunk.getAsBoolean() ? encodeIfLarge(payload) : null;
+        if (bytes == null) {
+            out.accept(payload);
+        } else {
+            transfers.put(key, new Transfer(payload, bytes));
+        }
+        // Deltas waiting behind a cancelled transfer are covered by the keyframe; anything else still goes
+        if (active != null) sendBehind(key, active, false);
+    }
+
+    /**
+     * Send a payload once the transfer in flight of this texture and stream is done, or now if
+     * there's none. For the end of a canvas ops session, which mustn't overtake the last pixel
+     * update of its author.
+     */
+    public void sendAfter(Identifier textureId, long streamId, CustomPayload payload) {
+        Transfer active = transfers.get(new TransferKey(textureId, streamId));
+        if (active != null) {
+            active.behind.add(payload);
+        } else {
+            out.accept(payload);
+        }
+    }
+
+    /**
+     * Send the next chunks of the transfers in flight. Called once per tick.
+     */
+    public void tick() {
+        int budget = CHUNKS_PER_TICK;
+        while (budget > 0 && !transfers.isEmpty()) {
+            // Take the transfer that waited longest and put it at the back, so turns carry over between ticks
+            Iterator<Map.Entry<TransferKey, Transfer>> it = transfers.entrySet().iterator();
+            Map.Entry<TransferKey, Transfer> head = it.next();
+            it.remove();
+            Transfer transfer = head.getValue();
+            out.accept(transfer.nextChunk());
+            budget--;
+            if (transfer.done()) {
+                sendBehind(head.getKey(), transfer, true);
+            } else {
+                transfers.put(head.getKey(), transfer);
+            }
+        }
+    }
+
+    /**
+     * Drop the transfers of a texture, and the deltas waiting behind them, e.g. once it was reset.
+     * Other payloads that waited go out now.
+     */
+    public void cancel(Identifier textureId) {
+        for (Iterator<Map.Entry<TransferKey, Transfer>> it = transfers.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<TransferKey, Transfer> entry = it.next();
+            if (!entry.getKey().textureId().equals(textureId)) continue;
+            it.remove();
+            sendBehind(entry.getKey(), entry.getValue(), false);
+        }
+    }
+
+    /**
+     * Send what waited behind a transfer, in order; deltas only if the transfer went through.
+     */
+    private void sendBehind(TransferKey key, Transfer transfer, boolean withDeltas) {
+        for (CustomPayload payload : transfer.behind) {
+            if (payload instanceof TextureDeltaPayload delta) {
+                if (withDeltas) send(delta);
+            } else {
+                sendAfter(key.textureId(), key.streamId(), payload);
+            }
+        }
+    }
+
+    public void clear() {
+        transfers.clear();
+    }
+
+    /**
+     * The encoded payload if it's too big to send whole, null otherwise.
+     */
+    private static byte[] encodeIfLarge(TextureDeltaPayload payload) {
+        // Raw arrays are the worst case of every codec, so most deltas are known to fit unencoded
+        long bound = 4L * (payload.data().length + payload.originalPixels().length) + 1024;
+        if (bound <= CHUNK_BYTES) return null;
+
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        try {
+            TextureDeltaPayload.CODEC.encode(buf, payload);
+            if (buf.readableBytes() <= CHUNK_BYTES) return null;
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package com.zeeesea.textureeditor;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wire encoding of the pixel arrays in sync payloads. Each array is written with whichever
+ * allowed codec comes out smallest:
+ *
+ *   RAW      four bytes per value
+ *   PALETTE  up to 256 distinct colours, indices bit-packed
+ *   RLE      (run length, value) pairs
+ *   DEFLATE  the best of the above, deflated
+ *
+ * Pixel art usually ends up as a deflated palette. Which codecs a peer understands is negotiated
+ * with {@link SyncHelloPayload}; RAW is always allowed.
+ */
+public final class PixelCodec {
+    public static final int RAW = 0;
+    public static final int PALETTE = 1;
+    public static final int RLE = 2;
+    public static final int DEFLATE = 3;
+
+    public static final int RAW_ONLY = 1 << RAW;
+    public static final int ALL = (1 << RAW) | (1 << PALETTE) | (1 << RLE) | (1 << DEFLATE);
+
+    private static final int MAX_PALETTE = 256;
+    // Below this many bytes deflate's header overhead eats the gain
+    private static final int MIN_DEFLATE_BYTES = 64;
+    // 4096 x 4096; also the largest canvas a synced payload may describe
+    public static final int MAX_VALUES = 1 << 24;
+
+    private PixelCodec() {}
+
+    public static void write(ByteBuf buf, int[] values, int allowed) {
+        allowed |= RAW_ONLY;
+        int n = values.length;
+
+        int inner = RAW;
+        long innerSize = 4L * n;
+        Int2IntOpenHashMap palette = null;
+        if ((allowed & (1 << PALETTE)) != 0) {
+            palette = buildPalette(values);
+            if (palette != null && paletteSize(palette.size(), n) < innerSize) {
+                inner = PALETTE;
+                innerSize = paletteSize(palette.size(), n);
+            }
+        }
+        if ((allowed & (1 << RLE)) != 0) {
+            long rle = rleSize(values);
+            if (rle < innerSize) {
+                inner = RLE;
+                innerSize = rle;
+            }
+        }
+
+        if ((allowed & (1 << DEFLATE)) != 0 && innerSize >= MIN_DEFLATE_BYTES) {
+            ByteBuf body = Unpooled.buffer((int) innerSize + 1);
+            body.writeByte(inner);
+            writeBody(body, inner, values, palette);
+            byte[] compressed = deflate(body.array(), body.arrayOffset(), body.readableBytes());
+            if (compressed.length + varIntSize(compressed.length) < innerSize) {
+                buf.writeByte(DEFLATE);
+                writeVarInt(buf, n);
+                writeVarInt(buf, compressed.length);
+                buf.writeBytes(compressed);
+                return;
+            }
+        }
+
+        buf.writeByte(inner);
+        writeVarInt(buf, n);
+        writeBody(buf, inner, values, palette);
+    }
+
+    /**
+     * Read an array written by {@link #write}. Called on untrusted input, so the declared length
+     * is checked against {@code maxValues} and what the buffer holds before anything is allocated.
+     *
+     * @param maxValues the most values the caller accepts, e.g. width * height of a keyframe
+     */
+    public static int[] read(ByteBuf buf, int maxValues) {
+        return read(buf, 0, maxValues);
+    }
+
+    /**
+     * Like {@link #read(ByteBuf, int)}, for an array that must have exactly {@code values} values.
+     */
+    public static int[] readExactly(ByteBuf buf, int values) {
+        return read(buf, values, values);
+    }
+
+    private static int[] read(ByteBuf buf, int minValues, int maxValues) {
+        int codec = buf.readUnsignedByte();
+        int n = readVarInt(buf);
+        if (n < minValues || n > maxValues) throw new DecoderException("Bad pixel array length " + n);
+        if (codec != DEFLATE) return readBody(buf, codec, n);
+
+        int length = readVarInt(buf);
+        if (length < 0 || length > buf.readableBytes()) throw new DecoderException("Bad compressed length " + length);
+        byte[] compressed = new byte[length];
+        buf.readBytes(compressed);
+        // No inner encoding is larger than RLE's worst case, so bound the inflated size by that
+        ByteBuf body = Unpooled.wrappedBuffer(inflate(compressed, 5 * n + 4 * MAX_PALETTE + 16));
+        int inner = body.readUnsignedByte();
+        if (inner == DEFLATE) throw new DecoderException("Nested deflate");
+        return readBody(body, inner, n);
+    }
+
+    // ── Bodies ────────────────────────────────────────────────────────────────
+
+    private static void writeBody(ByteBuf buf, int codec, int[] values, Int2IntOpenHashMap palette) {
+        switch (codec) {
+            case PALETTE -> {
+                int[] colors = new int[palette.size()];
+                for (Int2IntMap.Entry e : palette.int2IntEntrySet()) colors[e.getIntValue()] = e.getIntKey();
+                writeVarInt(buf, colors.length);
+                for (int color : colors) buf.writeInt(color);
+                int bits = indexBits(colors.length);
+                int acc = 0;
+                int filled = 0;
+                for (int value : values) {
+                    acc = (acc << bits) | palette.get(value);
+                    filled += bits;
+                    while (filled >= 8) {
+                        filled -= 8;
+                        buf.writeByte(acc >>> filled);
+                    }
+                }
+                if (filled > 0) buf.writeByte(acc << (8 - filled));
+            }
+            case RLE -> {
+                int i = 0;
+                while (i < values.length) {
+                    int value = values[i];
+                    int j = i + 1;
+                    while (j < values.length && values[j] == value) j++;
+                    writeVarInt(buf, j - i);
+                    buf.writeInt(value);
+                    i = j;
+                }
+            }
+            default -> {
+                for (int value : values) buf.writeInt(value);
+            }
+        }
+    }
+
+    private static int[] readBody(ByteBuf buf, int codec, int n) {
+        int[] values;
+        switch (codec) {
+            case RAW -> {
+                if (buf.readableBytes() < 4L * n) throw new DecoderException("Truncated pixel array");
+                values = new int[n];
+                for (int i = 0; i < n; i++) values[i] = buf.readInt();
+            }
+            case PALETTE -> {
+                int size = readVarInt(buf);
+                if (size <= 0 || size > MAX_PALETTE) throw new DecoderException("Bad palette size " + size);
+                int[] colors = new int[size];
+                for (int i = 0; i < size; i++) colors[i] = buf.readInt();
+                int bits = indexBits(size);
+                if (buf.readableBytes() < ((long) n * bits + 7) / 8) throw new DecoderException("Truncated pixel array");
+                values = new int[n];
+                int mask = (1 << bits) - 1;
+                int acc = 0;
+                int filled = 0;
+                for (int i = 0; i < n; i++) {
+                    while (filled < bits) {
+                        acc = (acc << 8) | buf.readUnsignedByte();
+                        filled += 8;
+                    }
+                    filled -= bits;
+                    int index = (acc >>> filled) & mask;
+                    if (index >= size) throw new DecoderException("Palette index out of range");
+                    values[i] = colors[index];
+                }
+            }
+            case RLE -> {
+                // Runs can expand to anything up to n, which the caller bounded
+                values = new int[n];
+                int i = 0;
+                while (i < n) {
+                    int run = readVarInt(buf);
+                    if (run <= 0 || run > n - i) throw new DecoderException("Bad run length " + run);
+                    int value = buf.readInt();
+                    Arrays.fill(values, i, i + run, value);
+                    i += run;
+                }
+            }
+            default -> throw new DecoderException("Unknown pixel codec " + codec);
+        }
+        return values;
+    }
+
+    // ── Sizes ─────────────────────────────────────────────────────────────────
+
+    /**
+     * Colour -> palette index, or null if there are more than {@link #MAX_PALETTE} colours.
+     */
+    private static Int2IntOpenHashMap buildPalette(int[] values) {
+        Int2IntOpenHashMap palette = new Int2IntOpenHashMap();
+        for (int value : values) {
+            if (!palette.containsKey(value)) {
+                if (palette.size() == MAX_PALETTE) return null;
+                palette.put(value, palette.size());
+            }
+        }
+        return palette;
+    }
+
+    private static long paletteSize(int colors, int n) {
+        return varIntSize(colors) + 4L * colors + ((long) n * indexBits(colors) + 7) / 8;
+    }
+
+    private static long rleSize(int[] values) {
+        long size = 0;
+        int i = 0;
+        while (i < values.length) {
+            int j = i + 1;
+            while (j < values.length && values[j] == values[i]) j++;
+            size += varIntSize(j - i) + 4;
+            i = j;
+        }
+        return size;
+    }
+
+    private static int indexBits(int colors) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(colors - 1));
+    }
+
+    // ── Deflate ───────────────────────────────────────────────────────────────
+
+    private static byte[] deflate(byte[] data, int offset, int length) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int maxLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(maxLength, compressed.length * 4));
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(chunk);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DecoderException("Truncated compressed pixels");
+                }
+                if (out.size() + read > maxLength) throw new DecoderException("Compressed pixels inflate too large");
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new DecoderException("Corrupt compressed pixels", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ── VarInts (usable on any ByteBuf, e.g. the deflate body) ───────────────
+
+    private static void writeVarInt(ByteBuf buf, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuf buf) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buf.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new DecoderException("VarInt too long");
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            size++;
+            value >>>= 7;
+        }
+        return size;
+    }
+}
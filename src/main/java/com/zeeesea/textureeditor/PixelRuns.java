@@ -0,0 +1,178 @@
+package com.zeeesea.textureeditor;
+
+import java.util.Arrays;
+
+/**
+ * Changed-pixel runs as carried by {@link TextureDeltaPayload}: a flat list of
+ * {@code start, length, pixel...} entries over row-major pixels, sorted and non-overlapping.
+ */
+public final class PixelRuns {
+    // Unchanged pixels folded into a run rather than starting a new one (a run header costs two ints)
+    private static final int MAX_RUN_GAP = 2;
+
+    private PixelRuns() {}
+
+    /**
+     * Runs of pixels that differ between {@code from} and {@code to}, or null if they'd take
+     * more than {@code limit} ints.
+     */
+    public static int[] diff(int[] from, int[] to, int limit) {
+        int[] runs = new int[64];
+        int size = 0;
+        int n = to.length;
+        int i = 0;
+        while (i < n) {
+            if (from[i] == to[i]) { i++; continue; }
+            int start = i;
+            int end = i + 1; // exclusive end of the run's last changed pixel
+            int j = end;
+            while (j < n && j - end <= MAX_RUN_GAP) {
+                if (from[j] != to[j]) end = j + 1;
+                j++;
+            }
+            int length = end - start;
+            if (size + 2 + length > limit) return null;
+            if (size + 2 + length > runs.length) {
+                runs = Arrays.copyOf(runs, Math.max(runs.length * 2, size + 2 + length));
+            }
+            runs[size++] = start;
+            runs[size++] = length;
+            System.arraycopy(to, start, runs, size, length);
+            size += length;
+            i = end;
+        }
+        return Arrays.copyOf(runs, size);
+    }
+
+    /**
+     * Longest well-formed runs of {@code pixelCount} pixels: every pixel its own run.
+     */
+    public static int maxLength(int pixelCount) {
+        return 3 * pixelCount;
+    }
+
+    /**
+     * Whether runs are well-formed for {@code pixelCount} pixels.
+     */
+    public static boolean isValid(int[] runs, int pixelCount) {
+        int i = 0;
+        int end = 0;
+        while (i < runs.length) {
+            if (i + 2 > runs.length) return false;
+            int start = runs[i];
+            int length = runs[i + 1];
+            i += 2;
+            if (start < end || length <= 0 || start > pixelCount - length || length > runs.length - i) return false;
+            end = start + length;
+            i += length;
+        }
+        return true;
+    }
+
+    /**
+     * Write runs into pixels. Returns false without touching the pixels if the runs are malformed.
+     */
+    public static boolean apply(int[] pixels, int[] runs) {
+        if (!isValid(runs, pixels.length)) return false;
+        for (int i = 0; i < runs.length; i += 2 + runs[i + 1]) {
+            System.arraycopy(runs, i + 2, pixels, runs[i], runs[i + 1]);
+        }
+        return true;
+    }
+
+    /**
+     * Runs with the same effect as applying {@code older} and then {@code newer}, or null if
+     * either is malformed.
+     */
+    public static int[] merge(int[] older, int[] newer, int pixelCount) {
+        if (!isValid(older, pixelCount) || !isValid(newer, pixelCount)) return null;
+        Builder out = new Builder(older.length + newer.length);
+
+        // Current older run, trimmed from the front as newer runs cover it
+        int o = 0;
+        int oStart = 0, oEnd = 0, oData = 0;
+        if (o < older.length) {
+            oStart = older[o];
+            oEnd = oStart + older[o + 1];
+            oData = o + 2;
+        }
+
+        for (int n = 0; n < newer.length; n += 2 + newer[n + 1]) {
+            int nStart = newer[n];
+            int nEnd = nStart + newer[n + 1];
+            // Older pixels before this newer run
+            while (o < older.length && oStart < nStart) {
+                int to = Math.min(oEnd, nStart);
+                out.append(oStart, older, oData, to - oStart);
+                oData += to - oStart;
+                oStart = to;
+                if (oStart == oEnd) {
+                    o += 2 + older[o + 1];
+                    if (o < older.length) {
+                        oStart = older[o];
+                        oEnd = oStart + older[o + 1];
+                        oData = o + 2;
+                    }
+                }
+            }
+            out.append(nStart, newer, n + 2, nEnd - nStart);
+            // Drop older pixels this newer run overwrites
+            while (o < older.length && oStart < nEnd) {
+                if (oEnd <= nEnd) {
+                    o += 2 + older[o + 1];
+                    if (o < older.length) {
+                        oStart = older[o];
+                        oEnd = oStart + older[o + 1];
+                        oData = o + 2;
+                    }
+                } else {
+                    oData += nEnd - oStart;
+                    oStart = nEnd;
+                }
+            }
+        }
+        while (o < older.length) {
+            out.append(oStart, older, oData, oEnd - oStart);
+            o += 2 + older[o + 1];
+            if (o < older.length) {
+                oStart = older[o];
+                oEnd = oStart + older[o + 1];
+                oData = o + 2;
+            }
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Appends pixels in increasing position order, joining pieces that touch into one run.
+     */
+    private static final class Builder {
+        private int[] runs;
+        private int size;
+        private int lastHeader = -1;
+
+        private Builder(int capacity) {
+            runs = new int[Math.max(capacity, 16)];
+        }
+
+        private void append(int start, int[] src, int offset, int length) {
+            if (length <= 0) return;
+            boolean joins = lastHeader >= 0 && runs[lastHeader] + runs[lastHeader + 1] == start;
+            int needed = size + length + (joins ? 0 : 2);
+            if (needed > runs.length) runs = Arrays.copyOf(runs, Math.max(runs.length * 2, needed));
+            if (joins) {
+                runs[lastHeader + 1] += length;
+            } else {
+                lastHeader = size;
+                runs[size++] = start;
+                runs[size++] = length;
+            }
+            System.arraycopy(src, offset, runs, size, length);
+            size += length;
+        }
+
+        private int[] toArray() {
+            return Arrays.copyOf(runs, size);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.zeeesea.textureeditor;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Server-side sync settings stored in config/textureeditor-server.json.
+ */
+public class ServerSyncSettings {
+    private static ServerSyncSettings instance;
+
+    // Relay coalesced texture updates to the other players every this many ticks
+    public int relayIntervalTicks = 1;
+    // Synced textures kept for players who join later, and how many pixels they may hold in total
+    // (each counted twice, for its original); updates beyond that are only relayed
+    public int maxStoredTextures = 4096;
+    public long maxStoredPixels = 16L * 1024 * 1024;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private ServerSyncSettings() {}
+
+    public static synchronized ServerSyncSettings getInstance() {
+        if (instance == null) {
+            instance = load();
+        }
+        return instance;
+    }
+
+    public void save() {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(getConfigFile()), StandardCharsets.UTF_8)) {
+            GSON.toJson(this, writer);
+        } catch (IOException e) {
+            System.out.println("[TextureEditor] Failed to save server settings: " + e.getMessage());
+        }
+    }
+
+    private static File getConfigFile() {
+        File configDir = FabricLoader.getInstance().getConfigDir().toFile();
+        if (!configDir.exists()) configDir.mkdirs();
+        return new File(configDir, "textureeditor-server.json");
+    }
+
+    private static ServerSyncSettings load() {
+        File file = getConfigFile();
+        if (file.exists()) {
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                ServerSyncSettings settings = GSON.fromJson(reader, ServerSyncSettings.class);
+                if (settings != null) {
+                    settings.relayIntervalTicks = Math.max(1, settings.relayIntervalTicks);
+                    settings.maxStoredTextures = Math.max(0, settings.maxStoredTextures);
+                    settings.maxStoredPixels = Math.max(0, settings.maxStoredPixels);
+                    return settings;
+                }
+            } catch (Exception e) {
+                System.out.println("[TextureEditor] Failed to load server settings, using defaults: " + e.getMessage());
+            }
+        }
+        ServerSyncSettings settings = new ServerSyncSettings();
+        settings.save();
+        return settings;
+    }
+}
@@ -0,0 +1,221 @@
+package com.zeeesea.textureeditor;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.Identifier;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The server's copy of every synced texture, kept up to date from the updates it relays, so
+ * players who join later can be sent the current state. Stored in the world folder as
+ * {@link #FILE_NAME}, with pixels compressed by {@link PixelCodec}.
+ *
+ * Any client can start a texture, so the store is capped by {@link ServerSyncSettings}: a texture
+ * that doesn't fit anymore is still relayed to the players online, but not kept.
+ *
+ * Only used on the relay thread.
+ */
+final class ServerTextureStore {
+    static final String FILE_NAME = "textureeditor_sync.bin";
+
+    private static final int MAGIC = 0x54455331; // "TES1"
+    // 2: texture versions
+    private static final int FORMAT_VERSION = 2;
+
+    private final Map<Identifier, Texture> textures = new LinkedHashMap<>();
+    // Pixels reserved by the stored textures, originals included
+    private long storedPixels;
+    private boolean warnedFull;
+    private boolean dirty;
+
+    private static final class Texture {
+        private Identifier spriteId;
+        // Pixels and stream versions, applied in the same order as on the clients
+        private SyncedTexture state;
+        private long originalHash;
+        private int[] originals = new int[0];
+
+        private TextureSnapshotPayload.Entry toEntry(Identifier textureId) {
+            return new TextureSnapshotPayload.Entry(textureId, spriteId, state.width(), state.height(),
+                    state.textureVersion(), originalHash, state.pixels(), originals);
+        }
+    }
+
+    /**
+     * Apply a relayed update.
+     *
+     * @return false if it's stale and shouldn't be relayed either
+     */
+    boolean update(TextureDeltaPayload payload) {
+        Texture texture = textures.get(payload.textureId());
+        if (payload.isKeyframe()) {
+            if (payload.width() <= 0 || payload.height() <= 0
+                    || payload.data().length != (long) payload.width() * payload.height()) return true;
+            if (texture == null || texture.state == null || !texture.state.matches(payload.width(), payload.height())) {
+                if (!admits(texture, payload.width(), payload.height())) {
+                    // An outdated copy is worse than none
+                    if (texture != null) remove(payload.textureId());
+                    warnFull(payload.textureId());
+                    return true;
+                }
+                if (texture == null) {
+                    texture = new Texture();
+                    textures.put(payload.textureId(), texture);
+                }
+                storedPixels += reserve(payload.width(), payload.height()) - reserve(texture);
+                texture.state = new SyncedTexture(payload.width(), payload.height(), new int[payload.data().length]);
+                texture.originals = new int[0];
+            }
+            SyncedTexture.Result result = texture.state.apply(payload);
+            if (result == SyncedTexture.Result.STALE) return false;
+            texture.spriteId = payload.spriteId();
+            if (payload.originalPixels().length == payload.data().length) {
+                texture.originals = payload.originalPixels();
+            } else if (texture.originalHash != payload.originalHash()) {
+                texture.originals = new int[0];
+            }
+            texture.originalHash = payload.originalHash();
+            dirty = true;
+            return true;
+        }
+
+        if (texture == null) return true;
+        SyncedTexture.Result result = texture.state.apply(payload);
+        if (result == SyncedTexture.Result.APPLIED) dirty = true;
+        return result != SyncedTexture.Result.STALE;
+    }
+
+    /**
+     * Forget a texture that was reset to its original.
+     *
+     * @return what was stored of it, or null
+     */
+    TextureSnapshotPayload.Entry remove(Identifier textureId) {
+        Texture texture = textures.remove(textureId);
+        if (texture == null) return null;
+        storedPixels -= reserve(texture);
+        warnedFull = false;
+        dirty = true;
+        return texture.state != null ? texture.toEntry(textureId) : null;
+    }
+
+    /**
+     * Whether a texture of this size fits the caps, in place of {@code replaced} if that's non-null.
+     */
+    private boolean admits(Texture replaced, int width, int height) {
+        ServerSyncSettings settings = ServerSyncSettings.getInstance();
+        int count = textures.size() + (replaced == null ? 1 : 0);
+        return count <= settings.maxStoredTextures
+                && storedPixels - reserve(replaced) + reserve(width, height) <= settings.maxStoredPixels;
+    }
+
+    private void warnFull(Identifier textureId) {
+        if (warnedFull) return;
+        warnedFull = true;
+        System.out.println("[TextureEditor] Synced texture store is full, not keeping " + textureId
+                + " and others for players who join later");
+    }
+
+    // A texture reserves room for its original too, which may come with any keyframe
+    private static long reserve(int width, int height) {
+        return 2L * width * height;
+    }
+
+    private static long reserve(Texture texture) {
+        return texture != null && texture.state != null ? reserve(texture.state.width(), texture.state.height()) : 0;
+    }
+
+    boolean isEmpty() {
+        return textures.isEmpty();
+    }
+
+    /**
+     * @return null if the texture isn't stored
+     */
+    TextureSnapshotPayload.Entry entry(Identifier textureId) {
+        Texture texture = textures.get(textureId);
+        return texture != null && texture.state != null ? texture.toEntry(textureId) : null;
+    }
+
+    List<TextureSnapshotPayload.Entry> entries() {
+        List<TextureSnapshotPayload.Entry> entries = new ArrayList<>(textures.size());
+        textures.forEach((id, texture) -> entries.add(texture.toEntry(id)));
+        return entries;
+    }
+
+    void clear() {
+        textures.clear();
+        storedPixels = 0;
+        warnedFull = false;
+        dirty = false;
+    }
+
+    void load(Path file) {
+        clear();
+        if (!Files.exists(file)) return;
+        try {
+            PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(Files.readAllBytes(file)));
+            if (buf.readInt() != MAGIC || buf.readVarInt() > FORMAT_VERSION) {
+                System.out.println("[TextureEditor] Ignoring " + file.getFileName() + ": unknown format");
+                return;
+            }
+            for (TextureSnapshotPayload.Entry entry : TextureSnapshotPayload.readEntries(buf)) {
+                // The caps may have been lowered since
+                if (!admits(null, entry.width(), entry.height())) {
+                    warnFull(entry.textureId());
+                    dirty = true;
+                    continue;
+                }
+                storedPixels += reserve(entry.width(), entry.height());
+                Texture texture = new Texture();
+                texture.spriteId = entry.spriteId();
+                texture.state = new SyncedTexture(entry.width(), entry.height(), entry.pixels(), entry.textureVersion());
+                texture.originalHash = entry.originalHash();
+                texture.originals = entry.originalPixels();
+                textures.put(entry.textureId(), texture);
+            }
+            System.out.println("[TextureEditor] Loaded " + textures.size() + " synced texture(s) from the world");
+        } catch (IOException | RuntimeException e) {
+            clear();
+            System.out.println("[TextureEditor] Failed to load synced textures: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write the store if anything changed since the last save.
+     */
+    void saveIfDirty(Path file) {
+        if (!dirty) return;
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        try {
+            buf.writeInt(MAGIC);
+            buf.writeVarInt(FORMAT_VERSION);
+            textures.forEach((id, texture) -> TextureSnapshotPayload.writeEntry(buf, texture.toEntry(id),
+                    SyncHelloPayload.CAPABILITIES));
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            System.out.println("[TextureEditor] Failed to save synced textures: " + e.getMessage());
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.zeeesea.textureeditor;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * Sent by a client when it joins, and answered by the server, to announce that the mod is there,
+ * its sync protocol and which {@link PixelCodec} encodings each side can read. A peer that never
+ * sent one (an older client, or a server without the mod's newer version) only gets raw pixel
+ * arrays.
+ *
+ * The client also says whether it wants texture updates at all (its multiplayer sync setting),
+ * and sends a new hello whenever that changes; the server only relays to subscribed clients.
+ * Likewise it only announces {@link CanvasOpsPayload#OPS} while its collaboration mode is on.
+ */
+public record SyncHelloPayload(
+        int protocol,
+        int codecs,         // CAPABILITIES bits this side can decode: PixelCodec codecs, ordered deltas, canvas ops
+        boolean subscribed  // client: wants texture updates; always true from the server
+) implements CustomPayload {
+
+    // 1: codecs, 2: subscription, 3: ordered deltas, 4: canvas ops
+    public static final int PROTOCOL = 4;
+    public static final int CAPABILITIES = PixelCodec.ALL | TextureDeltaPayload.ORDERED | CanvasOpsPayload.OPS;
+
+    public static final CustomPayload.Id<SyncHelloPayload> ID =
+            new CustomPayload.Id<>(Identifier.of("textureeditor", "sync_hello"));
+
+    public static final PacketCodec<PacketByteBuf, SyncHelloPayload> CODEC =
+            PacketCodec.of(
+                    (value, buf) -> {
+                        buf.writeVarInt(value.protocol());
+                        buf.writeVarInt(value.codecs());
+                        buf.writeBoolean(value.subscribed());
+                    },
+                    buf -> {
+                        int protocol = buf.readVarInt();
+                        int codecs = buf.readVarInt();
+                        // Protocol 1 clients had no opt-in and took everything
+                        boolean subscribed = protocol < 2 || buf.readBoolean();
+                        return new SyncHelloPayload(protocol, codecs, subscribed);
+                    }
+            );
+
+    public static SyncHelloPayload local(boolean subscribed) {
+        return new SyncHelloPayload(PROTOCOL, CAPABILITIES, subscribed);
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -0,0 +1,48 @@
+package com.zeeesea.textureeditor;
+
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+
+/**
+ * Server-side sync state of one connected player. Only touched on the relay thread.
+ */
+final class SyncPeer {
+    final PacketSender packets;
+    // Whether the client has the delta sync channels, join snapshots, canvas ops, resets, and the old full-texture ones
+    final boolean syncs;
+    final boolean snapshots;
+    final boolean ops;
+    final boolean resets;
+    final boolean legacy;
+    // SyncHelloPayload.CAPABILITIES bits from the player's hello; raw until it says otherwise
+    int codecs = PixelCodec.RAW_ONLY;
+    // Whether the player said hello, and whether it wants texture updates
+    boolean announced;
+    boolean subscribed;
+    final ChunkSender sender;
+    final ChunkAssembler assembler = new ChunkAssembler();
+
+    SyncPeer(PacketSender packets, boolean syncs, boolean chunked, boolean snapshots, boolean ops, boolean resets,
+             boolean legacy) {
+        this.packets = packets;
+        this.syncs = syncs;
+        this.snapshots = snapshots;
+        this.ops = ops;
+        this.resets = resets;
+        this.legacy = legacy;
+        this.sender = new ChunkSender(packets::sendPacket, () -> chunked);
+    }
+
+    /**
+     * Players that never say hello (older versions) can't opt out, so they keep getting everything.
+     */
+    boolean wantsUpdates() {
+        return !announced || subscribed;
+    }
+
+    /**
+     * Canvas ops are only sent to players that asked for them.
+     */
+    boolean wantsOps() {
+        return syncs && ops && subscribed && (codecs & CanvasOpsPayload.OPS) != 0;
+    }
+}
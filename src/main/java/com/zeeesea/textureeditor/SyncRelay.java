@@ -0,0 +1,475 @@
+package com.zeeesea.textureeditor;
+
+import io.netty.buffer.Unpooled;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Relays texture sync between players, off the server thread.
+ *
+ * Network handlers only hand payloads over to the relay thread. Only players that have the sync
+ * channels and haven't opted out in their {@link SyncHelloPayload} are sent anything. There, updates of the same
+ * texture that arrive between two flushes are folded into one: deltas are merged into the pending
+ * delta or keyframe of their stream, unless another stream's update of the texture came in
+ * between, so recipients get the latest state once per
+ * {@link ServerSyncSettings#relayIntervalTicks} however fast the author paints. Old full-texture
+ * payloads are coalesced too, latest one wins. Players that only have those old payloads get
+ * the stored state of every texture that changed, once per flush. Keyframe requests, resets and canvas ops are forwarded
+ * right away; ops have to be replayed in order, and they aren't stored, the author's pixel
+ * updates keep the store current. Only the end of an ops session waits for the author's pixel
+ * updates of the texture that came before it, since receivers go back to showing those.
+ *
+ * Everything relayed also updates a {@link ServerTextureStore}, saved in the world folder, from
+ * which players get a snapshot of every synced texture once they've said hello.
+ *
+ * All fields below are only touched on the relay thread.
+ */
+public class SyncRelay {
+    private static final SyncRelay INSTANCE = new SyncRelay();
+
+    private static final int SAVE_INTERVAL_TICKS = 60 * 20;
+    // Old payloads write pixels as var ints, up to 5 bytes each; keep under the clientbound limit
+    private static final int LEGACY_MAX_BYTES = TextureSnapshotPayload.MAX_PART_BYTES;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TextureEditor-Relay");
+        t.setDaemon(true);
+        return t;
+    });
+    // Set while a tick is queued, so a slow relay skips ticks instead of piling them up
+    private final AtomicBoolean tickQueued = new AtomicBoolean();
+
+    private final Map<UUID, SyncPeer> peers = new HashMap<>();
+    private final Map<StreamKey, Pending<TextureDeltaPayload>> pending = new LinkedHashMap<>();
+    private final Map<LegacyKey, Pending<CustomPayload>> pendingLegacy = new LinkedHashMap<>();
+    // Ends of ops sessions waiting for the pixel update their author sent before them
+    private final Map<StreamKey, Pending<CanvasOpsPayload>> pendingEnds = new LinkedHashMap<>();
+    // Stream of the latest update offered of each texture since the last flush
+    private final Map<Identifier, Long> lastStreams = new HashMap<>();
+    // Textures updated by deltas since the last flush, sent whole to players without the delta channels
+    private final Set<Identifier> legacyDirty = new LinkedHashSet<>();
+    private final ServerTextureStore store = new ServerTextureStore();
+    private Path storeFile;
+    private int ticks;
+
+    private record StreamKey(Identifier textureId, long streamId) {}
+
+    private record LegacyKey(CustomPayload.Id<?> type, Identifier textureId) {}
+
+    private static final class Pending<T> {
+        private final UUID author;
+        private T payload;
+
+        private Pending(UUID author, T payload) {
+            this.author = author;
+            this.payload = payload;
+        }
+    }
+
+    private SyncRelay() {}
+
+    public static SyncRelay getInstance() { return INSTANCE; }
+
+    public void join(UUID player, PacketSender packets, boolean syncs, boolean chunked, boolean snapshots, boolean ops,
+                     boolean resets, boolean legacy) {
+        executor.execute(() -> peers.put(player, new SyncPeer(packets, syncs, chunked, snapshots, ops, resets, legacy)));
+    }
+
+    public void leave(UUID player) {
+        executor.execute(() -> peers.remove(player));
+    }
+
+    /**
+     * Load the synced textures of a world, when its server starts.
+     */
+    public void load(Path worldDir) {
+        executor.execute(() -> {
+            storeFile = worldDir.resolve(ServerTextureStore.FILE_NAME);
+            store.load(storeFile);
+        });
+    }
+
+    /**
+     * Save the synced textures now, waiting for it; used when the server stops.
+     */
+    public void save() {
+        try {
+            executor.submit(() -> {
+                flush();
+                if (storeFile != null) store.saveIfDirty(storeFile);
+            }).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println("[TextureEditor] Failed to save synced textures: " + e);
+        }
+    }
+
+    /**
+     * Drop everything, e.g. when the integrated server stops.
+     */
+    public void clear() {
+        executor.execute(() -> {
+            peers.clear();
+            pending.clear();
+            pendingLegacy.clear();
+            pendingEnds.clear();
+            lastStreams.clear();
+            legacyDirty.clear();
+            store.clear();
+            storeFile = null;
+        });
+    }
+
+    /**
+     * A player announced its codecs and subscription, on joining or after changing its sync
+     * setting. Newly subscribed players get a snapshot, since they missed what happened before.
+     */
+    public void onHello(UUID player, SyncHelloPayload payload) {
+        executor.execute(() -> {
+            SyncPeer peer = peers.get(player);
+            if (peer == null) return;
+            boolean first = !peer.announced;
+            boolean wasSubscribed = peer.announced && peer.subscribed;
+            peer.announced = true;
+            peer.subscribed = payload.subscribed();
+            peer.codecs = payload.codecs() & SyncHelloPayload.CAPABILITIES;
+            if (first) peer.packets.sendPacket(SyncHelloPayload.local(true));
+
+            if (!peer.subscribed) {
+                peer.sender.clear();
+            } else if (!wasSubscribed && peer.syncs) {
+                // Bring the store up to date first, so the player doesn't get deltas it can't apply
+                flush();
+                sendSnapshot(peer);
+            }
+        });
+    }
+
+    public void onDelta(UUID author, TextureDeltaPayload payload) {
+        executor.execute(() -> {
+            SyncPeer peer = peers.get(author);
+            if (peer != null) peer.assembler.supersede(payload);
+            offer(author, payload);
+        });
+    }
+
+    public void onChunk(UUID author, TextureChunkPayload chunk) {
+        executor.execute(() -> {
+            SyncPeer peer = peers.get(author);
+            TextureDeltaPayload payload = peer != null ? peer.assembler.accept(chunk) : null;
+            if (payload != null) offer(author, payload);
+        });
+    }
+
+    /**
+     * Keyframe requests go to everyone; only the author of the stream answers. Requests for the
+     * originals of a snapshot texture are answered from the store if it has them, otherwise any
+     * player that edited the texture answers.
+     */
+    public void onResync(UUID requester, TextureResyncPayload payload) {
+        executor.execute(() -> {
+            if (payload.streamId() == TextureDeltaPayload.SERVER_STREAM) {
+                SyncPeer peer = peers.get(requester);
+                TextureSnapshotPayload.Entry entry = store.entry(payload.textureId());
+                if (peer == null || entry == null) return;
+                if (entry.originalPixels().length == entry.pixels().length) {
+                    peer.sender.send(new TextureDeltaPayload(entry.textureId(), entry.spriteId(), TextureDeltaPayload.SERVER_STREAM,
+                            entry.textureVersion(), 1, TextureDeltaPayload.KEYFRAME, entry.width(), entry.height(), entry.pixels(),
+                            entry.originalHash(), entry.originalPixels(), peer.codecs));
+                    return;
+                }
+            }
+            peers.forEach((id, peer) -> {
+                if (peer.syncs && peer.wantsUpdates() && !id.equals(requester)) peer.packets.sendPacket(payload);
+            });
+        });
+    }
+
+    /**
+     * A texture was reset: pending and in-flight updates of it are dropped, the store forgets it,
+     * and everyone else goes back to the original. Players with only the old payloads get the
+     * stored original as a full texture, if the store has it.
+     */
+    public void onReset(UUID author, TextureResetPayload payload) {
+        executor.execute(() -> {
+            Identifier textureId = payload.textureId();
+            pending.keySet().removeIf(key -> key.textureId().equals(textureId));
+            lastStreams.remove(textureId);
+            legacyDirty.remove(textureId);
+            TextureSnapshotPayload.Entry stored = store.remove(textureId);
+            CustomPayload original = null;
+            if (stored != null && stored.originalPixels().length == stored.pixels().length) {
+                original = toLegacy(new TextureSnapshotPayload.Entry(textureId, stored.spriteId(), stored.width(),
+                        stored.height(), stored.textureVersion(), stored.originalHash(), stored.originalPixels(),
+                        stored.originalPixels()));
+            }
+            for (Map.Entry<UUID, SyncPeer> entry : peers.entrySet()) {
+                SyncPeer peer = entry.getValue();
+                if (entry.getKey().equals(author) || !peer.wantsUpdates()) continue;
+                if (peer.syncs) peer.sender.cancel(textureId);
+                if (peer.resets) {
+                    peer.packets.sendPacket(payload);
+                } else if (!peer.syncs && peer.legacy && original != null) {
+                    peer.packets.sendPacket(original);
+                }
+            }
+        });
+    }
+
+    /**
+     * Canvas ops go to everyone in collaboration mode, as they come. Batches for a canvas larger
+     * than any synced texture can be are dropped; the ops themselves are checked by whoever replays them.
+     */
+    public void onOps(UUID author, CanvasOpsPayload payload) {
+        if (!payload.isEnd() && (payload.width() <= 0 || payload.height() <= 0
+                || (long) payload.width() * payload.height() > PixelCodec.MAX_VALUES)) return;
+        executor.execute(() -> {
+            if (payload.isEnd()) {
+                StreamKey key = new StreamKey(payload.textureId(), payload.streamId());
+                pendingEnds.put(key, new Pending<>(author, payload));
+                if (!awaitsPixels(key, author)) sendEnd(pendingEnds.remove(key));
+                return;
+            }
+            peers.forEach((id, peer) -> {
+                if (peer.wantsOps() && !id.equals(author)) peer.packets.sendPacket(payload);
+            });
+        });
+    }
+
+    /**
+     * Whether a pixel update of the stream is still coming in from its author or waiting to be relayed.
+     */
+    private boolean awaitsPixels(StreamKey key, UUID author) {
+        SyncPeer peer = peers.get(author);
+        return pending.containsKey(key) || (peer != null && peer.assembler.isAssembling(key.textureId(), key.streamId()));
+    }
+
+    /**
+     * Relay the end of an ops session behind the author's pixel updates of the texture that are
+     * still being sent to each player.
+     */
+    private void sendEnd(Pending<CanvasOpsPayload> end) {
+        CanvasOpsPayload payload = end.payload;
+        peers.forEach((id, peer) -> {
+            if (peer.wantsOps() && !id.equals(end.author)) peer.sender.sendAfter(payload.textureId(), payload.streamId(), payload);
+        });
+    }
+
+    public void onLegacy(UUID author, CustomPayload.Id<?> type, Identifier textureId, CustomPayload payload) {
+        executor.execute(() -> {
+            LegacyKey key = new LegacyKey(type, textureId);
+            // Re-inserted so flush order follows the latest update
+            pendingLegacy.remove(key);
+            pendingLegacy.put(key, new Pending<>(author, payload));
+        });
+    }
+
+    /**
+     * Called at the end of every server tick.
+     */
+    public void tick() {
+        if (!tickQueued.compareAndSet(false, true)) return;
+        executor.execute(() -> {
+            tickQueued.set(false);
+            ticks++;
+            if (ticks % ServerSyncSettings.getInstance().relayIntervalTicks == 0) flush();
+            if (ticks % SAVE_INTERVAL_TICKS == 0 && storeFile != null) store.saveIfDirty(storeFile);
+            for (SyncPeer peer : peers.values()) {
+                peer.sender.tick();
+                peer.assembler.tick();
+            }
+        });
+    }
+
+    private void offer(UUID author, TextureDeltaPayload payload) {
+        StreamKey key = new StreamKey(payload.textureId(), payload.streamId());
+        Long lastStream = lastStreams.put(payload.textureId(), payload.streamId());
+        Pending<TextureDeltaPayload> current = pending.get(key);
+        if (current == null) {
+            pending.put(key, new Pending<>(author, payload));
+            return;
+        }
+        // The merged update takes the newer texture version; folding the older runs into it would
+        // move them past another player's update of the texture that came in between
+        boolean interleaved = lastStream == null || lastStream != payload.streamId();
+        TextureDeltaPayload merged = interleaved ? null : coalesce(current.payload, payload);
+        if (merged != null) {
+            current.payload = merged;
+        } else {
+            // Can't be folded (not based on the pending version, or another stream came in between); keep the order
+            fanOut(current.author, current.payload);
+            pending.remove(key);
+            pending.put(key, new Pending<>(author, payload));
+        }
+    }
+
+    /**
+     * One update equivalent to {@code older} followed by {@code newer}, or null if there isn't one.
+     */
+    private static TextureDeltaPayload coalesce(TextureDeltaPayload older, TextureDeltaPayload newer) {
+        boolean sameSize = older.width() == newer.width() && older.height() == newer.height();
+        if (newer.isKeyframe()) {
+            // Keep originals someone asked for if the newer keyframe doesn't carry them
+            if (sameSize && older.isKeyframe() && older.originalPixels().length > 0
+                    && newer.originalPixels().length == 0 && older.originalHash() == newer.originalHash()) {
+                return new TextureDeltaPayload(newer.textureId(), newer.spriteId(), newer.streamId(), newer.textureVersion(),
+                        newer.version(), TextureDeltaPayload.KEYFRAME, newer.width(), newer.height(), newer.data(),
+                        newer.originalHash(), older.originalPixels());
+            }
+            return newer;
+        }
+        if (!sameSize || newer.baseVersion() != older.version()) return null;
+
+        if (older.isKeyframe()) {
+            int[] pixels = older.data().clone();
+            if (!PixelRuns.apply(pixels, newer.data())) return null;
+            return new TextureDeltaPayload(newer.textureId(), newer.spriteId(), newer.streamId(), newer.textureVersion(),
+                    newer.version(), TextureDeltaPayload.KEYFRAME, newer.width(), newer.height(), pixels,
+                    older.originalHash(), older.originalPixels());
+        }
+        int[] runs = PixelRuns.merge(older.data(), newer.data(), newer.width() * newer.height());
+        if (runs == null) return null;
+        return new TextureDeltaPayload(newer.textureId(), newer.spriteId(), newer.streamId(), newer.textureVersion(),
+                newer.version(), older.baseVersion(), newer.width(), newer.height(), runs,
+                TextureDeltaPayload.NO_ORIGINAL, new int[0]);
+    }
+
+    private void flush() {
+        for (Pending<TextureDeltaPayload> update : pending.values()) fanOut(update.author, update.payload);
+        pending.clear();
+        lastStreams.clear();
+        // Stalled transfers expire in the assembler, so these don't wait forever
+        for (Iterator<Map.Entry<StreamKey, Pending<CanvasOpsPayload>>> it = pendingEnds.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<StreamKey, Pending<CanvasOpsPayload>> end = it.next();
+            if (awaitsPixels(end.getKey(), end.getValue().author)) continue;
+            it.remove();
+            sendEnd(end.getValue());
+        }
+        sendLegacyCopies();
+
+        for (Pending<CustomPayload> update : pendingLegacy.values()) {
+            peers.forEach((id, peer) -> {
+                if (peer.legacy && peer.wantsUpdates() && !id.equals(update.author)) peer.packets.sendPacket(update.payload);
+            });
+        }
+        pendingLegacy.clear();
+    }
+
+    /**
+     * Send a delta to every other player subscribed to sync, encoded with the codecs it announced.
+     * Stale updates (see {@link SyncedTexture}) go nowhere.
+     */
+    private void fanOut(UUID author, TextureDeltaPayload payload) {
+        if (!store.update(payload)) return;
+        legacyDirty.add(payload.textureId());
+        peers.forEach((id, peer) -> {
+            if (peer.syncs && peer.wantsUpdates() && !id.equals(author)) peer.sender.send(payload.withCodecs(peer.codecs));
+        });
+    }
+
+    /**
+     * Send the stored state of every texture deltas changed to players that only have the old
+     * full-texture payloads, as those payloads. Authors always have the delta channels, so this
+     * never echoes anything back.
+     */
+    private void sendLegacyCopies() {
+        if (legacyDirty.isEmpty()) return;
+        List<SyncPeer> targets = new ArrayList<>();
+        for (SyncPeer peer : peers.values()) {
+            if (!peer.syncs && peer.legacy && peer.wantsUpdates()) targets.add(peer);
+        }
+        if (!targets.isEmpty()) {
+            for (Identifier textureId : legacyDirty) {
+                TextureSnapshotPayload.Entry entry = store.entry(textureId);
+                CustomPayload payload = entry != null ? toLegacy(entry) : null;
+                if (payload == null) continue;
+                for (SyncPeer peer : targets) peer.packets.sendPacket(payload);
+            }
+        }
+        legacyDirty.clear();
+    }
+
+    /**
+     * The old payload older clients apply a stored texture from, or null if it's too big for one.
+     * Their sprite handler reads originals without checking the length, so sprites without known
+     * originals go as {@link TextureSyncPayload}, which ignores them.
+     */
+    private static CustomPayload toLegacy(TextureSnapshotPayload.Entry entry) {
+        int[] pixels = entry.pixels();
+        int[] originals = entry.originalPixels().length == pixels.length ? entry.originalPixels() : new int[0];
+        if (5L * (pixels.length + originals.length) + 1024 > LEGACY_MAX_BYTES) originals = new int[0];
+        if (5L * pixels.length + 1024 > LEGACY_MAX_BYTES) return null;
+
+        if (entry.spriteId() != null && originals.length == 0) {
+            return new TextureSyncPayload(entry.spriteId(), entry.width(), entry.height(), pixels, originals);
+        }
+        return new EntityTextureSyncPayload(entry.textureId(), entry.spriteId(), entry.width(), entry.height(),
+                pixels, originals);
+    }
+
+    /**
+     * Send every stored texture to a player: as snapshot parts of whole textures, and textures
+     * too big for a part on their own as chunked keyframes of {@link TextureDeltaPayload#SERVER_STREAM}.
+     */
+    private void sendSnapshot(SyncPeer peer) {
+        if (store.isEmpty()) return;
+        List<byte[]> parts = new ArrayList<>();
+        List<TextureSnapshotPayload.Entry> oversized = new ArrayList<>();
+        PacketByteBuf part = new PacketByteBuf(Unpooled.buffer());
+        PacketByteBuf entryBuf = new PacketByteBuf(Unpooled.buffer());
+        try {
+            for (TextureSnapshotPayload.Entry entry : store.entries()) {
+                entryBuf.clear();
+                TextureSnapshotPayload.writeEntry(entryBuf, entry, peer.codecs);
+                if (!peer.snapshots || entryBuf.readableBytes() > TextureSnapshotPayload.MAX_PART_BYTES) {
+                    oversized.add(entry);
+                    continue;
+                }
+                if (part.readableBytes() + entryBuf.readableBytes() > TextureSnapshotPayload.MAX_PART_BYTES) {
+                    parts.add(toBytes(part));
+                    part.clear();
+                }
+                part.writeBytes(entryBuf);
+            }
+            if (part.isReadable()) parts.add(toBytes(part));
+        } finally {
+            part.release();
+            entryBuf.release();
+        }
+
+        for (int i = 0; i < parts.size(); i++) {
+            peer.packets.sendPacket(new TextureSnapshotPayload(i, parts.size(), parts.get(i)));
+        }
+        for (TextureSnapshotPayload.Entry entry : oversized) {
+            peer.sender.send(new TextureDeltaPayload(entry.textureId(), entry.spriteId(), TextureDeltaPayload.SERVER_STREAM,
+                    entry.textureVersion(), 1, TextureDeltaPayload.KEYFRAME, entry.width(), entry.height(), entry.pixels(),
+                    entry.originalHash(), entry.originalPixels(), peer.codecs));
+        }
+    }
+
+    private static byte[] toBytes(PacketByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+}
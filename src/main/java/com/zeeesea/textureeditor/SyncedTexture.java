@@ -0,0 +1,149 @@
+package com.zeeesea.textureeditor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The synced state of one texture, built from the updates of every stream that edits it.
+ *
+ * Updates are ordered by {@code (textureVersion, streamId)}: a Lamport clock per texture, with
+ * the author's stream id breaking ties. Whatever order they arrive in, the pixels end up as if
+ * every update had been applied in that order, so all players agree on overlapping edits. An
+ * update that arrives late is slotted in by replaying the newer deltas of a short log on top of
+ * it; one older than the log reaches, or a repeat, is stale and dropped before any pixel work.
+ * Updates from peers without ordering ({@link TextureDeltaPayload#UNORDERED}) apply in arrival
+ * order and restart the ordering.
+ *
+ * Not thread-safe.
+ */
+public final class SyncedTexture {
+    public enum Result {
+        APPLIED,       // pixels changed
+        SUPERSEDED,    // recorded, but a newer keyframe already covers it
+        STALE,         // dropped
+        MISSING_BASE   // a delta whose base version we don't have; ask for a keyframe
+    }
+
+    private static final int MAX_LOG = 32;
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    // Last version applied of each stream
+    private final Map<Long, Integer> versions = new HashMap<>();
+    // Ordered updates applied so far, oldest first; runs is null for keyframes
+    private final List<LogEntry> log = new ArrayList<>();
+    // Order of the newest entry evicted from the log; nothing older can be slotted in
+    private LogEntry floor;
+    // Highest texture version applied
+    private int textureVersion;
+
+    private record LogEntry(int textureVersion, long streamId, int[] runs) {}
+
+    public SyncedTexture(int width, int height, int[] pixels) {
+        this(width, height, pixels, TextureDeltaPayload.UNORDERED);
+    }
+
+    /**
+     * State taken from a snapshot that already includes every update up to {@code textureVersion}.
+     */
+    public SyncedTexture(int width, int height, int[] pixels, int textureVersion) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.textureVersion = textureVersion;
+        if (textureVersion != TextureDeltaPayload.UNORDERED) floor = new LogEntry(textureVersion - 1, Long.MAX_VALUE, null);
+    }
+
+    public int width() { return width; }
+
+    public int height() { return height; }
+
+    /**
+     * Row-major pixels with every applied update; changed in place by {@link #apply}.
+     */
+    public int[] pixels() { return pixels; }
+
+    /**
+     * Highest texture version applied; the next local update is ordered after it.
+     */
+    public int textureVersion() { return textureVersion; }
+
+    public boolean matches(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    /**
+     * Whether an update would be dropped: checked before looking at its pixels at all.
+     */
+    public boolean isStale(TextureDeltaPayload payload) {
+        if (payload.textureVersion() == TextureDeltaPayload.UNORDERED) return false;
+        if (floor != null && compare(payload, floor) <= 0) return true;
+        for (LogEntry entry : log) {
+            if (compare(payload, entry) == 0) return true;
+        }
+        return false;
+    }
+
+    public Result apply(TextureDeltaPayload payload) {
+        if (isStale(payload)) return Result.STALE;
+        if (!matches(payload.width(), payload.height())) return Result.MISSING_BASE;
+        if (payload.isKeyframe()) {
+            if (payload.data().length != pixels.length) return Result.MISSING_BASE;
+        } else {
+            Integer have = versions.get(payload.streamId());
+            if (have == null || have != payload.baseVersion() || !PixelRuns.isValid(payload.data(), pixels.length)) {
+                return Result.MISSING_BASE;
+            }
+        }
+
+        if (payload.textureVersion() == TextureDeltaPayload.UNORDERED) {
+            write(payload);
+            versions.put(payload.streamId(), payload.version());
+            log.clear();
+            floor = null;
+            return Result.APPLIED;
+        }
+
+        LogEntry entry = new LogEntry(payload.textureVersion(), payload.streamId(),
+                payload.isKeyframe() ? null : payload.data());
+        int at = log.size();
+        while (at > 0 && compare(entry, log.get(at - 1)) < 0) at--;
+        log.add(at, entry);
+        versions.put(payload.streamId(), payload.version());
+        textureVersion = Math.max(textureVersion, payload.textureVersion());
+
+        boolean superseded = false;
+        for (int i = at + 1; i < log.size(); i++) {
+            if (log.get(i).runs() == null) superseded = true;
+        }
+        if (!superseded) {
+            write(payload);
+            for (int i = at + 1; i < log.size(); i++) {
+                PixelRuns.apply(pixels, log.get(i).runs());
+            }
+        }
+        while (log.size() > MAX_LOG) floor = log.remove(0);
+        return superseded ? Result.SUPERSEDED : Result.APPLIED;
+    }
+
+    private void write(TextureDeltaPayload payload) {
+        if (payload.isKeyframe()) {
+            System.arraycopy(payload.data(), 0, pixels, 0, pixels.length);
+        } else {
+            PixelRuns.apply(pixels, payload.data());
+        }
+    }
+
+    private static int compare(TextureDeltaPayload payload, LogEntry entry) {
+        int c = Integer.compare(payload.textureVersion(), entry.textureVersion());
+        return c != 0 ? c : Long.compare(payload.streamId(), entry.streamId());
+    }
+
+    private static int compare(LogEntry a, LogEntry b) {
+        int c = Integer.compare(a.textureVersion(), b.textureVersion());
+        return c != 0 ? c : Long.compare(a.streamId(), b.streamId());
+    }
+}
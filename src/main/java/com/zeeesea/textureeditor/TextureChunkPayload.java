@@ -0,0 +1,55 @@
+package com.zeeesea.textureeditor;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * One piece of a {@link TextureDeltaPayload} too large to send as a single custom payload.
+ * The encoded delta is cut into {@link ChunkSender#CHUNK_BYTES} pieces; {@code crc} is the CRC32
+ * of the whole encoding, checked once every piece has arrived.
+ */
+public record TextureChunkPayload(
+        Identifier textureId,
+        long streamId,
+        int version,     // version of the delta being sent; a newer one cancels this transfer
+        int index,
+        int count,
+        int totalLength,
+        int crc,
+        byte[] data
+) implements CustomPayload {
+
+    public static final CustomPayload.Id<TextureChunkPayload> ID =
+            new CustomPayload.Id<>(Identifier.of("textureeditor", "texture_chunk"));
+
+    public static final PacketCodec<PacketByteBuf, TextureChunkPayload> CODEC =
+            PacketCodec.of(
+                    (value, buf) -> {
+                        buf.writeIdentifier(value.textureId());
+                        buf.writeLong(value.streamId());
+                        buf.writeVarInt(value.version());
+                        buf.writeVarInt(value.index());
+                        buf.writeVarInt(value.count());
+                        buf.writeVarInt(value.totalLength());
+                        buf.writeInt(value.crc());
+                        buf.writeByteArray(value.data());
+                    },
+                    buf -> new TextureChunkPayload(
+                            buf.readIdentifier(),
+                            buf.readLong(),
+                            buf.readVarInt(),
+                            buf.readVarInt(),
+                            buf.readVarInt(),
+                            buf.readVarInt(),
+                            buf.readInt(),
+                            buf.readByteArray(ChunkSender.CHUNK_BYTES)
+                    )
+            );
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
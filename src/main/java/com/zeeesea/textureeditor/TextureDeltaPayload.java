@@ -0,0 +1,157 @@
+package com.zeeesea.textureeditor;
+
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * One texture update of a sync stream: either a keyframe with every pixel, or just the runs of
+ * pixels that changed since version {@code baseVersion} of the same stream.
+ *
+ * Keyframes identify the original texture by a content hash, since receivers normally have the
+ * same original in their own resources. The original pixels are only included when a receiver
+ * asked for them because its copy hashes differently (e.g. a different base pack).
+ *
+ * Run data is a flat list of {@code start, length, pixel...} entries, where {@code start} is a
+ * row-major index ({@code y * width + x}).
+ *
+ * Updates of the same texture by different streams are ordered by {@code (textureVersion,
+ * streamId)}, see {@link SyncedTexture}.
+ *
+ * {@code codecs} isn't sent itself: it's what the receiving side announced in its
+ * {@link SyncHelloPayload}, and picks how the pixel arrays are encoded and whether the texture
+ * version is included ({@link #ORDERED}). Both are marked by flag bits in the byte older versions
+ * read as the sprite id boolean; peers that never said hello keep getting plain int arrays.
+ */
+public record TextureDeltaPayload(
+        Identifier textureId,
+        Identifier spriteId,  // null if not an atlas sprite (e.g. mob textures, end sky)
+        long streamId,        // picked at random by the sending client per connection; the author id
+        int textureVersion,   // Lamport clock of the texture across all streams, or UNORDERED
+        int version,
+        int baseVersion,      // KEYFRAME, or the version of this stream the runs apply to
+        int width,
+        int height,
+        int[] data,           // keyframe: width * height pixels, delta: runs
+        long originalHash,    // keyframe only: hashOriginal() of the original, NO_ORIGINAL if unknown
+        int[] originalPixels, // only in keyframes answering a request for the originals, empty otherwise
+        int codecs            // PixelCodec mask (+ ORDERED) to encode with (decoded: what the sender used)
+) implements CustomPayload {
+
+    public static final int KEYFRAME = -1;
+    public static final long NO_ORIGINAL = 0L;
+    // Stream id of keyframes the server sends from its own store; clients never pick it
+    public static final long SERVER_STREAM = 0L;
+    // Texture version of updates from peers that don't order them
+    public static final int UNORDERED = 0;
+
+    // Capability announced alongside the PixelCodec codecs: reads the texture version
+    public static final int ORDERED = 1 << 8;
+
+    private static final int FLAG_SPRITE = 1;
+    private static final int FLAG_PACKED = 2;
+    private static final int FLAG_ORDERED = 4;
+
+    public static final CustomPayload.Id<TextureDeltaPayload> ID =
+            new CustomPayload.Id<>(Identifier.of("textureeditor", "texture_delta"));
+
+    public static final PacketCodec<PacketByteBuf, TextureDeltaPayload> CODEC =
+            PacketCodec.of(
+                    (value, buf) -> {
+                        boolean packed = (value.codecs() & PixelCodec.ALL & ~PixelCodec.RAW_ONLY) != 0;
+                        boolean ordered = (value.codecs() & ORDERED) != 0 && value.textureVersion() != UNORDERED;
+                        buf.writeIdentifier(value.textureId());
+                        buf.writeByte((value.spriteId() != null ? FLAG_SPRITE : 0) | (packed ? FLAG_PACKED : 0)
+                                | (ordered ? FLAG_ORDERED : 0));
+                        if (value.spriteId() != null) buf.writeIdentifier(value.spriteId());
+                        buf.writeLong(value.streamId());
+                        if (ordered) buf.writeVarInt(value.textureVersion());
+                        buf.writeVarInt(value.version());
+                        buf.writeVarInt(value.baseVersion());
+                        buf.writeVarInt(value.width());
+                        buf.writeVarInt(value.height());
+                        writePixels(buf, value.data(), packed, value.codecs());
+                        buf.writeLong(value.originalHash());
+                        writePixels(buf, value.originalPixels(), packed, value.codecs());
+                    },
+                    buf -> {
+                        Identifier textureId = buf.readIdentifier();
+                        int flags = buf.readUnsignedByte();
+                        boolean packed = (flags & FLAG_PACKED) != 0;
+                        boolean ordered = (flags & FLAG_ORDERED) != 0;
+                        Identifier spriteId = (flags & FLAG_SPRITE) != 0 ? buf.readIdentifier() : null;
+                        long streamId = buf.readLong();
+                        int textureVersion = ordered ? buf.readVarInt() : UNORDERED;
+                        int version = buf.readVarInt();
+                        int baseVersion = buf.readVarInt();
+                        int width = buf.readVarInt();
+                        int height = buf.readVarInt();
+                        // Sent by clients: bound the arrays by the size before reading them
+                        if (width <= 0 || height <= 0 || (long) width * height > PixelCodec.MAX_VALUES) {
+                            throw new DecoderException("Bad texture size " + width + "x" + height);
+                        }
+                        int pixelCount = width * height;
+                        int maxData = baseVersion == KEYFRAME ? pixelCount : PixelRuns.maxLength(pixelCount);
+                        int[] data = readPixels(buf, packed, maxData);
+                        long originalHash = buf.readLong();
+                        int[] originalPixels = readPixels(buf, packed, pixelCount);
+                        return new TextureDeltaPayload(textureId, spriteId, streamId, textureVersion, version, baseVersion,
+                                width, height, data, originalHash, originalPixels,
+                                (packed ? PixelCodec.ALL : PixelCodec.RAW_ONLY) | (ordered ? ORDERED : 0));
+                    }
+            );
+
+    /**
+     * Payload for a peer that hasn't announced any codecs: plain int arrays.
+     */
+    public TextureDeltaPayload(Identifier textureId, Identifier spriteId, long streamId, int textureVersion, int version,
+                               int baseVersion, int width, int height, int[] data, long originalHash, int[] originalPixels) {
+        this(textureId, spriteId, streamId, textureVersion, version, baseVersion, width, height, data, originalHash,
+                originalPixels, PixelCodec.RAW_ONLY);
+    }
+
+    /**
+     * The same update, encoded for a peer that can read {@code codecs}.
+     */
+    public TextureDeltaPayload withCodecs(int codecs) {
+        if (codecs == this.codecs) return this;
+        return new TextureDeltaPayload(textureId, spriteId, streamId, textureVersion, version, baseVersion, width, height,
+                data, originalHash, originalPixels, codecs);
+    }
+
+    private static void writePixels(PacketByteBuf buf, int[] values, boolean packed, int codecs) {
+        if (packed) {
+            PixelCodec.write(buf, values, codecs);
+        } else {
+            buf.writeIntArray(values);
+        }
+    }
+
+    private static int[] readPixels(PacketByteBuf buf, boolean packed, int maxValues) {
+        return packed ? PixelCodec.read(buf, maxValues) : buf.readIntArray(maxValues);
+    }
+
+    public boolean isKeyframe() {
+        return baseVersion == KEYFRAME;
+    }
+
+    /**
+     * Content hash (64-bit FNV-1a) of original pixels, never {@link #NO_ORIGINAL}.
+     */
+    public static long hashOriginal(int[] pixels, int width, int height) {
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ width) * 0x100000001b3L;
+        hash = (hash ^ height) * 0x100000001b3L;
+        for (int pixel : pixels) {
+            hash = (hash ^ pixel) * 0x100000001b3L;
+        }
+        return hash == NO_ORIGINAL ? 1L : hash;
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
@@ -1,8 +1,13 @@
 package com.zeeesea.textureeditor;
 
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.util.WorldSavePath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,28 +23,70 @@ public class TextureEditor implements ModInitializer {
 		PayloadTypeRegistry.playS2C().register(TextureSyncPayload.ID, TextureSyncPayload.CODEC);
 		PayloadTypeRegistry.playC2S().register(EntityTextureSyncPayload.ID, EntityTextureSyncPayload.CODEC);
 		PayloadTypeRegistry.playS2C().register(EntityTextureSyncPayload.ID, EntityTextureSyncPayload.CODEC);
+		PayloadTypeRegistry.playC2S().register(TextureDeltaPayload.ID, TextureDeltaPayload.CODEC);
+		PayloadTypeRegistry.playS2C().register(TextureDeltaPayload.ID, TextureDeltaPayload.CODEC);
+		PayloadTypeRegistry.playC2S().register(TextureResyncPayload.ID, TextureResyncPayload.CODEC);
+		PayloadTypeRegistry.playS2C().register(TextureResyncPayload.ID, TextureResyncPayload.CODEC);
+		PayloadTypeRegistry.playC2S().register(SyncHelloPayload.ID, SyncHelloPayload.CODEC);
+		PayloadTypeRegistry.playS2C().register(SyncHelloPayload.ID, SyncHelloPayload.CODEC);
+		PayloadTypeRegistry.playC2S().register(TextureChunkPayload.ID, TextureChunkPayload.CODEC);
+		PayloadTypeRegistry.playS2C().register(TextureChunkPayload.ID, TextureChunkPayload.CODEC);
+		PayloadTypeRegistry.playS2C().register(TextureSnapshotPayload.ID, TextureSnapshotPayload.CODEC);
+		PayloadTypeRegistry.playC2S().register(CanvasOpsPayload.ID, CanvasOpsPayload.CODEC);
+		PayloadTypeRegistry.playS2C().register(CanvasOpsPayload.ID, CanvasOpsPayload.CODEC);
+		PayloadTypeRegistry.playC2S().register(TextureResetPayload.ID, TextureResetPayload.CODEC);
+		PayloadTypeRegistry.playS2C().register(TextureResetPayload.ID, TextureResetPayload.CODEC);
 
-		// Standard Texture Sync
-		ServerPlayNetworking.registerGlobalReceiver(TextureSyncPayload.ID, (payload, context) -> {
-			context.server().execute(() -> {
-				context.server().getPlayerManager().getPlayerList().forEach(p -> {
-					if (p != context.player()) {
-						ServerPlayNetworking.send(p, payload);
-					}
-				});
-			});
+		// Relaying happens on the relay thread; handlers here only hand payloads over
+		SyncRelay relay = SyncRelay.getInstance();
+
+		ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+			ServerPlayerEntity player = handler.getPlayer();
+			relay.join(player.getUuid(), sender,
+					ServerPlayNetworking.canSend(player, TextureDeltaPayload.ID),
+					ServerPlayNetworking.canSend(player, TextureChunkPayload.ID),
+					ServerPlayNetworking.canSend(player, TextureSnapshotPayload.ID),
+					ServerPlayNetworking.canSend(player, CanvasOpsPayload.ID),
+					ServerPlayNetworking.canSend(player, TextureResetPayload.ID),
+					ServerPlayNetworking.canSend(player, TextureSyncPayload.ID));
 		});
+		ServerPlayConnectionEvents.DISCONNECT.register((handler, server) ->
+				relay.leave(handler.getPlayer().getUuid()));
+		ServerTickEvents.END_SERVER_TICK.register(server -> relay.tick());
+		// Synced textures live in the world folder
+		ServerLifecycleEvents.SERVER_STARTED.register(server -> relay.load(server.getSavePath(WorldSavePath.ROOT)));
+		ServerLifecycleEvents.SERVER_STOPPING.register(server -> relay.save());
+		ServerLifecycleEvents.SERVER_STOPPED.register(server -> relay.clear());
+
+		// Codec negotiation: remember what the client reads and tell it what we read
+		ServerPlayNetworking.registerGlobalReceiver(SyncHelloPayload.ID, (payload, context) ->
+				relay.onHello(context.player().getUuid(), payload));
+
+		// Standard Texture Sync
+		ServerPlayNetworking.registerGlobalReceiver(TextureSyncPayload.ID, (payload, context) ->
+				relay.onLegacy(context.player().getUuid(), TextureSyncPayload.ID, payload.spriteId(), payload));
 
 		// Entity/Mob Texture Sync
-		ServerPlayNetworking.registerGlobalReceiver(EntityTextureSyncPayload.ID, (payload, context) -> {
-			context.server().execute(() -> {
-				context.server().getPlayerManager().getPlayerList().forEach(p -> {
-					if (p != context.player()) {
-						ServerPlayNetworking.send(p, payload);
-					}
-				});
-			});
-		});
+		ServerPlayNetworking.registerGlobalReceiver(EntityTextureSyncPayload.ID, (payload, context) ->
+				relay.onLegacy(context.player().getUuid(), EntityTextureSyncPayload.ID, payload.textureId(), payload));
+
+		// Delta Texture Sync (keyframes + changed runs); large deltas arrive in chunks
+		ServerPlayNetworking.registerGlobalReceiver(TextureDeltaPayload.ID, (payload, context) ->
+				relay.onDelta(context.player().getUuid(), payload));
+		ServerPlayNetworking.registerGlobalReceiver(TextureChunkPayload.ID, (payload, context) ->
+				relay.onChunk(context.player().getUuid(), payload));
+
+		// Keyframe requests go to everyone; only the author of the stream answers
+		ServerPlayNetworking.registerGlobalReceiver(TextureResyncPayload.ID, (payload, context) ->
+				relay.onResync(context.player().getUuid(), payload));
+
+		// Resets: the texture is forgotten, everyone goes back to the original
+		ServerPlayNetworking.registerGlobalReceiver(TextureResetPayload.ID, (payload, context) ->
+				relay.onReset(context.player().getUuid(), payload));
+
+		// Collaboration mode: tool ops, replayed by the other editors
+		ServerPlayNetworking.registerGlobalReceiver(CanvasOpsPayload.ID, (payload, context) ->
+				relay.onOps(context.player().getUuid(), payload));
 
 		LOGGER.info("Live Texture Editor Server initialized");
 	}
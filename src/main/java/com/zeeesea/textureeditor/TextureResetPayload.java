@@ -0,0 +1,37 @@
+package com.zeeesea.textureeditor;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * Sent by a client that reset a synced texture to its original. The server forgets the texture
+ * and passes this on, so the other players show their original again and later joiners don't
+ * get the edit back.
+ */
+public record TextureResetPayload(
+        Identifier textureId,
+        long streamId
+) implements CustomPayload {
+
+    public static final CustomPayload.Id<TextureResetPayload> ID =
+            new CustomPayload.Id<>(Identifier.of("textureeditor", "texture_reset"));
+
+    public static final PacketCodec<PacketByteBuf, TextureResetPayload> CODEC =
+            PacketCodec.of(
+                    (value, buf) -> {
+                        buf.writeIdentifier(value.textureId());
+                        buf.writeLong(value.streamId());
+                    },
+                    buf -> new TextureResetPayload(
+                            buf.readIdentifier(),
+                            buf.readLong()
+                    )
+            );
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
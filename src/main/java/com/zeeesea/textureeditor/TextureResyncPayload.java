@@ -0,0 +1,40 @@
+package com.zeeesea.textureeditor;
+
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+/**
+ * Sent by a client that received a delta it can't apply (it doesn't have the base version),
+ * asking the author of that stream for a fresh keyframe of the texture. Also sent for a keyframe
+ * whose original doesn't match the receiver's own, with {@code withOriginals} set.
+ */
+public record TextureResyncPayload(
+        Identifier textureId,
+        long streamId,
+        boolean withOriginals
+) implements CustomPayload {
+
+    public static final CustomPayload.Id<TextureResyncPayload> ID =
+            new CustomPayload.Id<>(Identifier.of("textureeditor", "texture_resync"));
+
+    public static final PacketCodec<PacketByteBuf, TextureResyncPayload> CODEC =
+            PacketCodec.of(
+                    (value, buf) -> {
+                        buf.writeIdentifier(value.textureId());
+                        buf.writeLong(value.streamId());
+                        buf.writeBoolean(value.withOriginals());
+                    },
+                    buf -> new TextureResyncPayload(
+                            buf.readIdentifier(),
+                            buf.readLong(),
+                            buf.readBoolean()
+                    )
+            );
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}
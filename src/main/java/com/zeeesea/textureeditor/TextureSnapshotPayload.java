@@ -0,0 +1,113 @@
+package com.zeeesea.textureeditor;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DecoderException;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.network.codec.PacketCodec;
+import net.minecraft.network.packet.CustomPayload;
+import net.minecraft.util.Identifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The server's current state of synced textures, sent to a client once it joins. Large
+ * snapshots are split into parts of whole textures; the client applies them together once
+ * every part is in.
+ *
+ * {@code data} is an encoded entry list (see {@link #writeEntries}), with pixel arrays
+ * compressed by {@link PixelCodec} as far as the client announced it can read.
+ */
+public record TextureSnapshotPayload(
+        int part,
+        int parts,
+        byte[] data
+) implements CustomPayload {
+
+    // Leaves room for the header under the 1 MiB clientbound payload limit
+    public static final int MAX_PART_BYTES = 960 * 1024;
+
+    private static final int FLAG_SPRITE = 1;
+    private static final int FLAG_ORDERED = 2;
+
+    public static final CustomPayload.Id<TextureSnapshotPayload> ID =
+            new CustomPayload.Id<>(Identifier.of("textureeditor", "texture_snapshot"));
+
+    public static final PacketCodec<PacketByteBuf, TextureSnapshotPayload> CODEC =
+            PacketCodec.of(
+                    (value, buf) -> {
+                        buf.writeVarInt(value.part());
+                        buf.writeVarInt(value.parts());
+                        buf.writeByteArray(value.data());
+                    },
+                    buf -> new TextureSnapshotPayload(
+                            buf.readVarInt(),
+                            buf.readVarInt(),
+                            buf.readByteArray(MAX_PART_BYTES)
+                    )
+            );
+
+    /**
+     * One synced texture: its current pixels (row-major) and what it was edited from.
+     *
+     * @param spriteId       null if not an atlas sprite
+     * @param textureVersion highest texture version included, or {@link TextureDeltaPayload#UNORDERED}
+     * @param originalPixels empty unless known; receivers check their own against originalHash
+     */
+    public record Entry(Identifier textureId, Identifier spriteId, int width, int height, int textureVersion,
+                        long originalHash, int[] pixels, int[] originalPixels) {}
+
+    public List<Entry> entries() {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(data));
+        return readEntries(buf);
+    }
+
+    /**
+     * @param codecs what the reader announced; the texture version is only written if that
+     *               includes {@link TextureDeltaPayload#ORDERED}, older readers take the flags
+     *               byte for a boolean
+     */
+    public static void writeEntry(PacketByteBuf buf, Entry entry, int codecs) {
+        boolean ordered = (codecs & TextureDeltaPayload.ORDERED) != 0 && entry.textureVersion() != TextureDeltaPayload.UNORDERED;
+        buf.writeIdentifier(entry.textureId());
+        buf.writeByte((entry.spriteId() != null ? FLAG_SPRITE : 0) | (ordered ? FLAG_ORDERED : 0));
+        if (entry.spriteId() != null) buf.writeIdentifier(entry.spriteId());
+        if (ordered) buf.writeVarInt(entry.textureVersion());
+        buf.writeVarInt(entry.width());
+        buf.writeVarInt(entry.height());
+        buf.writeLong(entry.originalHash());
+        PixelCodec.write(buf, entry.pixels(), codecs);
+        PixelCodec.write(buf, entry.originalPixels(), codecs);
+    }
+
+    /**
+     * Entries until the buffer is exhausted. Entries that don't hold together are skipped; a size
+     * the pixel arrays can't be bounded by throws, since nothing after it can be read.
+     */
+    public static List<Entry> readEntries(PacketByteBuf buf) {
+        List<Entry> entries = new ArrayList<>();
+        while (buf.isReadable()) {
+            Identifier textureId = buf.readIdentifier();
+            int flags = buf.readUnsignedByte();
+            Identifier spriteId = (flags & FLAG_SPRITE) != 0 ? buf.readIdentifier() : null;
+            int textureVersion = (flags & FLAG_ORDERED) != 0 ? buf.readVarInt() : TextureDeltaPayload.UNORDERED;
+            int width = buf.readVarInt();
+            int height = buf.readVarInt();
+            long originalHash = buf.readLong();
+            if (width <= 0 || height <= 0 || (long) width * height > PixelCodec.MAX_VALUES) {
+                throw new DecoderException("Bad texture size " + width + "x" + height);
+            }
+            int[] pixels = PixelCodec.read(buf, width * height);
+            int[] originals = PixelCodec.read(buf, width * height);
+            if (pixels.length != width * height
+                    || (originals.length != 0 && originals.length != pixels.length)) continue;
+            entries.add(new Entry(textureId, spriteId, width, height, textureVersion, originalHash, pixels, originals));
+        }
+        return entries;
+    }
+
+    @Override
+    public Id<? extends CustomPayload> getId() {
+        return ID;
+    }
+}